@@ -30,6 +30,16 @@ public class UserController {
         return ResponseEntity.ok( ApiResponse.success( response,"Get data successful" ));
     }
 
+    /**
+     * Nhiều user theo id trong một lần gọi (tối đa 200 id), cho các service làm giàu danh sách.
+     * Cần đăng nhập: không nằm dưới /public để tránh dò hàng loạt thông tin người dùng
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<ApiResponse<List<UserResponse>>> getUsersByIds(@RequestParam List<Long> ids) {
+        List<UserResponse> response = userService.getUsersByIds(ids);
+        return ResponseEntity.ok( ApiResponse.success( response,"Get data successful" ));
+    }
+
     @GetMapping("/public/{id}")
     public ResponseEntity<ApiResponse<UserResponse>>getUserByIdPublic(@PathVariable Long id) {
         UserResponse response = userService.getUserById(id);
@@ -0,0 +1,34 @@
+package com.sketchnotes.identityservice.events;
+
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publish user đã thay đổi (profile, role, xoá) lên Redis để các service khác
+ * bỏ profile đã cache theo Keycloak subject (project-service CurrentUserResolver)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserChangedPublisher {
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${security.principal.invalidation-channel:identity:user-changed}")
+    @NonFinal
+    String channel;
+
+    public void publish(String keycloakId) {
+        if (keycloakId == null) return;
+        try {
+            redisTemplate.convertAndSend(channel, keycloakId);
+        } catch (Exception ex) {
+            // Cache phía consumer vẫn hết hạn theo TTL
+            log.warn("Failed to publish user change for {}: {}", keycloakId, ex.getMessage());
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.sketchnotes.identityservice.dtos.request.RoleKeycloakRequest;
 import com.sketchnotes.identityservice.dtos.request.RoleRequest;
 import com.sketchnotes.identityservice.dtos.response.RoleResponseKeycloak;
 import com.sketchnotes.identityservice.enums.Role;
+import com.sketchnotes.identityservice.events.UserChangedPublisher;
 import com.sketchnotes.identityservice.exception.AppException;
 import com.sketchnotes.identityservice.exception.ErrorCode;
 import com.sketchnotes.identityservice.exception.ErrorNormalizer;
@@ -26,6 +27,7 @@ public class RoleService implements IRoleService {
     private final IdentityClient identityClient;
     private final IUserRepository userRepository;
     private final ErrorNormalizer errorNormalizer;
+    private final UserChangedPublisher userChangedPublisher;
     @Value("${idp.client-id}")
     @NonFinal
     String clientId;
@@ -74,6 +76,7 @@ public class RoleService implements IRoleService {
             identityClient.assignRolesToUser("Bearer " + token.getAccessToken(), user.getKeycloakId(), List.of(credential));
             user.setRole(Role.valueOf(roleToAssign.getName()));
             userRepository.save(user);
+            userChangedPublisher.publish(user.getKeycloakId());
         } catch (FeignException exception) {
             throw errorNormalizer.handleKeyCloakException(exception);
         }
@@ -2,6 +2,7 @@ package com.sketchnotes.identityservice.service.implement;
 
 import com.sketchnotes.identityservice.client.ProjectServiceClient;
 import com.sketchnotes.identityservice.enums.Role;
+import com.sketchnotes.identityservice.events.UserChangedPublisher;
 import com.sketchnotes.identityservice.exception.AppException;
 import com.sketchnotes.identityservice.exception.ErrorCode;
 import com.sketchnotes.identityservice.model.User;
@@ -24,6 +25,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 @Service
@@ -33,6 +35,9 @@ public class UserService implements IUserService {
 
     private final IUserRepository userRepository;
     private final ProjectServiceClient projectServiceClient;
+    private final UserChangedPublisher userChangedPublisher;
+
+    private static final int MAX_BATCH_SIZE = 200;
 
 
     @Override
@@ -50,6 +55,28 @@ public class UserService implements IUserService {
                 .build();
     }
 
+    @Override
+    public List<UserResponse> getUsersByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new AppException(ErrorCode.INVALID_REQUEST);
+        }
+        return userRepository.findAllById(new LinkedHashSet<>(ids)).stream()
+                .filter(User::isActive)
+                .map(user -> UserResponse.builder()
+                        .id(user.getId())
+                        .keycloakId(user.getKeycloakId())
+                        .email(user.getEmail())
+                        .firstName(user.getFirstName())
+                        .lastName(user.getLastName())
+                        .role(user.getRole().toString())
+                        .avatarUrl(user.getAvatarUrl())
+                        .build())
+                .toList();
+    }
+
     @Override
     @Cacheable(value = "users", key = "#pageNo + '-' + #pageSize")
     public PagedResponse<UserResponse> getAllUsers(int pageNo, int pageSize) {
@@ -85,6 +112,7 @@ public class UserService implements IUserService {
         account.setAvatarUrl(request.getAvatarUrl());
         account.setUpdateAt(LocalDateTime.now());
         account = userRepository.save(account);
+        userChangedPublisher.publish(account.getKeycloakId());
         return UserResponse.builder()
                 .id(account.getId())
                 .email(account.getEmail())
@@ -102,7 +130,8 @@ public class UserService implements IUserService {
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
         account.setActive(false);
         account.setUpdateAt(LocalDateTime.now());
-         userRepository.save(account);
+        userRepository.save(account);
+        userChangedPublisher.publish(account.getKeycloakId());
     }
 
     @Override
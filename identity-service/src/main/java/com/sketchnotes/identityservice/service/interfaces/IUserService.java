@@ -11,6 +11,8 @@ import java.util.List;
 
 public interface IUserService {
      UserResponse getUserById(Long id);
+    // Active users among ids, in one query; unknown or inactive ids are omitted
+    List<UserResponse> getUsersByIds(List<Long> ids);
      PagedResponse<UserResponse> getAllUsers(int pageNo, int pageSize);
      UserResponse updateUser(Long id,  UserRequest request);
      void deleteUser(Long id);
@@ -14,6 +14,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(
         name = "account-service"
@@ -26,6 +28,13 @@ public interface IdentityClient {
     @GetMapping("/api/users/public/{id}")
     ApiResponse<UserResponse> getUser(@PathVariable Long id);
 
+    /**
+     * Active users among ids in one call (at most 200 ids); unknown ids are omitted.
+     * Needs the caller's token (not a public endpoint)
+     */
+    @GetMapping("/api/users/batch")
+    ApiResponse<List<UserResponse>> getUsers(@RequestParam("ids") Collection<Long> ids);
+
     @PostMapping("/api/wallet/charge-course")
     ApiResponse<TransactionResponse> chargeCourse(
             @RequestParam Long userId,
@@ -26,13 +26,18 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 @Slf4j
@@ -41,6 +46,9 @@ import java.util.Set;
 @Transactional
 public class TemplateServiceImpl implements TemplateService {
 
+    // identity-service /api/users/batch limit
+    private static final int DESIGNER_BATCH_SIZE = 200;
+
     private final ResourceTemplateRepository resourceTemplateRepository;
     private final ResourceTemplateVersionRepository versionRepository;
     private final UserResourceRepository userResourceRepository;
@@ -822,13 +830,7 @@ public class TemplateServiceImpl implements TemplateService {
         try {
             var apiResponse = identityClient.getUser(dto.getDesignerId());
             if (apiResponse != null && apiResponse.getResult() != null) {
-                UserResponse user = apiResponse.getResult();
-                DesignerInfoDTO designerInfo = new DesignerInfoDTO();
-                designerInfo.setEmail(user.getEmail());
-                designerInfo.setFirstName(user.getFirstName());
-                designerInfo.setLastName(user.getLastName());
-                designerInfo.setAvatarUrl(user.getAvatarUrl());
-                dto.setDesignerInfo(designerInfo);
+                dto.setDesignerInfo(toDesignerInfo(apiResponse.getResult()));
             }
         } catch (Exception e) {
             log.warn("Failed to get designer info for designerId {}: {}", dto.getDesignerId(), e.getMessage());
@@ -836,14 +838,70 @@ public class TemplateServiceImpl implements TemplateService {
     }
 
     /**
-     * Populate designer info for a list of template DTOs
+     * Populate designer info for a list of template DTOs, with one identity-service
+     * call per DESIGNER_BATCH_SIZE distinct designers instead of one per template.
+     * The batch endpoint needs the caller's token, so anonymous listings look each
+     * distinct designer up on the public endpoint instead.
      */
     private void populateDesignerInfo(List<ResourceTemplateDTO> dtos) {
         if (dtos == null || dtos.isEmpty()) {
             return;
         }
 
-        dtos.forEach(this::populateDesignerInfo);
+        List<Long> designerIds = dtos.stream()
+                .map(ResourceTemplateDTO::getDesignerId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, UserResponse> designers = new HashMap<>();
+        if (hasCallerToken()) {
+            for (int from = 0; from < designerIds.size(); from += DESIGNER_BATCH_SIZE) {
+                List<Long> chunk = designerIds.subList(from, Math.min(from + DESIGNER_BATCH_SIZE, designerIds.size()));
+                try {
+                    var apiResponse = identityClient.getUsers(chunk);
+                    if (apiResponse != null && apiResponse.getResult() != null) {
+                        apiResponse.getResult().forEach(user -> designers.put(user.getId(), user));
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to get designer info for designerIds {}: {}", chunk, e.getMessage());
+                }
+            }
+        } else {
+            for (Long designerId : designerIds) {
+                try {
+                    var apiResponse = identityClient.getUser(designerId);
+                    if (apiResponse != null && apiResponse.getResult() != null) {
+                        designers.put(designerId, apiResponse.getResult());
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to get designer info for designerId {}: {}", designerId, e.getMessage());
+                }
+            }
+        }
+
+        for (ResourceTemplateDTO dto : dtos) {
+            UserResponse user = dto.getDesignerId() != null ? designers.get(dto.getDesignerId()) : null;
+            if (user != null) {
+                dto.setDesignerInfo(toDesignerInfo(user));
+            }
+        }
+    }
+
+    /**
+     * Whether FeignConfig will forward an Authorization header to identity-service
+     */
+    private static boolean hasCallerToken() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs
+                && attrs.getRequest().getHeader("Authorization") != null;
+    }
+
+    private static DesignerInfoDTO toDesignerInfo(UserResponse user) {
+        DesignerInfoDTO designerInfo = new DesignerInfoDTO();
+        designerInfo.setEmail(user.getEmail());
+        designerInfo.setFirstName(user.getFirstName());
+        designerInfo.setLastName(user.getLastName());
+        designerInfo.setAvatarUrl(user.getAvatarUrl());
+        return designerInfo;
     }
 
     /**
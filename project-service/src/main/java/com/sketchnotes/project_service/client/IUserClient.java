@@ -10,11 +10,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(name = "account-service")
 public interface IUserClient {
     @GetMapping("/api/users/{id}")
     ApiResponse<UserResponse> getUserById(@PathVariable("id") Long id);
+    @GetMapping("/api/users/batch")
+    ApiResponse<List<UserResponse>> getUsersByIds(@RequestParam("ids") Collection<Long> ids);
     @GetMapping("/api/users/keycloak/{sub}")
     ApiResponse<UserResponse> getUserByKeycloakId(@PathVariable("sub") Long id);
     @GetMapping("/api/users/me")
@@ -0,0 +1,108 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.service.ICollaborationStateStore;
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+import com.sketchnotes.project_service.utils.StrokeFrameCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Negotiated binary stroke sub-protocol.
+ *
+ * A client opts in per frame by sending STROKE_APPEND as a binary STOMP SEND with
+ * content-type application/vnd.sketchnote.stroke to /app/project/{projectId}/stroke
+ * or /app/project/{projectId}/collaboration. Such frames never reach the
+ * @MessageMapping handlers (no Map / CanvasAction materialization): the header is
+ * read, the seq stamped, and the bytes are queued for
+ * /topic/project/{projectId}/stroke.bin or /collaboration.bin. Clients using the
+ * binary format subscribe to the ".bin" topics as well as the JSON ones.
+ *
+ * With collaboration.stroke.binary-json-mirror=true (default) a JSON copy is also
+ * sent to the regular topic for clients that did not opt in.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BinaryStrokeFrameInterceptor implements ChannelInterceptor {
+
+    private static final Pattern DESTINATION = Pattern.compile("^/app/project/(\\d+)/(stroke|collaboration)$");
+    private static final MimeType FRAME_TYPE = MimeType.valueOf(StrokeFrameCodec.CONTENT_TYPE);
+
+    // Resolved lazily: RealtimeMessageService needs the broker template built from WebSocketConfig
+    private final ObjectProvider<RealtimeMessageService> realtimeMessageService;
+    private final ICollaborationStateStore stateStore;
+
+    @Value("${collaboration.stroke.binary-json-mirror:true}")
+    private boolean jsonMirror;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !FRAME_TYPE.equalsTypeAndSubtype(contentType)
+                || !(message.getPayload() instanceof byte[] frame)) {
+            return message;
+        }
+
+        String destination = accessor.getDestination();
+        Matcher matcher = destination != null ? DESTINATION.matcher(destination) : null;
+        if (matcher == null || !matcher.matches()) {
+            return message;
+        }
+
+        Long projectId = Long.valueOf(matcher.group(1));
+        String topic = "/topic/project/" + projectId + "/" + matcher.group(2);
+        try {
+            StrokeFrameCodec.Header header = StrokeFrameCodec.readHeader(frame);
+            trackActiveStroke(projectId, header, frame);
+            boolean queued = realtimeMessageService.getObject().enqueueFrame(projectId, header.userId(), frame,
+                    topic + ".bin", jsonMirror ? topic : null);
+            if (!queued) {
+                log.warn("📤 [StrokeFrame] Frame rate-limited or queue full for project {}", projectId);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ [StrokeFrame] Rejected malformed frame from session {}: {}",
+                    accessor.getSessionId(), e.getMessage());
+        }
+
+        // Consumed here: binary frames never reach the JSON handlers
+        return null;
+    }
+
+    /**
+     * Binary strokes are tracked like JSON ones so late joiners get them in STROKE_INIT.
+     * A binary stroke has no init block: the first frame registers it with default style.
+     */
+    private void trackActiveStroke(Long projectId, StrokeFrameCodec.Header header, byte[] frame) {
+        Map<String, Object> points = Map.of(
+                "scale", StrokeFrameCodec.SCALE,
+                "deltas", StrokeFrameCodec.decodeDeltas(frame, header));
+        if (!stateStore.appendStrokePoints(projectId, header.strokeId(), points)) {
+            stateStore.startStroke(projectId, ActiveStroke.builder()
+                    .strokeId(header.strokeId())
+                    .userId(String.valueOf(header.userId()))
+                    .pageId(header.pageId())
+                    .build());
+            stateStore.appendStrokePoints(projectId, header.strokeId(), points);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbound queue of one WebSocket session, bounded by message count and bytes.
+ *
+ * sendMessage never blocks: messages are queued and written by a shared sender
+ * pool, one drain at a time per session. When the queue is over its limits:
+ * - droppable messages (STOMP header x-delivery:droppable: cursors, transient
+ *   updates, stroke points) are dropped oldest first
+ * - if durable messages alone still exceed the limits, the session is closed
+ *   with {@link #RESYNC_STATUS}; the client reconnects and sends SYNC_REQUEST
+ *   with its last version to catch up from the op log
+ * A send blocked for longer than the send time limit closes the session the same way.
+ */
+@Slf4j
+public class BoundedSendSessionDecorator extends WebSocketSessionDecorator {
+
+    public static final CloseStatus RESYNC_STATUS = new CloseStatus(4008, "SLOW_CONSUMER_RESYNC");
+
+    private static final int DRAIN_BATCH_SIZE = 64;
+    private static final String DROPPABLE_HEADER_LINE =
+            "\n" + RealtimeMessageService.DELIVERY_HEADER + ":" + RealtimeMessageService.DELIVERY_DROPPABLE + "\n";
+    private static final byte[] DROPPABLE_HEADER = DROPPABLE_HEADER_LINE.getBytes(StandardCharsets.UTF_8);
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final Executor sender;
+    private final Listener listener;
+
+    // Guarded by itself
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private long bufferedBytes;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile long sendStartedAt;
+    private volatile boolean terminated;
+
+    /**
+     * Slow-consumer events, for metrics
+     */
+    public interface Listener {
+        void messagesDropped(int count);
+
+        void slowConsumerDisconnected(String sessionId, String reason);
+    }
+
+    public BoundedSendSessionDecorator(WebSocketSession delegate, int maxMessages, long maxBytes,
+                                       Executor sender, Listener listener) {
+        super(delegate);
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.sender = sender;
+        this.listener = listener;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (terminated) return;
+
+        int size = message.getPayloadLength();
+        int dropped = 0;
+        boolean overflow;
+        synchronized (queue) {
+            queue.addLast(new Entry(message, isDroppable(message), size));
+            bufferedBytes += size;
+            if (isOverLimit()) {
+                dropped = dropOldestDroppable();
+            }
+            overflow = isOverLimit();
+            if (overflow) {
+                clear();
+            }
+        }
+
+        if (dropped > 0) {
+            listener.messagesDropped(dropped);
+        }
+        if (overflow) {
+            terminated = true;
+            listener.slowConsumerDisconnected(getId(), "buffer limit");
+            // SubProtocolWebSocketHandler closes the session with this status
+            throw new SessionLimitExceededException(
+                    "Outbound buffer of session " + getId() + " exceeded with durable messages", RESYNC_STATUS);
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Close the session if a single send has been blocked for longer than the limit
+     */
+    public void checkSendTimeLimit(long now, long sendTimeLimitMs) {
+        long startedAt = sendStartedAt;
+        if (terminated || startedAt == 0 || now - startedAt <= sendTimeLimitMs) return;
+
+        terminated = true;
+        synchronized (queue) {
+            clear();
+        }
+        listener.slowConsumerDisconnected(getId(), "send time limit");
+        try {
+            getDelegate().close(RESYNC_STATUS);
+        } catch (IOException | RuntimeException e) {
+            log.debug("[Outbound] Failed to close slow session {}: {}", getId(), e.getMessage());
+        }
+    }
+
+    public void markClosed() {
+        terminated = true;
+        synchronized (queue) {
+            clear();
+        }
+    }
+
+    public long getBufferedBytes() {
+        synchronized (queue) {
+            return bufferedBytes;
+        }
+    }
+
+    public int getBufferedMessages() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    // ==========================================================================
+    // DRAIN
+    // ==========================================================================
+
+    private void scheduleDrain() {
+        if (terminated || !draining.compareAndSet(false, true)) return;
+        try {
+            sender.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < DRAIN_BATCH_SIZE && !terminated; i++) {
+                Entry entry;
+                synchronized (queue) {
+                    entry = queue.pollFirst();
+                    if (entry == null) break;
+                    bufferedBytes -= entry.size;
+                }
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    getDelegate().sendMessage(entry.message);
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Socket is gone; the container reports the close to the handler
+            log.debug("[Outbound] Send to session {} failed: {}", getId(), e.getMessage());
+            markClosed();
+        } finally {
+            draining.set(false);
+            // Batches are bounded so one busy session cannot hog a sender thread
+            if (!terminated && getBufferedMessages() > 0) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    // ==========================================================================
+    // OVERFLOW POLICY
+    // ==========================================================================
+
+    private boolean isOverLimit() {
+        // A single message larger than maxBytes is still let through on its own
+        return queue.size() > maxMessages || (bufferedBytes > maxBytes && queue.size() > 1);
+    }
+
+    private int dropOldestDroppable() {
+        int dropped = 0;
+        Iterator<Entry> it = queue.iterator();
+        while (it.hasNext() && isOverLimit()) {
+            Entry entry = it.next();
+            if (entry.droppable) {
+                it.remove();
+                bufferedBytes -= entry.size;
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private void clear() {
+        queue.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Looks for the x-delivery:droppable header in the STOMP frame's header block
+     */
+    static boolean isDroppable(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            int headerEnd = payload.indexOf("\n\n");
+            int header = payload.indexOf(DROPPABLE_HEADER_LINE);
+            return header >= 0 && header < headerEnd;
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            int limit = payload.limit();
+            for (int i = payload.position(); i + 1 < limit; i++) {
+                if (payload.get(i) == '\n' && payload.get(i + 1) == '\n') {
+                    return false;
+                }
+                if (matches(payload, i, limit)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(ByteBuffer payload, int offset, int limit) {
+        if (offset + DROPPABLE_HEADER.length > limit) return false;
+        for (int j = 0; j < DROPPABLE_HEADER.length; j++) {
+            if (payload.get(offset + j) != DROPPABLE_HEADER[j]) return false;
+        }
+        return true;
+    }
+
+    private record Entry(WebSocketMessage<?> message, boolean droppable, int size) {
+    }
+}
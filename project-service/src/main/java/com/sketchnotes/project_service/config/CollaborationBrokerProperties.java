@@ -0,0 +1,31 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * How /topic and /queue messages reach sessions connected to other nodes.
+ * - simple: in-memory broker, only sessions on this JVM (default)
+ * - relay: STOMP broker relay to an external broker (RabbitMQ / ActiveMQ)
+ * - redis: in-memory broker + Redis pub/sub bridge that re-publishes every send to all nodes
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "collaboration.broker")
+public class CollaborationBrokerProperties {
+
+    private String mode = "simple";
+
+    // Relay mode
+    private String relayHost = "localhost";
+    private int relayPort = 61613;
+    private String clientLogin = "guest";
+    private String clientPasscode = "guest";
+    private String systemLogin = "guest";
+    private String systemPasscode = "guest";
+    private String virtualHost;
+
+    // Redis mode
+    private String redisChannel = "collab:broadcast";
+}
@@ -0,0 +1,35 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.utils.VirtualThreads;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Threads that run the realtime pipeline (inbound STOMP handling, broadcast
+ * lanes, socket writes).
+ * - mode: platform (fixed pools, default) | virtual (virtual threads; needs a
+ *   Java 21+ runtime, otherwise platform is used and a warning is logged)
+ * - broadcast-lanes: ordered per-project dispatch lanes in platform mode
+ * - virtual-broadcast-lanes: lanes in virtual mode; a parked virtual thread costs
+ *   almost nothing, so more lanes means a blocked send holds up fewer projects
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "collaboration.execution")
+public class CollaborationExecutionProperties {
+
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private String mode = MODE_PLATFORM;
+    private int broadcastLanes = 4;
+    private int virtualBroadcastLanes = 64;
+
+    /**
+     * @return true if virtual threads were requested and this JVM has them
+     */
+    public boolean useVirtualThreads() {
+        return MODE_VIRTUAL.equalsIgnoreCase(mode) && VirtualThreads.isSupported();
+    }
+}
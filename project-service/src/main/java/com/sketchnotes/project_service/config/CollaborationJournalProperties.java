@@ -0,0 +1,29 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Durable op journal and snapshot compaction (see CanvasOpJournal, CanvasSnapshotCompactor).
+ * - directory: local directory holding one sub-directory of segment files per project
+ * - fsync-interval-ms: appends are forced to disk in groups at this interval; it is
+ *   the most a crash of the machine (not just the process) can lose
+ * - segment-max-bytes: a segment is rolled past this size so compaction can delete it
+ * - compact-interval-ms: how often the compactor looks for projects to snapshot
+ * - compact-min-ops: journaled ops since the last snapshot that trigger a new one
+ * - compact-idle-ms: a project idle this long is snapshotted whatever its op count
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "collaboration.journal")
+public class CollaborationJournalProperties {
+
+    private boolean enabled = false;
+    private String directory = "data/collab-journal";
+    private long fsyncIntervalMs = 50;
+    private long segmentMaxBytes = 8 * 1024 * 1024;
+    private long compactIntervalMs = 60_000;
+    private int compactMinOps = 500;
+    private long compactIdleMs = 5 * 60_000;
+}
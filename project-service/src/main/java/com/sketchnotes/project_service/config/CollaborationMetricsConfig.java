@@ -0,0 +1,55 @@
+package com.sketchnotes.project_service.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sketchnotes.project_service.service.PresenceRegistry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Meters read from the WebSocket session bookkeeping, exported with the rest
+ * of the collab.* metrics on /actuator/prometheus.
+ *
+ * The broadcast pipeline itself (queue depth, latency, drops, lanes) is
+ * instrumented in RealtimeMessageService, lock results in the controller
+ * and ElementLockReaper.
+ */
+@Configuration
+public class CollaborationMetricsConfig {
+
+    @Bean
+    public MeterBinder presenceMetrics(PresenceRegistry presenceRegistry) {
+        return registry -> Gauge.builder("collab.sessions.active", presenceRegistry, PresenceRegistry::getSessionCount)
+                .description("STOMP sessions subscribed to at least one project")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder outboundBufferMetrics(SessionBackpressureDecoratorFactory outbound) {
+        return registry -> {
+            Gauge.builder("collab.outbound.sessions", outbound, SessionBackpressureDecoratorFactory::getSessionCount)
+                    .description("WebSocket sessions with a bounded send queue")
+                    .register(registry);
+            Gauge.builder("collab.outbound.buffered", outbound, SessionBackpressureDecoratorFactory::getBufferedBytes)
+                    .description("Bytes queued for sending across all sessions")
+                    .baseUnit("bytes")
+                    .register(registry);
+            // Same meter name as the broadcast pipeline drops, so one query covers every reason
+            FunctionCounter.builder("collab.messages.dropped", outbound, SessionBackpressureDecoratorFactory::getDroppedMessages)
+                    .description("Messages not broadcast, by reason")
+                    .tag("reason", "session_buffer")
+                    .register(registry);
+            FunctionCounter.builder("collab.outbound.slow.consumer.disconnects", outbound,
+                            SessionBackpressureDecoratorFactory::getSlowConsumerDisconnects)
+                    .description("Sessions closed with SLOW_CONSUMER_RESYNC")
+                    .register(registry);
+            new ExecutorServiceMetrics(outbound.getSender(), "ws.outbound", Tags.empty())
+                    .bindTo(registry);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records, per /api request, how many identity-service /api/users/me calls
+ * CurrentUserResolver answered locally (principal.remote.calls.saved)
+ */
+@Component
+public class CurrentUserMetricsFilter extends OncePerRequestFilter {
+
+    private final DistributionSummary callsSaved;
+
+    public CurrentUserMetricsFilter(MeterRegistry meterRegistry) {
+        this.callsSaved = DistributionSummary.builder("principal.remote.calls.saved")
+                .description("identity-service calls avoided per API request")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AtomicInteger saved = new AtomicInteger();
+        request.setAttribute(CurrentUserResolver.CALLS_SAVED_ATTRIBUTE, saved);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            callsSaved.record(saved.get());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Asynchronous image generation (see ImageGenerationJobRunner).
+ * - worker-threads / queue-capacity: jobs generating at once on this node and
+ *   jobs allowed to wait for a worker; a full queue rejects new submissions
+ * - post-process-threads: background removals and S3 uploads in flight on this
+ *   node, shared by all jobs (each job runs its num-images in parallel)
+ * - max-active-per-user: queued or running jobs one user may have
+ * - job-timeout-ms: a job still queued or running after this long is reported
+ *   as failed (e.g. its node restarted) and no longer counts against the limit
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai.image-jobs")
+public class ImageJobProperties {
+
+    private int workerThreads = 4;
+    private int queueCapacity = 100;
+    private int postProcessThreads = 8;
+    private int maxActivePerUser = 2;
+    private long jobTimeoutMs = 5 * 60_000;
+}
@@ -0,0 +1,26 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Per-session outbound buffering (see BoundedSendSessionDecorator).
+ * - max-messages / max-bytes: what one session may have queued before the
+ *   drop-oldest (transient) / disconnect-with-resync (durable) policy applies
+ * - send-time-limit-ms: a single send blocked longer than this disconnects the session
+ * - sender-threads: threads writing to sockets, shared by all sessions (platform
+ *   execution mode; virtual mode uses one virtual thread per session drain)
+ * - inbound-message-size-limit: largest STOMP frame accepted from a client
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "collaboration.outbound")
+public class OutboundBufferProperties {
+
+    private int maxMessages = 2000;
+    private long maxBytes = 4 * 1024 * 1024;
+    private long sendTimeLimitMs = 10_000;
+    private int senderThreads = 8;
+    private int inboundMessageSizeLimit = 8 * 1024 * 1024;
+}
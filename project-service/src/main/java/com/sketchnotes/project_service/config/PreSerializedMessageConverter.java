@@ -0,0 +1,41 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.dtos.socket.PreSerializedPayload;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * Passes PreSerializedPayload bytes straight through to the broker.
+ * Registered ahead of Spring's default converters (outbound only).
+ */
+public class PreSerializedMessageConverter implements MessageConverter {
+
+    @Override
+    public Object fromMessage(Message<?> message, Class<?> targetClass) {
+        return null;
+    }
+
+    @Override
+    public Message<?> toMessage(Object payload, MessageHeaders headers) {
+        if (!(payload instanceof PreSerializedPayload preSerialized)) {
+            return null;
+        }
+
+        MessageHeaderAccessor accessor = headers != null
+                ? MessageHeaderAccessor.getAccessor(headers, MessageHeaderAccessor.class)
+                : null;
+        if (accessor != null && accessor.isMutable()) {
+            accessor.setHeaderIfAbsent(MessageHeaders.CONTENT_TYPE, preSerialized.getContentType());
+            return MessageBuilder.createMessage(preSerialized.getBytes(), accessor.getMessageHeaders());
+        }
+
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(preSerialized.getBytes());
+        if (headers != null) {
+            builder.copyHeaders(headers);
+        }
+        return builder.setHeaderIfAbsent(MessageHeaders.CONTENT_TYPE, preSerialized.getContentType()).build();
+    }
+}
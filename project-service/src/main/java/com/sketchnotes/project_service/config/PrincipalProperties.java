@@ -0,0 +1,29 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Resolution of the caller's user profile from the validated JWT (see CurrentUserResolver).
+ * - user-id-claim: claim holding the internal user id (a Keycloak user-attribute
+ *   mapper); when present the profile is built from the token without any call.
+ *   Off by default: identity-service is then never asked, so a user deactivated
+ *   there keeps access until the token expires. Only set it when tokens are
+ *   short-lived enough for that to be acceptable.
+ * - ttl-ms / maximum-size: local cache of profiles by Keycloak subject
+ * - negative-ttl-ms: how long an unknown subject is remembered
+ * - invalidation-channel: Redis channel identity-service publishes changed users
+ *   on (Keycloak subject or internal id)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "security.principal")
+public class PrincipalProperties {
+
+    private String userIdClaim = "";
+    private long ttlMs = 5 * 60_000;
+    private long negativeTtlMs = 30_000;
+    private long maximumSize = 10_000;
+    private String invalidationChannel = "identity:user-changed";
+}
@@ -0,0 +1,207 @@
+package com.sketchnotes.project_service.config;
+
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis pub/sub bridge for collaboration.broker.mode=redis.
+ *
+ * Registered as an interceptor on the broker channel: every message this node's
+ * SimpMessagingTemplate hands to the simple broker is also published to Redis.
+ * Other nodes re-inject it into their own broker channel (marked so it is not
+ * published again). Loopback is skipped by node id, and a bounded window of
+ * recently delivered (node, destination, seq) keys drops duplicates.
+ *
+ * The delivery header (x-delivery: droppable) travels with the message, so a
+ * slow session on another node may still drop transient traffic instead of
+ * being disconnected for it. It is written after the payload: a node that does
+ * not read it yet simply ignores the trailing bytes.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "collaboration.broker.mode", havingValue = "redis")
+public class RedisBroadcastBridge implements ChannelInterceptor, MessageListener {
+
+    static final String BRIDGED_HEADER = "collabBridgeOrigin";
+    static final String SEQ_HEADER = "seq";
+    static final String DELIVERY_HEADER = RealtimeMessageService.DELIVERY_HEADER;
+    private static final int DEDUPE_WINDOW = 10_000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final byte[] channel;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    // Recently delivered message keys (access-ordered, oldest evicted)
+    private final Map<String, Boolean> recentlyDelivered = new LinkedHashMap<>(DEDUPE_WINDOW, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > DEDUPE_WINDOW;
+        }
+    };
+
+    public RedisBroadcastBridge(StringRedisTemplate redisTemplate,
+                                RedisConnectionFactory connectionFactory,
+                                ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                                CollaborationBrokerProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.channel = properties.getRedisChannel().getBytes(StandardCharsets.UTF_8);
+
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.addMessageListener(this, new ChannelTopic(properties.getRedisChannel()));
+        this.listenerContainer.afterPropertiesSet();
+        this.listenerContainer.start();
+        log.info("[BrokerBridge] Redis bridge started on channel {} as node {}", properties.getRedisChannel(), nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        listenerContainer.stop();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // ==========================================================================
+    // OUTBOUND: local broker channel -> Redis
+    // ==========================================================================
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel messageChannel) {
+        if (message.getHeaders().containsKey(BRIDGED_HEADER) || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || accessor.getDestination() == null) {
+            return message;
+        }
+        // Replies resolved to one session (user destinations) only exist on this node
+        if (accessor.getSessionId() != null) {
+            return message;
+        }
+
+        String seq = accessor.getFirstNativeHeader(SEQ_HEADER);
+        String delivery = accessor.getFirstNativeHeader(DELIVERY_HEADER);
+        String messageKey = dedupeKey(accessor.getDestination(), seq, nodeId, messageIds.incrementAndGet());
+        markDelivered(messageKey);
+
+        try {
+            byte[] envelope = encode(messageKey, accessor, seq, delivery, payload);
+            redisTemplate.execute(connection -> connection.publish(channel, envelope), true);
+        } catch (Exception e) {
+            log.error("[BrokerBridge] Failed to publish to Redis for {}", accessor.getDestination(), e);
+        }
+        return message;
+    }
+
+    // ==========================================================================
+    // INBOUND: Redis -> local broker channel
+    // ==========================================================================
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message redisMessage, byte[] pattern) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(redisMessage.getBody()))) {
+            String origin = in.readUTF();
+            if (nodeId.equals(origin)) return;
+
+            String messageKey = in.readUTF();
+            if (!markDelivered(messageKey)) {
+                log.debug("[BrokerBridge] Dropping duplicate {}", messageKey);
+                return;
+            }
+
+            String destination = in.readUTF();
+            String contentType = in.readUTF();
+            String seq = in.readUTF();
+            byte[] payload = in.readNBytes(in.readInt());
+            String delivery = in.available() > 0 ? in.readUTF() : "";
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            if (!contentType.isEmpty()) {
+                accessor.setContentType(MimeType.valueOf(contentType));
+            }
+            if (!seq.isEmpty()) {
+                accessor.setNativeHeader(SEQ_HEADER, seq);
+            }
+            if (!delivery.isEmpty()) {
+                accessor.setNativeHeader(DELIVERY_HEADER, delivery);
+            }
+            accessor.setHeader(BRIDGED_HEADER, origin);
+
+            messagingTemplate.getObject().getMessageChannel()
+                    .send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        } catch (IOException e) {
+            log.warn("[BrokerBridge] Unreadable bridged message: {}", e.getMessage());
+        }
+    }
+
+    // ==========================================================================
+    // HELPERS
+    // ==========================================================================
+
+    /**
+     * @return true if the key was not delivered before
+     */
+    private boolean markDelivered(String messageKey) {
+        synchronized (recentlyDelivered) {
+            return recentlyDelivered.put(messageKey, Boolean.TRUE) == null;
+        }
+    }
+
+    static String dedupeKey(String destination, String seq, String origin, long messageId) {
+        // Always scoped to the sending node: with a node-local state store two nodes
+        // hand out the same seq for different messages
+        return seq != null ? origin + ":" + destination + "#" + seq : origin + ":" + messageId;
+    }
+
+    private byte[] encode(String messageKey, SimpMessageHeaderAccessor accessor, String seq, String delivery,
+                          byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(nodeId);
+            out.writeUTF(messageKey);
+            out.writeUTF(accessor.getDestination());
+            out.writeUTF(accessor.getContentType() != null ? accessor.getContentType().toString() : "");
+            out.writeUTF(seq != null ? seq : "");
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeUTF(delivery != null ? delivery : "");
+        }
+        return bytes.toByteArray();
+    }
+}
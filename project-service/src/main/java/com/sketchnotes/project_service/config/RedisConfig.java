@@ -1,13 +1,18 @@
 package com.sketchnotes.project_service.config;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
@@ -19,11 +24,40 @@ public class RedisConfig {
 
     @Bean
     public RedisCacheConfiguration cacheConfiguration() {
+        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        // Cached DTOs carry LocalDateTime fields
+        serializer.configure(mapper -> mapper.registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
         return RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(2))
                 .disableCachingNullValues()
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer())
+                        RedisSerializationContext.SerializationPair.fromSerializer(serializer)
                 );
     }
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             StringRedisTemplate redisTemplate,
+                                             RedisCacheConfiguration cacheConfiguration,
+                                             TwoLevelCacheProperties properties,
+                                             MeterRegistry meterRegistry) {
+        return new TwoLevelCacheManager(connectionFactory, redisTemplate, cacheConfiguration, properties, meterRegistry);
+    }
+
+    /**
+     * Invalidations from other nodes (cache L1) and from identity-service (changed users)
+     */
+    @Bean
+    public RedisMessageListenerContainer invalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       TwoLevelCacheProperties cacheProperties,
+                                                                       CurrentUserResolver currentUserResolver,
+                                                                       PrincipalProperties principalProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(cacheProperties.getInvalidationChannel()));
+        container.addMessageListener(currentUserResolver, new ChannelTopic(principalProperties.getInvalidationChannel()));
+        return container;
+    }
 }
@@ -1,7 +1,10 @@
 package com.sketchnotes.project_service.config;
 
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -10,6 +13,7 @@ import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
+@RequiredArgsConstructor
 public class SecurityConfig {
     private final String[] PUBLIC_ENDPOINTS = {
             "/v3/api-docs/**",
@@ -20,8 +24,12 @@ public class SecurityConfig {
             "/api/user-resources/user/{userId}/**",
             "/configuration/**",
             "/webjars/**",
-            "/ws/**"
+            "/ws/**",
+            "/actuator/health"
     };
+    private static final String PROMETHEUS_ENDPOINT = "/actuator/prometheus";
+
+    private final Environment environment;
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
@@ -29,6 +37,9 @@ public class SecurityConfig {
                 . cors(Customizer.withDefaults())
                 .authorizeHttpRequests(request -> request.requestMatchers(PUBLIC_ENDPOINTS)
                 .permitAll()
+                // Anonymous scrapes only on the management port; elsewhere it needs a token
+                .requestMatchers(this::isManagementScrape)
+                .permitAll()
                 .anyRequest()
                 .authenticated());
 
@@ -37,4 +48,16 @@ public class SecurityConfig {
         httpSecurity.csrf(AbstractHttpConfigurer::disable);
         return httpSecurity.build();
     }
+
+    /**
+     * A scrape on actuator's own port (management.server.port), which the gateway never routes
+     */
+    private boolean isManagementScrape(HttpServletRequest request) {
+        // Only set once the management server runs on a port of its own
+        Integer managementPort = environment.getProperty("local.management.port", Integer.class);
+        return managementPort != null
+                && !managementPort.equals(environment.getProperty("local.server.port", Integer.class))
+                && request.getLocalPort() == managementPort
+                && PROMETHEUS_ENDPOINT.equals(request.getRequestURI());
+    }
 }
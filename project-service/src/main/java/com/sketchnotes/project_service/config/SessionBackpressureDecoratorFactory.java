@@ -0,0 +1,167 @@
+package com.sketchnotes.project_service.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.sketchnotes.project_service.utils.VirtualThreads;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives every STOMP WebSocket session a bounded outbound queue
+ * (BoundedSendSessionDecorator) and keeps the slow-consumer counters.
+ *
+ * The decorated session is handed to the STOMP handler in place of the raw one,
+ * so Spring's own send buffer in front of it never fills: our sendMessage only
+ * queues. Socket writes run on a shared "ws-outbound" pool and a watchdog closes
+ * sessions whose current send is blocked past the send time limit.
+ * In virtual execution mode each session drain gets its own virtual thread, so a
+ * write stuck on one socket never holds back the others.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionBackpressureDecoratorFactory implements WebSocketHandlerDecoratorFactory,
+        BoundedSendSessionDecorator.Listener {
+
+    private final OutboundBufferProperties properties;
+    private final CollaborationExecutionProperties executionProperties;
+
+    private final ConcurrentHashMap<String, BoundedSendSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong slowConsumerDisconnects = new AtomicLong();
+
+    private ExecutorService sender;
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        if (executionProperties.useVirtualThreads()) {
+            sender = VirtualThreads.newThreadPerTaskExecutor("ws-outbound-");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            sender = Executors.newFixedThreadPool(properties.getSenderThreads(), r -> {
+                Thread t = new Thread(r, "ws-outbound-" + threadCount.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-outbound-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        watchdog.scheduleWithFixedDelay(this::checkSendTimeLimits, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BoundedSendSessionDecorator bounded = new BoundedSendSessionDecorator(session,
+                        properties.getMaxMessages(), properties.getMaxBytes(), sender,
+                        SessionBackpressureDecoratorFactory.this);
+                sessions.put(session.getId(), bounded);
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(bounded(session), message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(bounded(session), exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                BoundedSendSessionDecorator bounded = sessions.remove(session.getId());
+                if (bounded != null) {
+                    bounded.markClosed();
+                }
+                super.afterConnectionClosed(bounded != null ? bounded : session, closeStatus);
+            }
+        };
+    }
+
+    private WebSocketSession bounded(WebSocketSession session) {
+        BoundedSendSessionDecorator bounded = sessions.get(session.getId());
+        return bounded != null ? bounded : session;
+    }
+
+    private void checkSendTimeLimits() {
+        long now = System.currentTimeMillis();
+        sessions.values().forEach(session -> session.checkSendTimeLimit(now, properties.getSendTimeLimitMs()));
+    }
+
+    // ==========================================================================
+    // METRICS
+    // ==========================================================================
+
+    @Override
+    public void messagesDropped(int count) {
+        droppedMessages.addAndGet(count);
+    }
+
+    @Override
+    public void slowConsumerDisconnected(String sessionId, String reason) {
+        slowConsumerDisconnects.incrementAndGet();
+        log.warn("🐢 [Outbound] Disconnecting slow session {} ({}), client must resync", sessionId, reason);
+    }
+
+    /**
+     * Droppable messages discarded because a session's buffer was full
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Sessions closed with SLOW_CONSUMER_RESYNC
+     */
+    public long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects.get();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getBufferedBytes() {
+        return sessions.values().stream().mapToLong(BoundedSendSessionDecorator::getBufferedBytes).sum();
+    }
+
+    /**
+     * Socket write pool, for executor metrics
+     */
+    ExecutorService getSender() {
+        return sender;
+    }
+}
@@ -1,18 +1,32 @@
 package com.sketchnotes.project_service.config;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class StompChannelInterceptor implements ChannelInterceptor {
 
+    /**
+     * Session attribute holding the token passed as a handshake query parameter
+     */
+    public static final String TOKEN_ATTRIBUTE = "token";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final ObjectProvider<JwtDecoder> jwtDecoder;
+
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
@@ -35,6 +49,9 @@ public class StompChannelInterceptor implements ChannelInterceptor {
                     log.warn("⚠️ [STOMP] No Authorization header found");
                 }
                 
+                // Bind the session to the authenticated user (principal name = JWT subject)
+                bindPrincipal(accessor, authHeader);
+                
                 // Allow connection to proceed
                 log.info("✅ [STOMP] Allowing CONNECT to proceed");
             }
@@ -67,6 +84,26 @@ public class StompChannelInterceptor implements ChannelInterceptor {
         return message;
     }
 
+    private void bindPrincipal(StompHeaderAccessor accessor, String authHeader) {
+        String token = null;
+        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)) {
+            token = authHeader.substring(BEARER_PREFIX.length());
+        } else if (accessor.getSessionAttributes() != null) {
+            // Some proxies strip STOMP headers: token captured from ?token= at handshake
+            token = (String) accessor.getSessionAttributes().get(TOKEN_ATTRIBUTE);
+        }
+        
+        JwtDecoder decoder = jwtDecoder.getIfAvailable();
+        if (token == null || decoder == null) return;
+        
+        try {
+            accessor.setUser(new JwtAuthenticationToken(decoder.decode(token)));
+            log.info("✅ [STOMP] Session {} bound to user {}", accessor.getSessionId(), accessor.getUser().getName());
+        } catch (JwtException e) {
+            log.warn("⚠️ [STOMP] Invalid token on CONNECT for session {}: {}", accessor.getSessionId(), e.getMessage());
+        }
+    }
+
     @Override
     public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
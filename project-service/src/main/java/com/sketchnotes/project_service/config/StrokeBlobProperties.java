@@ -0,0 +1,32 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reference-counted stroke blobs (see StrokeBlob, StrokeBlobCollector).
+ * - gc-interval-ms: how often unreferenced blobs are collected
+ * - gc-grace-ms: how long a blob must stay unreferenced before it is deleted,
+ *   covering clients that still hold its URL (open editors, pending saves)
+ * - gc-batch-size: blobs per multi-object delete (S3 allows at most 1000)
+ * - gc-retry-backoff-ms: delay before retrying a blob S3 failed to delete,
+ *   doubled on every further failure up to gc-max-retry-backoff-ms
+ * - gc-claim-timeout-ms: how long a collector may hold a batch while S3 deletes
+ *   it; a batch of a collector that died is picked up again after that
+ * - backfill-on-startup: count the stroke URLs of existing pages, once (first
+ *   start after the migration, recorded in stroke_blob_backfill)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storage.stroke-blobs")
+public class StrokeBlobProperties {
+
+    private long gcIntervalMs = 5 * 60_000;
+    private long gcGraceMs = 60 * 60_000;
+    private int gcBatchSize = 1000;
+    private long gcRetryBackoffMs = 5 * 60_000;
+    private long gcMaxRetryBackoffMs = 6 * 60 * 60_000;
+    private long gcClaimTimeoutMs = 10 * 60_000;
+    private boolean backfillOnStartup = true;
+}
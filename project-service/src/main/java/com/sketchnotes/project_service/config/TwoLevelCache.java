@@ -0,0 +1,156 @@
+package com.sketchnotes.project_service.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * One named cache with a Caffeine L1 (this JVM) in front of a shared L2 (Redis).
+ *
+ * Reads go L1 -> L2 -> loader and fill the levels they missed. Puts and
+ * evictions write through to L2 and publish the key, so the other nodes drop
+ * their L1 copy (see TwoLevelCacheManager). Keys are compared by their string
+ * form, which is also what the Redis cache keys on. Null values are not cached.
+ *
+ * Metrics: cache.tiered.gets{cache, level=l1|l2, result=hit|miss}.
+ */
+public class TwoLevelCache implements Cache {
+
+    /**
+     * Tells the other nodes to drop a key (null key: the whole cache) from their L1
+     */
+    @FunctionalInterface
+    public interface InvalidationPublisher {
+        void publish(String cacheName, String key);
+    }
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> l1;
+    private final Cache l2;
+    private final InvalidationPublisher invalidations;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public TwoLevelCache(String name, Cache l2, TwoLevelCacheProperties properties,
+                         InvalidationPublisher invalidations, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.l2 = l2;
+        this.invalidations = invalidations;
+        this.l1 = Caffeine.newBuilder()
+                .maximumSize(properties.getL1MaximumSize())
+                .expireAfterWrite(Duration.ofMillis(properties.getL1TtlMs()))
+                .build();
+
+        this.l1Hits = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l1", "result", "hit");
+        this.l1Misses = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l1", "result", "miss");
+        this.l2Hits = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l2", "result", "hit");
+        this.l2Misses = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l2", "result", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l1;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String l1Key = String.valueOf(key);
+        Object value = l1.getIfPresent(l1Key);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+
+        ValueWrapper shared = l2.get(key);
+        if (shared == null || shared.get() == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        l1.put(l1Key, shared.get());
+        return shared;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) return null;
+        Object value = wrapper.get();
+        if (type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        // A miss on both levels: no other node holds it in L1, nothing to invalidate
+        if (value != null) {
+            l2.put(key, value);
+            l1.put(String.valueOf(key), value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        l2.put(key, value);
+        l1.put(String.valueOf(key), value);
+        invalidations.publish(name, String.valueOf(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        l1.invalidate(String.valueOf(key));
+        invalidations.publish(name, String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l1.invalidateAll();
+        invalidations.publish(name, null);
+    }
+
+    /**
+     * Drop an entry from this node's L1 only, on another node's eviction
+     */
+    void invalidateLocal(String key) {
+        if (key == null) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.sketchnotes.project_service.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheManager handing out TwoLevelCaches: Caffeine per node, Redis shared.
+ *
+ * Evictions are published on the invalidation channel as
+ * "{nodeId}\n{cache}[\n{key}]" (no key: the whole cache) and applied to the L1 of
+ * every other node; a node skips its own messages. Caches are transaction aware,
+ * so puts and evictions made inside a transaction happen after it commits and
+ * a concurrent read cannot re-cache the old state in between.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final TwoLevelCacheProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Counter remoteInvalidations;
+
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Cache> decorated = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisConnectionFactory connectionFactory,
+                                StringRedisTemplate redisTemplate,
+                                RedisCacheConfiguration redisCacheConfiguration,
+                                TwoLevelCacheProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(redisCacheConfiguration.entryTtl(Duration.ofMillis(properties.getL2TtlMs())))
+                .build();
+        this.redisCacheManager.afterPropertiesSet();
+        this.remoteInvalidations = meterRegistry.counter("cache.tiered.invalidations", "source", "remote");
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return decorated.computeIfAbsent(name, cacheName -> {
+            TwoLevelCache cache = new TwoLevelCache(cacheName, redisCacheManager.getCache(cacheName),
+                    properties, this::publish, meterRegistry);
+            caches.put(cacheName, cache);
+            return new TransactionAwareCacheDecorator(cache);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return decorated.keySet();
+    }
+
+    // ==========================================================================
+    // CROSS-NODE L1 INVALIDATION
+    // ==========================================================================
+
+    private void publish(String cacheName, String key) {
+        String message = nodeId + "\n" + cacheName + (key != null ? "\n" + key : "");
+        try {
+            redisTemplate.convertAndSend(properties.getInvalidationChannel(), message);
+        } catch (Exception e) {
+            // Other nodes fall back to l1-ttl-ms for this key
+            log.warn("[Cache] Failed to publish invalidation of {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) return;
+
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(parts.length == 3 ? parts[2] : null);
+            remoteInvalidations.increment();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.sketchnotes.project_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine L1 in front of the Redis L2 cache (see TwoLevelCacheManager).
+ * - l1-maximum-size: entries kept in process, per cache
+ * - l1-ttl-ms: upper bound on how stale an L1 entry can get if an invalidation
+ *   message from another node is lost (pub/sub is fire-and-forget)
+ * - l2-ttl-ms: Redis entry TTL
+ * - invalidation-channel: Redis pub/sub channel carrying evictions between nodes
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cache.two-level")
+public class TwoLevelCacheProperties {
+
+    private long l1MaximumSize = 10_000;
+    private long l1TtlMs = 60_000;
+    private long l2TtlMs = 2 * 60 * 60_000;
+    private String invalidationChannel = "project-service:cache-invalidation";
+}
@@ -1,16 +1,23 @@
 package com.sketchnotes.project_service.config;
 
+import com.sketchnotes.project_service.utils.StrokeFrameCodec;
+import com.sketchnotes.project_service.utils.VirtualThreads;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.*;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -20,6 +27,12 @@ import java.util.Map;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final StompChannelInterceptor stompChannelInterceptor;
+    private final BinaryStrokeFrameInterceptor binaryStrokeFrameInterceptor;
+    private final CollaborationBrokerProperties brokerProperties;
+    private final ObjectProvider<RedisBroadcastBridge> redisBroadcastBridge;
+    private final OutboundBufferProperties outboundProperties;
+    private final SessionBackpressureDecoratorFactory backpressureDecoratorFactory;
+    private final CollaborationExecutionProperties executionProperties;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -36,8 +49,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                                                    WebSocketHandler wsHandler, 
                                                    Map<String, Object> attributes) {
                         log.info("🟢 [WebSocket] Handshake request from: {}", request.getRemoteAddress());
-                        log.info("🟢 [WebSocket] Request URI: {}", request.getURI());
-                        log.info("🟢 [WebSocket] Request headers: {}", request.getHeaders());
+                        // Path only and no credentials: the query may carry the bearer token
+                        log.info("🟢 [WebSocket] Request path: {}", request.getURI().getPath());
+                        HttpHeaders headers = new HttpHeaders();
+                        headers.putAll(request.getHeaders());
+                        headers.remove(HttpHeaders.AUTHORIZATION);
+                        headers.remove(HttpHeaders.COOKIE);
+                        log.info("🟢 [WebSocket] Request headers: {}", headers);
+                        // ?token=... for clients behind proxies that strip STOMP headers
+                        String token = UriComponentsBuilder.fromUri(request.getURI()).build()
+                                .getQueryParams().getFirst(StompChannelInterceptor.TOKEN_ATTRIBUTE);
+                        if (token != null) {
+                            attributes.put(StompChannelInterceptor.TOKEN_ATTRIBUTE, token);
+                        }
                         return true;
                     }
 
@@ -63,17 +87,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         log.info("🔵🔵🔵 [WebSocket] ===== CONFIGURING CLIENT INBOUND CHANNEL =====");
         log.info("🔵 [WebSocket] configureClientInboundChannel() called");
         log.info("🔵 [WebSocket] Registering STOMP channel interceptor...");
-        registration.interceptors(stompChannelInterceptor);
+        registration.interceptors(stompChannelInterceptor, binaryStrokeFrameInterceptor);
         log.info("✅ [WebSocket] STOMP channel interceptor registered");
+        log.info("✅ [WebSocket] Binary stroke frame interceptor registered ({})", StrokeFrameCodec.CONTENT_TYPE);
+        if (executionProperties.useVirtualThreads()) {
+            // One virtual thread per inbound message instead of Spring's bounded pool,
+            // so handlers blocked on Redis or a broadcast do not starve other sessions
+            registration.executor(VirtualThreads.newThreadPerTaskExecutor("ws-inbound-"));
+            log.info("✅ [WebSocket] Inbound messages handled on virtual threads");
+        }
         log.info("✅✅✅ [WebSocket] ===== CLIENT INBOUND CHANNEL CONFIGURED =====");
     }
 
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Pre-encoded payloads first, then Spring's defaults (String, byte[], Jackson).
+        // Boot's auto-configured Jackson converter may already be in the list, so
+        // insert at the head; otherwise Jackson would encode the wrapper itself
+        messageConverters.add(0, new PreSerializedMessageConverter());
+        return true;
+    }
+
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
-        // Set to MAX_VALUE (~2GB) as requested
-        registry.setMessageSizeLimit(Integer.MAX_VALUE); 
-        registry.setSendTimeLimit(20 * 10000);
-        registry.setSendBufferSizeLimit(Integer.MAX_VALUE);
+        registry.setMessageSizeLimit(outboundProperties.getInboundMessageSizeLimit());
+        // Outbound buffering is bounded per session by the backpressure decorator, which
+        // never blocks, so Spring's own send buffer stays empty; same limits as a backstop
+        registry.setSendTimeLimit((int) outboundProperties.getSendTimeLimitMs());
+        registry.setSendBufferSizeLimit((int) outboundProperties.getMaxBytes());
+        registry.addDecoratorFactory(backpressureDecoratorFactory);
     }
 
     @Override
@@ -92,7 +134,30 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Queues:
         // - /queue/private/{userId} - Private messages (1:1 chat)
         // - /queue/notify/{userId} - Private notifications to specific user
+        if ("relay".equalsIgnoreCase(brokerProperties.getMode())) {
+            // External STOMP broker: fan-out reaches sessions on every node
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(brokerProperties.getRelayHost())
+                    .setRelayPort(brokerProperties.getRelayPort())
+                    .setClientLogin(brokerProperties.getClientLogin())
+                    .setClientPasscode(brokerProperties.getClientPasscode())
+                    .setSystemLogin(brokerProperties.getSystemLogin())
+                    .setSystemPasscode(brokerProperties.getSystemPasscode())
+                    .setVirtualHost(brokerProperties.getVirtualHost());
+            log.info("✅ [WebSocket] STOMP broker relay enabled: {}:{}",
+                    brokerProperties.getRelayHost(), brokerProperties.getRelayPort());
+            return;
+        }
+
+        // simple / redis: in-memory broker
         config.enableSimpleBroker("/topic", "/queue");
-        log.info("✅ [WebSocket] Simple broker enabled for: /topic (chat, draw, notify), /queue (private messages, notifications)");
+
+        // Redis mode: mirror every broker send to the other nodes
+        redisBroadcastBridge.ifAvailable(bridge -> {
+            config.configureBrokerChannel().interceptors(bridge);
+            log.info("✅ [WebSocket] Redis broadcast bridge registered on broker channel (node {})", bridge.getNodeId());
+        });
+        log.info("✅ [WebSocket] Simple broker enabled for: /topic (chat, draw, notify), /queue (private messages, notifications), mode={}",
+                brokerProperties.getMode());
     }
 }
\ No newline at end of file
@@ -1,15 +1,40 @@
 package com.sketchnotes.project_service.config;
 
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.service.CanvasDocumentService;
+import com.sketchnotes.project_service.service.ICollaborationStateStore;
+import com.sketchnotes.project_service.service.PresenceRegistry;
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.*;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the PresenceRegistry in step with the STOMP session lifecycle and
+ * cleans up after users whose last session on a project is gone: their locks
+ * are released and their unfinished strokes dropped, so a crashed tab does not
+ * leave state behind until the lock TTL or forever (strokes).
+ *
+ * A subscription to a project topic also starts loading the project's canvas
+ * document, so it is usually ready before the session's first op arrives.
+ */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class WebSocketEventListener {
 
+    private final PresenceRegistry presenceRegistry;
+    private final ICollaborationStateStore stateStore;
+    private final RealtimeMessageService realtimeMessageService;
+    private final CanvasDocumentService canvasDocumentService;
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
@@ -18,19 +43,70 @@ public class WebSocketEventListener {
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        log.info("🔴 [WebSocket] Connection closed - Session ID: {}", headerAccessor.getSessionId());
+        String sessionId = event.getSessionId();
+        log.info("🔴 [WebSocket] Connection closed - Session ID: {}", sessionId);
+        presenceRegistry.disconnect(sessionId)
+                .forEach(departure -> releaseDeparted(departure, "disconnected"));
     }
 
     @EventListener
     public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         log.info("📥 [WebSocket] New subscription - Destination: {}", headerAccessor.getDestination());
+        Long projectId = presenceRegistry.subscribe(headerAccessor.getSessionId(),
+                headerAccessor.getSubscriptionId(), headerAccessor.getDestination());
+        if (projectId != null) {
+            canvasDocumentService.warm(projectId);
+        }
     }
 
     @EventListener
     public void handleWebSocketUnsubscribeListener(SessionUnsubscribeEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         log.info("🔴 [WebSocket] Unsubscribe - Session ID: {}", headerAccessor.getSessionId());
+        presenceRegistry.unsubscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId())
+                .forEach(departure -> releaseDeparted(departure, "unsubscribed"));
+    }
+
+    /**
+     * Release the departed user's locks and in-flight strokes and tell the project
+     */
+    private void releaseDeparted(PresenceRegistry.Departure departure, String reason) {
+        Long projectId = departure.projectId();
+        String userId = departure.userId();
+        try {
+            List<String> releasedLocks = stateStore.releaseUserLocks(projectId, userId);
+            releasedLocks.forEach(elementId -> broadcast(projectId, userId, "LOCK_RELEASED", Map.of(
+                    "elementId", elementId,
+                    "reason", reason
+            )));
+
+            List<String> abortedStrokes = stateStore.getActiveStrokes(projectId).stream()
+                    .filter(stroke -> userId.equals(stroke.getUserId()))
+                    .map(ActiveStroke::getStrokeId)
+                    .toList();
+            abortedStrokes.forEach(strokeId -> stateStore.removeStroke(projectId, strokeId));
+
+            broadcast(projectId, userId, "USER_LEAVE", Map.of(
+                    "reason", reason,
+                    "abortedStrokes", abortedStrokes
+            ));
+            log.info("👋 [WebSocket] User {} left project {} ({}): released {} locks, dropped {} strokes",
+                    userId, projectId, reason, releasedLocks.size(), abortedStrokes.size());
+        } catch (Exception e) {
+            log.error("❌ [WebSocket] Failed to clean up user {} in project {}: {}",
+                    userId, projectId, e.getMessage());
+        }
+    }
+
+    private void broadcast(Long projectId, String userId, String type, Map<String, Object> payload) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("projectId", projectId);
+        message.put("userId", userId);
+        message.put("seq", realtimeMessageService.getNextSequence(projectId));
+        message.put("timestamp", System.currentTimeMillis());
+        message.put("payload", payload);
+        realtimeMessageService.broadcastImmediate(projectId, message, "collaboration");
     }
 }
@@ -4,16 +4,27 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.CanvasOpReplay;
+import com.sketchnotes.project_service.dtos.socket.CanvasSnapshot;
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.service.CanvasDocumentService;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import com.sketchnotes.project_service.service.ICollaborationStateStore;
+import com.sketchnotes.project_service.service.PresenceRegistry;
 import com.sketchnotes.project_service.service.RealtimeMessageService;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,6 +52,8 @@ import lombok.extern.slf4j.Slf4j;
  * Message Flow:
  * - Client sends to: /app/project/{projectId}/collaboration
  * - Server broadcasts to: /topic/project/{projectId}/collaboration
+ * - Replies to one session (lock grant/reject, server reject, STROKE_INIT, sync):
+ *   /user/queue/project/{projectId}/collaboration
  */
 @Slf4j
 @Controller
@@ -49,6 +62,11 @@ public class CollaborationWebSocketController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final RealtimeMessageService realtimeMessageService;
+    private final ICollaborationStateStore stateStore;
+    private final CanvasDocumentService canvasDocumentService;
+    private final PresenceRegistry presenceRegistry;
+    private final CurrentUserResolver currentUserResolver;
+    private final MeterRegistry meterRegistry;
 
     // Event type constants
     private static final String ELEMENT_CREATE = "ELEMENT_CREATE";
@@ -70,6 +88,7 @@ public class CollaborationWebSocketController {
     private static final String SYNC_RESPONSE_START = "SYNC_RESPONSE_START";  // *** NEW: Chunked ***
     private static final String SYNC_RESPONSE_CHUNK = "SYNC_RESPONSE_CHUNK";
     private static final String SYNC_RESPONSE_END = "SYNC_RESPONSE_END";
+    private static final String SYNC_RESPONSE_DELTA = "SYNC_RESPONSE_DELTA";  // Missed ops since fromVersion
     
     // *** CRITICAL: Locking ***
     private static final String ELEMENT_LOCK_REQUEST = "ELEMENT_LOCK_REQUEST";
@@ -83,17 +102,18 @@ public class CollaborationWebSocketController {
     // Legacy support
     private static final String DRAW = "DRAW";
     
-    // *** CRITICAL: In-memory state (replace with Redis in production) ***
-    // NOTE: Sequence and version counters now managed by RealtimeMessageService
-    // Element locks per project: projectId -> (elementId -> LockInfo)
-    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, LockInfo>> projectLocks = new ConcurrentHashMap<>();
-    // Active strokes per project: projectId -> (strokeId -> StrokeInfo)
-    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, StrokeInfo>> activeStrokes = new ConcurrentHashMap<>();
+    // *** CRITICAL: Shared state ***
+    // Sequence/version counters, element locks and active strokes live in
+    // ICollaborationStateStore (in-memory by default, Redis for multi-node)
     
     // Lock timeout (30 seconds)
     private static final long LOCK_TTL_MS = 30000;
     // Chunk size for sync (100 elements per chunk)
     private static final int SYNC_CHUNK_SIZE = 100;
+    // Lock requests by result (granted | rejected; the reaper counts expired)
+    private static final String LOCK_METRIC = "collab.locks";
+    // Session attribute caching the internal id of the session's user
+    private static final String SESSION_USER_ID = CollaborationWebSocketController.class.getName() + ".userId";
 
     /**
      * Main action handler for all collaboration events (element, page, image, sync, lock)
@@ -111,7 +131,8 @@ public class CollaborationWebSocketController {
     @MessageMapping("/project/{projectId}/collaboration")
     public void handleProjectAction(
             @DestinationVariable Long projectId,
-            @Payload Map<String, Object> message) {
+            @Payload Map<String, Object> message,
+            SimpMessageHeaderAccessor headerAccessor) {
         
         String type = (String) message.get("type");
         Object userId = message.get("userId");
@@ -122,9 +143,32 @@ public class CollaborationWebSocketController {
             return;
         }
         
-        // *** CRITICAL: Add server sequence number ***
-        long seq = getNextSequence(projectId);
-        message.put("seq", seq);
+        // Ordering and versioning fields are server-assigned only
+        message.remove("version");
+        message.remove("seq");
+        message.remove("serverTimestamp");
+        
+        // The sender is the user the session authenticated as on CONNECT; the body
+        // userId is only accepted when it names that same user
+        Long sessionUserId = sessionUserId(headerAccessor);
+        if (sessionUserId == null) {
+            sendServerReject(projectId, userId, "UNAUTHENTICATED",
+                    "Collaboration requires an authenticated session", message, headerAccessor);
+            return;
+        }
+        if (userId == null) {
+            userId = sessionUserId;
+            message.put("userId", userId);
+        } else if (!sessionUserId.toString().equals(userId.toString())) {
+            sendServerReject(projectId, userId, "USER_MISMATCH",
+                    "userId does not match the authenticated user", message, headerAccessor);
+            return;
+        }
+        
+        // Bind the sending session to its user for presence (no-op once known)
+        presenceRegistry.identify(headerAccessor.getSessionId(), projectId, sessionUserId.toString());
+        
+        // The server seq is stamped when the message is queued for broadcast
         
         // Add server timestamp
         message.put("serverTimestamp", System.currentTimeMillis());
@@ -133,24 +177,28 @@ public class CollaborationWebSocketController {
         switch (type) {
             case ELEMENT_CREATE:
                 // Increment version for state-changing operation
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logElementCreate(projectId, userId, payload);
                 break;
             case ELEMENT_UPDATE:
                 // Check lock before allowing update
-                if (!checkLockForUpdate(projectId, userId, payload, message)) {
+                if (!checkLockForUpdate(projectId, userId, payload, message, headerAccessor)) {
                     return; // Lock check failed, rejection sent
                 }
-                message.put("version", incrementVersion(projectId));
+                // Transient (mid-drag) updates are coalesced and not versioned;
+                // the final update commits the element
+                if (!isTransient(payload)) {
+                    message.put("version", applyToDocument(projectId, message));
+                }
                 logElementUpdate(projectId, userId, payload);
                 break;
             case ELEMENT_DELETE:
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logElementDelete(projectId, userId, payload);
                 break;
             case CANVAS_CLEAR:
                 // ✅ NEW: Handle canvas clear - increments version and broadcasts to all
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logCanvasClear(projectId, userId, payload);
                 break;
             case STROKE_APPEND:
@@ -159,21 +207,21 @@ public class CollaborationWebSocketController {
                 logStrokeAppend(projectId, userId, payload);
                 break;
             case STROKE_END:
-                // *** CRITICAL: Remove from active strokes ***
-                endActiveStroke(projectId, payload);
-                message.put("version", incrementVersion(projectId));
+                // *** CRITICAL: Remove from active strokes, commit it to the document ***
+                ActiveStroke finished = endActiveStroke(projectId, payload);
+                message.put("version", canvasDocumentService.applyStrokeEnd(projectId, message, finished));
                 logStrokeEnd(projectId, userId, payload);
                 break;
             case PAGE_CREATE:
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logPageCreate(projectId, userId, payload);
                 break;
             case PAGE_UPDATE:
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logPageUpdate(projectId, userId, payload);
                 break;
             case PAGE_DELETE:
-                message.put("version", incrementVersion(projectId));
+                message.put("version", applyToDocument(projectId, message));
                 logPageDelete(projectId, userId, payload);
                 break;
             case PAGE_SWITCH:
@@ -182,22 +230,23 @@ public class CollaborationWebSocketController {
             case USER_JOIN:
                 logUserJoin(projectId, userId, payload);
                 // *** CRITICAL: Send active strokes to joining user (STROKE_INIT) ***
-                sendActiveStrokesToUser(projectId, userId);
+                sendActiveStrokesToUser(projectId, userId, headerAccessor);
                 break;
             case USER_LEAVE:
                 // *** CRITICAL: Release any locks held by leaving user ***
                 releaseUserLocks(projectId, userId);
+                presenceRegistry.leave(headerAccessor.getSessionId(), projectId);
                 logUserLeave(projectId, userId);
                 break;
             case USER_CURSOR:
                 // Don't log cursor updates (too noisy)
                 break;
             case SYNC_REQUEST:
-                handleSyncRequest(projectId, userId, message);
+                handleSyncRequest(projectId, userId, message, headerAccessor);
                 return; // Don't broadcast sync requests
             // *** CRITICAL: Handle lock requests ***
             case ELEMENT_LOCK_REQUEST:
-                handleLockRequest(projectId, userId, payload);
+                handleLockRequest(projectId, userId, payload, headerAccessor);
                 return; // Don't broadcast lock requests
             case ELEMENT_LOCK_RELEASE:
                 handleLockRelease(projectId, userId, payload);
@@ -220,17 +269,41 @@ public class CollaborationWebSocketController {
     // *** UPDATED: Now delegates to RealtimeMessageService ***
     // ===========================================================================
     
+    /**
+     * Internal id of the session's CONNECT principal (resolved once per session),
+     * or null when the session is not authenticated
+     */
+    private Long sessionUserId(SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        if (attributes != null && attributes.get(SESSION_USER_ID) instanceof Long cached) {
+            return cached;
+        }
+        if (!(headerAccessor.getUser() instanceof Authentication authentication)) {
+            return null;
+        }
+        try {
+            Long resolved = currentUserResolver.resolve(authentication).getId();
+            if (attributes != null && resolved != null) {
+                attributes.put(SESSION_USER_ID, resolved);
+            }
+            return resolved;
+        } catch (AppException e) {
+            log.warn("⚠️ [Collab] Session {} has no known user: {}", headerAccessor.getSessionId(), e.getErrorCode());
+            return null;
+        }
+    }
+    
     private long getNextSequence(Long projectId) {
         // Use service for sequence (it has its own counters)
         return realtimeMessageService.getNextSequence(projectId);
     }
     
-    private long incrementVersion(Long projectId) {
-        return realtimeMessageService.incrementVersion(projectId);
-    }
-    
-    private long getCurrentVersion(Long projectId) {
-        return realtimeMessageService.getCurrentVersion(projectId);
+    /**
+     * Versions are bumped by the canvas document together with the state change,
+     * so a sync snapshot always matches exactly one version
+     */
+    private long applyToDocument(Long projectId, Map<String, Object> message) {
+        return canvasDocumentService.apply(projectId, message);
     }
     
     // ===========================================================================
@@ -238,7 +311,8 @@ public class CollaborationWebSocketController {
     // ===========================================================================
     
     @SuppressWarnings("unchecked")
-    private void handleLockRequest(Long projectId, Object userId, Object payload) {
+    private void handleLockRequest(Long projectId, Object userId, Object payload, 
+                                   SimpMessageHeaderAccessor requester) {
         if (!(payload instanceof Map)) return;
         Map<String, Object> p = (Map<String, Object>) payload;
         String elementId = (String) p.get("elementId");
@@ -248,30 +322,24 @@ public class CollaborationWebSocketController {
         
         if (elementId == null) return;
         
-        ConcurrentHashMap<String, LockInfo> locks = projectLocks.computeIfAbsent(
-            projectId, k -> new ConcurrentHashMap<>());
-        
-        LockInfo existingLock = locks.get(elementId);
         long now = System.currentTimeMillis();
+        String lockToken = userId + "_" + now + "_" + Math.random();
+        long expiresAt = now + Math.min(requestedTtl, LOCK_TTL_MS);
         
-        // Check if locked by someone else (and not expired)
-        if (existingLock != null && 
-            !existingLock.userId.equals(userId.toString()) && 
-            existingLock.expiresAt > now) {
-            // Reject - already locked
-            sendLockRejected(projectId, userId, elementId, existingLock.userId);
+        ElementLock newLock = new ElementLock(elementId, userId.toString(), expiresAt, lockToken);
+        ElementLock winner = stateStore.tryLock(projectId, newLock);
+        
+        // Locked by someone else (and not expired) - reject
+        if (winner != newLock && !winner.isHeldBy(userId.toString())) {
+            meterRegistry.counter(LOCK_METRIC, "result", "rejected").increment();
+            sendLockRejected(projectId, userId, elementId, winner.getUserId(), requester);
             return;
         }
         
-        // Grant lock
-        String lockToken = userId + "_" + now + "_" + Math.random();
-        long expiresAt = now + Math.min(requestedTtl, LOCK_TTL_MS);
-        
-        LockInfo newLock = new LockInfo(userId.toString(), expiresAt, lockToken);
-        locks.put(elementId, newLock);
+        meterRegistry.counter(LOCK_METRIC, "result", "granted").increment();
         
         // Send grant to requesting user
-        sendLockGranted(projectId, userId, elementId, lockToken, expiresAt);
+        sendLockGranted(projectId, userId, elementId, lockToken, expiresAt, requester);
         
         // Broadcast lock to all users
         broadcastLock(projectId, userId, elementId, expiresAt, lockToken);
@@ -289,14 +357,8 @@ public class CollaborationWebSocketController {
         
         if (elementId == null) return;
         
-        ConcurrentHashMap<String, LockInfo> locks = projectLocks.get(projectId);
-        if (locks == null) return;
-        
-        LockInfo lock = locks.get(elementId);
         // Only release if owned by user or token matches
-        if (lock != null && (lock.userId.equals(userId.toString()) || 
-                            (lockToken != null && lockToken.equals(lock.lockToken)))) {
-            locks.remove(elementId);
+        if (stateStore.releaseLock(projectId, elementId, userId.toString(), lockToken)) {
             
             // Broadcast release
             broadcastLockReleased(projectId, elementId, userId);
@@ -306,9 +368,13 @@ public class CollaborationWebSocketController {
         }
     }
     
+    private static boolean isTransient(Object payload) {
+        return payload instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) payload).get("transient"));
+    }
+    
     @SuppressWarnings("unchecked")
     private boolean checkLockForUpdate(Long projectId, Object userId, Object payload, 
-                                       Map<String, Object> message) {
+                                       Map<String, Object> message, SimpMessageHeaderAccessor requester) {
         if (!(payload instanceof Map)) return true;
         Map<String, Object> p = (Map<String, Object>) payload;
         String elementId = (String) p.get("elementId");
@@ -318,16 +384,12 @@ public class CollaborationWebSocketController {
         if (Boolean.TRUE.equals(transient_)) return true;
         if (elementId == null) return true;
         
-        ConcurrentHashMap<String, LockInfo> locks = projectLocks.get(projectId);
-        if (locks == null) return true;
-        
-        LockInfo lock = locks.get(elementId);
-        long now = System.currentTimeMillis();
+        ElementLock lock = stateStore.getLock(projectId, elementId);
         
         // If locked by someone else and not expired, reject
-        if (lock != null && !lock.userId.equals(userId.toString()) && lock.expiresAt > now) {
+        if (lock != null && !lock.isHeldBy(userId.toString())) {
             sendServerReject(projectId, userId, "ELEMENT_LOCKED", 
-                    "Element is locked by user " + lock.userId, message);
+                    "Element is locked by user " + lock.getUserId(), message, requester);
             return false;
         }
         
@@ -335,20 +397,9 @@ public class CollaborationWebSocketController {
     }
     
     private void releaseUserLocks(Long projectId, Object userId) {
-        ConcurrentHashMap<String, LockInfo> locks = projectLocks.get(projectId);
-        if (locks == null) return;
+        List<String> toRelease = stateStore.releaseUserLocks(projectId, userId.toString());
         
-        List<String> toRelease = new ArrayList<>();
-        locks.forEach((elementId, lock) -> {
-            if (lock.userId.equals(userId.toString())) {
-                toRelease.add(elementId);
-            }
-        });
-        
-        toRelease.forEach(elementId -> {
-            locks.remove(elementId);
-            broadcastLockReleased(projectId, elementId, userId);
-        });
+        toRelease.forEach(elementId -> broadcastLockReleased(projectId, elementId, userId));
         
         if (!toRelease.isEmpty()) {
             log.info("🔓 [Collab] Released {} locks for departing user {} in project {}", 
@@ -357,7 +408,7 @@ public class CollaborationWebSocketController {
     }
     
     private void sendLockGranted(Long projectId, Object userId, String elementId, 
-                                 String lockToken, long expiresAt) {
+                                 String lockToken, long expiresAt, SimpMessageHeaderAccessor requester) {
         Map<String, Object> response = new HashMap<>();
         response.put("type", LOCK_GRANTED);
         response.put("projectId", projectId);
@@ -369,24 +420,25 @@ public class CollaborationWebSocketController {
             "expiresAt", expiresAt
         ));
         
-        // TODO: Send to specific user only (convertAndSendToUser)
-        // For now, broadcast to all
-        broadcastToProject(projectId, response);
+        // Only the requester needs the token; everyone else gets ELEMENT_LOCK
+        sendToRequester(projectId, requester, response);
     }
     
-    private void sendLockRejected(Long projectId, Object userId, String elementId, String lockedBy) {
+    private void sendLockRejected(Long projectId, Object userId, String elementId, String lockedBy,
+                                  SimpMessageHeaderAccessor requester) {
         Map<String, Object> response = new HashMap<>();
         response.put("type", LOCK_REJECTED);
         response.put("projectId", projectId);
         response.put("userId", userId);
         response.put("timestamp", System.currentTimeMillis());
-        response.put("payload", Map.of(
-            "elementId", elementId,
-            "reason", "Element already locked",
-            "lockedBy", lockedBy
-        ));
+        // lockedBy is null when the holder's entry could not be read
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("elementId", elementId);
+        payload.put("reason", "Element already locked");
+        payload.put("lockedBy", lockedBy);
+        response.put("payload", payload);
         
-        broadcastToProject(projectId, response);
+        sendToRequester(projectId, requester, response);
     }
     
     private void broadcastLock(Long projectId, Object userId, String elementId, 
@@ -395,7 +447,6 @@ public class CollaborationWebSocketController {
         message.put("type", ELEMENT_LOCK);
         message.put("projectId", projectId);
         message.put("userId", userId);
-        message.put("seq", getNextSequence(projectId));
         message.put("timestamp", System.currentTimeMillis());
         message.put("payload", Map.of(
             "elementId", elementId,
@@ -412,7 +463,6 @@ public class CollaborationWebSocketController {
         message.put("type", LOCK_RELEASED);
         message.put("projectId", projectId);
         message.put("userId", userId);
-        message.put("seq", getNextSequence(projectId));
         message.put("timestamp", System.currentTimeMillis());
         message.put("payload", Map.of("elementId", elementId));
         
@@ -420,7 +470,8 @@ public class CollaborationWebSocketController {
     }
     
     private void sendServerReject(Long projectId, Object userId, String reason, 
-                                  String message, Map<String, Object> originalEvent) {
+                                  String message, Map<String, Object> originalEvent,
+                                  SimpMessageHeaderAccessor requester) {
         Map<String, Object> response = new HashMap<>();
         response.put("type", SERVER_REJECT);
         response.put("projectId", projectId);
@@ -432,7 +483,7 @@ public class CollaborationWebSocketController {
             "originalEventType", originalEvent.get("type")
         ));
         
-        broadcastToProject(projectId, response);
+        sendToRequester(projectId, requester, response);
         log.warn("❌ [Collab] Server rejected {} from user {}: {}", 
                 originalEvent.get("type"), userId, reason);
     }
@@ -452,67 +503,70 @@ public class CollaborationWebSocketController {
         
         if (strokeId == null) return;
         
-        ConcurrentHashMap<String, StrokeInfo> strokes = activeStrokes.computeIfAbsent(
-            projectId, k -> new ConcurrentHashMap<>());
-        
-        StrokeInfo stroke = strokes.get(strokeId);
-        if (stroke == null && strokeInit instanceof Map) {
-            // New stroke with init data
+        if (strokeInit instanceof Map) {
+            // New stroke with init data (ignored by the store if already known)
             Map<String, Object> init = (Map<String, Object>) strokeInit;
-            stroke = new StrokeInfo(
-                strokeId, 
-                userId.toString(), 
-                pageId,
-                init.get("tool"),
-                init.get("color"),
-                init.get("strokeWidth")
-            );
-            strokes.put(strokeId, stroke);
+            stateStore.startStroke(projectId, ActiveStroke.builder()
+                .strokeId(strokeId)
+                .userId(userId.toString())
+                .pageId(pageId)
+                .tool(init.get("tool"))
+                .color(init.get("color"))
+                .strokeWidth(init.get("strokeWidth"))
+                .build());
         }
         
-        // Append points to stroke
-        if (stroke != null && points != null) {
-            stroke.appendPoints(points);
+        // Append points to stroke (decoded and merged by the store)
+        if (points != null) {
+            try {
+                stateStore.appendStrokePoints(projectId, strokeId, points);
+            } catch (IllegalArgumentException e) {
+                log.warn("⚠️ [Collab] Ignoring malformed points for stroke {} in project {}: {}", 
+                        strokeId, projectId, e.getMessage());
+            }
         }
     }
     
     @SuppressWarnings("unchecked")
-    private void endActiveStroke(Long projectId, Object payload) {
-        if (!(payload instanceof Map)) return;
+    private ActiveStroke endActiveStroke(Long projectId, Object payload) {
+        if (!(payload instanceof Map)) return null;
         Map<String, Object> p = (Map<String, Object>) payload;
         String strokeId = (String) p.get("strokeId");
         
-        if (strokeId == null) return;
+        if (strokeId == null) return null;
         
-        ConcurrentHashMap<String, StrokeInfo> strokes = activeStrokes.get(projectId);
-        if (strokes != null) {
-            strokes.remove(strokeId);
-        }
+        ActiveStroke finished = stateStore.getActiveStrokes(projectId).stream()
+            .filter(stroke -> strokeId.equals(stroke.getStrokeId()))
+            .findFirst()
+            .orElse(null);
+        stateStore.removeStroke(projectId, strokeId);
+        return finished;
     }
     
-    private void sendActiveStrokesToUser(Long projectId, Object joiningUserId) {
-        ConcurrentHashMap<String, StrokeInfo> strokes = activeStrokes.get(projectId);
-        if (strokes == null || strokes.isEmpty()) return;
+    private void sendActiveStrokesToUser(Long projectId, Object joiningUserId, 
+                                         SimpMessageHeaderAccessor requester) {
+        List<ActiveStroke> strokes = stateStore.getActiveStrokes(projectId);
+        if (strokes.isEmpty()) return;
         
-        strokes.values().forEach(stroke -> {
+        strokes.forEach(stroke -> {
             Map<String, Object> initMessage = new HashMap<>();
             initMessage.put("type", STROKE_INIT);
             initMessage.put("projectId", projectId);
-            initMessage.put("userId", stroke.userId);
+            initMessage.put("userId", stroke.getUserId());
             initMessage.put("seq", getNextSequence(projectId));
             initMessage.put("timestamp", System.currentTimeMillis());
             initMessage.put("payload", Map.of(
-                "strokeId", stroke.strokeId,
-                "pageId", stroke.pageId,
-                "userId", stroke.userId,
-                "tool", stroke.tool != null ? stroke.tool : "pen",
-                "color", stroke.color != null ? stroke.color : "#000000",
-                "strokeWidth", stroke.strokeWidth != null ? stroke.strokeWidth : 2,
+                "strokeId", stroke.getStrokeId(),
+                "pageId", stroke.getPageId(),
+                "userId", stroke.getUserId(),
+                "tool", stroke.getTool() != null ? stroke.getTool() : "pen",
+                "color", stroke.getColor() != null ? stroke.getColor() : "#000000",
+                "strokeWidth", stroke.getStrokeWidth() != null ? stroke.getStrokeWidth() : 2,
                 "points", stroke.getCompressedPoints()
             ));
             
-            // TODO: Send to specific user only
-            broadcastToProject(projectId, initMessage);
+            // Only the joining session replays in-flight strokes
+            sendToRequester(projectId, requester, initMessage);
         });
         
         log.info("👋 [Collab] Sent {} active strokes to joining user {} in project {}", 
@@ -550,86 +604,190 @@ public class CollaborationWebSocketController {
     }
     
     /**
-     * Broadcast message immediately (bypass queue) - for sync responses
+     * Broadcast message immediately (bypass queue)
      */
     private void broadcastToProjectImmediate(Long projectId, Object message) {
         realtimeMessageService.broadcastImmediate(projectId, message, "collaboration");
     }
     
+    /**
+     * Reply to the session that sent the request only
+     * (client subscribes to /user/queue/project/{projectId}/collaboration).
+     * Falls back to a project broadcast when there is no STOMP session.
+     */
+    private void sendToRequester(Long projectId, SimpMessageHeaderAccessor requester, Object message) {
+        if (requester == null || requester.getSessionId() == null) {
+            broadcastToProjectImmediate(projectId, message);
+            return;
+        }
+        realtimeMessageService.sendToSession(projectId, requester.getSessionId(), requester.getUser(), message);
+    }
+    
     /**
      * Handle sync request - send full document state to requesting user
      * *** CRITICAL: Now supports chunked responses for large documents ***
+     * 
+     * Documents of up to SYNC_CHUNK_SIZE elements fit in one SYNC_RESPONSE.
+     * Larger ones are streamed as SYNC_RESPONSE_START, one SYNC_RESPONSE_CHUNK
+     * per SYNC_CHUNK_SIZE elements of a page, then SYNC_RESPONSE_END, all tagged
+     * with the snapshot version and a syncId. The project lane keeps them in order.
+     * All of them go to the requesting session only.
+     * 
+     * A client that sends fromVersion still covered by the op log only gets the
+     * ops it missed, in one SYNC_RESPONSE_DELTA.
      */
     @SuppressWarnings("unchecked")
-    private void handleSyncRequest(Long projectId, Object userId, Map<String, Object> message) {
+    private void handleSyncRequest(Long projectId, Object userId, Map<String, Object> message,
+                                   SimpMessageHeaderAccessor requester) {
         log.info("🔄 [Collab] User {} requested sync for project {}", userId, projectId);
         
         Map<String, Object> payload = (Map<String, Object>) message.get("payload");
         Object fromVersion = payload != null ? payload.get("fromVersion") : null;
         
-        // Get current state
-        long currentVersion = getCurrentVersion(projectId);
-        long currentSeq = getNextSequence(projectId);
+        // Replay only the missed ops when the log still covers fromVersion
+        CanvasOpReplay replay = fromVersion instanceof Number
+            ? canvasDocumentService.replaySince(projectId, ((Number) fromVersion).longValue())
+            : null;
         
         // Get current locks
-        ConcurrentHashMap<String, LockInfo> locks = projectLocks.get(projectId);
         Map<String, Object> lockState = new HashMap<>();
-        if (locks != null) {
-            locks.forEach((elementId, lock) -> {
-                if (lock.expiresAt > System.currentTimeMillis()) {
-                    lockState.put(elementId, Map.of(
-                        "lockedBy", lock.userId,
-                        "expiresAt", lock.expiresAt,
-                        "lockToken", lock.lockToken
-                    ));
-                }
-            });
-        }
+        stateStore.getLocks(projectId).forEach((elementId, lock) ->
+            lockState.put(elementId, Map.of(
+                "lockedBy", lock.getUserId(),
+                "expiresAt", lock.getExpiresAt(),
+                "lockToken", lock.getLockToken()
+            )));
+        
+        // Users with a live session on this canvas
+        List<String> activeUsers = List.copyOf(presenceRegistry.getActiveUsers(projectId));
         
         // Get active strokes for late join
-        ConcurrentHashMap<String, StrokeInfo> strokes = activeStrokes.get(projectId);
         List<Map<String, Object>> activeStrokesList = new ArrayList<>();
-        if (strokes != null) {
-            strokes.values().forEach(stroke -> {
-                activeStrokesList.add(Map.of(
-                    "strokeId", stroke.strokeId,
-                    "pageId", stroke.pageId != null ? stroke.pageId : 0,
-                    "userId", stroke.userId,
-                    "tool", stroke.tool != null ? stroke.tool : "pen",
-                    "color", stroke.color != null ? stroke.color : "#000000",
-                    "points", stroke.getCompressedPoints()
-                ));
-            });
+        stateStore.getActiveStrokes(projectId).forEach(stroke ->
+            activeStrokesList.add(Map.of(
+                "strokeId", stroke.getStrokeId(),
+                "pageId", stroke.getPageId() != null ? stroke.getPageId() : 0,
+                "userId", stroke.getUserId(),
+                "tool", stroke.getTool() != null ? stroke.getTool() : "pen",
+                "color", stroke.getColor() != null ? stroke.getColor() : "#000000",
+                "points", stroke.getCompressedPoints()
+            )));
+        
+        if (replay != null) {
+            long currentSeq = getNextSequence(projectId);
+            Map<String, Object> deltaPayload = new HashMap<>();
+            deltaPayload.put("fromVersion", replay.getFromVersion());
+            deltaPayload.put("version", replay.getVersion());
+            deltaPayload.put("ops", replay.getOps());
+            deltaPayload.put("activeUsers", activeUsers);
+            deltaPayload.put("activeStrokes", activeStrokesList);
+            deltaPayload.put("lockState", lockState);
+            sendToRequester(projectId, requester,
+                syncMessage(SYNC_RESPONSE_DELTA, projectId, userId, currentSeq, replay.getVersion(), deltaPayload));
+            
+            log.info("🔄 [Collab] Replayed {} ops since version {} to user {} for project {}", 
+                    replay.getOps().size(), replay.getFromVersion(), userId, projectId);
+            return;
         }
         
-        // TODO: Fetch document state from database/Redis
-        // For now, send a minimal response
-        // In production: implement chunked sync for large documents
-        
-        // *** For MVP: Send simple response ***
-        // *** For large documents: Use SYNC_RESPONSE_START/CHUNK/END ***
-        Map<String, Object> syncResponse = new HashMap<>();
-        syncResponse.put("type", SYNC_RESPONSE);
-        syncResponse.put("projectId", projectId);
-        syncResponse.put("userId", "server");
-        syncResponse.put("timestamp", System.currentTimeMillis());
-        syncResponse.put("seq", currentSeq);
-        syncResponse.put("version", currentVersion);
-        syncResponse.put("payload", Map.of(
-            "document", Map.of(
+        // Get current state (elements and version are captured together)
+        CanvasSnapshot snapshot = canvasDocumentService.snapshot(projectId);
+        long currentVersion = snapshot.getVersion();
+        long currentSeq = getNextSequence(projectId);
+        int elementCount = snapshot.getElementCount();
+        
+        if (elementCount <= SYNC_CHUNK_SIZE) {
+            List<Map<String, Object>> pages = new ArrayList<>();
+            snapshot.getPages().forEach(page -> pages.add(pageEntry(page.getPageId(), page.getElements())));
+            
+            Map<String, Object> responsePayload = new HashMap<>();
+            responsePayload.put("document", Map.of(
                 "projectId", projectId,
                 "version", currentVersion,
-                "pages", java.util.Collections.emptyList()
-            ),
-            "activeUsers", java.util.Collections.emptyList(),
-            "activeStrokes", activeStrokesList,
-            "lockState", lockState,
-            "version", currentVersion,
-            "seq", currentSeq
-        ));
+                "baseVersion", snapshot.getBaseVersion(),
+                "pages", pages
+            ));
+            responsePayload.put("activeUsers", activeUsers);
+            responsePayload.put("activeStrokes", activeStrokesList);
+            responsePayload.put("lockState", lockState);
+            responsePayload.put("version", currentVersion);
+            responsePayload.put("seq", currentSeq);
+            
+            // *** UPDATED: Use immediate broadcast for sync responses (bypass queue) ***
+            sendToRequester(projectId, requester,
+                syncMessage(SYNC_RESPONSE, projectId, userId, currentSeq, currentVersion, responsePayload));
+            return;
+        }
         
-        // *** UPDATED: Use immediate broadcast for sync responses (bypass queue) ***
-        broadcastToProjectImmediate(projectId, syncResponse);
+        // *** Large document: SYNC_RESPONSE_START / CHUNK... / END ***
+        String syncId = userId + "_" + currentSeq;
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        List<Map<String, Object>> pageSummaries = new ArrayList<>();
+        for (CanvasSnapshot.Page page : snapshot.getPages()) {
+            List<Map<String, Object>> elements = page.getElements();
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("pageId", page.getPageId());
+            summary.put("elementCount", elements.size());
+            pageSummaries.add(summary);
+            for (int from = 0; from < elements.size(); from += SYNC_CHUNK_SIZE) {
+                List<Map<String, Object>> slice = elements.subList(from, Math.min(from + SYNC_CHUNK_SIZE, elements.size()));
+                Map<String, Object> chunkPayload = pageEntry(page.getPageId(), slice);
+                chunkPayload.put("syncId", syncId);
+                chunkPayload.put("chunkIndex", chunks.size());
+                chunkPayload.put("version", currentVersion);
+                chunks.add(chunkPayload);
+            }
+        }
+        
+        Map<String, Object> startPayload = new HashMap<>();
+        startPayload.put("syncId", syncId);
+        startPayload.put("projectId", projectId);
+        startPayload.put("version", currentVersion);
+        startPayload.put("baseVersion", snapshot.getBaseVersion());
+        startPayload.put("totalElements", elementCount);
+        startPayload.put("totalChunks", chunks.size());
+        startPayload.put("chunkSize", SYNC_CHUNK_SIZE);
+        startPayload.put("pages", pageSummaries);
+        startPayload.put("activeUsers", activeUsers);
+        startPayload.put("activeStrokes", activeStrokesList);
+        startPayload.put("lockState", lockState);
+        startPayload.put("fromVersion", fromVersion);
+        sendToRequester(projectId, requester,
+            syncMessage(SYNC_RESPONSE_START, projectId, userId, currentSeq, currentVersion, startPayload));
+        
+        chunks.forEach(chunk -> sendToRequester(projectId, requester,
+            syncMessage(SYNC_RESPONSE_CHUNK, projectId, userId, currentSeq, currentVersion, chunk)));
+        
+        sendToRequester(projectId, requester,
+            syncMessage(SYNC_RESPONSE_END, projectId, userId, currentSeq, currentVersion, Map.of(
+                "syncId", syncId,
+                "version", currentVersion,
+                "totalChunks", chunks.size()
+            )));
+        
+        log.info("🔄 [Collab] Sent {} elements in {} chunks to user {} for project {} (version {})", 
+                elementCount, chunks.size(), userId, projectId, currentVersion);
+    }
+    
+    private Map<String, Object> syncMessage(String type, Long projectId, Object targetUserId, 
+                                            long seq, long version, Object payload) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", type);
+        response.put("projectId", projectId);
+        response.put("userId", "server");
+        response.put("targetUserId", targetUserId);
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("seq", seq);
+        response.put("version", version);
+        response.put("payload", payload);
+        return response;
+    }
+    
+    private Map<String, Object> pageEntry(Object pageId, List<Map<String, Object>> elements) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("pageId", pageId);
+        entry.put("elements", elements);
+        return entry;
     }
     
     // ===========================================================================
@@ -777,72 +935,4 @@ public class CollaborationWebSocketController {
                     userId, projectId, tool);
         }
     }
-    
-    // ===========================================================================
-    // HELPER CLASSES
-    // ===========================================================================
-    
-    /**
-     * Lock information for an element
-     */
-    private static class LockInfo {
-        final String userId;
-        final long expiresAt;
-        final String lockToken;
-        
-        LockInfo(String userId, long expiresAt, String lockToken) {
-            this.userId = userId;
-            this.expiresAt = expiresAt;
-            this.lockToken = lockToken;
-        }
-    }
-    
-    /**
-     * Active stroke information (for late join)
-     */
-    private static class StrokeInfo {
-        final String strokeId;
-        final String userId;
-        final Object pageId;
-        final Object tool;
-        final Object color;
-        final Object strokeWidth;
-        private List<Object> accumulatedPoints = new ArrayList<>();
-        
-        StrokeInfo(String strokeId, String userId, Object pageId, 
-                   Object tool, Object color, Object strokeWidth) {
-            this.strokeId = strokeId;
-            this.userId = userId;
-            this.pageId = pageId;
-            this.tool = tool;
-            this.color = color;
-            this.strokeWidth = strokeWidth;
-        }
-        
-        synchronized void appendPoints(Object points) {
-            if (points instanceof Map) {
-                // Compressed format - store as-is
-                accumulatedPoints.add(points);
-            } else if (points instanceof List) {
-                accumulatedPoints.addAll((List<?>) points);
-            }
-        }
-        
-        synchronized Object getCompressedPoints() {
-            // Return accumulated points
-            // In production, you might want to merge and re-compress
-            if (accumulatedPoints.isEmpty()) {
-                return Map.of("compressed", false, "data", List.of());
-            }
-            
-            // If we have compressed chunks, return the last one for simplicity
-            // In production, merge all points properly
-            Object lastPoints = accumulatedPoints.get(accumulatedPoints.size() - 1);
-            if (lastPoints instanceof Map) {
-                return lastPoints;
-            }
-            
-            return Map.of("compressed", false, "data", accumulatedPoints);
-        }
-    }
 }
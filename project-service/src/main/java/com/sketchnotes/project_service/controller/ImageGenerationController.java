@@ -2,6 +2,7 @@ package com.sketchnotes.project_service.controller;
 
 import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationJobResponse;
 import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
 import com.sketchnotes.project_service.dtos.response.ImagePromptResponse;
 import com.sketchnotes.project_service.service.IAiImageService;
@@ -34,6 +35,24 @@ public class ImageGenerationController {
         ImageGenerationResponse response = imageGenerationService.generateAndUploadImage(request);
         return ResponseEntity.ok(ApiResponse.success(response, "Image generated successfully"));
     }
+    /**
+     * Bắt đầu tạo ảnh bất đồng bộ (202). Tiến độ và kết quả: STOMP /user/queue/image-jobs
+     * hoặc GET /api/images/jobs/{jobId}
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ApiResponse<ImageGenerationJobResponse>> submitGeneration(@RequestBody @Valid ImageGenerationRequest request) {
+
+        ImageGenerationJobResponse response = imageGenerationService.submitGeneration(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(response, "Image generation started"));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<ImageGenerationJobResponse>> getGenerationJob(@PathVariable String jobId) {
+
+        ImageGenerationJobResponse response = imageGenerationService.getGenerationJob(jobId);
+        return ResponseEntity.ok(ApiResponse.success(response, "Image generation job retrieved successfully"));
+    }
+
     @GetMapping("/history")
     public ResponseEntity<ApiResponse<PagedResponse<ImagePromptResponse>>> getImageHistory(
             @RequestParam(defaultValue = "0") int page,
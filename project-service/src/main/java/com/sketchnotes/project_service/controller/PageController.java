@@ -1,12 +1,12 @@
 package com.sketchnotes.project_service.controller;
 
-import com.sketchnotes.project_service.client.IUserClient;
 import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.ListPageRequest;
 import com.sketchnotes.project_service.dtos.request.PageRequest;
 import com.sketchnotes.project_service.dtos.request.UpdatePageRequest;
 import com.sketchnotes.project_service.dtos.response.PageResponse;
 import com.sketchnotes.project_service.service.IPageService;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,7 +18,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PageController {
     private final IPageService pageService;
-    private final IUserClient userClient;
+    private final CurrentUserResolver currentUserResolver;
 //    @PostMapping
 //    public ResponseEntity<ApiResponse<PageResponse>> addPage( @RequestBody PageRequest dto) {
 //        PageResponse response = pageService.addPage(dto);
@@ -26,7 +26,7 @@ public class PageController {
 //    }
     @PostMapping
     public ResponseEntity<ApiResponse<List<PageResponse>>> addPageOfProject( @RequestBody ListPageRequest dto) {
-        List<PageResponse> response = pageService.addPages(dto,userClient.getCurrentUser().getResult().getId());
+        List<PageResponse> response = pageService.addPages(dto,currentUserResolver.getCurrentUserId());
         return ResponseEntity.ok(ApiResponse.success(response, "Page added successfully"));
     }
 
@@ -1,11 +1,11 @@
 package com.sketchnotes.project_service.controller;
 
-import com.sketchnotes.project_service.client.IUserClient;
 import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.ProjectRequest;
 import com.sketchnotes.project_service.dtos.response.ProjectListResponse;
 import com.sketchnotes.project_service.dtos.response.ProjectResponse;
 import com.sketchnotes.project_service.dtos.response.ProjectDetailResponse;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
 import com.sketchnotes.project_service.service.IProjectService;
 import com.sketchnotes.project_service.utils.PagedResponse;
 import jakarta.validation.Valid;
@@ -21,11 +21,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProjectController {
     private final IProjectService projectService;
-    private final IUserClient userClient;
+    private final CurrentUserResolver currentUserResolver;
 
     @PostMapping
     public ResponseEntity<ApiResponse<ProjectResponse>> create(@RequestBody @Valid ProjectRequest dto) {
-        ProjectResponse response = projectService.createProject(dto,userClient.getCurrentUser().getResult().getId());
+        ProjectResponse response = projectService.createProject(dto,currentUserResolver.getCurrentUserId());
         return ResponseEntity.ok(ApiResponse.success(response, "Project created successfully"));
     }
 
@@ -45,7 +45,7 @@ public class ProjectController {
             @RequestParam(defaultValue = "0") int pageNo,
             @RequestParam(defaultValue = "10") int pageSize) {
         PagedResponse<ProjectResponse> response = projectService.getProjectsCurrentUserPaged(
-                userClient.getCurrentUser().getResult().getId(), pageNo, pageSize);
+                currentUserResolver.getCurrentUserId(), pageNo, pageSize);
         return ResponseEntity.ok(ApiResponse.success(response, "Get data successful"));
     }
     @GetMapping("/me/shared")
@@ -56,13 +56,13 @@ public class ProjectController {
 
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<ProjectResponse>> update(@PathVariable Long id, @RequestBody ProjectRequest dto) {
-        ProjectResponse response = projectService.updateProject(id, dto,userClient.getCurrentUser().getResult().getId());
+        ProjectResponse response = projectService.updateProject(id, dto,currentUserResolver.getCurrentUserId());
         return ResponseEntity.ok(ApiResponse.success(response, "Update successful"));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<String>> delete(@PathVariable Long id) {
-        projectService.deleteProject(id,userClient.getCurrentUser().getResult().getId());
+        projectService.deleteProject(id,currentUserResolver.getCurrentUserId());
         return ResponseEntity.ok(ApiResponse.success(null,"Project deleted successfully"));
     }
 
@@ -4,6 +4,7 @@ import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.FileRequest;
 import com.sketchnotes.project_service.enums.FileContentType;
 import com.sketchnotes.project_service.service.IStorageService;
+import com.sketchnotes.project_service.service.IStrokeBlobService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,12 +17,21 @@ import java.util.Map;
 public class StorageController {
 
     private final IStorageService storageService;
+    private final IStrokeBlobService strokeBlobService;
 
+    /**
+     * With contentHash (SHA-256 hex of the file), the upload goes to a shared
+     * content-addressed key; if that content is already stored the response has
+     * exists=true and no uploadUrl.
+     */
     @GetMapping("/storage/presign")
     public ResponseEntity<ApiResponse<Map<String, String>>> getPresignedUrl(
                 @RequestParam String fileName,
-                        @RequestParam FileContentType contentType) {
-        Map<String, String> response = storageService.generatePresignedUrl(fileName, contentType);
+                        @RequestParam FileContentType contentType,
+                        @RequestParam(required = false) String contentHash) {
+        Map<String, String> response = contentHash != null
+                ? strokeBlobService.presign(contentHash, contentType)
+                : storageService.generatePresignedUrl(fileName, contentType);
         return ResponseEntity.ok(ApiResponse.success(response, "Presigned URL generated successfully"));
     }
 
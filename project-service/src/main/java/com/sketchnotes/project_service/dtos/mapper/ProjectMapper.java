@@ -6,6 +6,9 @@ import com.sketchnotes.project_service.dtos.response.ProjectDetailResponse;
 import com.sketchnotes.project_service.entity.Project;
 import com.sketchnotes.project_service.enums.PaperSize;
 
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
 public class ProjectMapper {
     public static ProjectResponse toDTO(Project project) {
             if(project.getPages() == null || project.getPages().isEmpty()) {
@@ -26,7 +29,7 @@ public class ProjectMapper {
         var activePages = project.getPages().stream()
                 .filter(page -> page.getDeletedAt() == null)  // Not soft deleted
                 .map(PageMapper::toDTO)
-                .toList();
+                .collect(Collectors.toCollection(ArrayList::new));
         
         return ProjectResponse.builder()
                 .projectId(project.getProjectId())
@@ -70,7 +73,7 @@ public class ProjectMapper {
         var activePages = project.getPages().stream()
                 .filter(page -> page.getDeletedAt() == null)
                 .map(PageMapper::toDTO)
-                .toList();
+                .collect(Collectors.toCollection(ArrayList::new));
         
         return ProjectResponse.builder()
                 .projectId(project.getProjectId())
@@ -106,7 +109,7 @@ public class ProjectMapper {
         var activePages = project.getPages().stream()
                 .filter(page -> page.getDeletedAt() == null)  // Not soft deleted
                 .map(PageMapper::toDTO)
-                .toList();
+                .collect(Collectors.toCollection(ArrayList::new));
 
         return ProjectDetailResponse.builder()
                 .projectId(project.getProjectId())
@@ -0,0 +1,34 @@
+package com.sketchnotes.project_service.dtos.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.sketchnotes.project_service.enums.ImageJobStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Job state returned by POST/GET /api/images/jobs and pushed to /user/queue/image-jobs
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageGenerationJobResponse {
+    private String jobId;
+    private ImageJobStatus status;
+    private String prompt;
+    private Integer totalImages;
+    private Integer completedImages;
+    // Filled when SUCCEEDED
+    private List<String> imageUrls;
+    private Long generationTime;
+    // ErrorCode name and message when FAILED
+    private String errorCode;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,44 @@
+package com.sketchnotes.project_service.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owner and live collaborators of a project, cached per project (ProjectCache.PROJECT_MEMBERS)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectMembers {
+    private Long projectId;
+    private Long ownerId;
+    private LocalDateTime projectCreatedAt;
+    @Builder.Default
+    private List<Member> collaborators = new ArrayList<>();
+
+    public boolean hasCollaboration() {
+        return !collaborators.isEmpty();
+    }
+
+    public boolean hasEditor() {
+        return collaborators.stream().anyMatch(Member::isEdited);
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Member {
+        private Long userId;
+        private boolean edited;
+        private boolean accepted;
+        private LocalDateTime createdAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.sketchnotes.project_service.dtos.socket;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.sketchnotes.project_service.utils.StrokePointBuffer;
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Stroke that is still being drawn, kept so late joiners can receive STROKE_INIT
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class ActiveStroke {
+    private String strokeId;
+    private String userId;
+    private Object pageId;
+    private Object tool;
+    private Object color;
+    private Object strokeWidth;
+
+    /**
+     * Points merged from every STROKE_APPEND chunk so far (bounded, see StrokePointBuffer)
+     */
+    @JsonIgnore
+    @Builder.Default
+    private StrokePointBuffer points = new StrokePointBuffer();
+
+    /**
+     * Decode a STROKE_APPEND point chunk and merge it into the stroke.
+     *
+     * @throws IllegalArgumentException if the chunk holds non-numeric coordinates
+     */
+    public void appendPoints(Object chunk) {
+        points.appendChunk(chunk);
+    }
+
+    /**
+     * The complete stroke as one compact fixed-point delta block
+     */
+    @JsonIgnore
+    public Map<String, Object> getCompressedPoints() {
+        return points.toDeltaBlock();
+    }
+}
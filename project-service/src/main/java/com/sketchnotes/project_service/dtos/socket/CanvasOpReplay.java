@@ -0,0 +1,18 @@
+package com.sketchnotes.project_service.dtos.socket;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ops a client missed between {@code fromVersion} and {@code version}, in order.
+ * Each op is the original broadcast message as raw JSON.
+ */
+@Getter
+@AllArgsConstructor
+public class CanvasOpReplay {
+    private final long fromVersion;
+    private final long version;
+    private final List<Object> ops;
+}
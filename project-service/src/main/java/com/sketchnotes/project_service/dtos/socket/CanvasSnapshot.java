@@ -0,0 +1,31 @@
+package com.sketchnotes.project_service.dtos.socket;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of a project's canvas elements, consistent with {@code version}.
+ * {@code baseVersion} is the version the server-side model started from: edits older
+ * than it are only available from the persisted pages.
+ */
+@Getter
+@AllArgsConstructor
+public class CanvasSnapshot {
+    private final long version;
+    private final long baseVersion;
+    private final List<Page> pages;
+
+    public int getElementCount() {
+        return pages.stream().mapToInt(page -> page.getElements().size()).sum();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Page {
+        private final Object pageId;
+        private final List<Map<String, Object>> elements;
+    }
+}
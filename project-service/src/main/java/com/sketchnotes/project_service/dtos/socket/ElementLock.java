@@ -0,0 +1,26 @@
+package com.sketchnotes.project_service.dtos.socket;
+
+import lombok.*;
+
+/**
+ * Lock held by a user on a canvas element (drag / edit in progress)
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ElementLock {
+    private String elementId;
+    private String userId;
+    private long expiresAt;   // epoch millis
+    private String lockToken;
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    public boolean isHeldBy(String otherUserId) {
+        return userId != null && userId.equals(otherUserId);
+    }
+}
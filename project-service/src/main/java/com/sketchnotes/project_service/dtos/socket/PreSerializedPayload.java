@@ -0,0 +1,28 @@
+package com.sketchnotes.project_service.dtos.socket;
+
+import lombok.Getter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Outbound payload that is already encoded (JSON or binary frame).
+ *
+ * Built once per broadcast and shared by every destination and subscriber, so the
+ * bytes must never be modified after construction.
+ * PreSerializedMessageConverter hands the bytes to the broker without re-encoding.
+ */
+@Getter
+public final class PreSerializedPayload {
+
+    private final byte[] bytes;
+    private final MimeType contentType;
+
+    public PreSerializedPayload(byte[] bytes, MimeType contentType) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+    }
+
+    public static PreSerializedPayload json(byte[] bytes) {
+        return new PreSerializedPayload(bytes, MimeTypeUtils.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,53 @@
+package com.sketchnotes.project_service.entity;
+
+import com.sketchnotes.project_service.enums.ImageJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One submitted image generation (POST /api/images/jobs) and its outcome.
+ *
+ * Stored so that any node can answer a poll; progress and results are also
+ * pushed to the owner's /user/queue/image-jobs. Credits are charged and
+ * ImagePrompt rows written only when the job succeeds.
+ */
+@Entity
+@Table(name = "image_generation_job", indexes = @Index(name = "idx_image_job_owner_status", columnList = "owner_id, status"))
+@Getter
+@Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ImageGenerationJob {
+
+    @Id
+    @Column(length = 36)
+    private String jobId;
+
+    @Column(nullable = false)
+    private Long ownerId;
+
+    @Column(length = 1000)
+    private String prompt;
+    private boolean icon;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ImageJobStatus status;
+
+    private int totalImages;
+    private int completedImages;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<String> imageUrls;
+    // ErrorCode name when FAILED
+    @Column(length = 64)
+    private String errorCode;
+    private Long generationTime;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
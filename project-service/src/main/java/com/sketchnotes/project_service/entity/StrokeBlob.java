@@ -0,0 +1,43 @@
+package com.sketchnotes.project_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stroke object in S3 and how many live pages point at it.
+ *
+ * Pages of different versions share a blob instead of copying it, so a blob is
+ * only deleted from S3 once refCount is 0 and has stayed 0 for the grace period
+ * (see StrokeBlobCollector). Content-addressed uploads use the key
+ * strokes/{sha256}, so identical content is stored once.
+ * Rows are written through StrokeBlobRepository (JDBC upserts), not JPA.
+ */
+@Entity
+@Table(name = "stroke_blob", indexes = @Index(name = "idx_stroke_blob_unreferenced", columnList = "unreferenced_at"))
+@Getter
+@Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StrokeBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long blobId;
+
+    @Column(nullable = false, unique = true, length = 1024)
+    private String strokeUrl;
+
+    @Column(nullable = false)
+    private Integer refCount;
+
+    // Set when refCount drops to 0, cleared when it is referenced again
+    private LocalDateTime unreferencedAt;
+    // Failed S3 deletes so far; the collector skips the blob until nextAttemptAt
+    private Integer deleteAttempts;
+    private LocalDateTime nextAttemptAt;
+    // Set while a collector deletes the blob from S3; nextAttemptAt is then its lease
+    @Column(length = 36)
+    private String claimToken;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
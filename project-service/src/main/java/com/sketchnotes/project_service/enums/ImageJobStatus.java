@@ -0,0 +1,15 @@
+package com.sketchnotes.project_service.enums;
+
+/**
+ * Lifecycle of an asynchronous image generation job
+ */
+public enum ImageJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isActive() {
+        return this == QUEUED || this == RUNNING;
+    }
+}
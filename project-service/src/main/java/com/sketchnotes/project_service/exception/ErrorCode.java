@@ -36,7 +36,11 @@ public enum ErrorCode {
     IMAGE_GENERATION_FAILED(500, "Image generation failed", HttpStatus.INTERNAL_SERVER_ERROR),
      IMAGE_REMOVAL_FAILED(500, "Image removal failed", HttpStatus.INTERNAL_SERVER_ERROR),
     IMAGE_EXTRACTION_FAILED(500, "Image extraction failed", HttpStatus.INTERNAL_SERVER_ERROR),
+    IMAGE_JOB_NOT_FOUND(404, "Image generation job not found", HttpStatus.NOT_FOUND),
+    IMAGE_JOB_LIMIT_REACHED(429, "Too many image generations in progress", HttpStatus.TOO_MANY_REQUESTS),
+    IMAGE_JOB_QUEUE_FULL(503, "Image generation is busy, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
     FILE_URL_INVALID(400, "File URL is invalid or inaccessible", HttpStatus.BAD_REQUEST),
+    STROKE_BLOB_BUSY(409, "Stroke file is being deleted, upload it again shortly", HttpStatus.CONFLICT),
     
     // Credit errors
     INSUFFICIENT_CREDITS(400, "Insufficient AI credits", HttpStatus.BAD_REQUEST),
@@ -0,0 +1,39 @@
+package com.sketchnotes.project_service.repository;
+
+import com.sketchnotes.project_service.entity.ImageGenerationJob;
+import com.sketchnotes.project_service.enums.ImageJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface IImageGenerationJobRepository extends JpaRepository<ImageGenerationJob, String> {
+
+    Optional<ImageGenerationJob> findByJobIdAndOwnerId(String jobId, Long ownerId);
+
+    /**
+     * Serialize job submissions of one owner, across nodes, until the
+     * surrounding transaction ends (PostgreSQL transaction-level advisory lock)
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext('image_generation_job'), CAST(mod(:ownerId, 2147483647) AS int))) l",
+            nativeQuery = true)
+    int lockOwner(@Param("ownerId") Long ownerId);
+
+    long countByOwnerIdAndStatusInAndCreatedAtAfter(Long ownerId, Collection<ImageJobStatus> statuses, LocalDateTime createdAfter);
+
+    /**
+     * Progress only moves forward, whatever order parallel images finish in
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageGenerationJob j SET j.completedImages = :completed " +
+            "WHERE j.jobId = :jobId AND j.completedImages < :completed")
+    int updateProgress(@Param("jobId") String jobId, @Param("completed") int completed);
+}
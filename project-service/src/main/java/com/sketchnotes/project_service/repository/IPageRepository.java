@@ -2,12 +2,33 @@ package com.sketchnotes.project_service.repository;
 
 import com.sketchnotes.project_service.entity.Page;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IPageRepository extends JpaRepository<Page, Long> {
     List<Page> findByProject_ProjectId(Long projectId);
     List<Page> findByProject_ProjectIdAndDeletedAtIsNullOrderByPageNumberAsc(Long projectId);
-}
\ No newline at end of file
+
+    /**
+     * Detach every page from the project (they stay attached to their version)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Page p SET p.project = null, p.updatedAt = :now WHERE p.project.projectId = :projectId")
+    int detachFromProject(@Param("projectId") Long projectId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT p.strokeUrl FROM Page p WHERE p.projectVersion.projectVersionId IN :versionIds " +
+            "AND p.deletedAt IS NULL AND p.strokeUrl IS NOT NULL AND p.strokeUrl <> ''")
+    List<String> findLiveStrokeUrlsByVersionIds(@Param("versionIds") Collection<Long> versionIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Page p SET p.deletedAt = :now, p.updatedAt = :now " +
+            "WHERE p.projectVersion.projectVersionId IN :versionIds AND p.deletedAt IS NULL")
+    int softDeleteByVersionIds(@Param("versionIds") Collection<Long> versionIds, @Param("now") LocalDateTime now);
+}
@@ -3,8 +3,13 @@ package com.sketchnotes.project_service.repository;
 import com.sketchnotes.project_service.entity.Project;
 import com.sketchnotes.project_service.entity.ProjectVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +18,18 @@ public interface IProjectVersionRepository extends JpaRepository<ProjectVersion,
     List<ProjectVersion> findByProjectAndDeletedAtIsNullOrderByCreatedAtDesc(Project project);
     Long countByProjectAndDeletedAtIsNull(Project project);
     ProjectVersion findFirstByProjectAndDeletedAtIsNullOrderByCreatedAtAsc(Project project);
+
+    @Query("SELECT COALESCE(MAX(v.versionNumber), 0) FROM ProjectVersion v WHERE v.project.projectId = :projectId")
+    long findMaxVersionNumber(@Param("projectId") Long projectId);
+
+    /**
+     * Ids of the live versions older than the newest {@code keep}
+     */
+    @Query(value = "SELECT project_version_id FROM project_version WHERE project_id = :projectId " +
+            "AND deleted_at IS NULL ORDER BY created_at DESC, project_version_id DESC OFFSET :keep", nativeQuery = true)
+    List<Long> findIdsBeyondNewest(@Param("projectId") Long projectId, @Param("keep") int keep);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ProjectVersion v SET v.deletedAt = :now, v.updatedAt = :now WHERE v.projectVersionId IN :ids")
+    int softDeleteByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,64 @@
+package com.sketchnotes.project_service.repository;
+
+import com.sketchnotes.project_service.entity.Page;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Multi-row page inserts over plain JDBC.
+ *
+ * Page ids are IDENTITY, which makes Hibernate insert one row per round trip.
+ * Here the ids are drawn from the column's own sequence in one query, then all
+ * rows go out as a single JDBC batch, so a notebook of any size costs two
+ * statements. Rows written this way are not in the persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PageBatchRepository {
+
+    static final int BATCH_SIZE = 100;
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('page', 'page_id')) FROM generate_series(1, ?)";
+    private static final String INSERT_SQL =
+            "INSERT INTO page (page_id, project_id, project_version_id, page_number, stroke_url, snapshot_url, "
+                    + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert new pages (project and version already persisted); ids and
+     * timestamps are set on the given entities.
+     */
+    public List<Page> insertAll(List<Page> pages) {
+        if (pages.isEmpty()) return pages;
+
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, pages.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            page.setPageId(ids.get(i));
+            page.setCreatedAt(now);
+            page.setUpdatedAt(now);
+        }
+
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_SQL, pages, BATCH_SIZE, (ps, page) -> {
+            ps.setLong(1, page.getPageId());
+            ps.setObject(2, page.getProject() != null ? page.getProject().getProjectId() : null, Types.BIGINT);
+            ps.setObject(3, page.getProjectVersion() != null ? page.getProjectVersion().getProjectVersionId() : null, Types.BIGINT);
+            ps.setInt(4, page.getPageNumber());
+            ps.setString(5, page.getStrokeUrl());
+            ps.setString(6, page.getSnapshotUrl());
+            ps.setTimestamp(7, timestamp);
+            ps.setTimestamp(8, timestamp);
+        });
+        return pages;
+    }
+}
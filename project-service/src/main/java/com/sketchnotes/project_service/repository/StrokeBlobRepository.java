@@ -0,0 +1,194 @@
+package com.sketchnotes.project_service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference counts of stroke blobs (table stroke_blob, see StrokeBlob).
+ *
+ * Counts change through batched upserts and updates, one statement per call
+ * whatever the number of pages, inside the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StrokeBlobRepository {
+
+    private static final String ADD_REFERENCES_SQL =
+            "INSERT INTO stroke_blob (stroke_url, ref_count, created_at, updated_at) VALUES (?, ?, ?, ?) "
+                    + "ON CONFLICT (stroke_url) DO UPDATE SET ref_count = stroke_blob.ref_count + EXCLUDED.ref_count, "
+                    + "unreferenced_at = NULL, delete_attempts = NULL, next_attempt_at = NULL, "
+                    + "updated_at = EXCLUDED.updated_at WHERE stroke_blob.claim_token IS NULL";
+    private static final String REMOVE_REFERENCES_SQL =
+            "UPDATE stroke_blob SET ref_count = GREATEST(ref_count - ?, 0), updated_at = ?, "
+                    + "unreferenced_at = CASE WHEN ref_count - ? <= 0 THEN COALESCE(unreferenced_at, CAST(? AS timestamp)) END "
+                    + "WHERE stroke_url = ?";
+    private static final String TOUCH_SQL =
+            "UPDATE stroke_blob SET unreferenced_at = CASE WHEN ref_count <= 0 THEN CAST(? AS timestamp) END "
+                    + "WHERE stroke_url = ? AND claim_token IS NULL";
+    private static final String CLAIM_UNREFERENCED_SQL =
+            "UPDATE stroke_blob SET claim_token = ?, next_attempt_at = CAST(? AS timestamp) WHERE blob_id IN ("
+                    + "SELECT blob_id FROM stroke_blob WHERE ref_count <= 0 AND unreferenced_at < ? "
+                    + "AND (next_attempt_at IS NULL OR next_attempt_at <= ?) "
+                    + "ORDER BY unreferenced_at LIMIT ? FOR UPDATE SKIP LOCKED) "
+                    + "RETURNING blob_id, stroke_url";
+    private static final String DELETE_CLAIMED_SQL =
+            "DELETE FROM stroke_blob WHERE blob_id = ANY(?) AND claim_token = ?";
+    private static final String POSTPONE_SQL =
+            "UPDATE stroke_blob SET delete_attempts = COALESCE(delete_attempts, 0) + 1, claim_token = NULL, "
+                    + "next_attempt_at = CAST(? AS timestamp) "
+                    + "+ LEAST(?, ? * POWER(2, COALESCE(delete_attempts, 0))) * INTERVAL '1 millisecond' "
+                    + "WHERE blob_id = ANY(?) AND claim_token = ?";
+    private static final String BACKFILL_MARKER_SQL =
+            "CREATE TABLE IF NOT EXISTS stroke_blob_backfill (id SMALLINT PRIMARY KEY, done_at TIMESTAMP NOT NULL)";
+    private static final String BACKFILL_SQL =
+            "INSERT INTO stroke_blob (stroke_url, ref_count, created_at, updated_at) "
+                    + "SELECT stroke_url, COUNT(*), now(), now() FROM page "
+                    + "WHERE deleted_at IS NULL AND stroke_url LIKE ? "
+                    + "GROUP BY stroke_url ON CONFLICT (stroke_url) DO UPDATE SET ref_count = EXCLUDED.ref_count, "
+                    + "unreferenced_at = NULL, delete_attempts = NULL, next_attempt_at = NULL, "
+                    + "updated_at = EXCLUDED.updated_at WHERE stroke_blob.claim_token IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param counts references to add per stroke URL; unknown URLs are registered
+     * @return URLs left unchanged because a collector has claimed them: their
+     *         object is being deleted, so the caller must not reference it
+     */
+    public List<String> addReferences(Map<String, Integer> counts) {
+        if (counts.isEmpty()) return List.of();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        int[][] updated = jdbcTemplate.batchUpdate(ADD_REFERENCES_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey());
+            ps.setInt(2, entry.getValue());
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+        });
+        List<String> claimed = new ArrayList<>();
+        int i = 0;
+        for (int[] batch : updated) {
+            for (int rows : batch) {
+                // Neither inserted nor updated: the conflict row is claimed
+                if (rows == 0) claimed.add(entries.get(i).getKey());
+                i++;
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * @param counts references to drop per stroke URL; URLs never registered are ignored
+     */
+    public void removeReferences(Map<String, Integer> counts) {
+        if (counts.isEmpty()) return;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(REMOVE_REFERENCES_SQL, new ArrayList<>(counts.entrySet()), counts.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setTimestamp(2, now);
+            ps.setInt(3, entry.getValue());
+            ps.setTimestamp(4, now);
+            ps.setString(5, entry.getKey());
+        });
+    }
+
+    /**
+     * Restart the grace period of an unreferenced blob that is about to be reused
+     *
+     * @return false if the blob is not registered (never uploaded or already
+     *         collected) or is being deleted right now
+     */
+    public boolean touch(String strokeUrl) {
+        return jdbcTemplate.update(TOUCH_SQL, Timestamp.valueOf(LocalDateTime.now()), strokeUrl) > 0;
+    }
+
+    /**
+     * Whether a collector holds the blob (its S3 delete may be in flight)
+     */
+    public boolean isClaimed(String strokeUrl) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM stroke_blob WHERE stroke_url = ? AND claim_token IS NOT NULL)",
+                Boolean.class, strokeUrl));
+    }
+
+    /**
+     * Claim up to limit blobs unreferenced since before the cutoff and not waiting
+     * for a retry, for leaseMs. Other collectors skip them until the lease ends,
+     * and saves and presigns that would reference one again are refused until
+     * the claim is settled. Commits at once, so no row lock is held while S3
+     * deletes the blobs.
+     *
+     * @return stroke URL by blob id
+     */
+    public Map<Long, String> claimUnreferenced(String claimToken, LocalDateTime cutoff, int limit, long leaseMs) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, String> blobs = new LinkedHashMap<>();
+        jdbcTemplate.query(CLAIM_UNREFERENCED_SQL, rs -> {
+            blobs.put(rs.getLong(1), rs.getString(2));
+        }, claimToken, Timestamp.valueOf(now.plusNanos(leaseMs * 1_000_000)), Timestamp.valueOf(cutoff),
+                Timestamp.valueOf(now), limit);
+        return blobs;
+    }
+
+    /**
+     * Drop the rows of deleted blobs still held by claimToken (not referenced again meanwhile)
+     */
+    public void deleteClaimed(List<Long> blobIds, String claimToken) {
+        if (blobIds.isEmpty()) return;
+        jdbcTemplate.update(DELETE_CLAIMED_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", blobIds.toArray()));
+            ps.setString(2, claimToken);
+        });
+    }
+
+    /**
+     * Count a failed delete, release the claim and hold the blobs back for
+     * backoffMs, doubled per earlier failure and capped at maxBackoffMs
+     */
+    public void postponeClaimed(List<Long> blobIds, String claimToken, long backoffMs, long maxBackoffMs) {
+        if (blobIds.isEmpty()) return;
+        jdbcTemplate.update(POSTPONE_SQL, ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setLong(2, maxBackoffMs);
+            ps.setLong(3, backoffMs);
+            ps.setArray(4, ps.getConnection().createArrayOf("bigint", blobIds.toArray()));
+            ps.setString(5, claimToken);
+        });
+    }
+
+    /**
+     * Blobs no page references any more, in or past their grace period
+     */
+    public long countUnreferenced() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stroke_blob WHERE ref_count <= 0", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Count the content-addressed stroke URLs (starting with urlPrefix) of
+     * existing live pages, once per database: the first
+     * caller records the marker in stroke_blob_backfill, later ones (any node)
+     * find it and do nothing. Must run in a transaction.
+     *
+     * Saves are held off meanwhile (table lock), so the counts, taken from the
+     * live pages, replace whatever saves registered before the backfill.
+     *
+     * @return blobs counted, 0 if the backfill already ran
+     */
+    public int backfillOnce(String urlPrefix) {
+        jdbcTemplate.execute(BACKFILL_MARKER_SQL);
+        int claimed = jdbcTemplate.update(
+                "INSERT INTO stroke_blob_backfill (id, done_at) VALUES (1, now()) ON CONFLICT (id) DO NOTHING");
+        if (claimed == 0) return 0;
+        jdbcTemplate.execute("LOCK TABLE stroke_blob IN SHARE ROW EXCLUSIVE MODE");
+        return jdbcTemplate.update(BACKFILL_SQL, urlPrefix + "%");
+    }
+}
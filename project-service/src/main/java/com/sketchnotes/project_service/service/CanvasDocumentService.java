@@ -0,0 +1,565 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.CanvasOpReplay;
+import com.sketchnotes.project_service.dtos.socket.CanvasSnapshot;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * CANVAS DOCUMENT SERVICE
+ * =============================================================================
+ *
+ * Server-side element model per project, maintained incrementally from the
+ * collaboration ops (ELEMENT_CREATE/UPDATE/DELETE, STROKE_END, CANVAS_CLEAR,
+ * PAGE_DELETE) so SYNC_REQUEST can be answered from memory.
+ *
+ * Each op bumps the project version and mutates the document under the
+ * document's monitor, so a snapshot always matches exactly one version.
+ * Stored element maps are never mutated in place (updates copy-on-write), which
+ * lets a snapshot share them with the broadcast lanes without copying.
+ *
+ * The model is node-local and starts empty when a project is first touched;
+ * {@link CanvasSnapshot#getBaseVersion()} tells clients which edits are only
+ * in the persisted pages.
+ *
+ * Being node-local, the model only sees every op of a project on a single node
+ * (collaboration.state-store=memory, collaboration.broker.mode=simple). With a
+ * shared store or broker the version is global while each node only sees its
+ * own clients' ops, so no model is kept: ops only bump the version, replaySince
+ * always asks for a snapshot and the snapshot has no pages and a base version
+ * equal to the current one, i.e. clients load everything from the persisted
+ * pages, as before the model existed.
+ *
+ * Each applied op is also kept, serialized once, in a per-project ring buffer
+ * bounded by count and by size, so a reconnecting client that knows its last
+ * version can be sent only the ops it missed.
+ *
+ * Every logged op is also appended to the CanvasOpJournal. A document created
+ * after a restart (or an idle eviction) is rebuilt from the last snapshot the
+ * CanvasSnapshotCompactor stored plus a replay of the journal after it. The
+ * rebuild runs on a "canvas-recovery" thread, started by warm() when a session
+ * subscribes to the project; ops that arrive before it finishes wait for it
+ * without holding the document's monitor.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CanvasDocumentService {
+
+    private final ICollaborationStateStore stateStore;
+    private final ObjectMapper objectMapper;
+    private final CanvasOpJournal journal;
+    private final IStorageService storageService;
+
+    private static final TypeReference<Map<String, Object>> JSON_MAP = new TypeReference<>() {
+    };
+    private static final long IDLE_DOCUMENT_EVICT_MS = 30 * 60_000;
+    // Op log bounds per project; older ops fall back to a full snapshot
+    private static final int OP_LOG_MAX_OPS = 1000;
+    private static final long OP_LOG_MAX_CHARS = 1024 * 1024;
+    private static final int RECOVERY_THREADS = 2;
+    private static final CompletableFuture<Void> RECOVERED = CompletableFuture.completedFuture(null);
+
+    private final ConcurrentHashMap<Long, CanvasDocument> documents = new ConcurrentHashMap<>();
+
+    @Value("${collaboration.state-store:memory}")
+    private String stateStoreMode = "memory";
+    @Value("${collaboration.broker.mode:simple}")
+    private String brokerMode = "simple";
+
+    private ScheduledExecutorService reaper;
+    private ExecutorService recoveryPool;
+
+    // ==========================================================================
+    // LIFECYCLE
+    // ==========================================================================
+
+    @PostConstruct
+    public void init() {
+        if (!isSingleNode()) {
+            log.warn("[CanvasDocument] No server-side model: state-store={} broker.mode={} are shared, "
+                    + "SYNC falls back to the persisted pages", stateStoreMode, brokerMode);
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "canvas-document-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleAtFixedRate(this::evictIdleDocuments, 5, 5, TimeUnit.MINUTES);
+
+        AtomicInteger threads = new AtomicInteger();
+        recoveryPool = Executors.newFixedThreadPool(RECOVERY_THREADS, r -> {
+            Thread t = new Thread(r, "canvas-recovery-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (recoveryPool != null) {
+            recoveryPool.shutdownNow();
+        }
+    }
+
+    // ==========================================================================
+    // PUBLIC API
+    // ==========================================================================
+
+    /**
+     * Start loading the project's document in the background if it is not in
+     * memory, so the first op on it does not wait for the snapshot and replay
+     */
+    public void warm(Long projectId) {
+        if (isSingleNode()) {
+            document(projectId);
+        }
+    }
+
+    /**
+     * Apply a state-changing op, bump the project version and record the op.
+     * The version is written into the message before it is logged.
+     *
+     * @return the version assigned to the op
+     */
+    public long apply(Long projectId, Map<String, Object> message) {
+        if (!isSingleNode()) {
+            return bumpVersion(projectId, message);
+        }
+        return withDocument(projectId, document -> {
+            long version = stateStore.incrementVersion(projectId);
+            if (message.get("payload") instanceof Map<?, ?> p) {
+                document.apply((String) message.get("type"), p);
+            }
+            record(projectId, document, version, message);
+            return version;
+        });
+    }
+
+    /**
+     * Commit a finished stroke as an element and bump the project version. The
+     * element comes from the STROKE_END payload when the client sends one,
+     * otherwise it is rebuilt from the active stroke the server tracked.
+     *
+     * @return the version assigned to the op
+     */
+    public long applyStrokeEnd(Long projectId, Map<String, Object> message, ActiveStroke stroke) {
+        if (!isSingleNode()) {
+            return bumpVersion(projectId, message);
+        }
+        return withDocument(projectId, document -> {
+            long version = stateStore.incrementVersion(projectId);
+            Map<?, ?> p = message.get("payload") instanceof Map<?, ?> map ? map : Map.of();
+            Map<String, Object> element = null;
+            if (p.get("element") instanceof Map<?, ?> e) {
+                element = copy(e);
+                document.put(p.get("pageId") != null ? p.get("pageId") : e.get("pageId"), element);
+            } else if (stroke != null) {
+                element = strokeElement(stroke);
+                document.put(stroke.getPageId(), element);
+            }
+            // Log the committed element with the op, replaying a bare STROKE_END
+            // would lose points the reconnecting client never received
+            Map<String, Object> logged = message;
+            if (element != null && !(p.get("element") instanceof Map)) {
+                Map<String, Object> payload = new HashMap<>();
+                p.forEach((key, value) -> payload.put(String.valueOf(key), value));
+                payload.put("element", element);
+                logged = new HashMap<>(message);
+                logged.put("payload", payload);
+            }
+            record(projectId, document, version, logged);
+            message.put("version", version);
+            return version;
+        });
+    }
+
+    /**
+     * Ops applied after {@code fromVersion}, if the op log still covers all of them.
+     *
+     * @return the missed ops in version order, or null when a full snapshot is needed
+     */
+    public CanvasOpReplay replaySince(Long projectId, long fromVersion) {
+        if (!isSingleNode()) {
+            return null;
+        }
+        return withDocument(projectId, document -> {
+            if (fromVersion < document.baseVersion || fromVersion > document.version) {
+                return null;
+            }
+            List<Object> ops = new ArrayList<>();
+            for (LoggedOp op : document.opLog) {
+                if (op.version() > fromVersion) {
+                    ops.add(new RawValue(op.json()));
+                }
+            }
+            // Evicted or never seen (another node bumped the version): not contiguous
+            if (ops.size() != document.version - fromVersion) {
+                return null;
+            }
+            return new CanvasOpReplay(fromVersion, document.version, ops);
+        });
+    }
+
+    /**
+     * @return a snapshot of the project's elements, grouped by page in insertion order
+     */
+    public CanvasSnapshot snapshot(Long projectId) {
+        if (!isSingleNode()) {
+            long version = stateStore.currentVersion(projectId);
+            return new CanvasSnapshot(version, version, List.of());
+        }
+        return withDocument(projectId, document -> {
+            List<CanvasSnapshot.Page> pages = new ArrayList<>(document.pages.size());
+            document.pages.values().forEach(page ->
+                pages.add(new CanvasSnapshot.Page(page.pageId, new ArrayList<>(page.elements.values()))));
+            return new CanvasSnapshot(document.version, document.baseVersion, pages);
+        });
+    }
+
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    // ==========================================================================
+    // INTERNALS
+    // ==========================================================================
+
+    /**
+     * True when this node sees every op of its projects, so its model is complete
+     */
+    private boolean isSingleNode() {
+        return "memory".equalsIgnoreCase(stateStoreMode) && "simple".equalsIgnoreCase(brokerMode);
+    }
+
+    private long bumpVersion(Long projectId, Map<String, Object> message) {
+        long version = stateStore.incrementVersion(projectId);
+        message.put("version", version);
+        return version;
+    }
+
+    private <T> T withDocument(Long projectId, Function<CanvasDocument, T> action) {
+        while (true) {
+            CanvasDocument document = document(projectId);
+            // Parked until the document is rebuilt; recovery never fails, it starts empty instead
+            document.recovery.join();
+            synchronized (document) {
+                // Lost a race with the reaper: retry on the replacement document
+                if (document.evicted) continue;
+                document.lastActivity = System.currentTimeMillis();
+                return action.apply(document);
+            }
+        }
+    }
+
+    private CanvasDocument document(Long projectId) {
+        return documents.computeIfAbsent(projectId, id -> {
+            CanvasDocument document = new CanvasDocument(stateStore.currentVersion(id));
+            document.recovery = journal.isEnabled()
+                    ? CompletableFuture.runAsync(() -> recover(id, document), recoveryPool)
+                    : RECOVERED;
+            return document;
+        });
+    }
+
+    private void evictIdleDocuments() {
+        long threshold = System.currentTimeMillis() - IDLE_DOCUMENT_EVICT_MS;
+        documents.forEach((projectId, document) ->
+            documents.computeIfPresent(projectId, (id, d) -> {
+                synchronized (d) {
+                    d.evicted = d.lastActivity < threshold;
+                    return d.evicted ? null : d;
+                }
+            }));
+        log.debug("[CanvasDocument] {} documents in memory", documents.size());
+    }
+
+    private void record(Long projectId, CanvasDocument document, long version, Map<String, Object> message) {
+        document.version = version;
+        message.put("version", version);
+        try {
+            String json = objectMapper.writeValueAsString(message);
+            logOp(document, version, json);
+            journal.append(projectId, version, json);
+        } catch (JsonProcessingException e) {
+            // A hole in the log would make replays wrong: force snapshots instead
+            log.warn("[CanvasDocument] Could not log op {} of project {}: {}", version, projectId, e.getMessage());
+            document.opLog.clear();
+            document.opLogChars = 0;
+        }
+    }
+
+    private static void logOp(CanvasDocument document, long version, String json) {
+        document.opLog.addLast(new LoggedOp(version, json));
+        document.opLogChars += json.length();
+        while (document.opLog.size() > OP_LOG_MAX_OPS || document.opLogChars > OP_LOG_MAX_CHARS) {
+            document.opLogChars -= document.opLog.removeFirst().json().length();
+        }
+    }
+
+    // ==========================================================================
+    // RECOVERY
+    // ==========================================================================
+
+    /**
+     * Rebuild a new document from the last checkpoint snapshot and the journal
+     * ops after it, then make sure the version counter is past them. Runs once
+     * per document on a recovery thread. If the snapshot cannot be read the
+     * document starts empty, as it did before journaling.
+     */
+    private void recover(Long projectId, CanvasDocument document) {
+        synchronized (document) {
+            recoverLocked(projectId, document);
+        }
+    }
+
+    private void recoverLocked(Long projectId, CanvasDocument document) {
+        long initialVersion = document.version;
+        try {
+            CanvasOpJournal.Checkpoint checkpoint = journal.getCheckpoint(projectId);
+            long from = 0;
+            if (checkpoint != null) {
+                loadSnapshot(document, objectMapper.readValue(storageService.downloadFile(checkpoint.snapshotUrl()), JSON_MAP));
+                document.baseVersion = checkpoint.baseVersion();
+                document.version = checkpoint.version();
+                from = checkpoint.version();
+            }
+            int replayed = journal.replay(projectId, from, (version, json) -> replay(document, version, json));
+            if (checkpoint == null && replayed == 0) {
+                document.version = initialVersion;
+                return;
+            }
+            document.version = Math.max(document.version, initialVersion);
+            stateStore.advanceVersion(projectId, document.version);
+            log.info("[CanvasDocument] Recovered project {} at version {} ({} ops replayed{})", projectId,
+                    document.version, replayed, checkpoint != null ? " after snapshot v" + checkpoint.version() : "");
+        } catch (Exception e) {
+            log.warn("[CanvasDocument] Could not recover project {}, starting empty: {}", projectId, e.getMessage());
+            document.reset(initialVersion);
+        }
+    }
+
+    private void loadSnapshot(CanvasDocument document, Map<String, Object> snapshot) {
+        if (!(snapshot.get("pages") instanceof List<?> pages)) return;
+        for (Object page : pages) {
+            if (page instanceof Map<?, ?> p && p.get("elements") instanceof List<?> elements) {
+                for (Object element : elements) {
+                    if (element instanceof Map<?, ?> e) {
+                        document.put(p.get("pageId"), copy(e));
+                    }
+                }
+            }
+        }
+    }
+
+    private void replay(CanvasDocument document, long version, String json) {
+        try {
+            Map<String, Object> op = objectMapper.readValue(json, JSON_MAP);
+            if (op.get("type") instanceof String type && op.get("payload") instanceof Map<?, ?> p) {
+                document.apply(type, p);
+            }
+            if (document.version == document.baseVersion && document.opLog.isEmpty()) {
+                // No snapshot: the journal starts at this op
+                document.baseVersion = version - 1;
+            }
+            document.version = version;
+            logOp(document, version, json);
+        } catch (JsonProcessingException e) {
+            log.warn("[CanvasDocument] Skipping unreadable journaled op {}: {}", version, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> strokeElement(ActiveStroke stroke) {
+        Map<String, Object> element = new LinkedHashMap<>();
+        element.put("id", stroke.getStrokeId());
+        element.put("type", "stroke");
+        element.put("userId", stroke.getUserId());
+        element.put("pageId", stroke.getPageId());
+        element.put("tool", stroke.getTool() != null ? stroke.getTool() : "pen");
+        element.put("color", stroke.getColor() != null ? stroke.getColor() : "#000000");
+        element.put("strokeWidth", stroke.getStrokeWidth() != null ? stroke.getStrokeWidth() : 2);
+        element.put("points", stroke.getCompressedPoints());
+        return element;
+    }
+
+    private static Map<String, Object> copy(Map<?, ?> source) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        source.forEach((key, value) -> copy.put(String.valueOf(key), value));
+        return copy;
+    }
+
+    private static String elementId(Map<?, ?> element) {
+        Object id = element.get("id") != null ? element.get("id") : element.get("elementId");
+        return id != null ? id.toString() : null;
+    }
+
+    /**
+     * Elements of one project; every access holds the document's monitor.
+     */
+    private static final class CanvasDocument {
+        private long baseVersion;
+        private long version;
+        private long lastActivity = System.currentTimeMillis();
+        private boolean evicted;
+        // Completes once the document is rebuilt (at once when there is no journal)
+        private CompletableFuture<Void> recovery = RECOVERED;
+        // page key -> page, in creation order
+        private final Map<String, PageElements> pages = new LinkedHashMap<>();
+        // elementId -> page key, so updates/deletes without pageId find their page
+        private final Map<String, String> elementPages = new HashMap<>();
+        // Recent ops in version order, serialized once
+        private final ArrayDeque<LoggedOp> opLog = new ArrayDeque<>();
+        private long opLogChars;
+
+        CanvasDocument(long baseVersion) {
+            this.baseVersion = baseVersion;
+            this.version = baseVersion;
+        }
+
+        void reset(long baseVersion) {
+            this.baseVersion = baseVersion;
+            this.version = baseVersion;
+            pages.clear();
+            elementPages.clear();
+            opLog.clear();
+            opLogChars = 0;
+        }
+
+        void apply(String type, Map<?, ?> p) {
+            switch (type) {
+                case "ELEMENT_CREATE" -> {
+                    if (p.get("element") instanceof Map<?, ?> e) {
+                        put(p.get("pageId") != null ? p.get("pageId") : e.get("pageId"), copy(e));
+                    }
+                }
+                // Journal replay only: live strokes are committed by applyStrokeEnd
+                case "STROKE_END" -> {
+                    if (p.get("element") instanceof Map<?, ?> e) {
+                        put(p.get("pageId") != null ? p.get("pageId") : e.get("pageId"), copy(e));
+                    }
+                }
+                case "ELEMENT_UPDATE" -> update(p);
+                case "ELEMENT_DELETE" -> {
+                    if (p.get("elementIds") instanceof List<?> ids) {
+                        ids.forEach(id -> remove(String.valueOf(id)));
+                    } else if (p.get("elementId") != null) {
+                        remove(p.get("elementId").toString());
+                    }
+                }
+                case "CANVAS_CLEAR" -> {
+                    if (p.get("pageId") != null) {
+                        clearPage(String.valueOf(p.get("pageId")));
+                    } else {
+                        pages.clear();
+                        elementPages.clear();
+                    }
+                }
+                case "PAGE_DELETE" -> {
+                    if (p.get("pageId") != null) {
+                        clearPage(String.valueOf(p.get("pageId")));
+                        pages.remove(String.valueOf(p.get("pageId")));
+                    }
+                }
+                default -> {
+                    // Page create/update carry no elements
+                }
+            }
+        }
+
+        void put(Object pageId, Map<String, Object> element) {
+            String elementId = elementId(element);
+            if (elementId == null) return;
+
+            String pageKey = String.valueOf(pageId);
+            String previousPage = elementPages.put(elementId, pageKey);
+            if (previousPage != null && !previousPage.equals(pageKey)) {
+                PageElements previous = pages.get(previousPage);
+                if (previous != null) previous.elements.remove(elementId);
+            }
+            pages.computeIfAbsent(pageKey, k -> new PageElements(pageId)).elements.put(elementId, element);
+        }
+
+        void update(Map<?, ?> p) {
+            Object id = p.get("elementId");
+            if (id == null && p.get("element") instanceof Map<?, ?> e) {
+                id = elementId(e);
+            }
+            if (id == null) return;
+
+            String elementId = id.toString();
+            String pageKey = elementPages.get(elementId);
+            PageElements page = pageKey != null ? pages.get(pageKey) : null;
+            Map<String, Object> current = page != null ? page.elements.get(elementId) : null;
+
+            if (p.get("element") instanceof Map<?, ?> replacement) {
+                Map<String, Object> element = copy(replacement);
+                element.putIfAbsent("id", elementId);
+                put(p.get("pageId") != null ? p.get("pageId") : page != null ? page.pageId : replacement.get("pageId"), element);
+                return;
+            }
+            if (current == null) return;
+
+            Object changes = p.get("changes") != null ? p.get("changes") : p.get("updates");
+            if (changes instanceof Map<?, ?> c) {
+                Map<String, Object> element = new LinkedHashMap<>(current);
+                c.forEach((key, value) -> element.put(String.valueOf(key), value));
+                page.elements.put(elementId, element);
+            }
+        }
+
+        void remove(String elementId) {
+            String pageKey = elementPages.remove(elementId);
+            PageElements page = pageKey != null ? pages.get(pageKey) : null;
+            if (page != null) page.elements.remove(elementId);
+        }
+
+        void clearPage(String pageKey) {
+            PageElements page = pages.get(pageKey);
+            if (page == null) return;
+            page.elements.keySet().forEach(elementPages::remove);
+            page.elements.clear();
+        }
+    }
+
+    private record LoggedOp(long version, String json) {
+    }
+
+    private static final class PageElements {
+        private final Object pageId;
+        private final LinkedHashMap<String, Map<String, Object>> elements = new LinkedHashMap<>();
+
+        PageElements(Object pageId) {
+            this.pageId = pageId;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.sketchnotes.project_service.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationJournalProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * CANVAS OP JOURNAL
+ * =============================================================================
+ *
+ * Append-only log of the versioned collaboration ops of each project, so a
+ * restart replays the canvas instead of losing every unsaved change.
+ *
+ * Layout under collaboration.journal.directory:
+ * - {projectId}/{firstVersion}.log   segment files, one "version\tjson" line per op
+ * - {projectId}/checkpoint.json      last snapshot written by CanvasSnapshotCompactor
+ *
+ * Appends go to the page cache and are forced to disk in groups every
+ * fsync-interval-ms by the "op-journal-flusher" thread, so the op path never
+ * waits for the disk. A checkpoint deletes the segments it fully covers.
+ * Projects without appends for IDLE_CLOSE_MS have their segment closed and,
+ * once every op is checkpointed, their index dropped from memory; the next
+ * use reloads it from disk.
+ *
+ * The journal is node-local, like the CanvasDocumentService model it feeds, so
+ * it only runs on a single node (collaboration.state-store=memory and
+ * collaboration.broker.mode=simple): with a shared store or broker the versions
+ * are global and a replay on another node would miss this node's ops.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CanvasOpJournal {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+    // Segment handles of projects without appends for this long are closed
+    private static final long IDLE_CLOSE_MS = 5 * 60_000;
+
+    private final CollaborationJournalProperties properties;
+    private final ObjectMapper objectMapper;
+
+    @Value("${collaboration.state-store:memory}")
+    private String stateStore = "memory";
+    @Value("${collaboration.broker.mode:simple}")
+    private String brokerMode = "simple";
+    private boolean active;
+
+    private final ConcurrentHashMap<Long, ProjectJournal> journals = new ConcurrentHashMap<>();
+
+    private Path root;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Snapshot of the project at {@code version}, stored at {@code snapshotUrl}
+     */
+    public record Checkpoint(long version, long baseVersion, String snapshotUrl) {
+    }
+
+    @FunctionalInterface
+    private interface JournalAction<T> {
+        T apply(ProjectJournal journal) throws IOException;
+    }
+
+    // ==========================================================================
+    // LIFECYCLE
+    // ==========================================================================
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled()) {
+            log.info("[OpJournal] Disabled, canvas ops are kept in memory only");
+            return;
+        }
+        if (!"memory".equalsIgnoreCase(stateStore)) {
+            log.warn("[OpJournal] Disabled: the journal is node-local but collaboration.state-store={} is shared",
+                    stateStore);
+            return;
+        }
+        if (!"simple".equalsIgnoreCase(brokerMode)) {
+            log.warn("[OpJournal] Disabled: the journal is node-local but collaboration.broker.mode={} is shared",
+                    brokerMode);
+            return;
+        }
+        active = true;
+        root = Paths.get(properties.getDirectory());
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                Long projectId = parseLong(dir.getFileName().toString());
+                if (projectId != null) {
+                    journals.put(projectId, load(dir));
+                }
+            }
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "op-journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, properties.getFsyncIntervalMs(),
+                properties.getFsyncIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("[OpJournal] Journaling canvas ops to {} ({} projects on disk)", root.toAbsolutePath(), journals.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+        journals.values().forEach(journal -> {
+            synchronized (journal) {
+                journal.closeActive();
+            }
+        });
+    }
+
+    // ==========================================================================
+    // PUBLIC API
+    // ==========================================================================
+
+    public boolean isEnabled() {
+        return active;
+    }
+
+    /**
+     * Append one op. Failures are logged, not thrown: a broken disk must not
+     * stop live collaboration.
+     */
+    public void append(Long projectId, long version, String json) {
+        if (!isEnabled()) return;
+        try {
+            withJournal(projectId, journal -> {
+                journal.append(version, json, properties.getSegmentMaxBytes());
+                return null;
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("[OpJournal] Could not journal op {} of project {}: {}", version, projectId, e.getMessage());
+        }
+    }
+
+    /**
+     * Feed every journaled op with a version above {@code afterVersion} to the
+     * consumer, in append order
+     *
+     * @return the number of ops replayed
+     */
+    public int replay(Long projectId, long afterVersion, BiConsumer<Long, String> consumer) throws IOException {
+        if (!isEnabled()) return 0;
+        return withJournal(projectId, journal -> {
+            int replayed = 0;
+            for (Path segment : journal.segments.values()) {
+                try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int tab = line.indexOf('\t');
+                        Long version = tab > 0 ? parseLong(line.substring(0, tab)) : null;
+                        if (version != null && version > afterVersion) {
+                            consumer.accept(version, line.substring(tab + 1));
+                            replayed++;
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("[OpJournal] Could not read segment {}: {}", segment, e.getMessage());
+                }
+            }
+            return replayed;
+        });
+    }
+
+    public Checkpoint getCheckpoint(Long projectId) throws IOException {
+        if (!isEnabled()) return null;
+        return withJournal(projectId, journal -> journal.checkpoint);
+    }
+
+    /**
+     * Record a snapshot and delete the segments whose ops it covers. The
+     * checkpoint file is replaced atomically, so a crash leaves the old or the
+     * new checkpoint, never a torn one.
+     */
+    public void checkpoint(Long projectId, Checkpoint checkpoint) throws IOException {
+        withJournal(projectId, journal -> {
+            Path tmp = journal.dir.resolve(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(checkpoint)));
+                channel.force(true);
+            }
+            Files.move(tmp, journal.dir.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.checkpoint = checkpoint;
+            journal.dropSegmentsThrough(checkpoint.version());
+            return null;
+        });
+    }
+
+    /**
+     * Projects whose journal is loaded on this node (every project with ops not
+     * yet checkpointed)
+     */
+    public Set<Long> getProjectIds() {
+        return journals.keySet();
+    }
+
+    /**
+     * Journaled versions past the last checkpoint
+     */
+    public long getPendingOps(Long projectId) {
+        ProjectJournal journal = journals.get(projectId);
+        if (journal == null) return 0;
+        synchronized (journal) {
+            return journal.pendingOps();
+        }
+    }
+
+    public long getLastAppendAt(Long projectId) {
+        ProjectJournal journal = journals.get(projectId);
+        return journal != null ? journal.lastAppendAt : 0;
+    }
+
+    // ==========================================================================
+    // INTERNALS
+    // ==========================================================================
+
+    /**
+     * Run action under the project's journal monitor, loading the journal from
+     * disk if it was dropped (or never loaded)
+     */
+    private <T> T withJournal(Long projectId, JournalAction<T> action) throws IOException {
+        while (true) {
+            ProjectJournal journal = journals.computeIfAbsent(projectId, this::loadOrCreate);
+            synchronized (journal) {
+                // Lost a race with the idle eviction: retry on a fresh load
+                if (journal.evicted) continue;
+                return action.apply(journal);
+            }
+        }
+    }
+
+    private ProjectJournal loadOrCreate(Long projectId) {
+        Path dir = root.resolve(String.valueOf(projectId));
+        if (!Files.isDirectory(dir)) {
+            return new ProjectJournal(dir);
+        }
+        try {
+            return load(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() {
+        flush(System.currentTimeMillis());
+    }
+
+    /**
+     * Group commit: force every segment written since the last pass. The
+     * channel is forced outside the journal monitor so appends never wait for
+     * the disk. Idle segments are closed, and idle journals with nothing left
+     * to checkpoint are dropped from memory.
+     */
+    void flush(long now) {
+        journals.forEach((projectId, journal) -> {
+            FileChannel dirty;
+            synchronized (journal) {
+                dirty = journal.dirty ? journal.active : null;
+                journal.dirty = false;
+                if (dirty == null && journal.active != null && now - journal.lastAppendAt > IDLE_CLOSE_MS) {
+                    journal.closeActive();
+                }
+            }
+            if (dirty != null) {
+                try {
+                    dirty.force(false);
+                } catch (ClosedChannelException e) {
+                    // Rolled or checkpointed meanwhile; closing already flushed it
+                } catch (IOException e) {
+                    log.warn("[OpJournal] fsync failed for project {}: {}", projectId, e.getMessage());
+                }
+            }
+            journals.computeIfPresent(projectId, (id, j) -> {
+                synchronized (j) {
+                    j.evicted = j.active == null && now - j.lastAppendAt > IDLE_CLOSE_MS && j.pendingOps() == 0;
+                    return j.evicted ? null : j;
+                }
+            });
+        });
+    }
+
+    private ProjectJournal load(Path dir) throws IOException {
+        ProjectJournal journal = new ProjectJournal(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                Long first = name.endsWith(SEGMENT_SUFFIX)
+                        ? parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) : null;
+                if (first != null) {
+                    journal.segments.put(first, file);
+                }
+            }
+        }
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            journal.checkpoint = objectMapper.readValue(checkpoint.toFile(), Checkpoint.class);
+        }
+        if (!journal.segments.isEmpty()) {
+            Path last = journal.segments.lastEntry().getValue();
+            truncateTornTail(last);
+            journal.lastVersion = lastVersion(last, journal.segments.lastKey() - 1);
+            journal.lastAppendAt = Files.getLastModifiedTime(last).toMillis();
+        }
+        return journal;
+    }
+
+    /**
+     * Cut a partial last line left by a crash mid-append
+     */
+    private static void truncateTornTail(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long end = size;
+            while (end > 0) {
+                one.clear();
+                channel.read(one, end - 1);
+                if (one.get(0) == '\n') break;
+                end--;
+            }
+            if (end < size) {
+                log.warn("[OpJournal] Truncating {} torn bytes at the end of {}", size - end, segment);
+                channel.truncate(end);
+            }
+        }
+    }
+
+    private static long lastVersion(Path segment, long fallback) throws IOException {
+        long last = fallback;
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                Long version = tab > 0 ? parseLong(line.substring(0, tab)) : null;
+                if (version != null) last = version;
+            }
+        }
+        return last;
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Segments and checkpoint of one project; every access holds its monitor.
+     */
+    private static final class ProjectJournal {
+        private final Path dir;
+        // first version -> segment file; every op of a segment is below the next one's key
+        private final TreeMap<Long, Path> segments = new TreeMap<>();
+        private FileChannel active;
+        private long activeBytes;
+        private long lastVersion;
+        private long lastAppendAt;
+        private boolean dirty;
+        private boolean evicted;
+        private Checkpoint checkpoint;
+
+        ProjectJournal(Path dir) {
+            this.dir = dir;
+        }
+
+        long firstVersion() {
+            return segments.isEmpty() ? lastVersion + 1 : segments.firstKey();
+        }
+
+        long pendingOps() {
+            long checkpointed = checkpoint != null ? checkpoint.version() : firstVersion() - 1;
+            return Math.max(0, lastVersion - checkpointed);
+        }
+
+        void append(long version, String json, long segmentMaxBytes) throws IOException {
+            if (active != null && activeBytes >= segmentMaxBytes) {
+                closeActive();
+            }
+            if (active == null) {
+                open(version, segmentMaxBytes);
+            }
+            ByteBuffer line = ByteBuffer.wrap((version + "\t" + json + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                activeBytes += active.write(line);
+            }
+            lastVersion = version;
+            lastAppendAt = System.currentTimeMillis();
+            dirty = true;
+        }
+
+        /**
+         * Reopen the last segment while it has room, otherwise start a new one
+         */
+        private void open(long version, long segmentMaxBytes) throws IOException {
+            Files.createDirectories(dir);
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            Path segment;
+            if (last != null && Files.exists(last.getValue()) && Files.size(last.getValue()) < segmentMaxBytes) {
+                segment = last.getValue();
+            } else {
+                segment = dir.resolve(String.format("%020d%s", version, SEGMENT_SUFFIX));
+                segments.put(version, segment);
+            }
+            active = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            activeBytes = active.size();
+        }
+
+        void closeActive() {
+            if (active == null) return;
+            try {
+                active.force(false);
+                active.close();
+            } catch (IOException e) {
+                log.warn("[OpJournal] Could not close segment in {}: {}", dir, e.getMessage());
+            }
+            active = null;
+            dirty = false;
+        }
+
+        void dropSegmentsThrough(long version) {
+            List<Long> covered = new ArrayList<>();
+            Long previous = null;
+            for (Long first : segments.keySet()) {
+                if (previous != null && first - 1 <= version) covered.add(previous);
+                previous = first;
+            }
+            if (previous != null && lastVersion <= version) {
+                closeActive();
+                covered.add(previous);
+            }
+            for (Long first : covered) {
+                Path segment = segments.remove(first);
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException e) {
+                    log.warn("[OpJournal] Could not delete compacted segment {}: {}", segment, e.getMessage());
+                }
+            }
+        }
+    }
+}
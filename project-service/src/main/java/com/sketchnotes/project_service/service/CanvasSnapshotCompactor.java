@@ -0,0 +1,111 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationJournalProperties;
+import com.sketchnotes.project_service.dtos.socket.CanvasSnapshot;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * CANVAS SNAPSHOT COMPACTOR
+ * =============================================================================
+ *
+ * Folds the op journal into snapshots: the project's current canvas is written
+ * to S3 as one JSON object (same shape as the SYNC snapshot, pages with their
+ * elements), checkpointed in the journal, and the segments it covers are
+ * deleted. Recovery then downloads one snapshot and replays only the tail.
+ *
+ * A project is compacted once it has compact-min-ops journaled ops past its
+ * last snapshot, or any ops and no activity for compact-idle-ms.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CanvasSnapshotCompactor {
+
+    private static final String SNAPSHOT_PREFIX = "collab-snapshots/";
+
+    private final CanvasOpJournal journal;
+    private final CanvasDocumentService canvasDocumentService;
+    private final IStorageService storageService;
+    private final ObjectMapper objectMapper;
+    private final CollaborationJournalProperties properties;
+
+    private ScheduledExecutorService compactor;
+
+    @PostConstruct
+    public void init() {
+        if (!journal.isEnabled()) return;
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "canvas-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactDue, properties.getCompactIntervalMs(),
+                properties.getCompactIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    /**
+     * One compaction pass; returns the number of projects snapshotted
+     */
+    public int compactDue() {
+        long now = System.currentTimeMillis();
+        int compacted = 0;
+        for (Long projectId : journal.getProjectIds()) {
+            long pending = journal.getPendingOps(projectId);
+            boolean idle = now - journal.getLastAppendAt(projectId) >= properties.getCompactIdleMs();
+            if (pending > 0 && (pending >= properties.getCompactMinOps() || idle) && compact(projectId)) {
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Snapshot one project now
+     *
+     * @return false when there was nothing new or the snapshot could not be stored
+     */
+    public boolean compact(Long projectId) {
+        try {
+            CanvasOpJournal.Checkpoint previous = journal.getCheckpoint(projectId);
+            CanvasSnapshot snapshot = canvasDocumentService.snapshot(projectId);
+            if (previous != null && snapshot.getVersion() <= previous.version()) {
+                return false;
+            }
+
+            String key = SNAPSHOT_PREFIX + projectId + "/v" + snapshot.getVersion() + ".json";
+            String url = storageService.uploadFile(key, objectMapper.writeValueAsBytes(snapshot), "application/json");
+            journal.checkpoint(projectId, new CanvasOpJournal.Checkpoint(snapshot.getVersion(), snapshot.getBaseVersion(), url));
+
+            // Only once the new checkpoint is durable
+            if (previous != null && !previous.snapshotUrl().equals(url)) {
+                storageService.deleteFile(previous.snapshotUrl());
+            }
+            log.info("📸 [Compactor] Project {} snapshotted at version {} ({} elements)", projectId,
+                    snapshot.getVersion(), snapshot.getElementCount());
+            return true;
+        } catch (Exception e) {
+            // Journal segments stay until a snapshot succeeds
+            log.warn("⚠️ [Compactor] Snapshot of project {} failed: {}", projectId, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.sketchnotes.project_service.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sketchnotes.project_service.client.IUserClient;
+import com.sketchnotes.project_service.config.PrincipalProperties;
+import com.sketchnotes.project_service.dtos.ApiResponse;
+import com.sketchnotes.project_service.dtos.response.UserResponse;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * CURRENT USER RESOLVER
+ * =============================================================================
+ *
+ * The caller's internal user, from the JWT Spring Security already validated,
+ * instead of a Feign call to identity-service /api/users/me per use:
+ * 1. user-id-claim is set (opt-in) and the token carries it: the profile is
+ *    read from its claims, without checking the user is still active
+ * 2. the Keycloak subject is in the local cache (TTL, bounded)
+ * 3. otherwise one /api/users/me call, cached; an unknown subject is cached as
+ *    absent for negative-ttl-ms so retries do not reach identity-service either
+ *
+ * Entries are dropped when identity-service publishes a changed user on
+ * invalidation-channel. Metrics: principal.resolutions{source=claims|cache|remote},
+ * principal.unknown (subjects identity-service does not know) and, per HTTP
+ * request, principal.remote.calls.saved (see CurrentUserMetricsFilter).
+ */
+@Slf4j
+@Component
+public class CurrentUserResolver implements MessageListener {
+
+    /**
+     * Request attribute counting resolutions served without a remote call
+     */
+    public static final String CALLS_SAVED_ATTRIBUTE = CurrentUserResolver.class.getName() + ".callsSaved";
+
+    private final IUserClient userClient;
+    private final PrincipalProperties properties;
+    private final Cache<String, Optional<UserResponse>> users;
+
+    private final Counter fromClaims;
+    private final Counter fromCache;
+    private final Counter fromRemote;
+    private final Counter unknown;
+
+    public CurrentUserResolver(IUserClient userClient, PrincipalProperties properties, MeterRegistry meterRegistry) {
+        this.userClient = userClient;
+        this.properties = properties;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<String, Optional<UserResponse>>() {
+                    @Override
+                    public long expireAfterCreate(String sub, Optional<UserResponse> user, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(user.isPresent() ? properties.getTtlMs() : properties.getNegativeTtlMs());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String sub, Optional<UserResponse> user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(sub, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String sub, Optional<UserResponse> user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+
+        this.fromClaims = meterRegistry.counter("principal.resolutions", "source", "claims");
+        this.fromCache = meterRegistry.counter("principal.resolutions", "source", "cache");
+        this.fromRemote = meterRegistry.counter("principal.resolutions", "source", "remote");
+        this.unknown = meterRegistry.counter("principal.unknown");
+    }
+
+    /**
+     * @throws AppException UNAUTHENTICATED without a JWT, USER_NOT_FOUND for an unknown subject
+     */
+    public UserResponse getCurrentUser() {
+        return resolve(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    public Long getCurrentUserId() {
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * The internal user behind authentication, which need not be the thread's own
+     * (e.g. the principal a STOMP session was bound to on CONNECT)
+     *
+     * @throws AppException UNAUTHENTICATED without a JWT, USER_NOT_FOUND for an unknown subject
+     */
+    public UserResponse resolve(Authentication authentication) {
+        if (!(authentication instanceof JwtAuthenticationToken token)) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        Jwt jwt = token.getToken();
+
+        UserResponse fromToken = fromClaims(jwt);
+        if (fromToken != null) {
+            fromClaims.increment();
+            callSaved();
+            return fromToken;
+        }
+
+        boolean[] loaded = new boolean[1];
+        Optional<UserResponse> user = users.get(jwt.getSubject(), sub -> {
+            loaded[0] = true;
+            return fetchCurrentUser(authentication);
+        });
+        if (loaded[0]) {
+            fromRemote.increment();
+        } else {
+            fromCache.increment();
+            callSaved();
+        }
+        if (user.isEmpty()) {
+            unknown.increment();
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+        return user.get();
+    }
+
+    // ==========================================================================
+    // INVALIDATION
+    // ==========================================================================
+
+    /**
+     * Drop a user, by Keycloak subject or internal id
+     */
+    public void evict(String subjectOrUserId) {
+        if (subjectOrUserId == null || subjectOrUserId.isBlank()) return;
+        users.invalidate(subjectOrUserId);
+        users.asMap().entrySet().removeIf(entry -> entry.getValue()
+                .map(user -> String.valueOf(user.getId()).equals(subjectOrUserId))
+                .orElse(false));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evict(new String(message.getBody(), StandardCharsets.UTF_8).trim());
+    }
+
+    // ==========================================================================
+    // INTERNALS
+    // ==========================================================================
+
+    private Optional<UserResponse> fetchCurrentUser(Authentication authentication) {
+        // The Feign interceptor forwards the token of the thread's security context
+        SecurityContext previous = SecurityContextHolder.getContext();
+        boolean foreign = previous.getAuthentication() != authentication;
+        if (foreign) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+        }
+        try {
+            ApiResponse<UserResponse> response = userClient.getCurrentUser();
+            return Optional.ofNullable(response != null ? response.getResult() : null);
+        } catch (FeignException e) {
+            // identity-service answers USER_NOT_FOUND as 400 with code 404 in the body
+            if (e.status() == 404 || (e.status() == 400
+                    && e.contentUTF8().contains("\"code\":" + ErrorCode.USER_NOT_FOUND.getCode()))) {
+                return Optional.empty();
+            }
+            throw e;
+        } finally {
+            if (foreign) {
+                SecurityContextHolder.setContext(previous);
+            }
+        }
+    }
+
+    private UserResponse fromClaims(Jwt jwt) {
+        String claim = properties.getUserIdClaim();
+        if (claim == null || claim.isEmpty() || !jwt.hasClaim(claim)) return null;
+        Long id;
+        try {
+            id = Long.valueOf(String.valueOf(jwt.getClaims().get(claim)));
+        } catch (NumberFormatException e) {
+            log.warn("[Principal] Claim {} is not a user id: {}", claim, jwt.getClaims().get(claim));
+            return null;
+        }
+        return UserResponse.builder()
+                .id(id)
+                .keycloakId(jwt.getSubject())
+                .email(jwt.getClaimAsString("email"))
+                .firstName(jwt.getClaimAsString("given_name"))
+                .lastName(jwt.getClaimAsString("family_name"))
+                .avatarUrl(jwt.getClaimAsString("picture"))
+                .build();
+    }
+
+    private static void callSaved() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return;
+        Object counter = attributes.getAttribute(CALLS_SAVED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (counter instanceof AtomicInteger calls) {
+            calls.incrementAndGet();
+        }
+    }
+}
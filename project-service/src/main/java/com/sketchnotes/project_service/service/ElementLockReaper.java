@@ -0,0 +1,104 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * ELEMENT LOCK REAPER
+ * =============================================================================
+ *
+ * Evicts element locks whose TTL lapsed and tells the project with a
+ * LOCK_RELEASED (reason "expired"), instead of leaving them to be overwritten
+ * lazily by the next user touching the element.
+ *
+ * The state store keeps the locks indexed by expiry (timing wheel in memory,
+ * sorted set in Redis), so each pass only looks at locks that are due.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ElementLockReaper {
+
+    private static final long REAP_INTERVAL_MS = 200;
+
+    private final ICollaborationStateStore stateStore;
+    private final RealtimeMessageService realtimeMessageService;
+    private final MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService reaper;
+    private Counter expiredLocks;
+
+    @PostConstruct
+    public void init() {
+        expiredLocks = meterRegistry.counter("collab.locks", "result", "expired");
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lock-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(this::reap, REAP_INTERVAL_MS, REAP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    /**
+     * One reaping pass; returns the number of locks released
+     */
+    public int reap() {
+        try {
+            Map<Long, List<ElementLock>> expired = stateStore.reapExpiredLocks(System.currentTimeMillis());
+            int released = 0;
+            for (Map.Entry<Long, List<ElementLock>> entry : expired.entrySet()) {
+                for (ElementLock lock : entry.getValue()) {
+                    broadcastExpired(entry.getKey(), lock);
+                    released++;
+                }
+            }
+            if (released > 0) {
+                expiredLocks.increment(released);
+                log.debug("🔓 [LockReaper] Released {} expired locks in {} projects", released, expired.size());
+            }
+            return released;
+        } catch (Exception e) {
+            // Keep the schedule alive: a failed pass is retried on the next tick
+            log.warn("⚠️ [LockReaper] Reaping pass failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private void broadcastExpired(Long projectId, ElementLock lock) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "LOCK_RELEASED");
+        message.put("projectId", projectId);
+        message.put("userId", lock.getUserId());
+        message.put("seq", realtimeMessageService.getNextSequence(projectId));
+        message.put("timestamp", System.currentTimeMillis());
+        message.put("payload", Map.of(
+            "elementId", lock.getElementId(),
+            "reason", "expired"
+        ));
+
+        realtimeMessageService.broadcastImmediate(projectId, message, "collaboration");
+    }
+}
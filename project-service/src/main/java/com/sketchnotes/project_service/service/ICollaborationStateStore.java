@@ -0,0 +1,92 @@
+package com.sketchnotes.project_service.service;
+
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared realtime collaboration state: sequence/version counters, element locks
+ * and active strokes. The in-memory store is enough for a single node; the Redis
+ * store must be used as soon as project-service runs with more than one replica
+ * (collaboration.state-store=redis).
+ */
+public interface ICollaborationStateStore {
+
+    long nextSequence(Long projectId);
+
+    long currentSequence(Long projectId);
+
+    /**
+     * Take {@code count} sequence numbers in one step (a single INCRBY in Redis).
+     *
+     * @return the last number taken; the block is (result - count, result]
+     */
+    long reserveSequences(Long projectId, int count);
+
+    long incrementVersion(Long projectId);
+
+    long currentVersion(Long projectId);
+
+    /**
+     * Raise the version counter to at least {@code version}, so versions restored
+     * from the op journal after a restart are never handed out again.
+     */
+    void advanceVersion(Long projectId, long version);
+
+    /**
+     * Try to take (or refresh, when already held by the same user) the lock on an element.
+     *
+     * @return the candidate if granted, otherwise the lock currently held by someone else
+     */
+    ElementLock tryLock(Long projectId, ElementLock candidate);
+
+    /**
+     * @return the live lock on the element, or null if free or expired
+     */
+    ElementLock getLock(Long projectId, String elementId);
+
+    /**
+     * Release a lock owned by the user or matching the token.
+     *
+     * @return true if a lock was removed
+     */
+    boolean releaseLock(Long projectId, String elementId, String userId, String lockToken);
+
+    /**
+     * @return live locks of the project keyed by element id
+     */
+    Map<String, ElementLock> getLocks(Long projectId);
+
+    /**
+     * Release every lock the user holds in the project.
+     *
+     * @return ids of the released elements
+     */
+    List<String> releaseUserLocks(Long projectId, String userId);
+
+    /**
+     * Remove every lock whose TTL lapsed at or before {@code now}. Each lapsed lock
+     * is returned to exactly one caller, even with several replicas reaping.
+     *
+     * @return the removed locks keyed by project id
+     */
+    Map<Long, List<ElementLock>> reapExpiredLocks(long now);
+
+    /**
+     * Register a new active stroke; ignored if the stroke is already known.
+     */
+    void startStroke(Long projectId, ActiveStroke stroke);
+
+    /**
+     * Append a point chunk to a known active stroke.
+     *
+     * @return false if the stroke is unknown
+     */
+    boolean appendStrokePoints(Long projectId, String strokeId, Object points);
+
+    void removeStroke(Long projectId, String strokeId);
+
+    List<ActiveStroke> getActiveStrokes(Long projectId);
+}
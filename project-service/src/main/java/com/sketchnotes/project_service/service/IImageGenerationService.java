@@ -1,6 +1,7 @@
 package com.sketchnotes.project_service.service;
 
 import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationJobResponse;
 import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
 import com.sketchnotes.project_service.dtos.response.ImagePromptResponse;
 import com.sketchnotes.project_service.utils.PagedResponse;
@@ -10,5 +11,7 @@ import com.sketchnotes.project_service.utils.PagedResponse;
  */
 public interface IImageGenerationService {
     ImageGenerationResponse generateAndUploadImage(ImageGenerationRequest request);
+    ImageGenerationJobResponse submitGeneration(ImageGenerationRequest request);
+    ImageGenerationJobResponse getGenerationJob(String jobId);
     PagedResponse<ImagePromptResponse> getImageGenerations(int page, int size);
 }
\ No newline at end of file
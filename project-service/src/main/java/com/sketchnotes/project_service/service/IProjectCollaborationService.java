@@ -3,6 +3,7 @@ package com.sketchnotes.project_service.service;
 import com.sketchnotes.project_service.dtos.request.AcceptanceRequest;
 import com.sketchnotes.project_service.dtos.request.CollabRequest;
 import com.sketchnotes.project_service.dtos.response.ProjectCollaborationResponse;
+import com.sketchnotes.project_service.dtos.response.ProjectMembers;
 
 import java.util.List;
 
@@ -12,4 +13,5 @@ public interface IProjectCollaborationService {
      void changeUserPermission(CollabRequest dto);
      List<ProjectCollaborationResponse> listProjectCollaborators(Long projectId);
       void acceptProjectInvitation(AcceptanceRequest request);
+     ProjectMembers getProjectMembers(Long projectId);
 }
@@ -2,10 +2,39 @@ package com.sketchnotes.project_service.service;
 
 import com.sketchnotes.project_service.enums.FileContentType;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public interface IStorageService {
     Map<String, String> generatePresignedUrl(String fileName, FileContentType contentType);
     void deleteFile(String fileUrl);
+    /**
+     * Multi-object delete of content-addressed objects (strokes/ in this bucket),
+     * up to 1000 keys per request; other URLs are refused, never deleted
+     *
+     * @return URLs that could not be deleted
+     */
+    List<String> deleteFiles(Collection<String> fileUrls);
+    /**
+     * URL of the content-addressed object for a SHA-256 (lowercase hex)
+     */
+    String getContentAddressedUrl(String sha256Hex);
+    /**
+     * What every content-addressed URL starts with (this bucket's strokes/)
+     */
+    String getContentAddressedUrlPrefix();
+    /**
+     * Presigned PUT to the content-addressed key; S3 rejects a body whose SHA-256
+     * differs, so the client must send the returned checksumSha256 as x-amz-checksum-sha256
+     */
+    Map<String, String> generateContentAddressedPresignedUrl(String sha256Hex, FileContentType contentType);
     String copyFile(String sourceFileUrl);
+    /**
+     * Server-side upload to a fixed key
+     *
+     * @return public URL of the object, same format as the presigned strokeUrl
+     */
+    String uploadFile(String key, byte[] content, String contentType);
+    byte[] downloadFile(String fileUrl);
 }
@@ -0,0 +1,19 @@
+package com.sketchnotes.project_service.service;
+
+import com.sketchnotes.project_service.enums.FileContentType;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface IStrokeBlobService {
+    /**
+     * One reference per URL occurrence (pages sharing a blob each count)
+     */
+    void retain(Collection<String> strokeUrls);
+    void release(Collection<String> strokeUrls);
+    /**
+     * Upload slot for a stroke file by content hash. If the blob is already stored,
+     * no upload URL is returned ("exists": "true") and the client reuses strokeUrl.
+     */
+    Map<String, String> presign(String sha256Hex, FileContentType contentType);
+}
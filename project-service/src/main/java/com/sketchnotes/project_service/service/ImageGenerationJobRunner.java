@@ -0,0 +1,277 @@
+package com.sketchnotes.project_service.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sketchnotes.project_service.config.ImageJobProperties;
+import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationJobResponse;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
+import com.sketchnotes.project_service.entity.ImageGenerationJob;
+import com.sketchnotes.project_service.enums.ImageJobStatus;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+import com.sketchnotes.project_service.repository.IImageGenerationJobRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * IMAGE GENERATION JOB RUNNER
+ * =============================================================================
+ *
+ * Runs image generations off the HTTP thread. submit() records a QUEUED job and
+ * returns it at once; a worker (worker-threads, bounded queue) then runs it with
+ * the submitter's security context, so Feign calls (credits, AI) still carry the
+ * caller's token.
+ *
+ * Every state change and every finished image is pushed to the owner's
+ * /user/queue/image-jobs and stored, so GET /api/images/jobs/{id} on any node
+ * sees the same progress. A user may have max-active-per-user jobs queued or
+ * running, checked and recorded under a per-user database lock so concurrent
+ * submits (on any node) cannot overshoot it; jobs older than job-timeout-ms are
+ * reported failed and not started.
+ *
+ * Metrics: image.jobs{result=succeeded|failed|rejected}, image.jobs.duration,
+ * image.jobs.running (this node).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageGenerationJobRunner {
+
+    public static final String USER_DESTINATION = "/queue/image-jobs";
+
+    private static final Set<ImageJobStatus> ACTIVE = EnumSet.of(ImageJobStatus.QUEUED, ImageJobStatus.RUNNING);
+
+    /**
+     * The generation itself; imageDone is called once per finished image, from any thread
+     */
+    @FunctionalInterface
+    public interface Work {
+        ImageGenerationResponse run(Runnable imageDone);
+    }
+
+    private final IImageGenerationJobRepository jobRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ImageJobProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private ThreadPoolExecutor workers;
+    private Counter succeededJobs;
+    private Counter failedJobs;
+    private Counter rejectedJobs;
+    private Timer jobDuration;
+
+    @PostConstruct
+    public void init() {
+        succeededJobs = meterRegistry.counter("image.jobs", "result", "succeeded");
+        failedJobs = meterRegistry.counter("image.jobs", "result", "failed");
+        rejectedJobs = meterRegistry.counter("image.jobs", "result", "rejected");
+        jobDuration = Timer.builder("image.jobs.duration")
+                .description("Image generation job run time, generation to stored results")
+                .register(meterRegistry);
+        meterRegistry.gauge("image.jobs.running", running);
+
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(properties.getWorkerThreads(), properties.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()), r -> {
+                    Thread t = new Thread(r, "image-job-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a generation for ownerId
+     *
+     * @throws AppException IMAGE_JOB_LIMIT_REACHED when the user has too many
+     *                      active jobs, IMAGE_JOB_QUEUE_FULL when this node is saturated
+     */
+    public ImageGenerationJobResponse submit(Long ownerId, ImageGenerationRequest request, int totalImages, Work work) {
+        ImageGenerationJob job = transactionTemplate.execute(status -> {
+            jobRepository.lockOwner(ownerId);
+            LocalDateTime now = LocalDateTime.now();
+            long active = jobRepository.countByOwnerIdAndStatusInAndCreatedAtAfter(ownerId, ACTIVE, staleBefore(now));
+            if (active >= properties.getMaxActivePerUser()) {
+                rejectedJobs.increment();
+                throw new AppException(ErrorCode.IMAGE_JOB_LIMIT_REACHED);
+            }
+
+            return jobRepository.save(ImageGenerationJob.builder()
+                    .jobId(UUID.randomUUID().toString())
+                    .ownerId(ownerId)
+                    .prompt(request.getPrompt())
+                    .icon(Boolean.TRUE.equals(request.getIsIcon()))
+                    .status(ImageJobStatus.QUEUED)
+                    .totalImages(totalImages)
+                    .completedImages(0)
+                    .createdAt(now)
+                    .build());
+        });
+        ImageGenerationJobResponse queued = toResponse(job);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String recipient = authentication != null ? authentication.getName() : null;
+        try {
+            workers.execute(new DelegatingSecurityContextRunnable(() -> run(job, recipient, work)));
+        } catch (RejectedExecutionException e) {
+            rejectedJobs.increment();
+            fail(job, ErrorCode.IMAGE_JOB_QUEUE_FULL, 0);
+            throw new AppException(ErrorCode.IMAGE_JOB_QUEUE_FULL);
+        }
+        log.info("🖼️ [ImageJob] Queued job {} for user {} ({} image(s))", job.getJobId(), ownerId, totalImages);
+        return queued;
+    }
+
+    /**
+     * The job as its owner sees it
+     */
+    public ImageGenerationJobResponse get(String jobId, Long ownerId) {
+        ImageGenerationJob job = jobRepository.findByJobIdAndOwnerId(jobId, ownerId)
+                .orElseThrow(() -> new AppException(ErrorCode.IMAGE_JOB_NOT_FOUND));
+        if (isStale(job)) {
+            // Its node went away (or it waited too long): it will not complete any more
+            fail(job, ErrorCode.IMAGE_GENERATION_FAILED, job.getCompletedImages());
+        }
+        return toResponse(job);
+    }
+
+    // ==========================================================================
+    // INTERNALS
+    // ==========================================================================
+
+    private void run(ImageGenerationJob job, String recipient, Work work) {
+        if (isStale(job)) {
+            log.warn("⚠️ [ImageJob] Job {} waited past the timeout, not starting it", job.getJobId());
+            failedJobs.increment();
+            fail(job, ErrorCode.IMAGE_GENERATION_FAILED, 0);
+            publish(recipient, toResponse(job));
+            return;
+        }
+
+        running.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            job.setStatus(ImageJobStatus.RUNNING);
+            job.setStartedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            publish(recipient, toResponse(job));
+
+            ImageGenerationResponse result = work.run(() -> {
+                int done = completed.incrementAndGet();
+                jobRepository.updateProgress(job.getJobId(), done);
+                ImageGenerationJobResponse progress = toResponse(job);
+                progress.setCompletedImages(done);
+                publish(recipient, progress);
+            });
+
+            job.setStatus(ImageJobStatus.SUCCEEDED);
+            job.setImageUrls(new ArrayList<>(result.getImageUrls()));
+            job.setTotalImages(result.getImageUrls().size());
+            job.setCompletedImages(result.getImageUrls().size());
+            job.setGenerationTime(result.getGenerationTime());
+            job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            succeededJobs.increment();
+            log.info("✅ [ImageJob] Job {} finished: {} image(s) in {} ms",
+                    job.getJobId(), result.getImageUrls().size(), result.getGenerationTime());
+        } catch (AppException e) {
+            failedJobs.increment();
+            log.warn("⚠️ [ImageJob] Job {} failed: {}", job.getJobId(), e.getErrorCode());
+            fail(job, e.getErrorCode(), completed.get());
+        } catch (Exception e) {
+            failedJobs.increment();
+            log.error("❌ [ImageJob] Job {} failed", job.getJobId(), e);
+            fail(job, ErrorCode.IMAGE_GENERATION_FAILED, completed.get());
+        } finally {
+            sample.stop(jobDuration);
+            running.decrementAndGet();
+        }
+        publish(recipient, toResponse(job));
+    }
+
+    private void fail(ImageGenerationJob job, ErrorCode errorCode, int completedImages) {
+        job.setStatus(ImageJobStatus.FAILED);
+        job.setErrorCode(errorCode.name());
+        job.setCompletedImages(completedImages);
+        job.setFinishedAt(LocalDateTime.now());
+        try {
+            jobRepository.save(job);
+        } catch (Exception e) {
+            log.error("❌ [ImageJob] Could not record failure of job {}", job.getJobId(), e);
+        }
+    }
+
+    private boolean isStale(ImageGenerationJob job) {
+        return job.getStatus().isActive() && job.getCreatedAt().isBefore(staleBefore(LocalDateTime.now()));
+    }
+
+    private LocalDateTime staleBefore(LocalDateTime now) {
+        return now.minusNanos(properties.getJobTimeoutMs() * 1_000_000);
+    }
+
+    private void publish(String recipient, ImageGenerationJobResponse response) {
+        if (recipient == null) return;
+        try {
+            messagingTemplate.convertAndSendToUser(recipient, USER_DESTINATION, response);
+        } catch (Exception e) {
+            log.warn("⚠️ [ImageJob] Could not push job {} update: {}", response.getJobId(), e.getMessage());
+        }
+    }
+
+    private static ImageGenerationJobResponse toResponse(ImageGenerationJob job) {
+        ErrorCode errorCode = null;
+        if (job.getErrorCode() != null) {
+            try {
+                errorCode = ErrorCode.valueOf(job.getErrorCode());
+            } catch (IllegalArgumentException ignored) {
+                // Code from a newer version: report the name only
+            }
+        }
+        return ImageGenerationJobResponse.builder()
+                .jobId(job.getJobId())
+                .status(job.getStatus())
+                .prompt(job.getPrompt())
+                .totalImages(job.getTotalImages())
+                .completedImages(job.getCompletedImages())
+                .imageUrls(job.getImageUrls() != null ? new ArrayList<>(job.getImageUrls()) : null)
+                .generationTime(job.getGenerationTime())
+                .errorCode(job.getErrorCode())
+                .errorMessage(errorCode != null ? errorCode.getMessage() : null)
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
@@ -0,0 +1,184 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * =============================================================================
+ * PRESENCE REGISTRY
+ * =============================================================================
+ *
+ * Who is connected to which canvas, kept from the STOMP session lifecycle:
+ * - SUBSCRIBE to /topic/project/{id}/... puts the session on the project
+ * - the user the session authenticated as on CONNECT identifies it (on its
+ *   first collaboration message)
+ * - UNSUBSCRIBE of the last project topic, USER_LEAVE or DISCONNECT removes it
+ *
+ * Sessions are indexed both ways (session -> projects, project -> user ->
+ * sessions), so "who is on this canvas" is a map lookup and a dying socket is
+ * cleaned up without scanning other projects. A user only departs a project
+ * when their last session on it goes, so a second tab keeps locks alive.
+ *
+ * The registry is node-local: with several replicas each one knows the
+ * sessions connected to it.
+ */
+@Service
+public class PresenceRegistry {
+
+    private static final Pattern PROJECT_TOPIC = Pattern.compile("^/topic/project/(\\d+)/");
+
+    // sessionId -> presence of that socket
+    private final ConcurrentHashMap<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    // projectId -> (userId -> sessionIds)
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, Set<String>>> projectUsers = new ConcurrentHashMap<>();
+
+    /**
+     * A user whose last session left a project
+     */
+    public record Departure(Long projectId, String userId) {
+    }
+
+    // ==========================================================================
+    // SESSION EVENTS
+    // ==========================================================================
+
+    /**
+     * Track a subscription; returns the project id when the destination is a project topic
+     */
+    public Long subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) return null;
+
+        Matcher matcher = PROJECT_TOPIC.matcher(destination);
+        if (!matcher.find()) return null;
+
+        Long projectId = Long.valueOf(matcher.group(1));
+        SessionPresence presence = sessions.computeIfAbsent(sessionId, k -> new SessionPresence());
+        presence.subscriptions.put(subscriptionId, projectId);
+        presence.projects.putIfAbsent(projectId, "");
+        return projectId;
+    }
+
+    /**
+     * Drop a subscription; the session leaves the project with its last project topic
+     */
+    public List<Departure> unsubscribe(String sessionId, String subscriptionId) {
+        SessionPresence presence = sessionId != null ? sessions.get(sessionId) : null;
+        if (presence == null || subscriptionId == null) return List.of();
+
+        Long projectId = presence.subscriptions.remove(subscriptionId);
+        if (projectId == null || presence.subscriptions.containsValue(projectId)) return List.of();
+        return leave(sessionId, projectId);
+    }
+
+    /**
+     * Bind the session to its authenticated user on a project (cheap when already known)
+     */
+    public void identify(String sessionId, Long projectId, String userId) {
+        if (sessionId == null || projectId == null || userId == null) return;
+
+        SessionPresence presence = sessions.computeIfAbsent(sessionId, k -> new SessionPresence());
+        if (userId.equals(presence.projects.get(projectId))) return;
+
+        String previous = presence.projects.put(projectId, userId);
+        if (previous != null && !previous.isEmpty()) {
+            removeMember(projectId, previous, sessionId);
+        }
+        // Membership changes run under the project's bin, so an emptied project can be dropped safely
+        projectUsers.compute(projectId, (k, users) -> {
+            ConcurrentHashMap<String, Set<String>> members = users != null ? users : new ConcurrentHashMap<>();
+            members.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(sessionId);
+            return members;
+        });
+    }
+
+    /**
+     * The session left one project (USER_LEAVE or last unsubscribe)
+     */
+    public List<Departure> leave(String sessionId, Long projectId) {
+        SessionPresence presence = sessionId != null ? sessions.get(sessionId) : null;
+        if (presence == null || projectId == null) return List.of();
+
+        presence.subscriptions.values().removeIf(projectId::equals);
+        String userId = presence.projects.remove(projectId);
+        Departure departure = depart(projectId, userId, sessionId);
+        return departure != null ? List.of(departure) : List.of();
+    }
+
+    /**
+     * The socket is gone: leave every project it was on
+     */
+    public List<Departure> disconnect(String sessionId) {
+        SessionPresence presence = sessionId != null ? sessions.remove(sessionId) : null;
+        if (presence == null) return List.of();
+
+        List<Departure> departures = new ArrayList<>();
+        presence.projects.forEach((projectId, userId) -> {
+            Departure departure = depart(projectId, userId, sessionId);
+            if (departure != null) {
+                departures.add(departure);
+            }
+        });
+        return departures;
+    }
+
+    // ==========================================================================
+    // QUERIES
+    // ==========================================================================
+
+    /**
+     * Users with at least one live session on the project (read-only view)
+     */
+    public Set<String> getActiveUsers(Long projectId) {
+        Map<String, Set<String>> users = projectUsers.get(projectId);
+        return users != null ? Collections.unmodifiableSet(users.keySet()) : Set.of();
+    }
+
+    public boolean isPresent(Long projectId, String userId) {
+        Map<String, Set<String>> users = projectUsers.get(projectId);
+        return users != null && userId != null && users.containsKey(userId);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // ==========================================================================
+    // HELPERS
+    // ==========================================================================
+
+    private Departure depart(Long projectId, String userId, String sessionId) {
+        if (userId == null || userId.isEmpty()) return null;
+        return removeMember(projectId, userId, sessionId) ? new Departure(projectId, userId) : null;
+    }
+
+    /**
+     * @return true when it was the user's last session on the project
+     */
+    private boolean removeMember(Long projectId, String userId, String sessionId) {
+        boolean[] last = new boolean[1];
+        projectUsers.computeIfPresent(projectId, (k, users) -> {
+            Set<String> userSessions = users.get(userId);
+            if (userSessions != null && userSessions.remove(sessionId) && userSessions.isEmpty()) {
+                users.remove(userId);
+                last[0] = true;
+            }
+            return users.isEmpty() ? null : users;
+        });
+        return last[0];
+    }
+
+    private static final class SessionPresence {
+        // subscriptionId -> projectId
+        private final Map<String, Long> subscriptions = new ConcurrentHashMap<>();
+        // projectId -> userId sent on that project ("" until identified)
+        private final Map<Long, String> projects = new ConcurrentHashMap<>();
+    }
+}
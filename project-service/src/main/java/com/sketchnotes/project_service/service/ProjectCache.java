@@ -0,0 +1,76 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * =============================================================================
+ * PROJECT CACHE
+ * =============================================================================
+ *
+ * Cached reads of project metadata and the evictions that keep them exact:
+ * - project:          ProjectDetailResponse per project id (user flags cleared)
+ * - projectsByOwner:  ProjectListResponse per owner id
+ * - projectMembers:   ProjectMembers per project id
+ *
+ * A page or project change evicts that project and its owner's list, a
+ * membership change evicts that project's members; nothing clears a whole
+ * cache. Backed by TwoLevelCacheManager (Caffeine + Redis) in the application
+ * and by whatever CacheManager a test slice provides.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProjectCache {
+
+    public static final String PROJECT = "project";
+    public static final String PROJECTS_BY_OWNER = "projectsByOwner";
+    public static final String PROJECT_MEMBERS = "projectMembers";
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Cached value of key, loaded (and cached unless null) on a miss. Exceptions
+     * thrown by the loader (AppException) reach the caller unwrapped.
+     */
+    public <T> T get(String cacheName, Object key, Supplier<T> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return loader.get();
+        }
+        try {
+            return cache.get(key, loader::get);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The project's detail or pages changed
+     */
+    public void evictProject(Long projectId, Long ownerId) {
+        evict(PROJECT, projectId);
+        evict(PROJECTS_BY_OWNER, ownerId);
+    }
+
+    /**
+     * Collaborators were added, removed, accepted or changed permission
+     */
+    public void evictMembers(Long projectId) {
+        evict(PROJECT_MEMBERS, projectId);
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+}
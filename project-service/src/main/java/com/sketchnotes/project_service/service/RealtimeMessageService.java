@@ -1,19 +1,47 @@
 package com.sketchnotes.project_service.service;
 
+import java.security.Principal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationExecutionProperties;
+import com.sketchnotes.project_service.dtos.socket.PreSerializedPayload;
+import com.sketchnotes.project_service.utils.StrokeFrameCodec;
+import com.sketchnotes.project_service.utils.TokenBucketTable;
+import com.sketchnotes.project_service.utils.VirtualThreads;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
@@ -32,6 +60,36 @@ import lombok.extern.slf4j.Slf4j;
  * 
  * This service decouples message receipt from broadcast, preventing
  * WebSocket blocking and enabling rate limiting.
+ * 
+ * Dispatching is event-driven: a project's queue is only drained when a
+ * message is enqueued, on a dispatch lane chosen by project id. Each lane is
+ * single-threaded, so messages of one project are always sent in order, and
+ * idle projects cost nothing until they are evicted.
+ * 
+ * Traffic is split three ways:
+ * - transient (USER_CURSOR, ELEMENT_UPDATE with transient=true): coalesced to
+ *   the latest value per (user, element) and flushed at COALESCE_HZ; never
+ *   rate limited, since coalescing already bounds it
+ * - durable (versioned ops, lock and presence events): their own, higher
+ *   per-user limit (DURABLE_MESSAGES_PER_USER_PER_SECOND) and a hard cap on the
+ *   project's queue (DURABLE_QUEUE_CAPACITY); never dropped as stale. A durable
+ *   message refused by either one is lost to the other clients, so the project
+ *   is told to resync (RESYNC_REQUIRED with the current version, at most once
+ *   per RESYNC_NOTICE_INTERVAL_MS); clients answer with SYNC_REQUEST fromVersion
+ * - everything else (stroke points, page switch, ...): token buckets, bounded
+ *   queue, stale drop as before
+ * Durable and best-effort messages share the project's queue, so they keep
+ * their relative order (a STROKE_APPEND never overtakes its STROKE_END).
+ * 
+ * Metrics (see registerMetrics): collab.queue.depth per project,
+ * collab.broadcast.latency (enqueue to send), collab.messages.dropped by
+ * reason, collab.projects.active and executor.* for each broadcast lane
+ * (platform mode; virtual mode only reports ws.broadcast.queued).
+ * 
+ * Lanes run on platform threads or, with collaboration.execution.mode=virtual,
+ * on virtual threads (see CollaborationExecutionProperties). A virtual lane that
+ * blocks in convertAndSend parks instead of pinning an OS thread, so there can be
+ * many more of them and a slow send stalls only the few projects sharing its lane.
  */
 @Slf4j
 @Service
@@ -39,6 +97,10 @@ import lombok.extern.slf4j.Slf4j;
 public class RealtimeMessageService {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final ICollaborationStateStore stateStore;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final CollaborationExecutionProperties executionProperties;
     
     // ==========================================================================
     // CONFIGURATION
@@ -46,36 +108,75 @@ public class RealtimeMessageService {
     
     private static final int MAX_MESSAGES_PER_USER_PER_SECOND = 100;
     private static final int MAX_MESSAGES_PER_PROJECT_PER_SECOND = 500;
+    // Limiter tables are fixed-size; buckets idle this long are recycled
+    private static final int USER_LIMITER_CAPACITY = 65_536;
+    private static final int PROJECT_LIMITER_CAPACITY = 16_384;
+    private static final long LIMITER_IDLE_EVICT_MS = 5 * 60_000;
     private static final int QUEUE_CAPACITY = 1000;
-    private static final int QUEUE_PROCESS_INTERVAL_MS = 10;
+    // Durable ops are never coalesced, so a user gets more of them than best-effort
+    // messages; the cap bounds a project's queue however many users flood it
+    private static final int DURABLE_MESSAGES_PER_USER_PER_SECOND = 300;
+    private static final int DURABLE_QUEUE_CAPACITY = 5000;
+    private static final long RESYNC_NOTICE_INTERVAL_MS = 1000;
+    private static final String RESYNC_REQUIRED = "RESYNC_REQUIRED";
+    private static final int DRAIN_BATCH_SIZE = 20;
     private static final int STALE_MESSAGE_MS = 5000;
-    private static final int BROADCAST_THREAD_POOL_SIZE = 4;
+    private static final int COALESCE_HZ = 30;
+    private static final long COALESCE_TICK_NANOS = 1_000_000_000L / COALESCE_HZ;
+    // Ops that change the document (committed, versioned) plus lock/presence changes;
+    // decided by type, never by fields a client could add
+    private static final Set<String> DURABLE_TYPES = Set.of(
+        "ELEMENT_CREATE", "ELEMENT_UPDATE", "ELEMENT_DELETE", "CANVAS_CLEAR", "STROKE_END",
+        "PAGE_CREATE", "PAGE_UPDATE", "PAGE_DELETE",
+        "ELEMENT_LOCK", "LOCK_RELEASED", "USER_JOIN", "USER_LEAVE");
+    private static final long IDLE_PROJECT_EVICT_MS = 60_000;
+    private static final MimeType STROKE_FRAME_TYPE = MimeType.valueOf(StrokeFrameCodec.CONTENT_TYPE);
+    
+    // STOMP header marking messages a slow session may lose (absent = durable)
+    public static final String DELIVERY_HEADER = "x-delivery";
+    public static final String DELIVERY_DROPPABLE = "droppable";
     
     // ==========================================================================
     // STATE
     // ==========================================================================
     
-    // Sequence counter per project
-    private final ConcurrentHashMap<Long, AtomicLong> projectSequences = new ConcurrentHashMap<>();
+    // Sequence and version counters live in the (possibly shared) state store
     
-    // Version counter per project
-    private final ConcurrentHashMap<Long, AtomicLong> projectVersions = new ConcurrentHashMap<>();
+    // Rate limiters per user per project, keyed by TokenBucketTable.compositeKey(projectId, userId)
+    private final TokenBucketTable userRateLimiters = new TokenBucketTable(
+        MAX_MESSAGES_PER_USER_PER_SECOND, USER_LIMITER_CAPACITY, LIMITER_IDLE_EVICT_MS);
     
-    // Rate limiters per user per project: "projectId_userId" -> RateLimiter
-    private final ConcurrentHashMap<String, TokenBucketRateLimiter> userRateLimiters = new ConcurrentHashMap<>();
+    // Durable message limiters per user per project, same keys as userRateLimiters
+    private final TokenBucketTable durableRateLimiters = new TokenBucketTable(
+        DURABLE_MESSAGES_PER_USER_PER_SECOND, USER_LIMITER_CAPACITY, LIMITER_IDLE_EVICT_MS);
     
     // Rate limiters per project
-    private final ConcurrentHashMap<Long, TokenBucketRateLimiter> projectRateLimiters = new ConcurrentHashMap<>();
+    private final TokenBucketTable projectRateLimiters = new TokenBucketTable(
+        MAX_MESSAGES_PER_PROJECT_PER_SECOND, PROJECT_LIMITER_CAPACITY, LIMITER_IDLE_EVICT_MS);
     
     // Message queues per project
-    private final ConcurrentHashMap<Long, LinkedBlockingQueue<QueuedMessage>> projectQueues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ProjectChannel> projectQueues = new ConcurrentHashMap<>();
     
-    // Executor for async broadcasts
-    private ExecutorService broadcastExecutor;
+    // Single-threaded dispatch lanes; a project is always drained on the same lane
+    private ExecutorService[] broadcastLanes;
+    private boolean virtualLanes;
     
-    // Scheduled executor for queue processing
+    // Scheduled executor for housekeeping (stale data cleanup)
     private ScheduledExecutorService queueProcessor;
     
+    // Transient updates replaced by a newer value before their flush
+    private final AtomicLong coalescedCount = new AtomicLong();
+    
+    // Meters, registered in init()
+    private Counter droppedUserRateLimit;
+    private Counter droppedProjectRateLimit;
+    private Counter droppedQueueFull;
+    private Counter droppedStale;
+    private Counter droppedDurableRateLimit;
+    private Counter droppedDurableQueueFull;
+    private Timer durableLatency;
+    private Timer bestEffortLatency;
+    
     // Shutdown flag
     private volatile boolean isShutdown = false;
     
@@ -85,18 +186,35 @@ public class RealtimeMessageService {
     
     @PostConstruct
     public void init() {
-        log.info("[RealtimeService] Initializing with {} broadcast threads", BROADCAST_THREAD_POOL_SIZE);
-        
-        broadcastExecutor = Executors.newFixedThreadPool(
-            BROADCAST_THREAD_POOL_SIZE,
-            r -> {
-                Thread t = new Thread(r, "ws-broadcast");
-                t.setDaemon(true);
-                return t;
-            }
-        );
+        virtualLanes = executionProperties.useVirtualThreads();
+        if (!virtualLanes && CollaborationExecutionProperties.MODE_VIRTUAL.equalsIgnoreCase(executionProperties.getMode())) {
+            log.warn("[RealtimeService] Virtual threads requested but not available on Java {}, using platform threads",
+                Runtime.version().feature());
+        }
+        int laneCount = virtualLanes
+            ? executionProperties.getVirtualBroadcastLanes()
+            : executionProperties.getBroadcastLanes();
+        log.info("[RealtimeService] Initializing with {} {} broadcast lanes", laneCount, virtualLanes ? "virtual" : "platform");
+        
+        broadcastLanes = new ExecutorService[laneCount];
+        for (int i = 0; i < broadcastLanes.length; i++) {
+            String threadName = "ws-broadcast-" + i;
+            ThreadFactory threadFactory = virtualLanes
+                ? VirtualThreads.factory(threadName + "-")
+                : r -> {
+                    Thread t = new Thread(r, threadName);
+                    t.setDaemon(true);
+                    return t;
+                };
+            // Same as newSingleThreadExecutor, but a plain ThreadPoolExecutor so
+            // its queue and activity can be read by ExecutorServiceMetrics
+            broadcastLanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        }
+        
+        registerMetrics();
         
-        queueProcessor = Executors.newScheduledThreadPool(2, r -> {
+        queueProcessor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "queue-processor");
             t.setDaemon(true);
             return t;
@@ -120,13 +238,13 @@ public class RealtimeMessageService {
             queueProcessor.shutdownNow();
         }
         
-        if (broadcastExecutor != null) {
-            broadcastExecutor.shutdownNow();
+        if (broadcastLanes != null) {
+            for (ExecutorService lane : broadcastLanes) {
+                lane.shutdownNow();
+            }
         }
         
         projectQueues.clear();
-        userRateLimiters.clear();
-        projectRateLimiters.clear();
     }
     
     // ==========================================================================
@@ -140,6 +258,7 @@ public class RealtimeMessageService {
      * @param userId User sending the message
      * @param message Message content (will be modified with seq)
      * @return true if message was queued, false if rate limited or queue full
+     *         (for a durable message the project has then been told to resync)
      */
     public boolean enqueueMessage(Long projectId, Object userId, Map<String, Object> message) {
         if (isShutdown) {
@@ -152,53 +271,141 @@ public class RealtimeMessageService {
             return false;
         }
         
-        String userIdStr = String.valueOf(userId);
+        String coalesceKey = coalesceKey(userId, message);
+        if (coalesceKey != null) {
+            coalesce(projectId, coalesceKey, message);
+            return true;
+        }
         
-        // Check user rate limit
-        String userRateLimitKey = projectId + "_" + userIdStr;
-        TokenBucketRateLimiter userLimiter = userRateLimiters.computeIfAbsent(
-            userRateLimitKey,
-            k -> new TokenBucketRateLimiter(MAX_MESSAGES_PER_USER_PER_SECOND)
-        );
+        boolean durable = isDurable(message);
+        if (!durable && !tryAcquire(projectId, userId)) {
+            return false;
+        }
+        
+        if (durable) {
+            ProjectChannel channel = channel(projectId);
+            if (!durableRateLimiters.tryAcquire(TokenBucketTable.compositeKey(projectId, userId))) {
+                droppedDurableRateLimit.increment();
+                log.warn("[RealtimeService] Durable rate limit exceeded for user {} on project {}", userId, projectId);
+                requestResync(channel);
+                return false;
+            }
+            // Supersede any pending transient value of the same element, atomically
+            // with the enqueue, so a late flush cannot overwrite the committed state
+            boolean queued = false;
+            synchronized (channel) {
+                if (channel.queue.size() < DURABLE_QUEUE_CAPACITY) {
+                    String elementKey = elementKey(userId, message);
+                    if (elementKey != null && channel.pending.remove(elementKey) != null) {
+                        channel.hasPending = !channel.pending.isEmpty();
+                    }
+                    stamp(projectId, message);
+                    queued = channel.queue.offer(new QueuedMessage(message, true, System.currentTimeMillis()));
+                }
+            }
+            if (!queued) {
+                droppedDurableQueueFull.increment();
+                log.warn("[RealtimeService] Queue of project {} full of durable messages, dropping", projectId);
+                requestResync(channel);
+                return false;
+            }
+            scheduleDrain(channel);
+            return true;
+        }
+        
+        stamp(projectId, message);
+        return offer(projectId, new QueuedMessage(message, false, System.currentTimeMillis()));
+    }
+    
+    /**
+     * Tell the project's clients that they missed a durable message. Throttled per
+     * project, so a flood costs one notice per interval, not one per message.
+     */
+    private void requestResync(ProjectChannel channel) {
+        long now = System.currentTimeMillis();
+        long last = channel.lastResyncNotice.get();
+        if (now - last < RESYNC_NOTICE_INTERVAL_MS || !channel.lastResyncNotice.compareAndSet(last, now)) return;
         
-        if (!userLimiter.tryAcquire()) {
+        Map<String, Object> notice = new HashMap<>();
+        notice.put("type", RESYNC_REQUIRED);
+        notice.put("projectId", channel.projectId);
+        notice.put("version", getCurrentVersion(channel.projectId));
+        notice.put("serverTimestamp", now);
+        broadcastImmediate(channel.projectId, notice, "collaboration");
+    }
+    
+    private void stamp(Long projectId, Map<String, Object> message) {
+        // Assign sequence number
+        stamp(message, getNextSequence(projectId), System.currentTimeMillis());
+    }
+    
+    private static void stamp(Map<String, Object> message, long seq, long now) {
+        message.put("seq", seq);
+        message.put("serverTimestamp", now);
+    }
+    
+    /**
+     * Enqueue a binary stroke frame (see StrokeFrameCodec) for async broadcast.
+     * The frame is rate limited and ordered like any other project message; the
+     * server seq is stamped into the frame in place and the bytes are forwarded
+     * untouched to binary subscribers.
+     * 
+     * @param destination Binary topic the frame is sent to
+     * @param jsonMirrorDestination Topic that receives a JSON copy for clients
+     *                              without binary support, or null for none
+     * @return true if the frame was queued, false if rate limited or queue full
+     */
+    public boolean enqueueFrame(Long projectId, Object userId, byte[] frame,
+                                String destination, String jsonMirrorDestination) {
+        if (isShutdown || projectId == null || userId == null || frame == null) {
+            return false;
+        }
+        
+        if (!tryAcquire(projectId, userId)) {
+            return false;
+        }
+        
+        StrokeFrameCodec.stampSeq(frame, getNextSequence(projectId));
+        
+        return offer(projectId, new QueuedMessage(frame, destination, jsonMirrorDestination, System.currentTimeMillis()));
+    }
+    
+    private boolean tryAcquire(Long projectId, Object userId) {
+        // Check user rate limit (no key string, no lock)
+        if (!userRateLimiters.tryAcquire(TokenBucketTable.compositeKey(projectId, userId))) {
+            droppedUserRateLimit.increment();
             log.warn("[RealtimeService] Rate limit exceeded for user {} on project {}", userId, projectId);
             return false;
         }
         
         // Check project rate limit
-        TokenBucketRateLimiter projectLimiter = projectRateLimiters.computeIfAbsent(
-            projectId,
-            k -> new TokenBucketRateLimiter(MAX_MESSAGES_PER_PROJECT_PER_SECOND)
-        );
-        
-        if (!projectLimiter.tryAcquire()) {
+        if (!projectRateLimiters.tryAcquire(projectId)) {
+            droppedProjectRateLimit.increment();
             log.warn("[RealtimeService] Rate limit exceeded for project {}", projectId);
             return false;
         }
         
-        // Assign sequence number
-        long seq = getNextSequence(projectId);
-        message.put("seq", seq);
-        message.put("serverTimestamp", System.currentTimeMillis());
-        
-        // Get or create queue for project
-        LinkedBlockingQueue<QueuedMessage> queue = projectQueues.computeIfAbsent(
-            projectId,
-            k -> {
-                LinkedBlockingQueue<QueuedMessage> q = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
-                startQueueProcessor(projectId, q);
-                return q;
-            }
-        );
+        return true;
+    }
+    
+    private boolean offer(Long projectId, QueuedMessage qm) {
+        // Enqueue (non-blocking). Done inside compute() so it cannot race with eviction.
+        // Only best-effort messages come through here.
+        boolean[] accepted = new boolean[1];
+        ProjectChannel channel = projectQueues.compute(projectId, (k, existing) -> {
+            ProjectChannel c = existing != null ? existing : newChannel(k);
+            accepted[0] = c.queue.size() < QUEUE_CAPACITY && c.queue.offer(qm);
+            c.lastActivity = qm.timestamp;
+            return c;
+        });
         
-        // Enqueue (non-blocking)
-        QueuedMessage qm = new QueuedMessage(message, System.currentTimeMillis());
-        if (!queue.offer(qm)) {
+        if (!accepted[0]) {
+            droppedQueueFull.increment();
             log.warn("[RealtimeService] Queue full for project {}, dropping message", projectId);
             return false;
         }
         
+        scheduleDrain(channel);
         return true;
     }
     
@@ -211,69 +418,238 @@ public class RealtimeMessageService {
         
         String destination = "/topic/project/" + projectId + "/" + topicSuffix;
         
-        broadcastExecutor.submit(() -> {
-            try {
-                messagingTemplate.convertAndSend(destination, message);
-            } catch (Exception e) {
-                log.error("[RealtimeService] Failed to broadcast to {}", destination, e);
-            }
-        });
+        try {
+            laneFor(projectId).execute(() -> send(destination, serialize(message), false));
+        } catch (RejectedExecutionException e) {
+            log.warn("[RealtimeService] Broadcast lane rejected immediate message for project {}", projectId);
+        }
+    }
+    
+    /**
+     * Send a reply to a single STOMP session instead of the whole project.
+     * The session receives it on /user/queue/project/{projectId}/collaboration;
+     * the session id header makes the user destination resolve to that session
+     * only, with or without an authenticated principal. Runs on the project's
+     * lane so it stays ordered with the project's broadcasts.
+     */
+    public void sendToSession(Long projectId, String sessionId, Principal user, Object message) {
+        if (isShutdown || sessionId == null) return;
+        
+        String destination = "/queue/project/" + projectId + "/collaboration";
+        String userName = user != null ? user.getName() : sessionId;
+        
+        try {
+            laneFor(projectId).execute(() -> {
+                SerializedMessage serialized = serialize(message);
+                if (serialized == null) return;
+                
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setSessionId(sessionId);
+                if (serialized.seq != null) {
+                    accessor.setNativeHeader("seq", String.valueOf(serialized.seq));
+                }
+                accessor.setLeaveMutable(true);
+                try {
+                    messagingTemplate.convertAndSendToUser(userName, destination, serialized.payload,
+                            accessor.getMessageHeaders());
+                } catch (Exception e) {
+                    log.error("[RealtimeService] Failed to send to session {}", sessionId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("[RealtimeService] Broadcast lane rejected session message for project {}", projectId);
+        }
     }
     
     /**
      * Get next sequence number for a project
      */
     public long getNextSequence(Long projectId) {
-        return projectSequences.computeIfAbsent(projectId, k -> new AtomicLong(0))
-                               .incrementAndGet();
+        return stateStore.nextSequence(projectId);
     }
     
     /**
      * Get current sequence number for a project (for sync responses)
      */
     public long getCurrentSequence(Long projectId) {
-        return projectSequences.computeIfAbsent(projectId, k -> new AtomicLong(0)).get();
+        return stateStore.currentSequence(projectId);
     }
     
     /**
      * Increment and get version for a project
      */
     public long incrementVersion(Long projectId) {
-        return projectVersions.computeIfAbsent(projectId, k -> new AtomicLong(0))
-                              .incrementAndGet();
+        return stateStore.incrementVersion(projectId);
     }
     
     /**
      * Get current version for a project
      */
     public long getCurrentVersion(Long projectId) {
-        return projectVersions.computeIfAbsent(projectId, k -> new AtomicLong(0)).get();
+        return stateStore.currentVersion(projectId);
+    }
+    
+    /**
+     * Transient updates dropped because a newer value replaced them before the flush
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    
+    /**
+     * Number of projects that currently hold a message queue
+     */
+    public int getActiveProjectCount() {
+        return projectQueues.size();
     }
     
     // ==========================================================================
-    // QUEUE PROCESSING
+    // COALESCING
     // ==========================================================================
     
-    private void startQueueProcessor(Long projectId, LinkedBlockingQueue<QueuedMessage> queue) {
-        queueProcessor.scheduleAtFixedRate(() -> {
-            if (isShutdown) return;
-            
-            try {
-                processQueue(projectId, queue);
-            } catch (Exception e) {
-                log.error("[RealtimeService] Error processing queue for project {}", projectId, e);
+    /**
+     * Latest-value slot for USER_CURSOR (per user) and transient ELEMENT_UPDATE
+     * (per user and element); null for everything else
+     */
+    @SuppressWarnings("unchecked")
+    private static String coalesceKey(Object userId, Map<String, Object> message) {
+        Object type = message.get("type");
+        if ("USER_CURSOR".equals(type)) {
+            return userId + "\u0000cursor";
+        }
+        if ("ELEMENT_UPDATE".equals(type) && message.get("payload") instanceof Map
+                && Boolean.TRUE.equals(((Map<String, Object>) message.get("payload")).get("transient"))) {
+            return elementKey(userId, message);
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String elementKey(Object userId, Map<String, Object> message) {
+        Object payload = message.get("payload");
+        Object elementId = payload instanceof Map ? ((Map<String, Object>) payload).get("elementId") : null;
+        return elementId != null ? userId + "\u0000" + elementId : null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static boolean isDurable(Map<String, Object> message) {
+        if (!DURABLE_TYPES.contains(message.get("type"))) return false;
+        // A transient ELEMENT_UPDATE that could not be coalesced is still a drag frame
+        return !(message.get("payload") instanceof Map
+                && Boolean.TRUE.equals(((Map<String, Object>) message.get("payload")).get("transient")));
+    }
+    
+    private ProjectChannel channel(Long projectId) {
+        return projectQueues.compute(projectId, (k, existing) -> {
+            ProjectChannel c = existing != null ? existing : newChannel(k);
+            c.lastActivity = System.currentTimeMillis();
+            return c;
+        });
+    }
+    
+    private void coalesce(Long projectId, String key, Map<String, Object> message) {
+        ProjectChannel channel = channel(projectId);
+        boolean first;
+        synchronized (channel) {
+            first = channel.pending.isEmpty();
+            if (channel.pending.put(key, message) != null) {
+                coalescedCount.incrementAndGet();
             }
-        }, 0, QUEUE_PROCESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            channel.hasPending = true;
+        }
+        if (first) {
+            scheduleFlush(channel);
+        }
     }
     
-    private void processQueue(Long projectId, LinkedBlockingQueue<QueuedMessage> queue) {
-        if (queue.isEmpty()) return;
+    /**
+     * Flush on the next tick boundary, so all projects flush in step at COALESCE_HZ.
+     * The timer only hands the flush to the project's lane: stamping may wait on
+     * the state store (Redis), which must not hold up the single timer thread.
+     */
+    private void scheduleFlush(ProjectChannel channel) {
+        if (isShutdown) return;
+        long delay = COALESCE_TICK_NANOS - System.nanoTime() % COALESCE_TICK_NANOS;
+        try {
+            queueProcessor.schedule(() -> dispatchFlush(channel), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("[RealtimeService] Flush rejected for project {}", channel.projectId);
+        }
+    }
+    
+    private void dispatchFlush(ProjectChannel channel) {
+        try {
+            laneFor(channel.projectId).execute(() -> flush(channel));
+        } catch (RejectedExecutionException e) {
+            log.warn("[RealtimeService] Broadcast lane rejected flush for project {}", channel.projectId);
+        }
+    }
+    
+    private void flush(ProjectChannel channel) {
+        try {
+            synchronized (channel) {
+                if (channel.pending.isEmpty()) return;
+                long now = System.currentTimeMillis();
+                // One sequence block for the whole tick (one INCRBY in redis mode)
+                int count = channel.pending.size();
+                long seq = stateStore.reserveSequences(channel.projectId, count) - count;
+                for (Map<String, Object> message : channel.pending.values()) {
+                    stamp(message, ++seq, now);
+                    channel.queue.offer(new QueuedMessage(message, false, now));
+                }
+                channel.pending.clear();
+                channel.hasPending = false;
+                channel.lastActivity = now;
+            }
+            scheduleDrain(channel);
+        } catch (Exception e) {
+            log.error("[RealtimeService] Error flushing transient updates for project {}", channel.projectId, e);
+        }
+    }
+    
+    // ==========================================================================
+    // QUEUE PROCESSING
+    // ==========================================================================
+    
+    private ExecutorService laneFor(Long projectId) {
+        return broadcastLanes[Math.floorMod(projectId.hashCode(), broadcastLanes.length)];
+    }
+    
+    /**
+     * Submit a drain task for the channel unless one is already pending.
+     * At most one drain task exists per project at any time.
+     */
+    private void scheduleDrain(ProjectChannel channel) {
+        if (isShutdown || !channel.scheduled.compareAndSet(false, true)) return;
         
-        // Batch process up to 20 messages
-        int batchSize = Math.min(20, queue.size());
-        List<QueuedMessage> batch = new ArrayList<>(batchSize);
+        try {
+            laneFor(channel.projectId).execute(() -> drain(channel));
+        } catch (RejectedExecutionException e) {
+            channel.scheduled.set(false);
+            log.warn("[RealtimeService] Broadcast lane rejected drain for project {}", channel.projectId);
+        }
+    }
+    
+    private void drain(ProjectChannel channel) {
+        try {
+            processQueue(channel);
+        } catch (Exception e) {
+            log.error("[RealtimeService] Error processing queue for project {}", channel.projectId, e);
+        } finally {
+            channel.scheduled.set(false);
+            // Messages that arrived during (or beyond) this batch get a fresh task,
+            // which lets other projects on the same lane take their turn first.
+            if (!channel.queue.isEmpty()) {
+                scheduleDrain(channel);
+            }
+        }
+    }
+    
+    private void processQueue(ProjectChannel channel) {
+        Long projectId = channel.projectId;
+        List<QueuedMessage> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
         
-        queue.drainTo(batch, batchSize);
+        channel.queue.drainTo(batch, DRAIN_BATCH_SIZE);
         
         if (batch.isEmpty()) return;
         
@@ -282,47 +658,178 @@ public class RealtimeMessageService {
         long now = System.currentTimeMillis();
         
         for (QueuedMessage qm : batch) {
-            // Skip stale messages
-            if (now - qm.timestamp > STALE_MESSAGE_MS) {
+            // Skip stale messages (durable ones are always delivered)
+            if (!qm.durable && now - qm.timestamp > STALE_MESSAGE_MS) {
+                droppedStale.increment();
                 log.warn("[RealtimeService] Dropping stale message for project {}", projectId);
                 continue;
             }
             
+            if (qm.frame != null) {
+                sendFrame(qm);
+                recordLatency(qm);
+                continue;
+            }
+            
             // Get destination from message or use default
             String destination = defaultDestination;
-            if (qm.message instanceof Map) {
-                Object destObj = ((Map<?, ?>) qm.message).get("_destination");
-                if (destObj instanceof String) {
-                    destination = (String) destObj;
-                    // Remove internal field before sending
-                    ((Map<?, ?>) qm.message).remove("_destination");
-                }
+            Object destObj = qm.message.remove("_destination");
+            if (destObj instanceof String) {
+                destination = (String) destObj;
             }
             
-            final String finalDest = destination;
-            
-            // Async broadcast
-            broadcastExecutor.submit(() -> {
-                try {
-                    messagingTemplate.convertAndSend(finalDest, qm.message);
-                } catch (Exception e) {
-                    log.error("[RealtimeService] Failed to broadcast to {}", finalDest, e);
-                }
-            });
+            // Sent on the project's lane thread to keep per-project ordering
+            send(destination, serialize(qm.message), !qm.durable);
+            recordLatency(qm);
         }
     }
     
+    private void recordLatency(QueuedMessage qm) {
+        (qm.durable ? durableLatency : bestEffortLatency).record(System.nanoTime() - qm.enqueuedNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private void sendFrame(QueuedMessage qm) {
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(STROKE_FRAME_TYPE);
+            accessor.setNativeHeader("seq", String.valueOf(StrokeFrameCodec.readSeq(qm.frame)));
+            accessor.setNativeHeader(DELIVERY_HEADER, DELIVERY_DROPPABLE);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(qm.destination, MessageBuilder.createMessage(qm.frame, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("[RealtimeService] Failed to broadcast frame to {}", qm.destination, e);
+        }
+        
+        if (qm.jsonMirrorDestination != null) {
+            send(qm.jsonMirrorDestination, serialize(StrokeFrameCodec.toJsonMessage(qm.frame)), true);
+        }
+    }
+    
+    /**
+     * Encode a message to JSON exactly once; the resulting bytes are shared by
+     * every subscriber (and the cross-node bridge) without re-encoding.
+     */
+    private SerializedMessage serialize(Object message) {
+        Object seq = message instanceof Map ? ((Map<?, ?>) message).get("seq") : null;
+        try {
+            return new SerializedMessage(PreSerializedPayload.json(objectMapper.writeValueAsBytes(message)), seq);
+        } catch (JsonProcessingException e) {
+            log.error("[RealtimeService] Failed to serialize message", e);
+            return null;
+        }
+    }
+    
+    private void send(String destination, SerializedMessage message, boolean droppable) {
+        if (message == null) return;
+        try {
+            // seq travels as a STOMP header too, so brokers/bridges can dedupe without parsing;
+            // x-delivery lets a slow session's outbound buffer drop this message first
+            Map<String, Object> headers = new HashMap<>(2);
+            if (message.seq != null) {
+                headers.put("seq", String.valueOf(message.seq));
+            }
+            if (droppable) {
+                headers.put(DELIVERY_HEADER, DELIVERY_DROPPABLE);
+            }
+            messagingTemplate.convertAndSend(destination, message.payload, headers);
+        } catch (Exception e) {
+            log.error("[RealtimeService] Failed to broadcast to {}", destination, e);
+        }
+    }
+    
+    // ==========================================================================
+    // METRICS
+    // ==========================================================================
+    
+    private void registerMetrics() {
+        droppedUserRateLimit = dropCounter("user_rate_limit");
+        droppedProjectRateLimit = dropCounter("project_rate_limit");
+        droppedQueueFull = dropCounter("queue_full");
+        droppedStale = dropCounter("stale");
+        droppedDurableRateLimit = dropCounter("durable_user_rate_limit");
+        droppedDurableQueueFull = dropCounter("durable_queue_full");
+        durableLatency = latencyTimer("durable");
+        bestEffortLatency = latencyTimer("best_effort");
+        
+        FunctionCounter.builder("collab.messages.coalesced", coalescedCount, AtomicLong::get)
+            .description("Transient updates replaced by a newer value before their flush")
+            .register(meterRegistry);
+        Gauge.builder("collab.projects.active", projectQueues, Map::size)
+            .description("Projects holding a message queue on this node")
+            .register(meterRegistry);
+        
+        // executor.queued = projects waiting for their turn on the lane
+        if (virtualLanes) {
+            // Too many lanes to tag each one
+            Gauge.builder("ws.broadcast.queued", broadcastLanes, RealtimeMessageService::queuedOnLanes)
+                .description("Tasks waiting on all broadcast lanes")
+                .register(meterRegistry);
+            return;
+        }
+        for (int i = 0; i < broadcastLanes.length; i++) {
+            new ExecutorServiceMetrics(broadcastLanes[i], "ws.broadcast", Tags.of("lane", String.valueOf(i)))
+                .bindTo(meterRegistry);
+        }
+    }
+    
+    private static double queuedOnLanes(ExecutorService[] lanes) {
+        long queued = 0;
+        for (ExecutorService lane : lanes) {
+            queued += ((ThreadPoolExecutor) lane).getQueue().size();
+        }
+        return queued;
+    }
+    
+    private Counter dropCounter(String reason) {
+        return Counter.builder("collab.messages.dropped")
+            .description("Messages not broadcast, by reason")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+    
+    private Timer latencyTimer(String delivery) {
+        return Timer.builder("collab.broadcast.latency")
+            .description("Time from enqueue (or coalesced flush) to handing the message to the broker")
+            .tag("delivery", delivery)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofMillis(STALE_MESSAGE_MS))
+            .register(meterRegistry);
+    }
+    
+    /**
+     * New project channel with its queue depth gauge; the gauge is removed when
+     * the channel is evicted, so series only exist for active projects
+     */
+    private ProjectChannel newChannel(Long projectId) {
+        ProjectChannel channel = new ProjectChannel(projectId);
+        channel.depthGauge = Gauge.builder("collab.queue.depth", channel.queue, LinkedBlockingQueue::size)
+            .description("Messages waiting in a project's broadcast queue")
+            .tag("project", String.valueOf(projectId))
+            .register(meterRegistry);
+        return channel;
+    }
+    
     // ==========================================================================
     // CLEANUP
     // ==========================================================================
     
     private void cleanupStaleData() {
         try {
-            // Cleanup empty queues
-            projectQueues.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+            // Evict idle projects. computeIfPresent is atomic with the compute() in
+            // enqueueMessage, so a message can never land in an evicted channel.
+            long now = System.currentTimeMillis();
+            // The depth gauge is removed under the same per-key lock that registers
+            // it in newChannel(), so a recreated channel always gets a fresh one.
+            for (Long projectId : projectQueues.keySet()) {
+                projectQueues.computeIfPresent(projectId, (k, channel) -> {
+                    if (!channel.isIdle(now)) return channel;
+                    meterRegistry.remove(channel.depthGauge);
+                    return null;
+                });
+            }
             
-            // Cleanup old rate limiters (inactive for > 5 minutes)
-            // Note: In production, use a more sophisticated eviction strategy
+            // Rate limiter tables are bounded and recycle idle buckets themselves
             
             log.debug("[RealtimeService] Cleanup complete. Active projects: {}", projectQueues.size());
         } catch (Exception e) {
@@ -335,55 +842,65 @@ public class RealtimeMessageService {
     // ==========================================================================
     
     /**
-     * Queued message with timestamp for staleness check
+     * Per-project queue plus the flag that guarantees a single pending drain task
      */
-    private static class QueuedMessage {
-        final Map<String, Object> message;
-        final long timestamp;
+    private static class ProjectChannel {
+        final Long projectId;
+        // QUEUE_CAPACITY is enforced for best-effort messages in offer(),
+        // DURABLE_QUEUE_CAPACITY for durable ones in enqueueMessage()
+        final LinkedBlockingQueue<QueuedMessage> queue = new LinkedBlockingQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        final AtomicLong lastResyncNotice = new AtomicLong();
+        // Latest transient value per coalesce key, guarded by the channel monitor
+        final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+        // Mirrors !pending.isEmpty() for the lock-free idle check
+        volatile boolean hasPending;
+        volatile long lastActivity = System.currentTimeMillis();
+        Gauge depthGauge;
         
-        QueuedMessage(Map<String, Object> message, long timestamp) {
-            this.message = message;
-            this.timestamp = timestamp;
+        ProjectChannel(Long projectId) {
+            this.projectId = projectId;
+        }
+        
+        boolean isIdle(long now) {
+            return queue.isEmpty() && !scheduled.get() && !hasPending && now - lastActivity > IDLE_PROJECT_EVICT_MS;
         }
     }
     
     /**
-     * Token bucket rate limiter
-     * Allows burst up to bucket size, then limits to rate per second
+     * Queued message with timestamp for staleness check
      */
-    private static class TokenBucketRateLimiter {
-        private final int maxTokens;
-        private final long refillIntervalNanos;
-        private long availableTokens;
-        private long lastRefillTime;
+    private static class QueuedMessage {
+        final Map<String, Object> message;
+        final boolean durable;
+        final byte[] frame;
+        final String destination;
+        final String jsonMirrorDestination;
+        final long timestamp;
+        final long enqueuedNanos = System.nanoTime();
         
-        TokenBucketRateLimiter(int tokensPerSecond) {
-            this.maxTokens = tokensPerSecond;
-            this.refillIntervalNanos = 1_000_000_000L / tokensPerSecond; // Nano per token
-            this.availableTokens = tokensPerSecond;
-            this.lastRefillTime = System.nanoTime();
+        QueuedMessage(Map<String, Object> message, boolean durable, long timestamp) {
+            this(message, durable, null, null, null, timestamp);
         }
         
-        synchronized boolean tryAcquire() {
-            refill();
-            
-            if (availableTokens > 0) {
-                availableTokens--;
-                return true;
-            }
-            
-            return false;
+        QueuedMessage(byte[] frame, String destination, String jsonMirrorDestination, long timestamp) {
+            this(null, false, frame, destination, jsonMirrorDestination, timestamp);
         }
         
-        private void refill() {
-            long now = System.nanoTime();
-            long elapsed = now - lastRefillTime;
-            
-            if (elapsed > refillIntervalNanos) {
-                long tokensToAdd = elapsed / refillIntervalNanos;
-                availableTokens = Math.min(maxTokens, availableTokens + tokensToAdd);
-                lastRefillTime = now;
-            }
+        private QueuedMessage(Map<String, Object> message, boolean durable, byte[] frame, String destination,
+                              String jsonMirrorDestination, long timestamp) {
+            this.message = message;
+            this.durable = durable;
+            this.frame = frame;
+            this.destination = destination;
+            this.jsonMirrorDestination = jsonMirrorDestination;
+            this.timestamp = timestamp;
         }
     }
+    
+    /**
+     * Encoded payload plus the seq it carries (for the STOMP header)
+     */
+    private record SerializedMessage(PreSerializedPayload payload, Object seq) {
+    }
 }
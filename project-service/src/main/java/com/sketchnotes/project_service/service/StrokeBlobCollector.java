@@ -0,0 +1,189 @@
+package com.sketchnotes.project_service.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sketchnotes.project_service.config.StrokeBlobProperties;
+import com.sketchnotes.project_service.repository.StrokeBlobRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * STROKE BLOB COLLECTOR
+ * =============================================================================
+ *
+ * Deletes stroke blobs that no live page references any more, in batches of
+ * gc-batch-size through one S3 multi-object delete each.
+ *
+ * A batch is claimed in one short transaction (claim token plus a lease in
+ * next_attempt_at), deleted from S3 with no transaction or pooled connection
+ * held, then settled in a second transaction. Several nodes can collect at
+ * once without deleting twice, and a batch whose collector died is claimed
+ * again once its lease (gc-claim-timeout-ms) ends. A presign for a claimed
+ * blob, and a save referencing one, are refused (STROKE_BLOB_BUSY) until the
+ * batch is settled, so nothing can point at an object mid-delete. Only
+ * content-addressed objects are ever deleted. Blobs S3 failed to delete
+ * keep their row and are retried with exponential backoff, so a key S3 keeps
+ * refusing does not stall the batches behind it.
+ *
+ * Metrics: storage.blobs.gc{result=deleted|failed}, storage.blobs.gc.delete
+ * (one timing per multi-object delete) and storage.blobs.unreferenced (backlog
+ * after the last pass).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StrokeBlobCollector {
+
+    private final StrokeBlobRepository strokeBlobRepository;
+    private final IStorageService storageService;
+    private final TransactionTemplate transactionTemplate;
+    private final StrokeBlobProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong unreferenced = new AtomicLong();
+    private ScheduledExecutorService collector;
+    private Counter deletedBlobs;
+    private Counter failedBlobs;
+    private Timer deleteTimer;
+
+    @PostConstruct
+    public void init() {
+        registerMetrics();
+        collector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stroke-blob-gc");
+            t.setDaemon(true);
+            return t;
+        });
+        if (properties.isBackfillOnStartup()) {
+            collector.execute(this::backfill);
+        }
+        collector.scheduleWithFixedDelay(this::collectSafely, properties.getGcIntervalMs(),
+                properties.getGcIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (collector != null) {
+            collector.shutdownNow();
+        }
+    }
+
+    /**
+     * Delete every blob unreferenced for longer than the grace period
+     *
+     * @return blobs deleted
+     */
+    public int collect() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(properties.getGcGraceMs() * 1_000_000);
+        int deleted = 0;
+        while (true) {
+            Batch batch = collectBatch(cutoff);
+            deleted += batch.deleted();
+            // Failed blobs are postponed, so only a short batch means nothing is left
+            if (batch.claimed() < properties.getGcBatchSize()) break;
+        }
+        unreferenced.set(strokeBlobRepository.countUnreferenced());
+        return deleted;
+    }
+
+    private Batch collectBatch(LocalDateTime cutoff) {
+        String claimToken = UUID.randomUUID().toString();
+        Map<Long, String> blobs = transactionTemplate.execute(status -> strokeBlobRepository.claimUnreferenced(
+                claimToken, cutoff, properties.getGcBatchSize(), properties.getGcClaimTimeoutMs()));
+        if (blobs == null || blobs.isEmpty()) return new Batch(0, 0);
+
+        // Rows registered before only content-addressed URLs were counted: stop
+        // tracking them, but never delete an object this collector does not own
+        String prefix = storageService.getContentAddressedUrlPrefix();
+        List<String> owned = blobs.values().stream()
+                .filter(strokeUrl -> prefix != null && strokeUrl.startsWith(prefix))
+                .toList();
+
+        Set<String> failed = new HashSet<>();
+        if (!owned.isEmpty()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            failed.addAll(storageService.deleteFiles(owned));
+            sample.stop(deleteTimer);
+        }
+
+        List<Long> untrackedIds = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>(owned.size());
+        List<Long> failedIds = new ArrayList<>(failed.size());
+        blobs.forEach((blobId, strokeUrl) -> {
+            if (prefix == null || !strokeUrl.startsWith(prefix)) {
+                untrackedIds.add(blobId);
+            } else {
+                (failed.contains(strokeUrl) ? failedIds : deletedIds).add(blobId);
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            strokeBlobRepository.deleteClaimed(untrackedIds, claimToken);
+            strokeBlobRepository.deleteClaimed(deletedIds, claimToken);
+            strokeBlobRepository.postponeClaimed(failedIds, claimToken,
+                    properties.getGcRetryBackoffMs(), properties.getGcMaxRetryBackoffMs());
+        });
+
+        deletedBlobs.increment(deletedIds.size());
+        if (!failedIds.isEmpty()) {
+            failedBlobs.increment(failedIds.size());
+            log.warn("⚠️ [BlobGC] {} of {} stroke blobs could not be deleted, retrying with backoff",
+                    failedIds.size(), blobs.size());
+        }
+        return new Batch(blobs.size(), deletedIds.size());
+    }
+
+    private void registerMetrics() {
+        deletedBlobs = meterRegistry.counter("storage.blobs.gc", "result", "deleted");
+        failedBlobs = meterRegistry.counter("storage.blobs.gc", "result", "failed");
+        deleteTimer = Timer.builder("storage.blobs.gc.delete")
+                .description("One S3 multi-object delete of up to gc-batch-size blobs")
+                .register(meterRegistry);
+        meterRegistry.gauge("storage.blobs.unreferenced", unreferenced);
+    }
+
+    private void collectSafely() {
+        try {
+            int deleted = collect();
+            if (deleted > 0) {
+                log.info("🗑️ [BlobGC] Deleted {} unreferenced stroke blobs", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [BlobGC] Collection pass failed: {}", e.getMessage());
+        }
+    }
+
+    private void backfill() {
+        try {
+            String prefix = storageService.getContentAddressedUrlPrefix();
+            Integer registered = transactionTemplate.execute(status -> strokeBlobRepository.backfillOnce(prefix));
+            if (registered != null && registered > 0) {
+                log.info("🗑️ [BlobGC] Registered {} stroke blobs of existing pages", registered);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [BlobGC] Backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private record Batch(int claimed, int deleted) {
+    }
+}
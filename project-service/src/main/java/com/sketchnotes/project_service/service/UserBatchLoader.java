@@ -0,0 +1,143 @@
+package com.sketchnotes.project_service.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.sketchnotes.project_service.client.IUserClient;
+import com.sketchnotes.project_service.dtos.ApiResponse;
+import com.sketchnotes.project_service.dtos.response.UserResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * =============================================================================
+ * USER BATCH LOADER
+ * =============================================================================
+ *
+ * DataLoader-style lookup of users by id for enrichment loops: ids are queued
+ * with load(id), and the first value read dispatches everything queued as one
+ * identity-service /api/users/batch call (chunks of MAX_BATCH_SIZE), which
+ * needs the caller's token like the other user lookups.
+ * Ids are deduplicated and results, including unknown ids, are kept for the
+ * rest of the HTTP request, so a page costs one round trip instead of one or
+ * two per row. Outside a request forRequest() returns a fresh, unshared batch.
+ *
+ * Metrics: users.batch.calls (round trips), users.batch.ids (ids requested).
+ */
+@Slf4j
+@Component
+public class UserBatchLoader {
+
+    /**
+     * identity-service rejects larger batches
+     */
+    public static final int MAX_BATCH_SIZE = 200;
+
+    private static final String REQUEST_ATTRIBUTE = UserBatchLoader.class.getName() + ".batch";
+
+    private final IUserClient userClient;
+    private final Counter calls;
+    private final Counter ids;
+
+    public UserBatchLoader(IUserClient userClient, MeterRegistry meterRegistry) {
+        this.userClient = userClient;
+        this.calls = meterRegistry.counter("users.batch.calls");
+        this.ids = meterRegistry.counter("users.batch.ids");
+    }
+
+    /**
+     * The current request's batch (created on first use)
+     */
+    public Batch forRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new Batch();
+        }
+        Object existing = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (existing instanceof Batch batch) {
+            return batch;
+        }
+        Batch batch = new Batch();
+        attributes.setAttribute(REQUEST_ATTRIBUTE, batch, RequestAttributes.SCOPE_REQUEST);
+        return batch;
+    }
+
+    public final class Batch {
+
+        private final Map<Long, UserResponse> loaded = new HashMap<>();
+        private final Set<Long> pending = new LinkedHashSet<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Queue id; the returned supplier yields the user (null when unknown)
+         */
+        public synchronized Supplier<UserResponse> load(Long id) {
+            if (id != null && !loaded.containsKey(id)) {
+                pending.add(id);
+            }
+            return () -> get(id);
+        }
+
+        /**
+         * Users by id for ids, unknown ids omitted, in one dispatch
+         */
+        public synchronized Map<Long, UserResponse> loadMany(Collection<Long> userIds) {
+            userIds.forEach(this::load);
+            dispatch();
+            Map<Long, UserResponse> users = new LinkedHashMap<>();
+            for (Long id : userIds) {
+                UserResponse user = id != null ? loaded.get(id) : null;
+                if (user != null) {
+                    users.put(id, user);
+                }
+            }
+            return users;
+        }
+
+        public synchronized UserResponse get(Long id) {
+            if (id == null) return null;
+            if (!loaded.containsKey(id)) {
+                pending.add(id);
+            }
+            dispatch();
+            return loaded.get(id);
+        }
+
+        /**
+         * Fetch everything queued so far
+         */
+        public synchronized void dispatch() {
+            if (pending.isEmpty()) return;
+            List<Long> queued = new ArrayList<>(pending);
+            pending.clear();
+            for (int from = 0; from < queued.size(); from += MAX_BATCH_SIZE) {
+                List<Long> chunk = queued.subList(from, Math.min(from + MAX_BATCH_SIZE, queued.size()));
+                calls.increment();
+                ids.increment(chunk.size());
+                ApiResponse<List<UserResponse>> response = userClient.getUsersByIds(chunk);
+                if (response != null && response.getResult() != null) {
+                    response.getResult().forEach(user -> loaded.put(user.getId(), user));
+                }
+                // Unknown or inactive ids are remembered as absent for the request
+                chunk.forEach(id -> loaded.putIfAbsent(id, null));
+            }
+            log.debug("[UserBatch] Loaded {} users in {} call(s)", queued.size(),
+                    (queued.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE);
+        }
+    }
+}
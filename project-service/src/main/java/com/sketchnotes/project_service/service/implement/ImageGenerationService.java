@@ -3,12 +3,13 @@ package com.sketchnotes.project_service.service.implement;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sketchnotes.project_service.client.CreditClient;
-import com.sketchnotes.project_service.client.IUserClient;
 import com.sketchnotes.project_service.config.GeminiProperties;
+import com.sketchnotes.project_service.config.ImageJobProperties;
 import com.sketchnotes.project_service.config.S3Properties;
 import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
 import com.sketchnotes.project_service.dtos.request.UseCreditRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationJobResponse;
 import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
 import com.sketchnotes.project_service.dtos.response.ImagePromptResponse;
 import com.sketchnotes.project_service.dtos.response.UserResponse;
@@ -17,8 +18,10 @@ import com.sketchnotes.project_service.enums.ImageType;
 import com.sketchnotes.project_service.exception.AppException;
 import com.sketchnotes.project_service.exception.ErrorCode;
 import com.sketchnotes.project_service.repository.IImagePromptRepository;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
 import com.sketchnotes.project_service.service.IAiImageService;
 import com.sketchnotes.project_service.service.IImageGenerationService;
+import com.sketchnotes.project_service.service.ImageGenerationJobRunner;
 import com.sketchnotes.project_service.utils.ByteArrayMultipartFile;
 import com.google.cloud.aiplatform.v1.EndpointName;
 import com.google.cloud.aiplatform.v1.PredictionServiceClient;
@@ -29,21 +32,37 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
+import feign.FeignException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Triển khai dịch vụ tạo ảnh sử dụng Imagen 3.0 trên Vertex AI.
  * Với icon: Gen ảnh → Xóa background bằng AI
  * Với ảnh thường: Chỉ gen ảnh
+ * Xóa background và upload chạy song song cho mọi ảnh; credit chỉ bị trừ khi thành công.
+ * Bất đồng bộ: submitGeneration → ImageGenerationJobRunner
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageGenerationService implements IImageGenerationService {
@@ -55,90 +74,138 @@ public class ImageGenerationService implements IImageGenerationService {
     private final IAiImageService aiImageService;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private  final IImagePromptRepository imagePromptRepository;
-    private final IUserClient userClient;
+    private final CurrentUserResolver currentUserResolver;
     private final CreditClient creditClient;
+    private final ImageGenerationJobRunner imageGenerationJobRunner;
+    private final ImageJobProperties imageJobProperties;
+    private ExecutorService postProcessor;
     private final int CREDIT_COST_PER_IMAGE = 1;
     private final int CREDIT_COST_PER_BACKGROUND_REMOVAL = 2;
 
+    @PostConstruct
+    public void init() {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(imageJobProperties.getPostProcessThreads(), r -> {
+            Thread t = new Thread(r, "image-post-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Xóa background gọi AiClient qua Feign: giữ token của người gọi
+        postProcessor = new DelegatingSecurityContextExecutorService(pool);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (postProcessor != null) {
+            postProcessor.shutdownNow();
+        }
+    }
+
     /**
-     * Phương thức chính: Tạo ảnh bằng Imagen 3.0 và Upload lên S3.
+     * Phương thức chính: Tạo ảnh bằng Imagen 3.0 và Upload lên S3 (đồng bộ).
      * Nếu là icon, sẽ xóa background trước khi upload.
      */
     @Override
     public ImageGenerationResponse generateAndUploadImage(ImageGenerationRequest request) {
         //check xem user co du token hay khong
-        if(request.getIsIcon() != null && request.getIsIcon()) {
-            ApiResponse<Boolean> creditCheckResponse = creditClient.checkCredits(CREDIT_COST_PER_BACKGROUND_REMOVAL).getBody();
-            if (!creditCheckResponse.getResult()) {
-                throw new AppException(ErrorCode.INSUFFICIENT_CREDITS);
-            }
-
-            creditClient.useCredits(UseCreditRequest.builder()
-                    .amount(CREDIT_COST_PER_BACKGROUND_REMOVAL)
-                    .description(request.getPrompt() + " - Background removal")
-                    .build());
-        } else {
-
+        checkCredits(creditCost(request));
+        UserResponse user = currentUserResolver.getCurrentUser();
+        return generate(request, user.getId(), () -> { });
+    }
 
-            ApiResponse<Boolean> creditCheckResponse = creditClient.checkCredits(CREDIT_COST_PER_IMAGE).getBody();
-            if ( !creditCheckResponse.getResult()) {
-                throw new AppException(ErrorCode.INSUFFICIENT_CREDITS);
-            }
+    /**
+     * Tạo ảnh bất đồng bộ: trả về job ngay, tiến độ và kết quả qua
+     * /user/queue/image-jobs hoặc GET /api/images/jobs/{jobId}
+     */
+    @Override
+    public ImageGenerationJobResponse submitGeneration(ImageGenerationRequest request) {
+        checkCredits(creditCost(request));
+        UserResponse user = currentUserResolver.getCurrentUser();
+        return imageGenerationJobRunner.submit(user.getId(), request, geminiProperties.getNumImages(),
+                imageDone -> generate(request, user.getId(), imageDone));
+    }
 
-            creditClient.useCredits(UseCreditRequest.builder()
-                    .amount(CREDIT_COST_PER_IMAGE)
-                    .description(request.getPrompt() + " - Image generation")
-                    .build());
+    @Override
+    public ImageGenerationJobResponse getGenerationJob(String jobId) {
+        return imageGenerationJobRunner.get(jobId, currentUserResolver.getCurrentUserId());
+    }
 
-        }
-        //bat dau gen anh va icon
+    /**
+     * Gen ảnh → (icon) xóa background và upload song song cho tất cả ảnh →
+     * trừ credit → lưu lịch sử. Credit chỉ bị trừ khi mọi bước đều thành công;
+     * nếu trừ credit thất bại, các ảnh vừa upload bị xóa khỏi S3.
+     */
+    private ImageGenerationResponse generate(ImageGenerationRequest request, Long ownerId, Runnable imageDone) {
         long startTime = System.currentTimeMillis();
-
         try {
             boolean isIcon = request.getIsIcon() != null && request.getIsIcon();
 
             List<byte[]> imagesBytes = generateImagesWithImagen(request);
-            if (isIcon) {
-                imagesBytes = removeBackgroundFromImages(imagesBytes);
-            }
+            List<String> s3Urls = postProcessImages(imagesBytes, isIcon, imageDone);
 
-            // Bước 3: Upload tất cả ảnh lên S3
-            List<String> s3Urls = new ArrayList<>();
-            String primaryFileName = null;
-            ApiResponse<UserResponse> user = userClient.getCurrentUser();
-            for (byte[] imageBytes : imagesBytes) {
-                String fileName = generateFileName(ImageType.PNG);
-                if (primaryFileName == null) primaryFileName = fileName;
-
-                String s3Url = uploadToS3(imageBytes, fileName, ImageType.PNG);
-                s3Urls.add(s3Url);
-                // Lưu prompt và URL ảnh vào DB
-                imagePromptRepository.save(ImagePrompt.builder()
-                        .imageUrl(s3Url)
-                        .createdAt(LocalDateTime.now())
-                        .ownerId(user.getResult().getId())
-                        .build());
+            try {
+                chargeCredits(request);
+            } catch (AppException e) {
+                deleteUploads(s3Urls);
+                throw e;
             }
 
+            // Lưu prompt và URL ảnh vào DB
+            LocalDateTime now = LocalDateTime.now();
+            imagePromptRepository.saveAll(s3Urls.stream()
+                    .map(s3Url -> ImagePrompt.builder()
+                            .imageUrl(s3Url)
+                            .createdAt(now)
+                            .ownerId(ownerId)
+                            .build())
+                    .toList());
+
             long generationTime = System.currentTimeMillis() - startTime;
 
-            // Bước 4: Trả về DTO phản hồi
             return ImageGenerationResponse.builder()
                     .imageUrls(s3Urls)
                     .prompt(request.getPrompt())
                     .generationTime(generationTime)
                     .build();
 
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             throw new AppException(ErrorCode.IMAGE_GENERATION_FAILED);
         }
     }
 
+    private int creditCost(ImageGenerationRequest request) {
+        return request.getIsIcon() != null && request.getIsIcon()
+                ? CREDIT_COST_PER_BACKGROUND_REMOVAL
+                : CREDIT_COST_PER_IMAGE;
+    }
+
+    private void checkCredits(int amount) {
+        ApiResponse<Boolean> creditCheckResponse = creditClient.checkCredits(amount).getBody();
+        if (creditCheckResponse == null || !Boolean.TRUE.equals(creditCheckResponse.getResult())) {
+            throw new AppException(ErrorCode.INSUFFICIENT_CREDITS);
+        }
+    }
+
+    private void chargeCredits(ImageGenerationRequest request) {
+        boolean isIcon = request.getIsIcon() != null && request.getIsIcon();
+        try {
+            creditClient.useCredits(UseCreditRequest.builder()
+                    .amount(creditCost(request))
+                    .description(request.getPrompt() + (isIcon ? " - Background removal" : " - Image generation"))
+                    .build());
+        } catch (FeignException e) {
+            // Số dư có thể đã thay đổi kể từ lúc kiểm tra
+            throw new AppException(e.status() == 400 ? ErrorCode.INSUFFICIENT_CREDITS : ErrorCode.CREDIT_CHECK_FAILED);
+        }
+    }
+
     @Override
     public PagedResponse<ImagePromptResponse> getImageGenerations(int page, int size) {
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
+        UserResponse user = currentUserResolver.getCurrentUser();
         Pageable pageable = PageRequest.of(page, size);
-        var imagePromptsPage = imagePromptRepository.findByOwnerIdAndDeletedAtIsNullOrderByCreatedAtDesc(user.getResult().getId(), pageable);
+        var imagePromptsPage = imagePromptRepository.findByOwnerIdAndDeletedAtIsNullOrderByCreatedAtDesc(user.getId(), pageable);
         var imageGenerations = imagePromptsPage.getContent().stream()
                 .map(imagePrompt -> ImagePromptResponse.builder()
                         .imagePromptId(imagePrompt.getImagePromptId())
@@ -156,35 +223,50 @@ public class ImageGenerationService implements IImageGenerationService {
         );
     }
     /**
-     * Xóa background cho TẤT CẢ ảnh trong danh sách sử dụng AI Background Remover
+     * Xóa background (nếu là icon) và upload TẤT CẢ ảnh song song trên postProcessor;
+     * imageDone được gọi khi từng ảnh xong. Lỗi ở một ảnh hủy các ảnh còn lại.
      */
-    private List<byte[]> removeBackgroundFromImages(List<byte[]> imagesBytes) {
-        List<byte[]> processedImages = new ArrayList<>();
-
-
+    private List<String> postProcessImages(List<byte[]> imagesBytes, boolean isIcon, Runnable imageDone) {
+        List<CompletableFuture<String>> uploads = new ArrayList<>(imagesBytes.size());
         for (int i = 0; i < imagesBytes.size(); i++) {
-            try {
-                byte[] imageBytes = imagesBytes.get(i);
-
-                // Tạo MultipartFile từ byte array sử dụng custom implementation
-                MultipartFile multipartFile = new ByteArrayMultipartFile(
-                        imageBytes,
-                        "file",
-                        "temp_image_" + i + ".png",
-                        "image/png"
-                );
-
-
-                byte[] processedImage = aiImageService.removeBackground(multipartFile);
-
-                processedImages.add(processedImage);
+            int index = i;
+            byte[] imageBytes = imagesBytes.get(i);
+            uploads.add(CompletableFuture.supplyAsync(() -> {
+                byte[] png = isIcon ? removeBackground(imageBytes, index) : imageBytes;
+                String s3Url = uploadToS3(png, generateFileName(ImageType.PNG), ImageType.PNG);
+                imageDone.run();
+                return s3Url;
+            }, postProcessor));
+        }
 
-            } catch (Exception e) {
-                throw new AppException(ErrorCode.IMAGE_REMOVAL_FAILED);
+        try {
+            CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            if (e.getCause() instanceof AppException appException) {
+                throw appException;
             }
+            throw new AppException(ErrorCode.IMAGE_GENERATION_FAILED);
         }
+        return uploads.stream().map(CompletableFuture::join).toList();
+    }
 
-        return processedImages;
+    /**
+     * Xóa background cho một ảnh sử dụng AI Background Remover
+     */
+    private byte[] removeBackground(byte[] imageBytes, int index) {
+        try {
+            // Tạo MultipartFile từ byte array sử dụng custom implementation
+            MultipartFile multipartFile = new ByteArrayMultipartFile(
+                    imageBytes,
+                    "file",
+                    "temp_image_" + index + ".png",
+                    "image/png"
+            );
+            return aiImageService.removeBackground(multipartFile);
+        } catch (Exception e) {
+            throw new AppException(ErrorCode.IMAGE_REMOVAL_FAILED);
+        }
     }
 
     private List<byte[]> generateImagesWithImagen(ImageGenerationRequest request) {
@@ -296,18 +378,37 @@ public class ImageGenerationService implements IImageGenerationService {
 
             s3Client.putObject(putObjectRequest, RequestBody.fromBytes(imageBytes));
 
-            String s3Url = String.format("https://%s.s3.%s.amazonaws.com/%s",
-                    s3Properties.getBucketName(),
-                    s3Properties.getRegion(),
-                    key);
-
-            return s3Url;
+            return s3UrlPrefix() + key;
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to upload image to S3: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Xóa các ảnh đã upload nhưng không được trả về cho user (không trừ được credit)
+     */
+    private void deleteUploads(List<String> s3Urls) {
+        String prefix = s3UrlPrefix();
+        List<ObjectIdentifier> objects = s3Urls.stream()
+                .filter(s3Url -> s3Url.startsWith(prefix))
+                .map(s3Url -> ObjectIdentifier.builder().key(s3Url.substring(prefix.length())).build())
+                .toList();
+        if (objects.isEmpty()) return;
+        try {
+            s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(s3Properties.getBucketName())
+                    .delete(Delete.builder().objects(objects).build())
+                    .build());
+        } catch (Exception e) {
+            log.warn("⚠️ [ImageGeneration] Could not delete {} uncharged image(s): {}", objects.size(), e.getMessage());
+        }
+    }
+
+    private String s3UrlPrefix() {
+        return String.format("https://%s.s3.%s.amazonaws.com/", s3Properties.getBucketName(), s3Properties.getRegion());
+    }
+
     private String generateFileName(ImageType imageType) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         String uuid = UUID.randomUUID().toString().substring(0, 8);
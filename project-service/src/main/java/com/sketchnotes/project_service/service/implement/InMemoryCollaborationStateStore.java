@@ -0,0 +1,284 @@
+package com.sketchnotes.project_service.service.implement;
+
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+import com.sketchnotes.project_service.service.ICollaborationStateStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-node collaboration state kept in local maps (default store)
+ */
+@Service
+@ConditionalOnProperty(name = "collaboration.state-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryCollaborationStateStore implements ICollaborationStateStore {
+
+    private static final long WHEEL_TICK_MS = 100;
+    private static final int WHEEL_SLOTS = 1024;
+
+    private final ConcurrentHashMap<Long, AtomicLong> projectSequences = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AtomicLong> projectVersions = new ConcurrentHashMap<>();
+    // projectId -> (elementId -> lock)
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, ElementLock>> projectLocks = new ConcurrentHashMap<>();
+    // projectId -> (userId -> elementIds locked), so a leaving user costs O(locks held)
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, Set<String>>> userLocks = new ConcurrentHashMap<>();
+    // Hashed timing wheel of lock expiries: slot = (expiresAt / tick) % slots.
+    // One rotation (102s) outlasts any lock TTL, later rounds are simply re-queued.
+    @SuppressWarnings("unchecked")
+    private final Queue<LockExpiry>[] wheel = new Queue[WHEEL_SLOTS];
+    private volatile long reapedTick = System.currentTimeMillis() / WHEEL_TICK_MS - 1;
+    // projectId -> (strokeId -> stroke)
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, ActiveStroke>> activeStrokes = new ConcurrentHashMap<>();
+
+    public InMemoryCollaborationStateStore() {
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    @Override
+    public long nextSequence(Long projectId) {
+        return counter(projectSequences, projectId).incrementAndGet();
+    }
+
+    @Override
+    public long currentSequence(Long projectId) {
+        return counter(projectSequences, projectId).get();
+    }
+
+    @Override
+    public long reserveSequences(Long projectId, int count) {
+        return counter(projectSequences, projectId).addAndGet(count);
+    }
+
+    @Override
+    public long incrementVersion(Long projectId) {
+        return counter(projectVersions, projectId).incrementAndGet();
+    }
+
+    @Override
+    public long currentVersion(Long projectId) {
+        return counter(projectVersions, projectId).get();
+    }
+
+    @Override
+    public void advanceVersion(Long projectId, long version) {
+        counter(projectVersions, projectId).accumulateAndGet(version, Math::max);
+    }
+
+    @Override
+    public ElementLock tryLock(Long projectId, ElementLock candidate) {
+        long now = System.currentTimeMillis();
+        ElementLock[] replaced = new ElementLock[1];
+        ElementLock winner = projectLocks.computeIfAbsent(projectId, k -> new ConcurrentHashMap<>())
+                .compute(candidate.getElementId(), (elementId, existing) -> {
+                    if (existing == null || existing.isExpired(now) || existing.isHeldBy(candidate.getUserId())) {
+                        replaced[0] = existing;
+                        return candidate;
+                    }
+                    return existing;
+                });
+
+        if (winner == candidate) {
+            if (replaced[0] != null && !replaced[0].isHeldBy(candidate.getUserId())) {
+                unindex(projectId, replaced[0].getUserId(), candidate.getElementId());
+            }
+            index(projectId, candidate.getUserId(), candidate.getElementId());
+            scheduleExpiry(projectId, candidate);
+        }
+        return winner;
+    }
+
+    @Override
+    public ElementLock getLock(Long projectId, String elementId) {
+        ConcurrentHashMap<String, ElementLock> locks = projectLocks.get(projectId);
+        if (locks == null) return null;
+
+        ElementLock lock = locks.get(elementId);
+        return lock != null && !lock.isExpired(System.currentTimeMillis()) ? lock : null;
+    }
+
+    @Override
+    public boolean releaseLock(Long projectId, String elementId, String userId, String lockToken) {
+        ConcurrentHashMap<String, ElementLock> locks = projectLocks.get(projectId);
+        if (locks == null) return false;
+
+        ElementLock[] released = new ElementLock[1];
+        locks.computeIfPresent(elementId, (k, lock) -> {
+            if (lock.isHeldBy(userId) || (lockToken != null && lockToken.equals(lock.getLockToken()))) {
+                released[0] = lock;
+                return null;
+            }
+            return lock;
+        });
+        if (released[0] != null) {
+            unindex(projectId, released[0].getUserId(), elementId);
+        }
+        return released[0] != null;
+    }
+
+    @Override
+    public Map<String, ElementLock> getLocks(Long projectId) {
+        ConcurrentHashMap<String, ElementLock> locks = projectLocks.get(projectId);
+        Map<String, ElementLock> live = new HashMap<>();
+        if (locks == null) return live;
+
+        long now = System.currentTimeMillis();
+        locks.forEach((elementId, lock) -> {
+            if (!lock.isExpired(now)) {
+                live.put(elementId, lock);
+            }
+        });
+        return live;
+    }
+
+    @Override
+    public List<String> releaseUserLocks(Long projectId, String userId) {
+        List<String> released = new ArrayList<>();
+        ConcurrentHashMap<String, Set<String>> users = userLocks.get(projectId);
+        Set<String> held = users != null ? users.get(userId) : null;
+        if (held == null) return released;
+
+        // O(locks held) thanks to the reverse index
+        for (String elementId : List.copyOf(held)) {
+            if (releaseLock(projectId, elementId, userId, null)) {
+                released.add(elementId);
+            } else {
+                unindex(projectId, userId, elementId);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public synchronized Map<Long, List<ElementLock>> reapExpiredLocks(long now) {
+        Map<Long, List<ElementLock>> reaped = new HashMap<>();
+        // Only ticks that have fully elapsed: every entry in them is due (or a later round)
+        long lastElapsedTick = now / WHEEL_TICK_MS - 1;
+        long fromTick = Math.max(reapedTick + 1, lastElapsedTick - WHEEL_SLOTS + 1);
+
+        for (long tick = fromTick; tick <= lastElapsedTick; tick++) {
+            Queue<LockExpiry> slot = wheel[(int) Math.floorMod(tick, (long) WHEEL_SLOTS)];
+            List<LockExpiry> laterRounds = new ArrayList<>();
+            LockExpiry entry;
+            while ((entry = slot.poll()) != null) {
+                if (entry.expiresAt() > now) {
+                    laterRounds.add(entry);
+                    continue;
+                }
+                ElementLock lock = expire(entry, now);
+                if (lock != null) {
+                    reaped.computeIfAbsent(entry.projectId(), k -> new ArrayList<>()).add(lock);
+                }
+            }
+            slot.addAll(laterRounds);
+        }
+        reapedTick = Math.max(reapedTick, lastElapsedTick);
+        return reaped;
+    }
+
+    /**
+     * Drop the lock if it is still the one this wheel entry was scheduled for
+     * (a refresh re-schedules with a new token, making older entries stale).
+     */
+    private ElementLock expire(LockExpiry entry, long now) {
+        ConcurrentHashMap<String, ElementLock> locks = projectLocks.get(entry.projectId());
+        if (locks == null) return null;
+
+        ElementLock[] expired = new ElementLock[1];
+        locks.computeIfPresent(entry.elementId(), (k, lock) -> {
+            if (lock.getLockToken().equals(entry.lockToken()) && lock.isExpired(now)) {
+                expired[0] = lock;
+                return null;
+            }
+            return lock;
+        });
+        if (expired[0] != null) {
+            unindex(entry.projectId(), expired[0].getUserId(), entry.elementId());
+        }
+        return expired[0];
+    }
+
+    private void scheduleExpiry(Long projectId, ElementLock lock) {
+        // Never behind the reaper, or the entry would wait a full rotation
+        long tick = Math.max(lock.getExpiresAt() / WHEEL_TICK_MS, reapedTick + 1);
+        wheel[(int) Math.floorMod(tick, (long) WHEEL_SLOTS)]
+                .offer(new LockExpiry(projectId, lock.getElementId(), lock.getLockToken(), lock.getExpiresAt()));
+    }
+
+    private void index(Long projectId, String userId, String elementId) {
+        userLocks.computeIfAbsent(projectId, k -> new ConcurrentHashMap<>())
+                .compute(userId, (k, held) -> {
+                    Set<String> set = held != null ? held : ConcurrentHashMap.newKeySet();
+                    set.add(elementId);
+                    return set;
+                });
+    }
+
+    private void unindex(Long projectId, String userId, String elementId) {
+        ConcurrentHashMap<String, Set<String>> users = userLocks.get(projectId);
+        if (users == null || userId == null) return;
+
+        users.computeIfPresent(userId, (k, held) -> {
+            held.remove(elementId);
+            return held.isEmpty() ? null : held;
+        });
+    }
+
+    @Override
+    public void startStroke(Long projectId, ActiveStroke stroke) {
+        activeStrokes.computeIfAbsent(projectId, k -> new ConcurrentHashMap<>())
+                .putIfAbsent(stroke.getStrokeId(), stroke);
+    }
+
+    @Override
+    public boolean appendStrokePoints(Long projectId, String strokeId, Object points) {
+        ConcurrentHashMap<String, ActiveStroke> strokes = activeStrokes.get(projectId);
+        ActiveStroke stroke = strokes != null ? strokes.get(strokeId) : null;
+        if (stroke == null) return false;
+
+        synchronized (stroke) {
+            stroke.appendPoints(points);
+        }
+        return true;
+    }
+
+    @Override
+    public void removeStroke(Long projectId, String strokeId) {
+        ConcurrentHashMap<String, ActiveStroke> strokes = activeStrokes.get(projectId);
+        if (strokes != null) {
+            strokes.remove(strokeId);
+        }
+    }
+
+    @Override
+    public List<ActiveStroke> getActiveStrokes(Long projectId) {
+        ConcurrentHashMap<String, ActiveStroke> strokes = activeStrokes.get(projectId);
+        List<ActiveStroke> snapshot = new ArrayList<>();
+        if (strokes == null) return snapshot;
+
+        strokes.values().forEach(stroke -> {
+            synchronized (stroke) {
+                snapshot.add(stroke.toBuilder().points(stroke.getPoints().copy()).build());
+            }
+        });
+        return snapshot;
+    }
+
+    private record LockExpiry(Long projectId, String elementId, String lockToken, long expiresAt) {
+    }
+
+    private static AtomicLong counter(ConcurrentHashMap<Long, AtomicLong> counters, Long projectId) {
+        return counters.computeIfAbsent(projectId, k -> new AtomicLong(0));
+    }
+}
@@ -12,18 +12,22 @@ import com.sketchnotes.project_service.entity.ProjectVersion;
 import com.sketchnotes.project_service.exception.AppException;
 import com.sketchnotes.project_service.exception.ErrorCode;
 import com.sketchnotes.project_service.repository.IPageRepository;
+import com.sketchnotes.project_service.repository.PageBatchRepository;
 import com.sketchnotes.project_service.repository.IProjectRepository;
 import com.sketchnotes.project_service.repository.IProjectVersionRepository;
 import com.sketchnotes.project_service.service.IPageService;
+import com.sketchnotes.project_service.service.IStrokeBlobService;
+import com.sketchnotes.project_service.service.ProjectCache;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -32,62 +36,59 @@ public class PageService implements IPageService {
     private final IPageRepository pageRepository;
     private  final IProjectVersionRepository projectVersionRepository;
     private final ProjectVersionService projectVersionService;
+    private final PageBatchRepository pageBatchRepository;
+    private final IStrokeBlobService strokeBlobService;
+    private final ProjectCache projectCache;
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "projects",  key ="'user' +#ownerId"),
-            @CacheEvict(value = "projects", key = "#dtos.projectId")
-    })
+    @Transactional
     public List<PageResponse> addPages(ListPageRequest dtos, Long ownerId) {
         Project project = projectRepository.findById(dtos.getProjectId()).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        ProjectVersion lastVersion = project.getProjectVersions().stream()
-                .max(Comparator.comparing(ProjectVersion::getVersionNumber))
-                .orElse(null);
+        long lastVersionNumber = projectVersionRepository.findMaxVersionNumber(project.getProjectId());
 
-        // Soft delete old pages before creating new version
-        if(project.getPages() != null) {
-            for (Page page : project.getPages()) {
-                    page.setProject(null);
-                    pageRepository.save(page);
-
-            }
-        }
+        // Old pages leave the project but stay on their version (one UPDATE)
+        pageRepository.detachFromProject(project.getProjectId(), LocalDateTime.now());
 
         ProjectVersion version = new ProjectVersion();
-        if (lastVersion == null) {
-            version.setVersionNumber(1L);
-        } else {
-            version.setVersionNumber(lastVersion.getVersionNumber() + 1);
-        }
+        version.setVersionNumber(lastVersionNumber + 1);
         version.setCreatedAt(LocalDateTime.now());
         version.setNote(project.getName() + " - Version " + version.getVersionNumber());
         version.setProject(project);
-        project.getProjectVersions().add(version);
-        projectRepository.save(project);
         projectVersionRepository.save(version);
+
+        List<Page> pages = new ArrayList<>(dtos.getPages().size());
         for (PageDto dto : dtos.getPages()) {
             Page page = PageMapper.toEntity(dto, project);
             page.setProjectVersion(version);
-            pageRepository.save(page);
+            pages.add(page);
         }
+        // Sequence ids + one JDBC batch instead of an INSERT round trip per page
+        pageBatchRepository.insertAll(pages);
+        strokeBlobService.retain(pages.stream().map(Page::getStrokeUrl).toList());
         
         // Clean up old versions if more than 10 exist
-        projectVersionService.cleanupOldVersions(dtos.getProjectId());
+        projectVersionService.cleanupOldVersions(project);
+        projectCache.evictProject(project.getProjectId(), project.getOwnerId());
         
-        return getPagesByProject(dtos.getProjectId());
+        if (pages.isEmpty()) {
+            return null;
+        }
+        return pages.stream()
+                .sorted(Comparator.comparing(Page::getPageNumber))
+                .map(PageMapper::toDTO)
+                .toList();
     }
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "projects",  key ="'user' +#ownerId"),
-            @CacheEvict(value = "projects", key = "#id")
-    })
+    @Transactional
     public PageResponse addPage(PageRequest dto, Long ownerId) {
         Project project = projectRepository.findById(dto.getProjectId()).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
         Page page = PageMapper.toEntity(dto, project);
         Page saved = pageRepository.save(page);
+        strokeBlobService.retain(List.of(saved.getStrokeUrl()));
+        projectCache.evictProject(project.getProjectId(), project.getOwnerId());
         return PageMapper.toDTO(saved);
     }
 
@@ -101,22 +102,36 @@ public class PageService implements IPageService {
     }
 
     @Override
-    @CacheEvict(value = "projects", allEntries = true)
+    @Transactional
     public PageResponse updatePage(Long pageId, UpdatePageRequest dto) {
         Page page = pageRepository.findById(pageId).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PAGE_NOT_FOUND));
+        if (!Objects.equals(page.getStrokeUrl(), dto.getStrokeUrl())) {
+            strokeBlobService.release(Collections.singletonList(page.getStrokeUrl()));
+            strokeBlobService.retain(Collections.singletonList(dto.getStrokeUrl()));
+        }
         page.setPageNumber(dto.getPageNumber());
         page.setStrokeUrl(dto.getStrokeUrl());
         Page updated = pageRepository.save(page);
+        evictProjectOf(page);
         return PageMapper.toDTO(updated);
     }
 
     @Override
-    @CacheEvict(value = "projects", allEntries = true)
+    @Transactional
     public void deletePage(Long pageId) {
         Page page = pageRepository.findById(pageId).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PAGE_NOT_FOUND));
         page.setDeletedAt(LocalDateTime.now());
         pageRepository.save(page);
+        strokeBlobService.release(Collections.singletonList(page.getStrokeUrl()));
+        evictProjectOf(page);
+    }
+
+    private void evictProjectOf(Page page) {
+        Project project = page.getProject();
+        if (project != null) {
+            projectCache.evictProject(project.getProjectId(), project.getOwnerId());
+        }
     }
 }
@@ -5,6 +5,7 @@ import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.AcceptanceRequest;
 import com.sketchnotes.project_service.dtos.request.CollabRequest;
 import com.sketchnotes.project_service.dtos.response.ProjectCollaborationResponse;
+import com.sketchnotes.project_service.dtos.response.ProjectMembers;
 import com.sketchnotes.project_service.dtos.response.UserResponse;
 import com.sketchnotes.project_service.entity.Project;
 import com.sketchnotes.project_service.entity.ProjectCollaboration;
@@ -16,6 +17,9 @@ import com.sketchnotes.project_service.producer.NotificationProducer;
 import com.sketchnotes.project_service.repository.IProjectCollaborationRepository;
 import com.sketchnotes.project_service.repository.IProjectRepository;
 import com.sketchnotes.project_service.service.IProjectCollaborationService;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import com.sketchnotes.project_service.service.ProjectCache;
+import com.sketchnotes.project_service.service.UserBatchLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,6 +27,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -31,14 +36,17 @@ public class ProjectCollaborationService implements IProjectCollaborationService
     private final IProjectCollaborationRepository projectCollaborationRepository;
     private final IProjectRepository projectRepository;
     private final IUserClient userClient;
+    private final CurrentUserResolver currentUserResolver;
     private final NotificationProducer notificationProducer;
+    private final ProjectCache projectCache;
+    private final UserBatchLoader userBatchLoader;
 
     @Override
     public void inviteUserToProject(CollabRequest dto) {
         Project project = projectRepository.findById(dto.getProjectId()).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
-        if(!project.getOwnerId().equals(user.getResult().getId())) {
+        UserResponse user = currentUserResolver.getCurrentUser();
+        if(!project.getOwnerId().equals(user.getId())) {
             throw new AppException(ErrorCode.FORBIDDEN_ACTION);
         }
         ProjectCollaboration collab = projectCollaborationRepository.findByProjectAndUserIdAndDeletedAtIsNull(
@@ -57,6 +65,7 @@ public class ProjectCollaborationService implements IProjectCollaborationService
         projectCollaboration.setUserId(collabUser.getResult().getId());
         projectCollaboration.setEdited(dto.isEdited());
         projectCollaborationRepository.save(projectCollaboration);
+        projectCache.evictMembers(project.getProjectId());
 
         // Send notification event to Kafka
         NotificationEvent notificationEvent = NotificationEvent.builder()
@@ -75,66 +84,78 @@ public class ProjectCollaborationService implements IProjectCollaborationService
     public void removeUserFromProject(Long projectId, Long userId) {
         Project project = projectRepository.findById(projectId).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
-        if(!project.getOwnerId().equals(user.getResult().getId())) {
+        UserResponse user = currentUserResolver.getCurrentUser();
+        if(!project.getOwnerId().equals(user.getId())) {
             throw new AppException(ErrorCode.FORBIDDEN_ACTION);
         }
         ProjectCollaboration projectCollaboration = projectCollaborationRepository.findByProjectAndUserIdAndDeletedAtIsNull(
-                        project, user.getResult().getId())
+                        project, user.getId())
                 .orElseThrow(() -> new AppException(ErrorCode.COLLAB_NOT_FOUND));
         projectCollaboration.setDeletedAt(LocalDateTime.now());
         projectCollaborationRepository.save(projectCollaboration);
+        projectCache.evictMembers(project.getProjectId());
     }
 
     @Override
     public void changeUserPermission(CollabRequest dto) {
         Project project = projectRepository.findById(dto.getProjectId()).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
-        if(!project.getOwnerId().equals(user.getResult().getId())) {
+        UserResponse user = currentUserResolver.getCurrentUser();
+        if(!project.getOwnerId().equals(user.getId())) {
             throw new AppException(ErrorCode.FORBIDDEN_ACTION);
         }
         ProjectCollaboration projectCollaboration = projectCollaborationRepository.findByProjectAndUserIdAndDeletedAtIsNull(
                         project, dto.getUserId())
                 .orElseThrow(() -> new AppException(ErrorCode.COLLAB_NOT_FOUND));
         projectCollaboration.setProject(project);
-        projectCollaboration.setUserId(user.getResult().getId());
+        projectCollaboration.setUserId(user.getId());
         projectCollaboration.setEdited(dto.isEdited());
         projectCollaborationRepository.save(projectCollaboration);
+        projectCache.evictMembers(project.getProjectId());
     }
 
     @Override
     public List<ProjectCollaborationResponse> listProjectCollaborators(Long projectId) {
-        Project project = projectRepository.findById(projectId).filter(p -> p.getDeletedAt() == null)
-                .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        List<ProjectCollaboration> projectCollaborations = projectCollaborationRepository.findByProjectAndDeletedAtIsNull(project);
-        List<ProjectCollaborationResponse>  listResponse= new ArrayList<>(projectCollaborations.stream().map(p -> ProjectCollaborationResponse.builder()
-                .projectId(p.getProject().getProjectId())
-                .email(userClient.getUserById(p.getUserId()).getResult().getEmail())
+        ProjectMembers members = getProjectMembers(projectId);
+        List<Long> userIds = new ArrayList<>(members.getCollaborators().stream().map(ProjectMembers.Member::getUserId).toList());
+        userIds.add(members.getOwnerId());
+        Map<Long, UserResponse> users = userBatchLoader.forRequest().loadMany(userIds);
+
+        List<ProjectCollaborationResponse>  listResponse= new ArrayList<>(members.getCollaborators().stream().map(p -> ProjectCollaborationResponse.builder()
+                .projectId(projectId)
+                .email(emailOf(users.get(p.getUserId())))
                 .userId(p.getUserId())
                 .isEdited(p.isEdited())
-                .avatarUrl(userClient.getUserById(p.getUserId()).getResult().getAvatarUrl())
+                .avatarUrl(avatarOf(users.get(p.getUserId())))
                 .createdAt(p.getCreatedAt())
                 .build()).toList());
 
         listResponse.add(ProjectCollaborationResponse.builder()
-                .projectId(project.getProjectId())
-                .email(userClient.getUserById(project.getOwnerId()).getResult().getEmail())
-                .userId(project.getOwnerId())
+                .projectId(projectId)
+                .email(emailOf(users.get(members.getOwnerId())))
+                .userId(members.getOwnerId())
                 .isEdited(true)
-                .avatarUrl(userClient.getUserById(project.getOwnerId()).getResult().getAvatarUrl())
-                .createdAt(project.getCreatedAt())
+                .avatarUrl(avatarOf(users.get(members.getOwnerId())))
+                .createdAt(members.getProjectCreatedAt())
                 .build());
         return listResponse;
     }
 
+    private static String emailOf(UserResponse user) {
+        return user != null ? user.getEmail() : null;
+    }
+
+    private static String avatarOf(UserResponse user) {
+        return user != null ? user.getAvatarUrl() : null;
+    }
+
     @Override
     public void acceptProjectInvitation(AcceptanceRequest request) {
         Project project = projectRepository.findById(request.getProjectId()).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
+        UserResponse user = currentUserResolver.getCurrentUser();
         ProjectCollaboration projectCollaboration = projectCollaborationRepository.findByProjectAndUserIdAndDeletedAtIsNull(
-                        project, user.getResult().getId())
+                        project, user.getId())
                 .orElseThrow(() -> new AppException(ErrorCode.COLLAB_NOT_FOUND));
         if (request.isAccepted()) {
             projectCollaboration.setAccepted(true);
@@ -142,5 +163,29 @@ public class ProjectCollaborationService implements IProjectCollaborationService
             projectCollaboration.setDeletedAt(LocalDateTime.now());
         }
         projectCollaborationRepository.save(projectCollaboration);
+        projectCache.evictMembers(project.getProjectId());
+    }
+
+    @Override
+    public ProjectMembers getProjectMembers(Long projectId) {
+        return projectCache.get(ProjectCache.PROJECT_MEMBERS, projectId, () -> {
+            Project project = projectRepository.findById(projectId).filter(p -> p.getDeletedAt() == null)
+                    .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
+            List<ProjectMembers.Member> collaborators = new ArrayList<>();
+            for (ProjectCollaboration pc : projectCollaborationRepository.findByProjectAndDeletedAtIsNull(project)) {
+                collaborators.add(ProjectMembers.Member.builder()
+                        .userId(pc.getUserId())
+                        .edited(pc.isEdited())
+                        .accepted(pc.isAccepted())
+                        .createdAt(pc.getCreatedAt())
+                        .build());
+            }
+            return ProjectMembers.builder()
+                    .projectId(projectId)
+                    .ownerId(project.getOwnerId())
+                    .projectCreatedAt(project.getCreatedAt())
+                    .collaborators(collaborators)
+                    .build();
+        });
     }
 }
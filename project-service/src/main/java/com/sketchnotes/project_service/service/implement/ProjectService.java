@@ -1,12 +1,11 @@
 package com.sketchnotes.project_service.service.implement;
 
-import com.sketchnotes.project_service.client.IUserClient;
 import com.sketchnotes.project_service.client.IdentityServiceClient;
-import com.sketchnotes.project_service.dtos.ApiResponse;
 import com.sketchnotes.project_service.dtos.request.ProjectRequest;
 import com.sketchnotes.project_service.dtos.response.ProjectListResponse;
 import com.sketchnotes.project_service.dtos.response.ProjectResponse;
 import com.sketchnotes.project_service.dtos.response.ProjectDetailResponse;
+import com.sketchnotes.project_service.dtos.response.ProjectMembers;
 import com.sketchnotes.project_service.dtos.mapper.ProjectMapper;
 import com.sketchnotes.project_service.dtos.response.UserQuotaResponse;
 import com.sketchnotes.project_service.dtos.response.UserResponse;
@@ -17,11 +16,12 @@ import com.sketchnotes.project_service.exception.AppException;
 import com.sketchnotes.project_service.exception.ErrorCode;
 import com.sketchnotes.project_service.repository.IProjectCollaborationRepository;
 import com.sketchnotes.project_service.repository.IProjectRepository;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import com.sketchnotes.project_service.service.IProjectCollaborationService;
 import com.sketchnotes.project_service.service.IProjectService;
+import com.sketchnotes.project_service.service.ProjectCache;
 import com.sketchnotes.project_service.utils.PagedResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -29,25 +29,28 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProjectService implements IProjectService {
     private final IProjectRepository projectRepository;
-    private final IUserClient userClient;
+    private final CurrentUserResolver currentUserResolver;
     private final IProjectCollaborationRepository projectCollaborationRepository;
     private final IdentityServiceClient identityServiceClient;
+    private final IProjectCollaborationService projectCollaborationService;
+    private final ProjectCache projectCache;
 
     @Override
-    @CacheEvict(value = "projects",  key ="'user' +#ownerId")
     public ProjectResponse createProject(ProjectRequest dto, Long ownerId) {
-        ApiResponse<UserResponse>  user = userClient.getCurrentUser();
+        UserResponse user = currentUserResolver.getCurrentUser();
 
         // Check project quota before creating
         try {
-            UserQuotaResponse quota = identityServiceClient.getUserQuota(user.getResult().getId());
+            UserQuotaResponse quota = identityServiceClient.getUserQuota(user.getId());
             if (!quota.getCanCreateProject()) {
                 throw new AppException(ErrorCode.PROJECT_QUOTA_EXCEEDED);
             }
@@ -59,55 +62,66 @@ public class ProjectService implements IProjectService {
                 .name(dto.getName())
                 .paperSize(PaperSize.valueOf(dto.getPaperSize()))
                 .description(dto.getDescription())
-                .ownerId(user.getResult().getId())
+                .ownerId(user.getId())
                 .imageUrl(dto.getImageUrl())
                 .build();
         Project saved = projectRepository.save(project);
+        projectCache.evictProject(saved.getProjectId(), saved.getOwnerId());
         return ProjectMapper.toDTO(saved);
     }
     @Override
     public ProjectDetailResponse getProject(Long id) {
-        Project project = projectRepository.findById(id).filter(p -> p.getDeletedAt() == null)
-                .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        boolean hasCollaboration = projectCollaborationRepository.existsByProjectAndDeletedAtIsNull(project);
-        Long userId = userClient.getCurrentUser().getResult().getId();
-        boolean isEdited =  projectCollaborationRepository.existsByProjectAndIsEditedTrueAndDeletedAtIsNull(project);
-        boolean isOwner = project.getOwnerId().equals(userId);
-        if(isOwner){
-            isEdited = true;
-        }
-        return ProjectMapper.toDetailDTO(project, hasCollaboration,isEdited,isOwner);
+        // Shared part cached per project, the caller's flags are applied on a copy
+        ProjectDetailResponse detail = projectCache.get(ProjectCache.PROJECT, id, () -> {
+            Project project = projectRepository.findById(id).filter(p -> p.getDeletedAt() == null)
+                    .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
+            return ProjectMapper.toDetailDTO(project, false, false, false);
+        });
+        ProjectMembers members = projectCollaborationService.getProjectMembers(id);
+        Long userId = currentUserResolver.getCurrentUserId();
+        boolean isOwner = detail.getOwnerId().equals(userId);
+        boolean isEdited = members.hasEditor() || isOwner;
+        return ProjectDetailResponse.builder()
+                .projectId(detail.getProjectId())
+                .name(detail.getName())
+                .description(detail.getDescription())
+                .imageUrl(detail.getImageUrl())
+                .ownerId(detail.getOwnerId())
+                .paperSize(detail.getPaperSize())
+                .isOwner(isOwner)
+                .isEdited(isEdited)
+                .hasCollaboration(members.hasCollaboration())
+                .pages(detail.getPages())
+                .build();
     }
 
     @Override
-   /// @Cacheable(value = "projects", key ="'user' +#ownerId")
     public ProjectListResponse getProjectsByOwner(Long ownerId) {
-        List<Project> projects = projectRepository.findByOwnerIdAndDeletedAtIsNullOrderByCreatedAtDesc(ownerId);
-        if (projects.isEmpty()) {
-            return new ProjectListResponse(Collections.emptyList());
-        }
-        return new ProjectListResponse(projects.stream()
-                .map(ProjectMapper::toDTO)
-                .toList());
+        return projectCache.get(ProjectCache.PROJECTS_BY_OWNER, ownerId, () -> loadProjectsByOwner(ownerId));
     }
     @Override
-    ///@Cacheable(value = "projects", key ="'user' +#ownerId")
     public ProjectListResponse getProjectsCurrentUser(Long ownerId) {
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
-        List<Project> projects = projectRepository.findByOwnerIdAndDeletedAtIsNullOrderByCreatedAtDesc(user.getResult().getId());
+        UserResponse user = currentUserResolver.getCurrentUser();
+        Long userId = user.getId();
+        return projectCache.get(ProjectCache.PROJECTS_BY_OWNER, userId, () -> loadProjectsByOwner(userId));
+    }
+
+    private ProjectListResponse loadProjectsByOwner(Long ownerId) {
+        List<Project> projects = projectRepository.findByOwnerIdAndDeletedAtIsNullOrderByCreatedAtDesc(ownerId);
         if (projects.isEmpty()) {
-            return new ProjectListResponse(Collections.emptyList());
+            return new ProjectListResponse(new ArrayList<>());
         }
-        return  new ProjectListResponse(projects.stream()
+        // Mutable lists: cached values go through Redis (typed JSON)
+        return new ProjectListResponse(projects.stream()
                 .map(ProjectMapper::toDTO)
-                .toList());
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     @Override
     public PagedResponse<ProjectResponse> getProjectsCurrentUserPaged(Long ownerId, int pageNo, int pageSize) {
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
+        UserResponse user = currentUserResolver.getCurrentUser();
         Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by(Sort.Direction.DESC, "createdAt"));
-        Page<Project> projectPage = projectRepository.findByOwnerIdAndDeletedAtIsNull(user.getResult().getId(), pageable);
+        Page<Project> projectPage = projectRepository.findByOwnerIdAndDeletedAtIsNull(user.getId(), pageable);
         
         List<ProjectResponse> content = projectPage.getContent().stream()
                 .map(ProjectMapper::toDTO)
@@ -125,8 +139,8 @@ public class ProjectService implements IProjectService {
 
     @Override
     public ProjectListResponse getSharedProjectsCurrentUser() {
-        ApiResponse<UserResponse> user = userClient.getCurrentUser();
-        List<ProjectCollaboration> projects = projectCollaborationRepository.findByUserIdAndDeletedAtIsNull(user.getResult().getId());
+        UserResponse user = currentUserResolver.getCurrentUser();
+        List<ProjectCollaboration> projects = projectCollaborationRepository.findByUserIdAndDeletedAtIsNull(user.getId());
         if (projects.isEmpty()) {
             return new ProjectListResponse(Collections.emptyList());
         }
@@ -140,10 +154,6 @@ public class ProjectService implements IProjectService {
     }
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "projects",  key ="'user' +#ownerId"),
-            @CacheEvict(value = "projects", key = "#id")
-    })
     public ProjectResponse updateProject(Long id, ProjectRequest dto, Long ownerId) {
         Project project = projectRepository.findById(id).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
@@ -152,14 +162,11 @@ public class ProjectService implements IProjectService {
         project.setImageUrl(dto.getImageUrl());
         project.setPaperSize(PaperSize.valueOf(dto.getPaperSize()));
         Project updated = projectRepository.save(project);
+        projectCache.evictProject(id, project.getOwnerId());
         return ProjectMapper.toDTO(updated);
     }
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "projects",  key ="'user' +#ownerId"),
-            @CacheEvict(value = "projects", key = "#id")
-    })
     public void deleteProject(Long id, Long ownerId) {
         Project project = projectRepository.findById(id).filter(p -> p.getDeletedAt() == null)
                 .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
@@ -170,6 +177,8 @@ public class ProjectService implements IProjectService {
         }
         project.setDeletedAt(LocalDateTime.now());
         projectRepository.save(project);
+        projectCache.evictProject(id, project.getOwnerId());
+        projectCache.evictMembers(id);
     }
 
     @Override
@@ -10,15 +10,15 @@ import com.sketchnotes.project_service.exception.ErrorCode;
 import com.sketchnotes.project_service.repository.IPageRepository;
 import com.sketchnotes.project_service.repository.IProjectRepository;
 import com.sketchnotes.project_service.repository.IProjectVersionRepository;
+import com.sketchnotes.project_service.repository.PageBatchRepository;
 import com.sketchnotes.project_service.service.IProjectVersionService;
-import com.sketchnotes.project_service.service.IStorageService;
+import com.sketchnotes.project_service.service.IStrokeBlobService;
+import com.sketchnotes.project_service.service.ProjectCache;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -28,7 +28,9 @@ public class ProjectVersionService implements IProjectVersionService {
     private final IProjectRepository projectRepository;
     private final IProjectVersionRepository projectVersionRepository;
     private final IPageRepository pageRepository;
-    private final IStorageService storageService;
+    private final PageBatchRepository pageBatchRepository;
+    private final IStrokeBlobService strokeBlobService;
+    private final ProjectCache projectCache;
     
     private static final int MAX_VERSIONS = 10;
 
@@ -48,7 +50,6 @@ public class ProjectVersionService implements IProjectVersionService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "projects", key = "#projectId")
     public void restoreVersion(Long projectId, Long versionId) {
         // Validate project exists
         Project project = projectRepository.findById(projectId)
@@ -64,84 +65,59 @@ public class ProjectVersionService implements IProjectVersionService {
             throw new AppException(ErrorCode.PROJECT_NOT_FOUND);
         }
         
-        // Remove current pages from project (set project to null)
-        List<Page> currentPages = pageRepository
-                .findByProject_ProjectIdAndDeletedAtIsNullOrderByPageNumberAsc(projectId);
-        for (Page page : currentPages) {
-            page.setProject(null);
-            pageRepository.save(page);
-        }
-        
-        // Clone pages from selected version and assign to project
+        // Pages to clone, read before the bulk update below clears the persistence context
         List<Page> versionPages = selectedVersion.getPages().stream()
                 .filter(p -> p.getDeletedAt() == null)
                 .collect(Collectors.toList());
         
-        // Get the latest version number to create new version
-        ProjectVersion lastVersion = project.getProjectVersions().stream()
-                .filter(v -> v.getDeletedAt() == null)
-                .max(Comparator.comparing(ProjectVersion::getVersionNumber))
-                .orElse(null);
+        // Remove current pages from project (set project to null)
+        pageRepository.detachFromProject(projectId, LocalDateTime.now());
         
         // Create new version for this restoration
         ProjectVersion newVersion = new ProjectVersion();
-        newVersion.setVersionNumber(lastVersion != null ? lastVersion.getVersionNumber() + 1 : 1L);
+        newVersion.setVersionNumber(projectVersionRepository.findMaxVersionNumber(projectId) + 1);
         newVersion.setCreatedAt(LocalDateTime.now());
         newVersion.setNote("Restored from version " + selectedVersion.getVersionNumber());
         newVersion.setProject(project);
         projectVersionRepository.save(newVersion);
         
-        // Clone pages from selected version
-        for (Page oldPage : versionPages) {
-            Page newPage = Page.builder()
-                    .project(project)
-                    .projectVersion(newVersion)
-                    .pageNumber(oldPage.getPageNumber())
-                    .snapshotUrl(oldPage.getSnapshotUrl())
-                    .strokeUrl(storageService.copyFile(oldPage.getStrokeUrl()))
-                    .build();
-            pageRepository.save(newPage);
-        }
+        // Clone pages from selected version; they share its stroke blobs (one more
+        // reference each) instead of copying every object in S3
+        List<Page> newPages = versionPages.stream()
+                .map(oldPage -> Page.builder()
+                        .project(project)
+                        .projectVersion(newVersion)
+                        .pageNumber(oldPage.getPageNumber())
+                        .snapshotUrl(oldPage.getSnapshotUrl())
+                        .strokeUrl(oldPage.getStrokeUrl())
+                        .build())
+                .collect(Collectors.toList());
+        pageBatchRepository.insertAll(newPages);
+        strokeBlobService.retain(newPages.stream().map(Page::getStrokeUrl).toList());
         
         // Check if we need to delete old versions (keep only 10 most recent)
         deleteOldVersionsIfNeeded(project);
-        
-        projectRepository.save(project);
+        projectCache.evictProject(projectId, project.getOwnerId());
     }
     
     /**
-     * Delete oldest versions if count exceeds MAX_VERSIONS
+     * Delete oldest versions if count exceeds MAX_VERSIONS.
+     * Set-based: one query finds the surplus versions, then their stroke files are
+     * collected and versions and pages are soft deleted in one UPDATE each.
+     * The pages' stroke blobs are released; StrokeBlobCollector deletes the ones
+     * no other version still uses.
      */
     private void deleteOldVersionsIfNeeded(Project project) {
-        List<ProjectVersion> allVersions = projectVersionRepository
-                .findByProjectAndDeletedAtIsNullOrderByCreatedAtDesc(project);
-        
-        if (allVersions.size() > MAX_VERSIONS) {
-            // Get versions to delete (oldest ones)
-            List<ProjectVersion> versionsToDelete = allVersions.stream()
-                    .skip(MAX_VERSIONS)
-                    .collect(Collectors.toList());
-            
-            for (ProjectVersion version : versionsToDelete) {
-                // Soft delete the version
-                version.setDeletedAt(LocalDateTime.now());
-                projectVersionRepository.save(version);
-                
-                // Soft delete associated pages and delete files from S3
-                for (Page page : version.getPages()) {
-                    if (page.getDeletedAt() == null) {
-                        // Delete file from S3
-                        if (page.getStrokeUrl() != null && !page.getStrokeUrl().isEmpty()) {
-                            storageService.deleteFile(page.getStrokeUrl());
-                        }
-                        
-                        // Soft delete the page
-                        page.setDeletedAt(LocalDateTime.now());
-                        pageRepository.save(page);
-                    }
-                }
-            }
+        List<Long> versionIds = projectVersionRepository.findIdsBeyondNewest(project.getProjectId(), MAX_VERSIONS);
+        if (versionIds.isEmpty()) {
+            return;
         }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<String> strokeUrls = pageRepository.findLiveStrokeUrlsByVersionIds(versionIds);
+        projectVersionRepository.softDeleteByIds(versionIds, now);
+        pageRepository.softDeleteByVersionIds(versionIds, now);
+        strokeBlobService.release(strokeUrls);
     }
     
     /**
@@ -149,11 +125,7 @@ public class ProjectVersionService implements IProjectVersionService {
      * This should be called from PageService when creating new versions
      */
     @Transactional
-    public void cleanupOldVersions(Long projectId) {
-        Project project = projectRepository.findById(projectId)
-                .filter(p -> p.getDeletedAt() == null)
-                .orElseThrow(() -> new AppException(ErrorCode.PROJECT_NOT_FOUND));
-        
+    public void cleanupOldVersions(Project project) {
         deleteOldVersionsIfNeeded(project);
     }
 }
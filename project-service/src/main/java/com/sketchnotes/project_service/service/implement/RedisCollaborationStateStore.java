@@ -0,0 +1,431 @@
+package com.sketchnotes.project_service.service.implement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+import com.sketchnotes.project_service.service.ICollaborationStateStore;
+import com.sketchnotes.project_service.utils.StrokePointBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collaboration state shared by every project-service replica through Redis.
+ *
+ * Keys use a {projectId} hash tag so all keys of a project live in the same
+ * cluster slot and can be touched by one Lua script:
+ * - collab:{id}:seq / collab:{id}:version      INCR counters
+ * - collab:{id}:lock:{elementId}               JSON ElementLock, PX = TTL + grace so the
+ *                                              reaper can still read the owner
+ * - collab:{id}:locks                          set of locked element ids
+ * - collab:{id}:lockexp                        zset elementId -> expiresAt (reaper index)
+ * - collab:{id}:userlocks:{userId}             set of element ids locked by the user
+ * - collab:lock-projects                       ids of projects with pending expiries
+ * - collab:{id}:strokes                        hash strokeId -> stroke metadata
+ * - collab:{id}:stroke:{strokeId}              list of point chunks, each a fixed-point
+ *                                              delta block; compacted into one block
+ *                                              past STROKE_COMPACT_CHUNKS entries
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "collaboration.state-store", havingValue = "redis")
+public class RedisCollaborationStateStore implements ICollaborationStateStore {
+
+    private static final Duration STROKE_TTL = Duration.ofMinutes(10);
+    private static final int STROKE_COMPACT_CHUNKS = 64;
+
+    private static final String LOCK_PROJECTS_KEY = "collab:lock-projects";
+    // Lock keys outlive expiresAt so the reaper still knows who held the lock
+    private static final long LOCK_KEY_GRACE_MS = 10_000;
+    private static final int LOCK_ATTEMPTS = 3;
+    private static final int REAP_BATCH = 500;
+
+    // Raise a counter to ARGV[1] unless it is already past it
+    // KEYS: counter  ARGV: value
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "local c = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "if c < tonumber(ARGV[1]) then " +
+            "  redis.call('SET', KEYS[1], ARGV[1]) " +
+            "  return tonumber(ARGV[1]) " +
+            "end " +
+            "return c", Long.class);
+
+    // Take the lock when it is free, expired, or already held by the same user;
+    // index it by expiry and by owner. An unreadable holder keeps the lock.
+    // KEYS: lock, locks, lockexp, userlocks:{user}  ARGV: userId, json, px, elementId, expiresAt, now
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+            "local free = not v " +
+            "if v then " +
+            "  local ok, l = pcall(cjson.decode, v) " +
+            "  free = ok and (l.userId == ARGV[1] or tonumber(l.expiresAt) <= tonumber(ARGV[6])) " +
+            "end " +
+            "if free then " +
+            "  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) " +
+            "  redis.call('SADD', KEYS[2], ARGV[4]) " +
+            "  redis.call('ZADD', KEYS[3], ARGV[5], ARGV[4]) " +
+            "  redis.call('SADD', KEYS[4], ARGV[4]) " +
+            "  redis.call('PEXPIRE', KEYS[4], ARGV[3]) " +
+            "  return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    // Delete the lock when owned by the user or when the token matches
+    // KEYS: lock, locks, lockexp, userlocks:{user}  ARGV: userId, token, elementId
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+            "redis.call('SREM', KEYS[4], ARGV[3]) " +
+            "if not v then " +
+            "  redis.call('SREM', KEYS[2], ARGV[3]) " +
+            "  redis.call('ZREM', KEYS[3], ARGV[3]) " +
+            "  return 0 " +
+            "end " +
+            "local l = cjson.decode(v) " +
+            "if l.userId == ARGV[1] or (ARGV[2] ~= '' and l.lockToken == ARGV[2]) then " +
+            "  redis.call('DEL', KEYS[1]) " +
+            "  redis.call('SREM', KEYS[2], ARGV[3]) " +
+            "  redis.call('ZREM', KEYS[3], ARGV[3]) " +
+            "  return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    // Pop lapsed locks of one project atomically, so one replica reports each of them.
+    // Lock / userlocks keys are derived from prefixes; they share the {projectId} slot.
+    // KEYS: lockexp, locks  ARGV: now, lock key prefix, userlocks key prefix, batch
+    // Returns elementId, lock json (or '') pairs, then the number of pending expiries.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REAP_SCRIPT = new DefaultRedisScript<>(
+            "local out = {} " +
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[4])) " +
+            "for _, id in ipairs(ids) do " +
+            "  local v = redis.call('GET', ARGV[2] .. id) " +
+            "  local l = v and cjson.decode(v) " +
+            "  if l and tonumber(l.expiresAt) > tonumber(ARGV[1]) then " +
+            "    redis.call('ZADD', KEYS[1], l.expiresAt, id) " +
+            "  else " +
+            "    redis.call('ZREM', KEYS[1], id) " +
+            "    redis.call('SREM', KEYS[2], id) " +
+            "    if l then " +
+            "      redis.call('DEL', ARGV[2] .. id) " +
+            "      redis.call('SREM', ARGV[3] .. l.userId, id) " +
+            "    end " +
+            "    table.insert(out, id) " +
+            "    table.insert(out, v or '') " +
+            "  end " +
+            "end " +
+            "table.insert(out, tostring(redis.call('ZCARD', KEYS[1]))) " +
+            "return out", List.class);
+
+    // Replace the first ARGV[1] chunks by the merged block, unless a concurrent
+    // compaction already did (the last merged chunk is no longer at ARGV[1] - 1)
+    private static final RedisScript<Long> COMPACT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('LINDEX', KEYS[1], tonumber(ARGV[1]) - 1) == ARGV[2] then " +
+            "  redis.call('LTRIM', KEYS[1], ARGV[1], -1) " +
+            "  redis.call('LPUSH', KEYS[1], ARGV[3]) " +
+            "  return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    // ==========================================================================
+    // SEQUENCE & VERSION
+    // ==========================================================================
+
+    @Override
+    public long nextSequence(Long projectId) {
+        return increment(key(projectId, "seq"));
+    }
+
+    @Override
+    public long currentSequence(Long projectId) {
+        return readCounter(key(projectId, "seq"));
+    }
+
+    @Override
+    public long reserveSequences(Long projectId, int count) {
+        Long value = redisTemplate.opsForValue().increment(key(projectId, "seq"), count);
+        return value != null ? value : 0L;
+    }
+
+    @Override
+    public long incrementVersion(Long projectId) {
+        return increment(key(projectId, "version"));
+    }
+
+    @Override
+    public long currentVersion(Long projectId) {
+        return readCounter(key(projectId, "version"));
+    }
+
+    @Override
+    public void advanceVersion(Long projectId, long version) {
+        redisTemplate.execute(ADVANCE_SCRIPT, List.of(key(projectId, "version")), String.valueOf(version));
+    }
+
+    // ==========================================================================
+    // ELEMENT LOCKS
+    // ==========================================================================
+
+    @Override
+    public ElementLock tryLock(Long projectId, ElementLock candidate) {
+        String lockKey = lockKey(projectId, candidate.getElementId());
+        for (int attempt = 0; attempt < LOCK_ATTEMPTS; attempt++) {
+            long now = System.currentTimeMillis();
+            long px = Math.max(1, candidate.getExpiresAt() - now) + LOCK_KEY_GRACE_MS;
+
+            Long granted = redisTemplate.execute(LOCK_SCRIPT,
+                    List.of(lockKey, key(projectId, "locks"), key(projectId, "lockexp"),
+                            userLocksKey(projectId, candidate.getUserId())),
+                    candidate.getUserId(), write(candidate), String.valueOf(px), candidate.getElementId(),
+                    String.valueOf(candidate.getExpiresAt()), String.valueOf(now));
+            if (granted != null && granted == 1L) {
+                redisTemplate.opsForSet().add(LOCK_PROJECTS_KEY, projectId.toString());
+                return candidate;
+            }
+
+            String json = redisTemplate.opsForValue().get(lockKey);
+            if (json == null) {
+                // The holder's lock lapsed between the script and the read
+                continue;
+            }
+            ElementLock holder = read(json, ElementLock.class);
+            if (holder == null) {
+                return unknownHolder(candidate);
+            }
+            if (!holder.isExpired(System.currentTimeMillis())) {
+                return holder;
+            }
+        }
+        log.warn("[CollabState] Lock on {} in project {} still contended after {} attempts",
+                candidate.getElementId(), projectId, LOCK_ATTEMPTS);
+        return unknownHolder(candidate);
+    }
+
+    /**
+     * A conflict whose holder cannot be named: held by nobody, so it never
+     * matches the requesting user
+     */
+    private static ElementLock unknownHolder(ElementLock candidate) {
+        return new ElementLock(candidate.getElementId(), null, candidate.getExpiresAt(), null);
+    }
+
+    @Override
+    public ElementLock getLock(Long projectId, String elementId) {
+        ElementLock lock = read(redisTemplate.opsForValue().get(lockKey(projectId, elementId)), ElementLock.class);
+        return lock != null && !lock.isExpired(System.currentTimeMillis()) ? lock : null;
+    }
+
+    @Override
+    public boolean releaseLock(Long projectId, String elementId, String userId, String lockToken) {
+        Long released = redisTemplate.execute(UNLOCK_SCRIPT,
+                List.of(lockKey(projectId, elementId), key(projectId, "locks"), key(projectId, "lockexp"),
+                        userLocksKey(projectId, userId)),
+                userId, lockToken != null ? lockToken : "", elementId);
+        return released != null && released == 1L;
+    }
+
+    @Override
+    public Map<String, ElementLock> getLocks(Long projectId) {
+        Map<String, ElementLock> live = new HashMap<>();
+        Set<String> elementIds = redisTemplate.opsForSet().members(key(projectId, "locks"));
+        if (elementIds == null || elementIds.isEmpty()) return live;
+
+        List<String> ids = new ArrayList<>(elementIds);
+        List<String> values = redisTemplate.opsForValue()
+                .multiGet(ids.stream().map(id -> lockKey(projectId, id)).toList());
+
+        // Lapsed entries are left to the reaper so it can report them
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.size(); i++) {
+            ElementLock lock = values != null ? read(values.get(i), ElementLock.class) : null;
+            if (lock != null && !lock.isExpired(now)) {
+                live.put(ids.get(i), lock);
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public List<String> releaseUserLocks(Long projectId, String userId) {
+        List<String> released = new ArrayList<>();
+        Set<String> held = redisTemplate.opsForSet().members(userLocksKey(projectId, userId));
+        if (held == null) return released;
+
+        // O(locks held) thanks to the reverse index
+        held.forEach(elementId -> {
+            if (releaseLock(projectId, elementId, userId, null)) {
+                released.add(elementId);
+            }
+        });
+        return released;
+    }
+
+    @Override
+    public Map<Long, List<ElementLock>> reapExpiredLocks(long now) {
+        Map<Long, List<ElementLock>> reaped = new HashMap<>();
+        Set<String> projectIds = redisTemplate.opsForSet().members(LOCK_PROJECTS_KEY);
+        if (projectIds == null) return reaped;
+
+        for (String id : projectIds) {
+            Long projectId = Long.valueOf(id);
+            List<?> result = redisTemplate.execute(REAP_SCRIPT,
+                    List.of(key(projectId, "lockexp"), key(projectId, "locks")),
+                    String.valueOf(now), lockKey(projectId, ""), userLocksKey(projectId, ""),
+                    String.valueOf(REAP_BATCH));
+            if (result == null || result.isEmpty()) continue;
+
+            for (int i = 0; i + 1 < result.size(); i += 2) {
+                String elementId = (String) result.get(i);
+                String json = (String) result.get(i + 1);
+                ElementLock lock = json.isEmpty() ? null : read(json, ElementLock.class);
+                reaped.computeIfAbsent(projectId, k -> new ArrayList<>())
+                        .add(lock != null ? lock : ElementLock.builder().elementId(elementId).build());
+            }
+
+            long pending = Long.parseLong((String) result.get(result.size() - 1));
+            if (pending == 0) {
+                redisTemplate.opsForSet().remove(LOCK_PROJECTS_KEY, id);
+                // A lock granted in between must keep its project registered
+                Long card = redisTemplate.opsForZSet().zCard(key(projectId, "lockexp"));
+                if (card != null && card > 0) {
+                    redisTemplate.opsForSet().add(LOCK_PROJECTS_KEY, id);
+                }
+            }
+        }
+        return reaped;
+    }
+
+    // ==========================================================================
+    // ACTIVE STROKES
+    // ==========================================================================
+
+    @Override
+    public void startStroke(Long projectId, ActiveStroke stroke) {
+        String strokesKey = key(projectId, "strokes");
+        // Points are not part of the JSON metadata
+        boolean created = Boolean.TRUE.equals(
+                redisTemplate.opsForHash().putIfAbsent(strokesKey, stroke.getStrokeId(), write(stroke)));
+        redisTemplate.expire(strokesKey, STROKE_TTL);
+
+        if (created && !stroke.getPoints().isEmpty()) {
+            appendStrokePoints(projectId, stroke.getStrokeId(), stroke.getCompressedPoints());
+        }
+    }
+
+    @Override
+    public boolean appendStrokePoints(Long projectId, String strokeId, Object points) {
+        if (!redisTemplate.opsForHash().hasKey(key(projectId, "strokes"), strokeId)) {
+            return false;
+        }
+
+        // Decode here so every stored chunk is a compact fixed-point block
+        StrokePointBuffer chunk = new StrokePointBuffer();
+        chunk.appendChunk(points);
+
+        String pointsKey = strokeKey(projectId, strokeId);
+        Long length = redisTemplate.opsForList().rightPush(pointsKey, write(chunk.toDeltaBlock()));
+        redisTemplate.expire(pointsKey, STROKE_TTL);
+
+        if (length != null && length > STROKE_COMPACT_CHUNKS) {
+            compactStroke(pointsKey, length);
+        }
+        return true;
+    }
+
+    @Override
+    public void removeStroke(Long projectId, String strokeId) {
+        redisTemplate.opsForHash().delete(key(projectId, "strokes"), strokeId);
+        redisTemplate.delete(strokeKey(projectId, strokeId));
+    }
+
+    @Override
+    public List<ActiveStroke> getActiveStrokes(Long projectId) {
+        List<ActiveStroke> strokes = new ArrayList<>();
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key(projectId, "strokes"));
+
+        entries.forEach((strokeId, json) -> {
+            ActiveStroke stroke = read((String) json, ActiveStroke.class);
+            if (stroke == null) return;
+
+            List<String> chunks = redisTemplate.opsForList().range(strokeKey(projectId, (String) strokeId), 0, -1);
+            if (chunks != null) {
+                chunks.forEach(chunk -> stroke.appendPoints(read(chunk, Object.class)));
+            }
+            strokes.add(stroke);
+        });
+        return strokes;
+    }
+
+    private void compactStroke(String pointsKey, long length) {
+        List<String> chunks = redisTemplate.opsForList().range(pointsKey, 0, length - 1);
+        if (chunks == null || chunks.size() != length) return;
+
+        StrokePointBuffer merged = new StrokePointBuffer();
+        chunks.forEach(chunk -> merged.appendChunk(read(chunk, Object.class)));
+        redisTemplate.execute(COMPACT_SCRIPT, List.of(pointsKey),
+                String.valueOf(length), chunks.get(chunks.size() - 1), write(merged.toDeltaBlock()));
+    }
+
+    // ==========================================================================
+    // HELPERS
+    // ==========================================================================
+
+    private static String key(Long projectId, String suffix) {
+        return "collab:{" + projectId + "}:" + suffix;
+    }
+
+    private static String lockKey(Long projectId, String elementId) {
+        return key(projectId, "lock:" + elementId);
+    }
+
+    private static String userLocksKey(Long projectId, String userId) {
+        return key(projectId, "userlocks:" + userId);
+    }
+
+    private static String strokeKey(Long projectId, String strokeId) {
+        return key(projectId, "stroke:" + strokeId);
+    }
+
+    private long increment(String key) {
+        Long value = redisTemplate.opsForValue().increment(key);
+        return value != null ? value : 0L;
+    }
+
+    private long readCounter(String key) {
+        String value = redisTemplate.opsForValue().get(key);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize collaboration state", e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            log.warn("[CollabState] Skipping unreadable entry: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -9,8 +9,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
@@ -18,13 +24,24 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequ
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class StorageService implements IStorageService {
 
+    private static final String CONTENT_ADDRESSED_PREFIX = "strokes/";
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
     private final S3Presigner s3Presigner;
     private final S3Client s3Client;
     private final S3Properties s3Properties;
@@ -71,6 +88,77 @@ public class StorageService implements IStorageService {
         }
     }
 
+    @Override
+    public List<String> deleteFiles(Collection<String> fileUrls) {
+        Map<String, String> urlsByKey = new LinkedHashMap<>();
+        List<String> failed = new ArrayList<>();
+        for (String fileUrl : fileUrls) {
+            String key = extractKeyFromUrl(fileUrl);
+            if (key == null || key.isEmpty()) {
+                continue;
+            }
+            // Only objects the stroke blob GC owns; anything else is reported and left alone
+            if (!fileUrl.startsWith(getContentAddressedUrlPrefix()) || !key.startsWith(CONTENT_ADDRESSED_PREFIX)) {
+                log.warn("[Storage] Refusing to delete {}: not a content-addressed object", fileUrl);
+                failed.add(fileUrl);
+                continue;
+            }
+            urlsByKey.put(key, fileUrl);
+        }
+
+        List<String> keys = new ArrayList<>(urlsByKey.keySet());
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_DELETE) {
+            List<String> chunk = keys.subList(from, Math.min(from + MAX_KEYS_PER_DELETE, keys.size()));
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(s3Properties.getBucketName())
+                        .delete(Delete.builder()
+                                .objects(chunk.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                                // Only failures are reported back
+                                .quiet(true)
+                                .build())
+                        .build());
+                response.errors().forEach(error -> failed.add(urlsByKey.get(error.key())));
+            } catch (Exception e) {
+                log.warn("[Storage] Multi-object delete of {} keys failed: {}", chunk.size(), e.getMessage());
+                chunk.forEach(key -> failed.add(urlsByKey.get(key)));
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public String getContentAddressedUrl(String sha256Hex) {
+        return publicUrl(CONTENT_ADDRESSED_PREFIX + sha256Hex);
+    }
+
+    @Override
+    public String getContentAddressedUrlPrefix() {
+        return publicUrl(CONTENT_ADDRESSED_PREFIX);
+    }
+
+    @Override
+    public Map<String, String> generateContentAddressedPresignedUrl(String sha256Hex, FileContentType contentType) {
+        String checksum = Base64.getEncoder().encodeToString(HexFormat.of().parseHex(sha256Hex));
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(s3Properties.getBucketName())
+                .key(CONTENT_ADDRESSED_PREFIX + sha256Hex)
+                .contentType(contentType.getMimeType())
+                .checksumSHA256(checksum)
+                .build();
+
+        PresignedPutObjectRequest preSigned = s3Presigner.presignPutObject(r -> r
+                .signatureDuration(Duration.ofMinutes(s3Properties.getPresignExpiration()))
+                .putObjectRequest(objectRequest)
+        );
+
+        Map<String, String> response = new HashMap<>();
+        response.put("uploadUrl", preSigned.url().toString());
+        response.put("strokeUrl", getContentAddressedUrl(sha256Hex));
+        response.put("checksumSha256", checksum);
+        return response;
+    }
+
     @Override
     public String copyFile(String sourceFileUrl) {
         try {
@@ -105,6 +193,40 @@ public class StorageService implements IStorageService {
         }
     }
 
+    @Override
+    public String uploadFile(String key, byte[] content, String contentType) {
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(s3Properties.getBucketName())
+                .key(key)
+                .contentType(contentType)
+                .build();
+
+        s3Client.putObject(objectRequest, RequestBody.fromBytes(content));
+
+        return "https://" + s3Properties.getBucketName() + ".s3." +
+                s3Properties.getRegion() + ".amazonaws.com/" + key;
+    }
+
+    @Override
+    public byte[] downloadFile(String fileUrl) {
+        String key = extractKeyFromUrl(fileUrl);
+        if (key == null || key.isEmpty()) {
+            throw new AppException(ErrorCode.FILE_URL_INVALID);
+        }
+
+        GetObjectRequest getRequest = GetObjectRequest.builder()
+                .bucket(s3Properties.getBucketName())
+                .key(key)
+                .build();
+
+        return s3Client.getObjectAsBytes(getRequest).asByteArray();
+    }
+
+    private String publicUrl(String key) {
+        return "https://" + s3Properties.getBucketName() + ".s3." +
+                s3Properties.getRegion() + ".amazonaws.com/" + key;
+    }
+
     private String extractKeyFromUrl(String fileUrl) {
         if (fileUrl == null || fileUrl.isEmpty()) {
             return null;
@@ -0,0 +1,88 @@
+package com.sketchnotes.project_service.service.implement;
+
+import com.sketchnotes.project_service.enums.FileContentType;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+import com.sketchnotes.project_service.repository.StrokeBlobRepository;
+import com.sketchnotes.project_service.service.IStorageService;
+import com.sketchnotes.project_service.service.IStrokeBlobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reference counting for stroke files shared between page versions.
+ * Saving, restoring and pruning versions only change counts; S3 objects are
+ * never copied, and are deleted later by StrokeBlobCollector.
+ *
+ * Only content-addressed URLs (strokes/{sha256} in this bucket) are counted.
+ * Any other strokeUrl a client saves (legacy uploads, someone else's object)
+ * is ignored, so deleting the page can never get it collected.
+ */
+@Service
+@RequiredArgsConstructor
+public class StrokeBlobService implements IStrokeBlobService {
+
+    private static final Pattern SHA_256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final StrokeBlobRepository strokeBlobRepository;
+    private final IStorageService storageService;
+
+    /**
+     * @throws AppException STROKE_BLOB_BUSY if a blob is being deleted; the
+     *                      client uploads it again and retries the save
+     */
+    @Override
+    public void retain(Collection<String> strokeUrls) {
+        List<String> claimed = strokeBlobRepository.addReferences(countByUrl(strokeUrls));
+        if (!claimed.isEmpty()) {
+            throw new AppException(ErrorCode.STROKE_BLOB_BUSY);
+        }
+    }
+
+    @Override
+    public void release(Collection<String> strokeUrls) {
+        strokeBlobRepository.removeReferences(countByUrl(strokeUrls));
+    }
+
+    @Override
+    public Map<String, String> presign(String sha256Hex, FileContentType contentType) {
+        String hash = sha256Hex.toLowerCase(Locale.ROOT);
+        if (!SHA_256_HEX.matcher(hash).matches()) {
+            throw new AppException(ErrorCode.INVALID_KEY);
+        }
+
+        String strokeUrl = storageService.getContentAddressedUrl(hash);
+        // Also restarts the grace period of an unreferenced blob, so the collector
+        // does not delete it before the client's save references it again
+        if (strokeBlobRepository.touch(strokeUrl)) {
+            Map<String, String> response = new HashMap<>();
+            response.put("strokeUrl", strokeUrl);
+            response.put("exists", "true");
+            return response;
+        }
+        // An upload now could land before the collector's delete and be lost with it
+        if (strokeBlobRepository.isClaimed(strokeUrl)) {
+            throw new AppException(ErrorCode.STROKE_BLOB_BUSY);
+        }
+        return storageService.generateContentAddressedPresignedUrl(hash, contentType);
+    }
+
+    private Map<String, Integer> countByUrl(Collection<String> strokeUrls) {
+        String prefix = storageService.getContentAddressedUrlPrefix();
+        Map<String, Integer> counts = new HashMap<>();
+        for (String strokeUrl : strokeUrls) {
+            if (prefix != null && strokeUrl != null && strokeUrl.startsWith(prefix)
+                    && SHA_256_HEX.matcher(strokeUrl.substring(prefix.length())).matches()) {
+                counts.merge(strokeUrl, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+}
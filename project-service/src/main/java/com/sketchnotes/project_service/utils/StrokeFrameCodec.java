@@ -0,0 +1,236 @@
+package com.sketchnotes.project_service.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary wire format for STROKE_APPEND ("application/vnd.sketchnote.stroke").
+ *
+ * <pre>
+ * offset size     field
+ * 0      u8       magic 'S'
+ * 1      u8       format version (1)
+ * 2      u8       frame type (1 = STROKE_APPEND)
+ * 3      u8       flags (reserved, 0)
+ * 4      i64      seq, big-endian; clients send 0, the server stamps it in place
+ * 12     varint   userId
+ *        varint   pageId
+ *        varint   strokeId byte length, then UTF-8 bytes
+ *        varint   point count N
+ *        zigzag   x0, y0, then dx, dy for the N-1 following points
+ * </pre>
+ *
+ * Coordinates are fixed point with {@link #SCALE} units per pixel, so a typical
+ * pen delta fits in one byte. The server only reads the header and stamps the
+ * seq: the point block is forwarded untouched, no per-point objects are created.
+ */
+public final class StrokeFrameCodec {
+
+    public static final String CONTENT_TYPE = "application/vnd.sketchnote.stroke";
+    public static final byte TYPE_STROKE_APPEND = 1;
+    public static final int SCALE = 10;
+
+    private static final byte MAGIC = 'S';
+    private static final byte VERSION = 1;
+    private static final int SEQ_OFFSET = 4;
+    private static final int HEADER_FIXED_SIZE = 12;
+
+    private StrokeFrameCodec() {
+    }
+
+    /**
+     * Parsed frame header; {@code pointsOffset} is where the point block starts.
+     */
+    public record Header(byte type, long seq, long userId, long pageId, String strokeId,
+                         int pointCount, int pointsOffset) {
+    }
+
+    // ==========================================================================
+    // SERVER SIDE (header only)
+    // ==========================================================================
+
+    public static boolean isFrame(byte[] frame) {
+        return frame != null && frame.length >= HEADER_FIXED_SIZE && frame[0] == MAGIC && frame[1] == VERSION;
+    }
+
+    public static Header readHeader(byte[] frame) {
+        if (!isFrame(frame)) {
+            throw new IllegalArgumentException("Not a stroke frame");
+        }
+        Reader in = new Reader(frame, HEADER_FIXED_SIZE);
+        long userId = in.varint();
+        long pageId = in.varint();
+        int idLength = (int) in.varint();
+        if (idLength < 0 || in.pos + idLength > frame.length) {
+            throw new IllegalArgumentException("Truncated stroke frame");
+        }
+        String strokeId = new String(frame, in.pos, idLength, StandardCharsets.UTF_8);
+        in.pos += idLength;
+        int pointCount = (int) in.varint();
+        return new Header(frame[2], readSeq(frame), userId, pageId, strokeId, pointCount, in.pos);
+    }
+
+    public static long readSeq(byte[] frame) {
+        long seq = 0;
+        for (int i = SEQ_OFFSET; i < SEQ_OFFSET + 8; i++) {
+            seq = (seq << 8) | (frame[i] & 0xFF);
+        }
+        return seq;
+    }
+
+    /**
+     * Write the server sequence number into the frame, in place.
+     */
+    public static void stampSeq(byte[] frame, long seq) {
+        for (int i = SEQ_OFFSET + 7; i >= SEQ_OFFSET; i--) {
+            frame[i] = (byte) seq;
+            seq >>>= 8;
+        }
+    }
+
+    // ==========================================================================
+    // POINT BLOCK
+    // ==========================================================================
+
+    /**
+     * Decode the point block into absolute coordinates (pixels), interleaved x,y.
+     */
+    public static float[] decodePoints(byte[] frame, Header header) {
+        float[] xy = new float[header.pointCount() * 2];
+        Reader in = new Reader(frame, header.pointsOffset());
+        long x = 0;
+        long y = 0;
+        for (int i = 0; i < header.pointCount(); i++) {
+            x += zigzagDecode(in.varint());
+            y += zigzagDecode(in.varint());
+            xy[i * 2] = (float) x / SCALE;
+            xy[i * 2 + 1] = (float) y / SCALE;
+        }
+        return xy;
+    }
+
+    /**
+     * Decode the point block into fixed-point deltas: x0, y0, dx1, dy1, ...
+     */
+    public static int[] decodeDeltas(byte[] frame, Header header) {
+        int[] deltas = new int[header.pointCount() * 2];
+        Reader in = new Reader(frame, header.pointsOffset());
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = (int) zigzagDecode(in.varint());
+        }
+        return deltas;
+    }
+
+    /**
+     * JSON mirror of a frame for subscribers that did not negotiate the binary format.
+     * Deltas stay a primitive int[] (fixed point, see "scale").
+     */
+    public static Map<String, Object> toJsonMessage(byte[] frame) {
+        Header header = readHeader(frame);
+
+        Map<String, Object> points = new HashMap<>();
+        points.put("compressed", true);
+        points.put("scale", SCALE);
+        points.put("count", header.pointCount());
+        points.put("deltas", decodeDeltas(frame, header));
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("strokeId", header.strokeId());
+        payload.put("pageId", header.pageId());
+        payload.put("points", points);
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "STROKE_APPEND");
+        message.put("userId", header.userId());
+        message.put("seq", header.seq());
+        message.put("payload", payload);
+        return message;
+    }
+
+    // ==========================================================================
+    // CLIENT SIDE / TESTS
+    // ==========================================================================
+
+    /**
+     * Encode a STROKE_APPEND frame from interleaved x,y pixel coordinates.
+     */
+    public static byte[] encodeAppend(long userId, long pageId, String strokeId, float[] xy, int pointCount) {
+        byte[] id = strokeId.getBytes(StandardCharsets.UTF_8);
+        // Worst case 5 bytes per varint coordinate
+        byte[] out = new byte[HEADER_FIXED_SIZE + 10 + 10 + 5 + id.length + 5 + pointCount * 10];
+        out[0] = MAGIC;
+        out[1] = VERSION;
+        out[2] = TYPE_STROKE_APPEND;
+        out[3] = 0;
+
+        int pos = HEADER_FIXED_SIZE;
+        pos = writeVarint(out, pos, userId);
+        pos = writeVarint(out, pos, pageId);
+        pos = writeVarint(out, pos, id.length);
+        System.arraycopy(id, 0, out, pos, id.length);
+        pos += id.length;
+        pos = writeVarint(out, pos, pointCount);
+
+        long prevX = 0;
+        long prevY = 0;
+        for (int i = 0; i < pointCount; i++) {
+            long x = Math.round(xy[i * 2] * SCALE);
+            long y = Math.round(xy[i * 2 + 1] * SCALE);
+            pos = writeVarint(out, pos, zigzagEncode(x - prevX));
+            pos = writeVarint(out, pos, zigzagEncode(y - prevY));
+            prevX = x;
+            prevY = y;
+        }
+
+        byte[] frame = new byte[pos];
+        System.arraycopy(out, 0, frame, 0, pos);
+        return frame;
+    }
+
+    // ==========================================================================
+    // VARINT / ZIGZAG
+    // ==========================================================================
+
+    static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= data.length) {
+                    throw new IllegalArgumentException("Truncated stroke frame");
+                }
+                byte b = data[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in stroke frame");
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.sketchnotes.project_service.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Growable buffer of absolute stroke points (pixels), interleaved x,y in a float[].
+ *
+ * Point chunks are decoded and merged as they arrive, whatever the client format:
+ * <ul>
+ *   <li>fixed-point deltas {@code {scale, deltas: [x0, y0, dx1, dy1, ...]}} (binary mirror)</li>
+ *   <li>float deltas {@code {start: [x, y], deltas: [dx1, dy1, ...]}}</li>
+ *   <li>raw points {@code {data: [...]}} or a bare list of {@code {x, y}} / {@code [x, y]} / x, y</li>
+ * </ul>
+ *
+ * Past {@link #SIMPLIFY_THRESHOLD} points the stroke is simplified with
+ * Ramer-Douglas-Peucker, doubling the tolerance until it is back under half the
+ * threshold, so memory per active stroke stays bounded however long it is drawn.
+ * Not thread-safe: callers synchronize on the owning stroke.
+ */
+public final class StrokePointBuffer {
+
+    public static final int SIMPLIFY_THRESHOLD = 4096;
+    private static final float INITIAL_TOLERANCE = 0.25f;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private float[] xy;
+    private int size;
+
+    public StrokePointBuffer() {
+        this.xy = new float[INITIAL_CAPACITY * 2];
+    }
+
+    private StrokePointBuffer(float[] xy, int size) {
+        this.xy = xy;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public StrokePointBuffer copy() {
+        return new StrokePointBuffer(Arrays.copyOf(xy, Math.max(size * 2, 2)), size);
+    }
+
+    // ==========================================================================
+    // APPEND
+    // ==========================================================================
+
+    public void add(float x, float y) {
+        if (size * 2 == xy.length) {
+            xy = Arrays.copyOf(xy, xy.length * 2);
+        }
+        xy[size * 2] = x;
+        xy[size * 2 + 1] = y;
+        size++;
+    }
+
+    /**
+     * Decode a point chunk in any supported format and merge it into the stroke.
+     *
+     * @return number of points appended (before any simplification)
+     */
+    public int appendChunk(Object chunk) {
+        int before = size;
+        if (chunk instanceof Map<?, ?> map) {
+            Object deltas = map.get("deltas");
+            if (map.get("scale") instanceof Number scale) {
+                appendFixedPoint(deltas, scale.floatValue());
+            } else if (deltas != null) {
+                appendFloatDeltas(map.get("start"), deltas);
+            } else if (map.get("data") != null) {
+                appendRaw(map.get("data"));
+            }
+        } else {
+            appendRaw(chunk);
+        }
+        int appended = size - before;
+        if (size > SIMPLIFY_THRESHOLD) {
+            simplify();
+        }
+        return appended;
+    }
+
+    private void appendFixedPoint(Object deltas, float scale) {
+        long x = 0;
+        long y = 0;
+        int count = length(deltas) / 2;
+        for (int i = 0; i < count; i++) {
+            x += (long) number(deltas, i * 2);
+            y += (long) number(deltas, i * 2 + 1);
+            add(x / scale, y / scale);
+        }
+    }
+
+    private void appendFloatDeltas(Object start, Object deltas) {
+        double x;
+        double y;
+        if (length(start) >= 2) {
+            x = number(start, 0);
+            y = number(start, 1);
+        } else if (size > 0) {
+            // No explicit start: continue from the last point
+            x = xy[size * 2 - 2];
+            y = xy[size * 2 - 1];
+        } else {
+            x = 0;
+            y = 0;
+        }
+        if (length(start) >= 2) {
+            add((float) x, (float) y);
+        }
+        int count = length(deltas) / 2;
+        for (int i = 0; i < count; i++) {
+            x += number(deltas, i * 2);
+            y += number(deltas, i * 2 + 1);
+            add((float) x, (float) y);
+        }
+    }
+
+    private void appendRaw(Object data) {
+        if (!(data instanceof List<?> list) || list.isEmpty()) return;
+
+        if (list.get(0) instanceof Number) {
+            for (int i = 0; i + 1 < list.size(); i += 2) {
+                add((float) number(list, i), (float) number(list, i + 1));
+            }
+            return;
+        }
+        for (Object point : list) {
+            if (point instanceof Map<?, ?> p && p.get("x") instanceof Number x && p.get("y") instanceof Number y) {
+                add(x.floatValue(), y.floatValue());
+            } else if (point instanceof List<?> p && p.size() >= 2
+                    && p.get(0) instanceof Number x && p.get(1) instanceof Number y) {
+                add(x.floatValue(), y.floatValue());
+            }
+        }
+    }
+
+    // ==========================================================================
+    // ENCODE
+    // ==========================================================================
+
+    /**
+     * The whole stroke as one fixed-point delta block, the same shape as the
+     * JSON mirror of binary frames: {compressed, scale, count, deltas: [x0, y0, dx1, dy1, ...]}.
+     */
+    public Map<String, Object> toDeltaBlock() {
+        int[] deltas = new int[size * 2];
+        long prevX = 0;
+        long prevY = 0;
+        for (int i = 0; i < size; i++) {
+            long x = Math.round(xy[i * 2] * StrokeFrameCodec.SCALE);
+            long y = Math.round(xy[i * 2 + 1] * StrokeFrameCodec.SCALE);
+            deltas[i * 2] = (int) (x - prevX);
+            deltas[i * 2 + 1] = (int) (y - prevY);
+            prevX = x;
+            prevY = y;
+        }
+        return Map.of(
+            "compressed", true,
+            "scale", StrokeFrameCodec.SCALE,
+            "count", size,
+            "deltas", deltas
+        );
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(xy, size * 2);
+    }
+
+    // ==========================================================================
+    // SIMPLIFICATION (Ramer-Douglas-Peucker)
+    // ==========================================================================
+
+    private void simplify() {
+        float tolerance = INITIAL_TOLERANCE;
+        boolean[] keep = new boolean[size];
+        while (size > SIMPLIFY_THRESHOLD / 2) {
+            Arrays.fill(keep, 0, size, false);
+            markKept(keep, tolerance * tolerance);
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (keep[i]) {
+                    xy[kept * 2] = xy[i * 2];
+                    xy[kept * 2 + 1] = xy[i * 2 + 1];
+                    kept++;
+                }
+            }
+            size = kept;
+            tolerance *= 2;
+        }
+    }
+
+    /**
+     * Iterative RDP (no recursion depth issues on long strokes).
+     */
+    private void markKept(boolean[] keep, float toleranceSq) {
+        keep[0] = true;
+        keep[size - 1] = true;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            float maxDistSq = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                float d = segmentDistanceSq(i, first, last);
+                if (d > maxDistSq) {
+                    maxDistSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxDistSq > toleranceSq) {
+                keep[index] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+    }
+
+    private float segmentDistanceSq(int p, int a, int b) {
+        float px = xy[p * 2], py = xy[p * 2 + 1];
+        float ax = xy[a * 2], ay = xy[a * 2 + 1];
+        float dx = xy[b * 2] - ax, dy = xy[b * 2 + 1] - ay;
+        float lengthSq = dx * dx + dy * dy;
+        float t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSq));
+        float ex = px - (ax + t * dx), ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    // ==========================================================================
+    // HELPERS
+    // ==========================================================================
+
+    private static int length(Object values) {
+        if (values instanceof List<?> list) return list.size();
+        if (values instanceof int[] ints) return ints.length;
+        if (values instanceof float[] floats) return floats.length;
+        if (values instanceof double[] doubles) return doubles.length;
+        return 0;
+    }
+
+    private static double number(Object values, int index) {
+        if (values instanceof List<?> list) {
+            if (!(list.get(index) instanceof Number n)) {
+                throw new IllegalArgumentException("Malformed stroke points");
+            }
+            return n.doubleValue();
+        }
+        if (values instanceof int[] ints) return ints[index];
+        if (values instanceof float[] floats) return floats[index];
+        return ((double[]) values)[index];
+    }
+}
@@ -0,0 +1,168 @@
+package com.sketchnotes.project_service.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Fixed-size table of token buckets keyed by a primitive long, for per-user and
+ * per-project rate limiting on the message hot path.
+ *
+ * - no allocation per call: keys and bucket states live in two AtomicLongArrays
+ * - lock-free: a bucket is one long, (lastRefillMs << 20) | tokens, updated by CAS
+ * - bounded: open addressing over a power-of-two capacity with a short probe
+ *   window. A bucket idle for longer than the idle timeout is as good as a fresh
+ *   one (it has refilled), so its slot is simply taken over by a new key; memory
+ *   never grows with the number of users ever seen.
+ *
+ * If every slot in a key's probe window is busy the call is allowed (fail open):
+ * the limiter protects the broadcast lanes, it must not lock users out.
+ */
+public final class TokenBucketTable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MAX_PROBES = 16;
+    private static final int TOKEN_BITS = 20;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // Clock offset so an unused slot (state 0) reads as long idle, hence full
+    private static final long CLOCK_OFFSET_MS = 3_600_000;
+
+    private final long tokensPerSecond;
+    private final long idleEvictMs;
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray states;
+    private final LongSupplier clock;
+    private final long epochMs;
+
+    public TokenBucketTable(int tokensPerSecond, int capacity, long idleEvictMs) {
+        this(tokensPerSecond, capacity, idleEvictMs, System::currentTimeMillis);
+    }
+
+    public TokenBucketTable(int tokensPerSecond, int capacity, long idleEvictMs, LongSupplier clock) {
+        if (tokensPerSecond <= 0 || tokensPerSecond > TOKEN_MASK) {
+            throw new IllegalArgumentException("tokensPerSecond out of range: " + tokensPerSecond);
+        }
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.tokensPerSecond = tokensPerSecond;
+        // Never evict before a bucket could have refilled completely
+        this.idleEvictMs = Math.max(idleEvictMs, 1000);
+        this.mask = size - 1;
+        this.keys = new AtomicLongArray(size);
+        this.states = new AtomicLongArray(size);
+        this.clock = clock;
+        this.epochMs = clock.getAsLong() - CLOCK_OFFSET_MS;
+        for (int i = 0; i < size; i++) {
+            keys.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Take one token from the key's bucket
+     *
+     * @return false when the bucket is empty
+     */
+    public boolean tryAcquire(long key) {
+        if (key == EMPTY) key++;
+        long now = clock.getAsLong() - epochMs;
+        int slot = slotFor(key, now);
+        if (slot < 0) return true;
+
+        while (true) {
+            long state = states.get(slot);
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+            long elapsed = now - last;
+            if (elapsed > 0) {
+                long refill = elapsed * tokensPerSecond / 1000;
+                if (refill > 0) {
+                    tokens = Math.min(tokensPerSecond, tokens + refill);
+                    // Keep the fractional token time unless the bucket is full
+                    last = tokens == tokensPerSecond ? now : last + refill * 1000 / tokensPerSecond;
+                }
+            }
+            if (tokens == 0) return false;
+
+            if (states.compareAndSet(slot, state, (last << TOKEN_BITS) | (tokens - 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Keys used within the idle timeout (scans the table; for metrics and tests)
+     */
+    public int activeEntries() {
+        long now = clock.getAsLong() - epochMs;
+        int active = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (keys.get(i) != EMPTY && !isIdle(i, now)) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int slotFor(long key, long now) {
+        int start = (int) mix(key) & mask;
+        int reusable = -1;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & mask;
+            long current = keys.get(slot);
+            if (current == key) return slot;
+            if (current == EMPTY) {
+                if (keys.compareAndSet(slot, EMPTY, key) || keys.get(slot) == key) return slot;
+                continue;
+            }
+            if (reusable < 0 && isIdle(slot, now)) {
+                reusable = slot;
+            }
+        }
+        if (reusable >= 0) {
+            // The idle bucket has refilled, so the new key inherits a full bucket
+            long previous = keys.get(reusable);
+            if (previous != key && isIdle(reusable, now) && keys.compareAndSet(reusable, previous, key)) {
+                return reusable;
+            }
+            if (keys.get(reusable) == key) return reusable;
+        }
+        return -1;
+    }
+
+    private boolean isIdle(int slot, long now) {
+        return now - (states.get(slot) >>> TOKEN_BITS) > idleEvictMs;
+    }
+
+    /**
+     * Key for a (project, user) pair. Numeric user ids (the usual case) are used
+     * as is; other ids are hashed without allocating.
+     */
+    public static long compositeKey(long projectId, Object userId) {
+        long user;
+        if (userId instanceof Number number) {
+            user = number.longValue();
+        } else if (userId instanceof CharSequence text) {
+            user = hash(text);
+        } else {
+            user = userId != null ? userId.hashCode() : 0;
+        }
+        return projectId * 0x9E3779B97F4A7C15L + mix(user);
+    }
+
+    private static long hash(CharSequence text) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < text.length(); i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+}
@@ -0,0 +1,58 @@
+package com.sketchnotes.project_service;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base for repository tests that need a real PostgreSQL (sequences, upserts,
+ * SKIP LOCKED). They never touch the datasource in application.yaml: they use
+ * a throwaway database whose schema the test context creates and drops.
+ *
+ * Opt-in: mvn test -Ppostgres-test, with TEST_DATASOURCE_URL / _USERNAME /
+ * _PASSWORD (default jdbc:postgresql://localhost:5432/project_test). Skipped
+ * when that database cannot be reached.
+ */
+@Tag("postgres")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public abstract class PostgresTestSupport {
+
+    private static final String URL = env("TEST_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/project_test");
+    private static final String USERNAME = env("TEST_DATASOURCE_USERNAME", "postgres");
+    private static final String PASSWORD = env("TEST_DATASOURCE_PASSWORD", "postgres");
+
+    @BeforeAll
+    protected static void requireDatabase() {
+        assumeTrue(isReachable(), "test PostgreSQL not available at " + URL);
+    }
+
+    @DynamicPropertySource
+    protected static void testDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> URL);
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    private static boolean isReachable() {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+            return connection.isValid(2);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
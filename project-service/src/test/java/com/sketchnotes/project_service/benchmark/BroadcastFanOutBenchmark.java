@@ -0,0 +1,175 @@
+package com.sketchnotes.project_service.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.DefaultContentTypeResolver;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.TextMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.PreSerializedMessageConverter;
+import com.sketchnotes.project_service.dtos.socket.PreSerializedPayload;
+
+/**
+ * One collaboration broadcast to N subscribers of a project topic, through the
+ * same simple broker and per-session STOMP framing Spring uses at runtime
+ * (StompEncoder + TextMessage + UTF-8 write, as in StompSubProtocolHandler).
+ *
+ * - convertAndSendMap: previous path, Map handed to the broker template's Jackson converter
+ * - preSerialized:     JSON encoded once into PreSerializedPayload, passed through by
+ *                      PreSerializedMessageConverter
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *        -Dexec.args="-cp %classpath org.openjdk.jmh.Main BroadcastFanOutBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+
+    private static final String DESTINATION = "/topic/project/42/collaboration";
+
+    @Param({"50"})
+    public int subscribers;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate defaultTemplate;
+    private SimpMessagingTemplate preSerializedTemplate;
+    private long seq;
+    private long bytesWritten;
+
+    @Setup
+    public void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        StompEncoder encoder = new StompEncoder();
+        clientOutbound.subscribe(message -> {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            accessor.updateStompCommandAsServerMessage();
+            byte[] frame = encoder.encode(accessor.getMessageHeaders(), (byte[]) message.getPayload());
+            TextMessage text = new TextMessage(frame);
+            bytesWritten += text.getPayload().getBytes(StandardCharsets.UTF_8).length;
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-" + i);
+            subscribe.setDestination(DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        defaultTemplate = new SimpMessagingTemplate(brokerChannel);
+        defaultTemplate.setMessageConverter(new CompositeMessageConverter(springDefaultConverters()));
+
+        List<MessageConverter> converters = new ArrayList<>();
+        converters.add(new PreSerializedMessageConverter());
+        converters.addAll(springDefaultConverters());
+        preSerializedTemplate = new SimpMessagingTemplate(brokerChannel);
+        preSerializedTemplate.setMessageConverter(new CompositeMessageConverter(converters));
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public long convertAndSendMap() {
+        Map<String, Object> message = elementUpdate(++seq);
+        defaultTemplate.convertAndSend(DESTINATION, message, Map.of("seq", String.valueOf(seq)));
+        return bytesWritten;
+    }
+
+    @Benchmark
+    public long preSerialized() throws Exception {
+        Map<String, Object> message = elementUpdate(++seq);
+        PreSerializedPayload payload = PreSerializedPayload.json(objectMapper.writeValueAsBytes(message));
+        preSerializedTemplate.convertAndSend(DESTINATION, payload, Map.of("seq", String.valueOf(seq)));
+        return bytesWritten;
+    }
+
+    /**
+     * Same converter chain AbstractMessageBrokerConfiguration builds for the broker template
+     */
+    private List<MessageConverter> springDefaultConverters() {
+        DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+        resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
+        MappingJackson2MessageConverter jackson = new MappingJackson2MessageConverter();
+        jackson.setContentTypeResolver(resolver);
+        jackson.setObjectMapper(objectMapper);
+        return List.of(new StringMessageConverter(), new ByteArrayMessageConverter(), jackson);
+    }
+
+    private static Map<String, Object> elementUpdate(long seq) {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("x", 412.5);
+        changes.put("y", 288.25);
+        changes.put("rotation", 12);
+        changes.put("style", Map.of("stroke", "#1f2937", "fill", "#fde68a", "strokeWidth", 2));
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("elementId", "el-7f3a9c");
+        payload.put("pageId", 3);
+        payload.put("changes", changes);
+        payload.put("transient", false);
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "ELEMENT_UPDATE");
+        message.put("projectId", 42);
+        message.put("userId", 1234);
+        message.put("seq", seq);
+        message.put("version", seq);
+        message.put("serverTimestamp", System.currentTimeMillis());
+        message.put("payload", payload);
+        return message;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastFanOutBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
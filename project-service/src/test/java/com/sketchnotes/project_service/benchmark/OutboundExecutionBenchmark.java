@@ -0,0 +1,220 @@
+package com.sketchnotes.project_service.benchmark;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.sketchnotes.project_service.config.BoundedSendSessionDecorator;
+import com.sketchnotes.project_service.config.CollaborationExecutionProperties;
+import com.sketchnotes.project_service.utils.VirtualThreads;
+
+/**
+ * One broadcast to every connected session through BoundedSendSessionDecorator,
+ * where each socket write blocks for writeMicros (a client on a slow link, TCP
+ * window full). Measures the time until every session has received the frame.
+ *
+ * - platform: the fixed "ws-outbound" pool, default sender-threads (8)
+ * - virtual:  one virtual thread per session drain (collaboration.execution.mode=virtual)
+ *
+ * The virtual runs need a Java 21+ JVM; on older runtimes their setup fails and
+ * JMH reports them as errors while the platform runs still complete.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *        -Dexec.args="-cp %classpath org.openjdk.jmh.Main OutboundExecutionBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboundExecutionBenchmark {
+
+    private static final int PLATFORM_SENDER_THREADS = 8;
+
+    @Param({"1000", "4000"})
+    public int sessions;
+
+    @Param({"500"})
+    public int writeMicros;
+
+    @Param({CollaborationExecutionProperties.MODE_PLATFORM, CollaborationExecutionProperties.MODE_VIRTUAL})
+    public String mode;
+
+    private ExecutorService sender;
+    private final List<BoundedSendSessionDecorator> outbound = new ArrayList<>();
+    private final TextMessage frame = new TextMessage("MESSAGE\ndestination:/topic/project/42/collaboration\n\n{}\u0000");
+    private volatile CountDownLatch delivered;
+
+    @Setup
+    public void setUp() {
+        sender = CollaborationExecutionProperties.MODE_VIRTUAL.equals(mode)
+                ? VirtualThreads.newThreadPerTaskExecutor("ws-outbound-")
+                : Executors.newFixedThreadPool(PLATFORM_SENDER_THREADS);
+
+        BoundedSendSessionDecorator.Listener listener = new BoundedSendSessionDecorator.Listener() {
+            @Override
+            public void messagesDropped(int count) {
+            }
+
+            @Override
+            public void slowConsumerDisconnected(String sessionId, String reason) {
+            }
+        };
+        long writeNanos = TimeUnit.MICROSECONDS.toNanos(writeMicros);
+        for (int i = 0; i < sessions; i++) {
+            outbound.add(new BoundedSendSessionDecorator(new SlowSocket("session-" + i, writeNanos),
+                    2000, 4 * 1024 * 1024, sender, listener));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sender.shutdownNow();
+    }
+
+    @Benchmark
+    public void broadcastToAllSessions() throws Exception {
+        CountDownLatch latch = new CountDownLatch(sessions);
+        delivered = latch;
+        for (BoundedSendSessionDecorator session : outbound) {
+            session.sendMessage(frame);
+        }
+        if (!latch.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " sessions never received the frame");
+        }
+    }
+
+    /**
+     * A socket whose every write parks the sending thread, like a blocking write
+     * on a full TCP window; a virtual sender unmounts while parked.
+     */
+    private class SlowSocket implements WebSocketSession {
+
+        private final String id;
+        private final long writeNanos;
+
+        SlowSocket(String id, long writeNanos) {
+            this.id = id;
+            this.writeNanos = writeNanos;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            LockSupport.parkNanos(writeNanos);
+            delivered.countDown();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return "v12.stomp";
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(OutboundExecutionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.sketchnotes.project_service.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationExecutionProperties;
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+import com.sketchnotes.project_service.service.implement.InMemoryCollaborationStateStore;
+import com.sketchnotes.project_service.utils.TokenBucketTable;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Rate limiting on the enqueue path with 16 threads hitting one project,
+ * each thread cycling over its own 64 users.
+ *
+ * - legacyLimiter:   previous scheme, "projectId_userId" String key, ConcurrentHashMap,
+ *                    synchronized token bucket per user and per project
+ * - tokenBucketTable: primitive composite key, CAS bucket state, fixed-size table
+ * - enqueueMessage:  the whole RealtimeMessageService.enqueueMessage call (best-effort
+ *                    message, so it goes through both limiters); the broker send is a no-op
+ *
+ * Rate limit warnings are silenced so the limiter, not logging, is measured.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *        -Dexec.args="-cp %classpath org.openjdk.jmh.Main RateLimiterBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final long PROJECT_ID = 42L;
+    private static final int USERS_PER_THREAD = 64;
+
+    private final ConcurrentHashMap<String, LegacyBucket> legacyUsers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, LegacyBucket> legacyProjects = new ConcurrentHashMap<>();
+    private final TokenBucketTable users = new TokenBucketTable(100, 65_536, 300_000);
+    private final TokenBucketTable projects = new TokenBucketTable(500, 16_384, 300_000);
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private RealtimeMessageService service;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        long[] userIds = new long[USERS_PER_THREAD];
+        int next;
+
+        @Setup
+        public void setUp(RateLimiterBenchmark benchmark) {
+            int thread = benchmark.threadIds.getAndIncrement();
+            for (int i = 0; i < userIds.length; i++) {
+                userIds[i] = 10_000L + thread * USERS_PER_THREAD + i;
+            }
+        }
+
+        Long nextUser() {
+            return userIds[next++ & (USERS_PER_THREAD - 1)];
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(RealtimeMessageService.class)).setLevel(Level.ERROR);
+        service = new RealtimeMessageService(new SimpMessagingTemplate((message, timeout) -> true),
+                new InMemoryCollaborationStateStore(), new ObjectMapper(), new SimpleMeterRegistry(),
+                new CollaborationExecutionProperties());
+        service.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public boolean legacyLimiter(Caller caller) {
+        Object userId = caller.nextUser();
+        LegacyBucket user = legacyUsers.computeIfAbsent(PROJECT_ID + "_" + userId, k -> new LegacyBucket(100));
+        if (!user.tryAcquire()) return false;
+        return legacyProjects.computeIfAbsent(PROJECT_ID, k -> new LegacyBucket(500)).tryAcquire();
+    }
+
+    @Benchmark
+    public boolean tokenBucketTable(Caller caller) {
+        Object userId = caller.nextUser();
+        if (!users.tryAcquire(TokenBucketTable.compositeKey(PROJECT_ID, userId))) return false;
+        return projects.tryAcquire(PROJECT_ID);
+    }
+
+    @Benchmark
+    public boolean enqueueMessage(Caller caller) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "PAGE_SWITCH");
+        return service.enqueueMessage(PROJECT_ID, caller.nextUser(), message);
+    }
+
+    /**
+     * The synchronized bucket RealtimeMessageService used before TokenBucketTable
+     */
+    private static final class LegacyBucket {
+        private final int maxTokens;
+        private final long refillIntervalNanos;
+        private long availableTokens;
+        private long lastRefillTime;
+
+        LegacyBucket(int tokensPerSecond) {
+            this.maxTokens = tokensPerSecond;
+            this.refillIntervalNanos = 1_000_000_000L / tokensPerSecond;
+            this.availableTokens = tokensPerSecond;
+            this.lastRefillTime = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            long elapsed = now - lastRefillTime;
+            if (elapsed > refillIntervalNanos) {
+                availableTokens = Math.min(maxTokens, availableTokens + elapsed / refillIntervalNanos);
+                lastRefillTime = now;
+            }
+            if (availableTokens > 0) {
+                availableTokens--;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.sketchnotes.project_service.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.utils.StrokeFrameCodec;
+
+/**
+ * STROKE_APPEND server cost: current JSON path (parse into Map with boxed
+ * deltas, re-serialize for the broker) vs binary frame pass-through (read
+ * header, stamp seq).
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *        -Dexec.args="-cp %classpath org.openjdk.jmh.Main StrokeWireFormatBenchmark -prof gc"
+ * Allocation per message is reported by the GC profiler (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrokeWireFormatBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"16", "64"})
+    public int points;
+
+    private byte[] json;
+    private byte[] frame;
+    private long seq;
+
+    @Setup
+    public void setUp() throws Exception {
+        float[] xy = samplePoints(points);
+        frame = StrokeFrameCodec.encodeAppend(1234, 56, "stroke-1a2b3c4d", xy, points);
+        json = MAPPER.writeValueAsBytes(jsonMessage(xy, points));
+
+        System.out.printf("%n[wire] points=%d json=%d B (%.2f B/point) binary=%d B (%.2f B/point)%n",
+                points, json.length, (double) json.length / points, frame.length, (double) frame.length / points);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] jsonPath() throws Exception {
+        Map<String, Object> message = MAPPER.readValue(json, Map.class);
+        message.put("seq", ++seq);
+        message.put("serverTimestamp", System.currentTimeMillis());
+        return MAPPER.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] binaryPath() {
+        StrokeFrameCodec.Header header = StrokeFrameCodec.readHeader(frame);
+        StrokeFrameCodec.stampSeq(frame, ++seq + header.pointCount());
+        return frame;
+    }
+
+    static float[] samplePoints(int count) {
+        float[] xy = new float[count * 2];
+        float x = 412.3f;
+        float y = 288.7f;
+        for (int i = 0; i < count; i++) {
+            x += 1.5f + (float) Math.sin(i / 3.0) * 2;
+            y += (float) Math.cos(i / 4.0) * 3;
+            xy[i * 2] = x;
+            xy[i * 2 + 1] = y;
+        }
+        return xy;
+    }
+
+    /**
+     * Shape sent by clients today: points.deltas as a flat list of numbers.
+     */
+    static Map<String, Object> jsonMessage(float[] xy, int count) {
+        List<Object> deltas = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            deltas.add(Math.round((xy[i * 2] - xy[i * 2 - 2]) * 100) / 100.0);
+            deltas.add(Math.round((xy[i * 2 + 1] - xy[i * 2 - 1]) * 100) / 100.0);
+        }
+        Map<String, Object> pts = new HashMap<>();
+        pts.put("compressed", true);
+        pts.put("start", List.of(xy[0], xy[1]));
+        pts.put("deltas", deltas);
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("strokeId", "stroke-1a2b3c4d");
+        payload.put("pageId", 56);
+        payload.put("points", pts);
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "STROKE_APPEND");
+        message.put("userId", 1234);
+        message.put("payload", payload);
+        return message;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(StrokeWireFormatBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
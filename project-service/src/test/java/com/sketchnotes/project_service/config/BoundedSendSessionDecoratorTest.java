@@ -0,0 +1,135 @@
+package com.sketchnotes.project_service.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+/**
+ * A client that stops reading: the first send blocks, everything after it queues.
+ */
+class BoundedSendSessionDecoratorTest {
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private final WebSocketSession raw = mock(WebSocketSession.class);
+    private final BoundedSendSessionDecorator session;
+
+    BoundedSendSessionDecoratorTest() throws Exception {
+        when(raw.getId()).thenReturn("s-1");
+        doAnswer(invocation -> {
+            unblock.await(5, TimeUnit.SECONDS);
+            delivered.add(((WebSocketMessage<?>) invocation.getArgument(0)).getPayload().toString());
+            return null;
+        }).when(raw).sendMessage(any());
+        session = new BoundedSendSessionDecorator(raw, 10, 1024 * 1024, sender, new BoundedSendSessionDecorator.Listener() {
+            @Override
+            public void messagesDropped(int count) {
+                dropped.addAndGet(count);
+            }
+
+            @Override
+            public void slowConsumerDisconnected(String sessionId, String reason) {
+                disconnects.incrementAndGet();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        sender.shutdownNow();
+    }
+
+    @Test
+    void transientMessagesAreDroppedOldestFirst() throws Exception {
+        session.sendMessage(frame("durable-0", false));
+        awaitBlockedSend();
+        for (int i = 0; i < 5; i++) {
+            session.sendMessage(frame("durable-" + (i + 1), false));
+        }
+        for (int i = 0; i < 20; i++) {
+            session.sendMessage(frame("cursor-" + i, true));
+        }
+
+        assertEquals(10, session.getBufferedMessages());
+        assertEquals(15, dropped.get());
+        assertEquals(0, disconnects.get());
+
+        unblock.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (delivered.size() < 11 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // Every durable message survives, in order, followed by the newest cursors
+        assertEquals(11, delivered.size());
+        assertTrue(delivered.get(5).contains("durable-5"));
+        assertTrue(delivered.get(6).contains("cursor-15"));
+        assertTrue(delivered.get(10).contains("cursor-19"));
+    }
+
+    @Test
+    void durableOverflowDisconnectsForResync() throws Exception {
+        session.sendMessage(frame("durable-0", false));
+        awaitBlockedSend();
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(frame("durable-" + (i + 1), false));
+        }
+
+        SessionLimitExceededException e = assertThrows(SessionLimitExceededException.class,
+                () -> session.sendMessage(frame("durable-11", false)));
+        assertEquals(BoundedSendSessionDecorator.RESYNC_STATUS, e.getStatus());
+        assertEquals(1, disconnects.get());
+        assertEquals(0, session.getBufferedMessages());
+    }
+
+    @Test
+    void blockedSendPastTheTimeLimitClosesTheSession() throws Exception {
+        session.sendMessage(frame("durable-0", false));
+        awaitBlockedSend();
+
+        session.checkSendTimeLimit(System.currentTimeMillis(), 60_000);
+        assertEquals(0, disconnects.get());
+
+        session.checkSendTimeLimit(System.currentTimeMillis() + 61_000, 60_000);
+        assertEquals(1, disconnects.get());
+        verify(raw).close(BoundedSendSessionDecorator.RESYNC_STATUS);
+    }
+
+    private void awaitBlockedSend() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (session.getBufferedMessages() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        Thread.sleep(20);
+    }
+
+    private static TextMessage frame(String body, boolean droppable) {
+        String headers = "MESSAGE\ndestination:/topic/project/1/collaboration\n"
+                + (droppable ? "x-delivery:droppable\n" : "") + "seq:1\n";
+        return new TextMessage(headers + "\n" + body + "\0");
+    }
+}
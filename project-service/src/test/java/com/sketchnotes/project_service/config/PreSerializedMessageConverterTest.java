@@ -0,0 +1,60 @@
+package com.sketchnotes.project_service.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import com.sketchnotes.project_service.dtos.socket.PreSerializedPayload;
+
+/**
+ * What a broadcast looks like on the wire, with the broker converters assembled
+ * the way Spring does it: Boot's Jackson converter already in the list, then
+ * WebSocketConfig, then the defaults.
+ */
+class PreSerializedMessageConverterTest {
+
+    @Test
+    void broadcastGoesOutAsTheEncodedJson() {
+        byte[] json = "{\"type\":\"DRAW\",\"seq\":3}".getBytes(StandardCharsets.UTF_8);
+        List<Message<?>> sent = new ArrayList<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+        template.setMessageConverter(brokerConverter());
+
+        template.convertAndSend("/topic/project/1/collaboration", PreSerializedPayload.json(json));
+
+        // Not Jackson's view of the wrapper ({"bytes":"<base64>",...})
+        assertArrayEquals(json, (byte[]) sent.get(0).getPayload());
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, sent.get(0).getHeaders().get(MessageHeaders.CONTENT_TYPE));
+    }
+
+    private static MessageConverter brokerConverter() {
+        List<MessageConverter> converters = new ArrayList<>();
+        converters.add(new MappingJackson2MessageConverter());
+
+        boolean registerDefaults = new WebSocketConfig(null, null, null, null, null, null, null)
+                .configureMessageConverters(converters);
+        assertInstanceOf(PreSerializedMessageConverter.class, converters.get(0));
+
+        if (registerDefaults) {
+            converters.add(new StringMessageConverter());
+            converters.add(new ByteArrayMessageConverter());
+            converters.add(new MappingJackson2MessageConverter());
+        }
+        return new CompositeMessageConverter(converters);
+    }
+}
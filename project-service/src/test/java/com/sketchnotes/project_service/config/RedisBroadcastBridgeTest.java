@@ -0,0 +1,154 @@
+package com.sketchnotes.project_service.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.sketchnotes.project_service.service.RealtimeMessageService;
+
+/**
+ * Three nodes bridged through a local Redis (skipped when none is reachable).
+ */
+class RedisBroadcastBridgeTest {
+
+    private static final String DESTINATION = "/topic/project/42/collaboration";
+
+    private LettuceConnectionFactory factory;
+    private final List<Node> nodes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        factory = new LettuceConnectionFactory(
+                System.getenv().getOrDefault("REDIS_HOST", "localhost"),
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")));
+        factory.afterPropertiesSet();
+        try (var connection = factory.getConnection()) {
+            connection.ping();
+        } catch (Exception e) {
+            assumeTrue(false, "local Redis not available");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(node -> node.bridge.stop());
+        factory.destroy();
+    }
+
+    @Test
+    void sendIsDeliveredOnceToEveryOtherNode() throws Exception {
+        Node a = node();
+        Node b = node();
+        Node c = node();
+        Thread.sleep(300); // let subscriptions settle
+
+        a.bridge.preSend(brokerMessage("{\"seq\":7}", "7"), null);
+
+        awaitSize(b.received, 1);
+        awaitSize(c.received, 1);
+        Thread.sleep(300);
+
+        assertEquals(1, b.received.size());
+        assertEquals(1, c.received.size());
+        assertEquals(0, a.received.size(), "no loopback to the sending node");
+
+        Message<?> delivered = b.received.get(0);
+        assertArrayEquals("{\"seq\":7}".getBytes(StandardCharsets.UTF_8), (byte[]) delivered.getPayload());
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(delivered);
+        assertEquals(DESTINATION, headers.getDestination());
+        assertEquals("7", headers.getFirstNativeHeader("seq"));
+
+        // Re-injected messages are never published again
+        assertTrue(delivered.getHeaders().containsKey(RedisBroadcastBridge.BRIDGED_HEADER));
+        // Durable unless the sender said otherwise
+        assertNull(headers.getFirstNativeHeader(RealtimeMessageService.DELIVERY_HEADER));
+    }
+
+    @Test
+    void droppableMessagesStayDroppableOnOtherNodes() throws Exception {
+        Node a = node();
+        Node b = node();
+        Thread.sleep(300);
+
+        Message<byte[]> cursor = brokerMessage("{\"type\":\"USER_CURSOR\"}", "8");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(cursor);
+        accessor.setNativeHeader(RealtimeMessageService.DELIVERY_HEADER, RealtimeMessageService.DELIVERY_DROPPABLE);
+        a.bridge.preSend(MessageBuilder.createMessage(cursor.getPayload(), accessor.getMessageHeaders()), null);
+
+        awaitSize(b.received, 1);
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(b.received.get(0));
+        assertEquals(RealtimeMessageService.DELIVERY_DROPPABLE,
+                headers.getFirstNativeHeader(RealtimeMessageService.DELIVERY_HEADER));
+        assertEquals("8", headers.getFirstNativeHeader("seq"));
+    }
+
+    @Test
+    void sameSeqFromDifferentNodesIsNotDropped() throws Exception {
+        Node a = node();
+        Node b = node();
+        Node c = node();
+        Thread.sleep(300);
+
+        // Node-local sequences: A and C both number their next message 7
+        a.bridge.preSend(brokerMessage("{\"from\":\"a\"}", "7"), null);
+        c.bridge.preSend(brokerMessage("{\"from\":\"c\"}", "7"), null);
+
+        awaitSize(b.received, 2);
+        Thread.sleep(300);
+
+        assertEquals(2, b.received.size());
+        assertEquals(1, a.received.size());
+        assertEquals(1, c.received.size());
+    }
+
+    private Node node() {
+        List<Message<?>> received = new CopyOnWriteArrayList<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> received.add(message));
+        StringRedisTemplate redis = new StringRedisTemplate(factory);
+        redis.afterPropertiesSet();
+
+        RedisBroadcastBridge bridge = new RedisBroadcastBridge(redis, factory,
+                new StaticListableBeanFactory(Map.of("template", template)).getBeanProvider(SimpMessagingTemplate.class),
+                new CollaborationBrokerProperties());
+        Node node = new Node(bridge, received);
+        nodes.add(node);
+        return node;
+    }
+
+    private static Message<byte[]> brokerMessage(String json, String seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(DESTINATION);
+        accessor.setNativeHeader("seq", seq);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private record Node(RedisBroadcastBridge bridge, List<Message<?>> received) {
+    }
+}
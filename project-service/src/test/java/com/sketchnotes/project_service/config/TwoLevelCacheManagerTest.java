@@ -0,0 +1,153 @@
+package com.sketchnotes.project_service.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.sketchnotes.project_service.dtos.response.PageResponse;
+import com.sketchnotes.project_service.dtos.response.ProjectDetailResponse;
+import com.sketchnotes.project_service.dtos.response.ProjectMembers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Two nodes sharing a local Redis as L2 (skipped when none is reachable).
+ */
+class TwoLevelCacheManagerTest {
+
+    private final String cacheName = "test-" + UUID.randomUUID();
+    private final List<Node> nodes = new ArrayList<>();
+    private LettuceConnectionFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        factory = new LettuceConnectionFactory(
+                System.getenv().getOrDefault("REDIS_HOST", "localhost"),
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")));
+        factory.afterPropertiesSet();
+        try (var connection = factory.getConnection()) {
+            connection.ping();
+        } catch (Exception e) {
+            assumeTrue(false, "local Redis not available");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (!nodes.isEmpty()) {
+            nodes.get(0).manager.getCache(cacheName).clear();
+        }
+        for (Node node : nodes) {
+            node.listener.stop();
+            node.listener.destroy();
+        }
+        factory.destroy();
+    }
+
+    @Test
+    void readsFillTheLevelsTheyMissed() {
+        Node a = node();
+        Node b = node();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", a.cache().get(1L, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", a.cache().get(1L, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", b.cache().get(1L, () -> "v" + loads.incrementAndGet()));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, a.count("l1", "hit"));
+        assertEquals(1, a.count("l2", "miss"));
+        assertEquals(1, b.count("l2", "hit"));
+    }
+
+    @Test
+    void evictionReachesTheOtherNodesL1() throws Exception {
+        Node a = node();
+        Node b = node();
+        Thread.sleep(300); // let subscriptions settle
+        a.cache().get(7L, () -> "old");
+        b.cache().get(7L, () -> "unused");
+        assertEquals(1, b.count("l2", "hit"));
+
+        a.cache().evict(7L);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (b.remoteInvalidations() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, b.remoteInvalidations());
+        assertEquals(0, a.remoteInvalidations(), "a node ignores its own invalidations");
+        assertNull(b.cache().get(7L));
+        assertEquals("new", b.cache().get(7L, () -> "new"));
+    }
+
+    @Test
+    void cachedDtosSurviveTheRedisRoundTrip() {
+        Node a = node();
+        Node b = node();
+        List<PageResponse> pages = new ArrayList<>(List.of(
+                PageResponse.builder().projectId(3L).pageId(30L).pageNumber(1).strokeUrl("https://bucket/1.json").build()));
+        ProjectDetailResponse detail = ProjectDetailResponse.builder()
+                .projectId(3L).name("Notebook").ownerId(9L).paperSize("A4").pages(pages).build();
+        ProjectMembers members = ProjectMembers.builder().projectId(3L).ownerId(9L)
+                .projectCreatedAt(LocalDateTime.of(2025, 1, 2, 3, 4, 5))
+                .collaborators(new ArrayList<>(List.of(ProjectMembers.Member.builder()
+                        .userId(11L).edited(true).accepted(true).createdAt(LocalDateTime.of(2025, 2, 3, 4, 5, 6)).build())))
+                .build();
+
+        a.cache().get("detail", () -> detail);
+        a.cache().get("members", () -> members);
+
+        assertEquals(detail, b.cache().get("detail", ProjectDetailResponse.class));
+        assertEquals(members, b.cache().get("members", ProjectMembers.class));
+    }
+
+    private Node node() {
+        TwoLevelCacheProperties properties = new TwoLevelCacheProperties();
+        properties.setInvalidationChannel("test:cache-invalidation:" + cacheName);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(factory, new StringRedisTemplate(factory),
+                new RedisConfig().cacheConfiguration(), properties, registry);
+
+        RedisMessageListenerContainer listener = new RedisMessageListenerContainer();
+        listener.setConnectionFactory(factory);
+        listener.addMessageListener(manager, new ChannelTopic(properties.getInvalidationChannel()));
+        listener.afterPropertiesSet();
+        listener.start();
+
+        Node node = new Node(manager, listener, registry, cacheName);
+        nodes.add(node);
+        return node;
+    }
+
+    private record Node(TwoLevelCacheManager manager, RedisMessageListenerContainer listener,
+                        SimpleMeterRegistry registry, String cacheName) {
+
+        Cache cache() {
+            return manager.getCache(cacheName);
+        }
+
+        double count(String level, String result) {
+            return registry.counter("cache.tiered.gets", "cache", cacheName, "level", level, "result", result).count();
+        }
+
+        double remoteInvalidations() {
+            return registry.counter("cache.tiered.invalidations", "source", "remote").count();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.sketchnotes.project_service.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram for the load test receivers.
+ * Buckets are log-linear over microseconds (8 sub-buckets per power of two),
+ * so a reported percentile is within ~9% of the true value.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int MAX_POWER = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(MAX_POWER * SUB_BUCKETS);
+
+    void record(long nanos) {
+        long micros = Math.max(1, nanos / 1_000);
+        counts.incrementAndGet(bucket(micros));
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return the upper bound, in microseconds, of the bucket holding the percentile
+     */
+    long percentileMicros(double percentile) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int bucket(long micros) {
+        int power = 63 - Long.numberOfLeadingZeros(micros);
+        if (power < 3) return (int) micros;
+        int sub = (int) ((micros >>> (power - 3)) & (SUB_BUCKETS - 1));
+        return Math.min((power - 2) * SUB_BUCKETS + sub, MAX_POWER * SUB_BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int power = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (power - 3)) - 1;
+    }
+}
@@ -0,0 +1,59 @@
+package com.sketchnotes.project_service.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per message type: messages sent, fan-out deliveries received and their latency.
+ * Reset after warm-up so only the measured window is reported.
+ */
+final class LoadStats {
+
+    private final Map<String, TypeStats> types = new LinkedHashMap<>();
+    private final LongAdder sendFailures = new LongAdder();
+
+    LoadStats() {
+        for (String type : SimulatedUser.TYPES) {
+            types.put(type, new TypeStats());
+        }
+    }
+
+    void sent(String type) {
+        types.get(type).sent.increment();
+    }
+
+    void received(String type, long latencyNanos) {
+        TypeStats stats = types.get(type);
+        if (stats == null) return;
+        stats.received.increment();
+        stats.latency.record(latencyNanos);
+    }
+
+    void sendFailed() {
+        sendFailures.increment();
+    }
+
+    void reset() {
+        types.values().forEach(stats -> {
+            stats.sent.reset();
+            stats.received.reset();
+            stats.latency.reset();
+        });
+        sendFailures.reset();
+    }
+
+    Map<String, TypeStats> types() {
+        return types;
+    }
+
+    long sendFailures() {
+        return sendFailures.sum();
+    }
+
+    static final class TypeStats {
+        final LongAdder sent = new LongAdder();
+        final LongAdder received = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,318 @@
+package com.sketchnotes.project_service.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sketchnotes.project_service.client.AiClient;
+import com.sketchnotes.project_service.client.CreditClient;
+import com.sketchnotes.project_service.client.IUserClient;
+import com.sketchnotes.project_service.client.IdentityServiceClient;
+import com.sketchnotes.project_service.service.IStorageService;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * =============================================================================
+ * REALTIME LOAD TEST
+ * =============================================================================
+ *
+ * Starts project-service on a random port (Feign clients, S3 and Kafka
+ * stubbed), connects load.projects x load.users STOMP sessions and drives
+ * SimulatedUser traffic through /app/project/{id}/collaboration and
+ * /app/project/{id}/stroke. Reports, for the measured window:
+ * - fan-out latency percentiles and delivery ratio per message type
+ *   (USER_CURSOR and ELEMENT_DRAG are coalesced, so below 100% by design)
+ * - server-side drops by reason and coalesced count (collab.* meters)
+ * - CPU time and bytes allocated by server threads, per delivered message
+ *
+ * Client and server share the JVM; server cost is the sum over threads that
+ * are not load-generator threads (load-*, WebSocketClient-*).
+ *
+ * Not part of the normal build (tag "load"). Run with
+ *   mvn test -Pload-test [-Dload.projects=10 -Dload.users=8 -Dload.seconds=30]
+ * -Dload.execution-mode=virtual runs the server on virtual threads (Java 21+).
+ * A JSON report is written to target/load-test/; pass a previous one as
+ * -Dload.baseline=target/load-test/....json to print the deltas against it.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "eureka.client.enabled=false",
+        "security.principal.user-id-claim=user_id",
+        "collaboration.journal.directory=target/load-test/journal",
+        "collaboration.execution.mode=${load.execution-mode:platform}",
+        "logging.level.com.sketchnotes.project_service=ERROR",
+        "logging.level.org.springframework.web.socket=WARN",
+        "logging.level.org.springframework.messaging=WARN"
+})
+class RealtimeLoadTest {
+
+    private static final int PROJECTS = Integer.getInteger("load.projects", 4);
+    private static final int USERS = Integer.getInteger("load.users", 6);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 5);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int CURSOR_HZ = Integer.getInteger("load.cursor-hz", 20);
+    private static final int STROKE_HZ = Integer.getInteger("load.stroke-hz", 30);
+    private static final String BASELINE = System.getProperty("load.baseline");
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_KEYS = {"p50Micros", "p90Micros", "p99Micros", "p999Micros"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private IStorageService storageService;
+    @MockitoBean
+    private KafkaTemplate<String, String> kafkaTemplate;
+    @MockitoBean
+    private IUserClient userClient;
+    @MockitoBean
+    private IdentityServiceClient identityServiceClient;
+    @MockitoBean
+    private CreditClient creditClient;
+    @MockitoBean
+    private AiClient aiClient;
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Test
+    void fanOutUnderLoad() throws Exception {
+        // Each session authenticates as the user id it sends (carried in the user_id claim)
+        when(jwtDecoder.decode(anyString())).thenAnswer(invocation -> Jwt.withTokenValue(invocation.getArgument(0))
+                .header("alg", "none")
+                .subject("load-" + invocation.getArgument(0))
+                .claim("user_id", invocation.getArgument(0))
+                .build());
+        LoadStats stats = new LoadStats();
+        WebSocketStompClient client = stompClient();
+        AtomicInteger threads = new AtomicInteger();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+            Thread t = new Thread(r, "load-client-" + threads.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<SimulatedUser> users = new ArrayList<>();
+        for (long project = 1; project <= PROJECTS; project++) {
+            for (int u = 0; u < USERS; u++) {
+                SimulatedUser user = new SimulatedUser(900_000 + project, project * 1_000 + u, stats);
+                user.connect(client, "ws://localhost:" + port + "/ws");
+                users.add(user);
+            }
+        }
+        users.forEach(user -> user.start(scheduler, CURSOR_HZ, STROKE_HZ));
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+        stats.reset();
+        Map<String, Double> dropsBefore = serverDrops();
+        Map<Long, long[]> threadsBefore = serverThreadUsage();
+        long wallStart = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+        users.forEach(SimulatedUser::stop);
+        // Let the last sends drain before reading the counters
+        Thread.sleep(1_000);
+
+        long wallNanos = System.nanoTime() - wallStart;
+        Map<Long, long[]> threadsAfter = serverThreadUsage();
+        Map<String, Double> dropsAfter = serverDrops();
+        users.forEach(SimulatedUser::disconnect);
+        scheduler.shutdownNow();
+        client.stop();
+
+        Map<String, Object> report = report(stats, threadsBefore, threadsAfter, dropsBefore, dropsAfter, wallNanos);
+        print(report);
+        Path file = write(report);
+        System.out.println("[LoadTest] Report written to " + file.toAbsolutePath());
+        if (BASELINE != null) {
+            printComparison(report, objectMapper.readValue(Paths.get(BASELINE).toFile(), new TypeReference<>() {
+            }));
+        }
+
+        assertEquals(0, stats.sendFailures(), "every session should stay connected");
+        assertTrue(stats.types().get("STROKE_END").received.sum() > 0, "no fan-out observed");
+    }
+
+    // ==========================================================================
+    // MEASUREMENT
+    // ==========================================================================
+
+    private WebSocketStompClient stompClient() {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        client.setInboundMessageSizeLimit(8 * 1024 * 1024);
+        ThreadPoolTaskScheduler heartbeat = new ThreadPoolTaskScheduler();
+        heartbeat.setThreadNamePrefix("load-heartbeat-");
+        heartbeat.initialize();
+        client.setTaskScheduler(heartbeat);
+        return client;
+    }
+
+    /**
+     * Thread id -> {cpu nanos, allocated bytes} for every live server thread
+     */
+    private static Map<Long, long[]> serverThreadUsage() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<Long, long[]> usage = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            String name = thread.getName();
+            if (name.startsWith("load-") || name.startsWith("WebSocketClient") || name.equals("main")) continue;
+            long id = thread.getId();
+            usage.put(id, new long[] {mx.getThreadCpuTime(id), mx.getThreadAllocatedBytes(id)});
+        }
+        return usage;
+    }
+
+    private Map<String, Double> serverDrops() {
+        Map<String, Double> drops = new LinkedHashMap<>();
+        for (Meter meter : meterRegistry.find("collab.messages.dropped").meters()) {
+            drops.merge(meter.getId().getTag("reason"), count(meter), Double::sum);
+        }
+        meterRegistry.find("collab.messages.coalesced").meters()
+                .forEach(meter -> drops.merge("coalesced", count(meter), Double::sum));
+        return drops;
+    }
+
+    private static double count(Meter meter) {
+        double total = 0;
+        for (var measurement : meter.measure()) {
+            total += measurement.getValue();
+        }
+        return total;
+    }
+
+    // ==========================================================================
+    // REPORT
+    // ==========================================================================
+
+    private Map<String, Object> report(LoadStats stats, Map<Long, long[]> before, Map<Long, long[]> after,
+                                       Map<String, Double> dropsBefore, Map<String, Double> dropsAfter,
+                                       long wallNanos) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("projects", PROJECTS);
+        report.put("usersPerProject", USERS);
+        report.put("seconds", SECONDS);
+
+        long delivered = 0;
+        Map<String, Object> types = new LinkedHashMap<>();
+        for (Map.Entry<String, LoadStats.TypeStats> entry : stats.types().entrySet()) {
+            LoadStats.TypeStats type = entry.getValue();
+            long sent = type.sent.sum();
+            long received = type.received.sum();
+            long expected = sent * (USERS - 1);
+            delivered += received;
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("sent", sent);
+            row.put("received", received);
+            row.put("deliveryRatio", expected > 0 ? (double) received / expected : 0.0);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                row.put(PERCENTILE_KEYS[i], type.latency.percentileMicros(PERCENTILES[i]));
+            }
+            types.put(entry.getKey(), row);
+        }
+        report.put("types", types);
+
+        Map<String, Double> drops = new LinkedHashMap<>();
+        dropsAfter.forEach((reason, value) -> drops.put(reason, value - dropsBefore.getOrDefault(reason, 0.0)));
+        report.put("serverDrops", drops);
+
+        long cpu = 0;
+        long allocated = 0;
+        for (Map.Entry<Long, long[]> entry : after.entrySet()) {
+            long[] start = before.getOrDefault(entry.getKey(), new long[2]);
+            cpu += Math.max(0, entry.getValue()[0] - start[0]);
+            allocated += Math.max(0, entry.getValue()[1] - start[1]);
+        }
+        report.put("serverCpuPercent", 100.0 * cpu / wallNanos);
+        report.put("serverCpuMicrosPerDelivery", delivered > 0 ? cpu / 1_000.0 / delivered : 0.0);
+        report.put("serverAllocatedMb", allocated / (1024.0 * 1024.0));
+        report.put("serverBytesPerDelivery", delivered > 0 ? (double) allocated / delivered : 0.0);
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        System.out.printf("%n[LoadTest] %s projects x %s users, %s s%n", report.get("projects"),
+                report.get("usersPerProject"), report.get("seconds"));
+        System.out.printf("%-15s %9s %10s %8s %9s %9s %9s %9s%n",
+                "type", "sent", "received", "deliv%", "p50 us", "p90 us", "p99 us", "p99.9 us");
+        ((Map<String, Map<String, Object>>) report.get("types")).forEach((type, row) ->
+                System.out.printf("%-15s %9d %10d %7.1f%% %9d %9d %9d %9d%n", type, row.get("sent"), row.get("received"),
+                        100 * (double) row.get("deliveryRatio"), row.get("p50Micros"), row.get("p90Micros"),
+                        row.get("p99Micros"), row.get("p999Micros")));
+        System.out.printf("server drops: %s%n", report.get("serverDrops"));
+        System.out.printf("server cpu: %.1f%% (%.2f us/delivery), allocated: %.1f MB (%.0f B/delivery)%n",
+                report.get("serverCpuPercent"), report.get("serverCpuMicrosPerDelivery"),
+                report.get("serverAllocatedMb"), report.get("serverBytesPerDelivery"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printComparison(Map<String, Object> current, Map<String, Object> baseline) {
+        System.out.println("[LoadTest] Against baseline:");
+        Map<String, Map<String, Object>> now = (Map<String, Map<String, Object>>) current.get("types");
+        Map<String, Map<String, Object>> then = (Map<String, Map<String, Object>>) baseline.get("types");
+        now.forEach((type, row) -> {
+            Map<String, Object> old = then != null ? then.get(type) : null;
+            if (old == null) return;
+            System.out.printf("%-15s p50 %s  p99 %s  delivery %s%n", type,
+                    delta(row.get("p50Micros"), old.get("p50Micros")),
+                    delta(row.get("p99Micros"), old.get("p99Micros")),
+                    delta(row.get("deliveryRatio"), old.get("deliveryRatio")));
+        });
+        System.out.printf("cpu/delivery %s  bytes/delivery %s%n",
+                delta(current.get("serverCpuMicrosPerDelivery"), baseline.get("serverCpuMicrosPerDelivery")),
+                delta(current.get("serverBytesPerDelivery"), baseline.get("serverBytesPerDelivery")));
+    }
+
+    private static String delta(Object current, Object baseline) {
+        if (!(current instanceof Number c) || !(baseline instanceof Number b) || b.doubleValue() == 0) return "n/a";
+        return String.format("%+.1f%%", 100 * (c.doubleValue() - b.doubleValue()) / b.doubleValue());
+    }
+
+    private Path write(Map<String, Object> report) throws Exception {
+        Path dir = Paths.get("target", "load-test");
+        Files.createDirectories(dir);
+        Path file = dir.resolve("realtime-" + PROJECTS + "x" + USERS + "-" + System.currentTimeMillis() + ".json");
+        objectMapper.writeValue(file.toFile(), report);
+        return file;
+    }
+}
@@ -0,0 +1,179 @@
+package com.sketchnotes.project_service.loadtest;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+/**
+ * One collaborator on one canvas, on its own STOMP session. Sends, per second:
+ * - USER_CURSOR at cursorHz to /app/project/{id}/collaboration
+ * - stroke points (CanvasAction) at strokeHz to /app/project/{id}/stroke, one
+ *   stroke per second, committed with STROKE_END on /collaboration
+ * - an element drag every 5 s: transient ELEMENT_UPDATEs at 10 Hz for one second,
+ *   then the committing ELEMENT_UPDATE
+ *
+ * Every payload carries the sender's System.nanoTime(); receivers (same JVM)
+ * record the fan-out latency of every message from another user.
+ */
+final class SimulatedUser {
+
+    static final String[] TYPES = {"USER_CURSOR", "STROKE_POINTS", "STROKE_END", "ELEMENT_DRAG", "ELEMENT_COMMIT"};
+
+    private final long projectId;
+    private final long userId;
+    private final LoadStats stats;
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+    private StompSession session;
+
+    private int strokeTick;
+    private long strokeCount;
+    private int dragTick;
+
+    SimulatedUser(long projectId, long userId, LoadStats stats) {
+        this.projectId = projectId;
+        this.userId = userId;
+        this.stats = stats;
+    }
+
+    void connect(WebSocketStompClient client, String url) throws Exception {
+        // The server's JwtDecoder is stubbed: the token is the user id
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + userId);
+        session = client.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        subscribe("/topic/project/" + projectId + "/collaboration");
+        subscribe("/topic/project/" + projectId + "/stroke");
+    }
+
+    void start(ScheduledExecutorService scheduler, int cursorHz, int strokeHz) {
+        long jitter = ThreadLocalRandom.current().nextLong(50);
+        tasks.add(scheduler.scheduleAtFixedRate(this::sendCursor, jitter, 1_000_000 / cursorHz, TimeUnit.MICROSECONDS));
+        tasks.add(scheduler.scheduleAtFixedRate(this::strokeTick, jitter, 1_000_000 / strokeHz, TimeUnit.MICROSECONDS));
+        tasks.add(scheduler.scheduleAtFixedRate(this::dragTick, jitter, 100, TimeUnit.MILLISECONDS));
+    }
+
+    void stop() {
+        tasks.forEach(task -> task.cancel(false));
+        tasks.clear();
+    }
+
+    void disconnect() {
+        if (session != null && session.isConnected()) {
+            session.disconnect();
+        }
+    }
+
+    // ==========================================================================
+    // TRAFFIC
+    // ==========================================================================
+
+    private void sendCursor() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        send("/collaboration", "USER_CURSOR", "USER_CURSOR", Map.of("x", random.nextInt(2000), "y", random.nextInt(2000)));
+    }
+
+    /**
+     * Points for 0.8 s, then the stroke is committed and the next one starts
+     */
+    private void strokeTick() {
+        String strokeId = userId + "-" + strokeCount;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (strokeTick++ < 24) {
+            Map<String, Object> action = new HashMap<>();
+            action.put("type", "STROKE_POINTS");
+            action.put("tool", "pen");
+            action.put("userId", userId);
+            action.put("payload", payload("STROKE_POINTS", Map.of("strokeId", strokeId,
+                    "points", List.of(random.nextInt(2000), random.nextInt(2000), random.nextInt(2000), random.nextInt(2000)))));
+            sendRaw("/stroke", "STROKE_POINTS", action);
+        } else if (strokeTick == 30) {
+            send("/collaboration", "STROKE_END", "STROKE_END", Map.of("strokeId", strokeId, "pageId", 1,
+                    "element", Map.of("id", strokeId, "type", "stroke", "pageId", 1, "points", List.of(1, 2, 3, 4))));
+            strokeTick = 0;
+            strokeCount++;
+        }
+    }
+
+    private void dragTick() {
+        String elementId = "element-" + userId;
+        if (dragTick == 0) {
+            send("/collaboration", "ELEMENT_CREATE", null, Map.of("pageId", 1,
+                    "element", Map.of("id", elementId, "type", "rect", "x", 0, "y", 0)));
+        } else if (dragTick <= 10) {
+            send("/collaboration", "ELEMENT_UPDATE", "ELEMENT_DRAG", Map.of("elementId", elementId, "transient", true,
+                    "changes", Map.of("x", dragTick * 10)));
+        } else if (dragTick == 11) {
+            send("/collaboration", "ELEMENT_UPDATE", "ELEMENT_COMMIT", Map.of("elementId", elementId,
+                    "changes", Map.of("x", 110)));
+        }
+        dragTick = (dragTick + 1) % 50;
+    }
+
+    private void send(String route, String type, String statType, Map<String, Object> body) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("userId", userId);
+        message.put("payload", statType != null ? payload(statType, body) : body);
+        sendRaw(route, statType, message);
+    }
+
+    private Map<String, Object> payload(String statType, Map<String, Object> body) {
+        Map<String, Object> payload = new HashMap<>(body);
+        payload.put("loadType", statType);
+        payload.put("sentAt", System.nanoTime());
+        return payload;
+    }
+
+    private void sendRaw(String route, String statType, Map<String, Object> message) {
+        try {
+            // The client session is not safe for concurrent sends from the scheduler threads
+            synchronized (this) {
+                session.send("/app/project/" + projectId + route, message);
+            }
+            if (statType != null) {
+                stats.sent(statType);
+            }
+        } catch (Exception e) {
+            stats.sendFailed();
+        }
+    }
+
+    // ==========================================================================
+    // RECEIVING
+    // ==========================================================================
+
+    private void subscribe(String destination) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object body) {
+                received((Map<?, ?>) body);
+            }
+        });
+    }
+
+    private void received(Map<?, ?> message) {
+        long now = System.nanoTime();
+        if (!(message.get("payload") instanceof Map<?, ?> payload)) return;
+        if (!(payload.get("sentAt") instanceof Number sentAt) || !(payload.get("loadType") instanceof String type)) return;
+        if (message.get("userId") instanceof Number sender && sender.longValue() == userId) return;
+        stats.received(type, now - sentAt.longValue());
+    }
+}
@@ -0,0 +1,116 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.sketchnotes.project_service.config.CollaborationJournalProperties;
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.CanvasOpReplay;
+import com.sketchnotes.project_service.dtos.socket.CanvasSnapshot;
+import com.sketchnotes.project_service.service.implement.InMemoryCollaborationStateStore;
+
+class CanvasDocumentServiceTest {
+
+    private final InMemoryCollaborationStateStore stateStore = new InMemoryCollaborationStateStore();
+    private final CanvasDocumentService documents = new CanvasDocumentService(stateStore, new ObjectMapper(),
+            new CanvasOpJournal(new CollaborationJournalProperties(), new ObjectMapper()), null);
+
+    @Test
+    void elementOpsAreReflectedInSnapshot() {
+        documents.apply(1L, op("ELEMENT_CREATE", Map.of("pageId", 10, "element", Map.of("id", "a", "x", 1))));
+        documents.apply(1L, op("ELEMENT_CREATE", Map.of("pageId", 10, "element", Map.of("id", "b", "x", 2))));
+        documents.apply(1L, op("ELEMENT_CREATE", Map.of("pageId", 11, "element", Map.of("id", "c", "x", 3))));
+        documents.apply(1L, op("ELEMENT_UPDATE", Map.of("elementId", "a", "changes", Map.of("x", 5))));
+        long version = documents.apply(1L, op("ELEMENT_DELETE", Map.of("elementId", "b")));
+
+        CanvasSnapshot snapshot = documents.snapshot(1L);
+        assertEquals(5, version);
+        assertEquals(version, snapshot.getVersion());
+        assertEquals(0, snapshot.getBaseVersion());
+        assertEquals(2, snapshot.getPages().size());
+
+        List<Map<String, Object>> firstPage = snapshot.getPages().get(0).getElements();
+        assertEquals(1, firstPage.size());
+        assertEquals(5, firstPage.get(0).get("x"));
+        assertEquals("c", snapshot.getPages().get(1).getElements().get(0).get("id"));
+    }
+
+    @Test
+    void strokeEndAndClearMaintainPages() {
+        stateStore.incrementVersion(2L);
+        ActiveStroke stroke = ActiveStroke.builder().strokeId("s1").userId("7").pageId(3).build();
+        stroke.appendPoints(Map.of("compressed", true, "deltas", List.of(1, 2)));
+
+        documents.applyStrokeEnd(2L, op("STROKE_END", Map.of("strokeId", "s1")), stroke);
+        documents.apply(2L, op("ELEMENT_CREATE", Map.of("element", Map.of("id", "t", "pageId", 4))));
+        assertEquals(2, documents.snapshot(2L).getElementCount());
+        assertEquals(1, documents.snapshot(2L).getBaseVersion());
+
+        documents.apply(2L, op("CANVAS_CLEAR", Map.of("pageId", 3)));
+        CanvasSnapshot snapshot = documents.snapshot(2L);
+        assertEquals(1, snapshot.getElementCount());
+        assertEquals(4L, snapshot.getVersion());
+    }
+
+    @Test
+    void replaysOnlyOpsCoveredByTheLog() {
+        for (int i = 0; i < 1_200; i++) {
+            documents.apply(3L, op("ELEMENT_CREATE", Map.of("element", Map.of("id", "e" + i))));
+        }
+
+        CanvasOpReplay replay = documents.replaySince(3L, 1_195);
+        assertEquals(5, replay.getOps().size());
+        assertEquals(1_200, replay.getVersion());
+        assertTrue(((RawValue) replay.getOps().get(0)).rawValue().toString().contains("\"version\":1196"));
+
+        assertEquals(0, documents.replaySince(3L, 1_200).getOps().size());
+        // Outside the 1000-op window, or a version the server never issued
+        assertNull(documents.replaySince(3L, 100));
+        assertNull(documents.replaySince(3L, 5_000));
+    }
+
+    @Test
+    void versionsBumpedElsewhereForceSnapshot() {
+        documents.apply(4L, op("ELEMENT_CREATE", Map.of("element", Map.of("id", "a"))));
+        stateStore.incrementVersion(4L);
+        documents.apply(4L, op("ELEMENT_DELETE", Map.of("elementId", "a")));
+
+        assertNull(documents.replaySince(4L, 0));
+        assertEquals(1, documents.replaySince(4L, 2).getOps().size());
+    }
+
+    @Test
+    void sharedBrokerFallsBackToThePersistedPages() {
+        ReflectionTestUtils.setField(documents, "brokerMode", "redis");
+        Map<String, Object> create = op("ELEMENT_CREATE", Map.of("element", Map.of("id", "a")));
+        documents.apply(5L, create);
+        // Another node's op: this node never sees it
+        stateStore.incrementVersion(5L);
+
+        assertEquals(1L, create.get("version"));
+        assertNull(documents.replaySince(5L, 0));
+        CanvasSnapshot snapshot = documents.snapshot(5L);
+        assertEquals(2, snapshot.getVersion());
+        assertEquals(2, snapshot.getBaseVersion());
+        assertEquals(0, snapshot.getElementCount());
+        assertEquals(0, documents.getDocumentCount());
+    }
+
+    private static Map<String, Object> op(String type, Map<String, Object> payload) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("userId", "7");
+        message.put("payload", payload);
+        return message;
+    }
+}
@@ -0,0 +1,122 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationJournalProperties;
+
+class CanvasOpJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<CanvasOpJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(CanvasOpJournal::shutdown);
+    }
+
+    @Test
+    void opsSurviveARestartAndCheckpointsDropCoveredSegments() throws Exception {
+        CanvasOpJournal journal = open();
+        for (long v = 1; v <= 20; v++) {
+            journal.append(5L, v, "{\"version\":" + v + "}");
+        }
+        assertTrue(segments() > 1, "small segment size should roll segments");
+        journal.shutdown();
+
+        CanvasOpJournal restarted = open();
+        assertEquals(List.of(1L, 2L, 3L), replayed(restarted, 5L, 0).subList(0, 3));
+        assertEquals(20, replayed(restarted, 5L, 0).size());
+        assertEquals(20, restarted.getPendingOps(5L));
+
+        int before = segments();
+        restarted.checkpoint(5L, new CanvasOpJournal.Checkpoint(15, 0, "s3://snapshot-15"));
+        assertTrue(segments() < before);
+        assertEquals(List.of(16L, 17L, 18L, 19L, 20L), replayed(restarted, 5L, 15));
+        assertEquals(5, restarted.getPendingOps(5L));
+
+        // Checkpoint covering everything removes the last segment too; appends start a new one
+        restarted.checkpoint(5L, new CanvasOpJournal.Checkpoint(20, 0, "s3://snapshot-20"));
+        assertEquals(0, segments());
+        restarted.append(5L, 21, "{\"version\":21}");
+        restarted.shutdown();
+
+        CanvasOpJournal again = open();
+        assertEquals("s3://snapshot-20", again.getCheckpoint(5L).snapshotUrl());
+        assertEquals(List.of(21L), replayed(again, 5L, 20));
+    }
+
+    @Test
+    void tornTailFromACrashIsDiscarded() throws Exception {
+        CanvasOpJournal journal = open();
+        journal.append(6L, 1, "{\"version\":1}");
+        journal.append(6L, 2, "{\"version\":2}");
+        journal.shutdown();
+
+        try (Stream<Path> files = Files.list(dir.resolve("6"))) {
+            Path segment = files.filter(f -> f.toString().endsWith(".log")).findFirst().orElseThrow();
+            Files.write(segment, "3\t{\"vers".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+
+        CanvasOpJournal restarted = open();
+        restarted.append(6L, 3, "{\"version\":3}");
+        assertEquals(List.of(1L, 2L, 3L), replayed(restarted, 6L, 0));
+    }
+
+    @Test
+    void idleCheckpointedJournalsAreDroppedFromMemory() throws Exception {
+        CanvasOpJournal journal = open();
+        journal.append(7L, 1, "{\"version\":1}");
+        journal.append(8L, 1, "{\"version\":1}");
+        journal.checkpoint(7L, new CanvasOpJournal.Checkpoint(1, 0, "s3://snapshot-1"));
+
+        journal.flush(System.currentTimeMillis() + 10 * 60_000);
+
+        // 8 still has an op waiting for a snapshot
+        assertEquals(Set.of(8L), journal.getProjectIds());
+        assertEquals("s3://snapshot-1", journal.getCheckpoint(7L).snapshotUrl());
+        journal.append(7L, 2, "{\"version\":2}");
+        assertEquals(List.of(2L), replayed(journal, 7L, 1));
+    }
+
+    private CanvasOpJournal open() throws Exception {
+        CollaborationJournalProperties properties = new CollaborationJournalProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(dir.toString());
+        properties.setSegmentMaxBytes(64);
+        CanvasOpJournal journal = new CanvasOpJournal(properties, new ObjectMapper());
+        journal.init();
+        opened.add(journal);
+        return journal;
+    }
+
+    private int segments() throws Exception {
+        Path project = dir.resolve("5");
+        if (!Files.exists(project)) return 0;
+        try (Stream<Path> files = Files.list(project)) {
+            return (int) files.filter(f -> f.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static List<Long> replayed(CanvasOpJournal journal, Long projectId, long after) throws Exception {
+        List<Long> versions = new ArrayList<>();
+        journal.replay(projectId, after, (version, json) -> versions.add(version));
+        return versions;
+    }
+}
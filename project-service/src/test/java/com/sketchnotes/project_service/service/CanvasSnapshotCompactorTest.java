@@ -0,0 +1,186 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationJournalProperties;
+import com.sketchnotes.project_service.dtos.socket.CanvasSnapshot;
+import com.sketchnotes.project_service.enums.FileContentType;
+import com.sketchnotes.project_service.service.implement.InMemoryCollaborationStateStore;
+
+/**
+ * A node edits a canvas, compacts, keeps editing and dies; a fresh node with an
+ * empty in-memory state store must come back with the same canvas.
+ */
+class CanvasSnapshotCompactorTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FakeStorage storage = new FakeStorage();
+
+    @Test
+    void restartRebuildsTheCanvasFromSnapshotAndJournalTail() throws Exception {
+        Node first = new Node();
+        first.documents.apply(1L, op("ELEMENT_CREATE", Map.of("pageId", 10, "element", Map.of("id", "a", "x", 1))));
+        first.documents.apply(1L, op("ELEMENT_CREATE", Map.of("pageId", 11, "element", Map.of("id", "b", "x", 2))));
+
+        assertTrue(first.compactor.compact(1L));
+        assertFalse(first.compactor.compact(1L), "nothing new since the last snapshot");
+        assertEquals(1, storage.objects.size());
+
+        first.documents.apply(1L, op("ELEMENT_UPDATE", Map.of("elementId", "a", "changes", Map.of("x", 9))));
+        first.documents.apply(1L, op("ELEMENT_DELETE", Map.of("elementId", "b")));
+        CanvasSnapshot before = first.documents.snapshot(1L);
+        first.shutdown();
+
+        Node second = new Node();
+        CanvasSnapshot after = second.documents.snapshot(1L);
+        assertEquals(4, after.getVersion());
+        assertEquals(objectMapper.writeValueAsString(before.getPages()), objectMapper.writeValueAsString(after.getPages()));
+        assertEquals(5, second.documents.apply(1L, op("ELEMENT_DELETE", Map.of("elementId", "a"))));
+
+        // A second snapshot replaces the first one in storage
+        assertTrue(second.compactor.compact(1L));
+        assertEquals(1, storage.objects.size());
+        assertEquals(0, second.journal.getPendingOps(1L));
+        second.shutdown();
+    }
+
+    @Test
+    void warmingRecoversOffTheCallingThread() throws Exception {
+        Node first = new Node();
+        first.documents.apply(2L, op("ELEMENT_CREATE", Map.of("pageId", 10, "element", Map.of("id", "a", "x", 1))));
+        assertTrue(first.compactor.compact(2L));
+        first.shutdown();
+
+        CountDownLatch downloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        storage.onDownload = () -> {
+            storage.downloadThread = Thread.currentThread().getName();
+            downloading.countDown();
+            await(release);
+        };
+
+        Node second = new Node();
+        // Returns while the snapshot download is still blocked
+        second.documents.warm(2L);
+        assertTrue(downloading.await(5, TimeUnit.SECONDS));
+        assertTrue(storage.downloadThread.startsWith("canvas-recovery-"), storage.downloadThread);
+
+        release.countDown();
+        assertEquals(2, second.documents.apply(2L, op("ELEMENT_DELETE", Map.of("elementId", "a"))));
+        assertEquals(0, second.documents.snapshot(2L).getElementCount());
+        second.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> op(String type, Map<String, Object> payload) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("payload", payload);
+        return message;
+    }
+
+    /**
+     * One project-service process: its own state store, journal and document model
+     */
+    private class Node {
+        final CanvasOpJournal journal;
+        final CanvasDocumentService documents;
+        final CanvasSnapshotCompactor compactor;
+
+        Node() throws Exception {
+            CollaborationJournalProperties properties = new CollaborationJournalProperties();
+            properties.setEnabled(true);
+            properties.setDirectory(dir.toString());
+            journal = new CanvasOpJournal(properties, objectMapper);
+            journal.init();
+            documents = new CanvasDocumentService(new InMemoryCollaborationStateStore(), objectMapper, journal, storage);
+            documents.init();
+            compactor = new CanvasSnapshotCompactor(journal, documents, storage, objectMapper, properties);
+        }
+
+        void shutdown() {
+            documents.shutdown();
+            journal.shutdown();
+        }
+    }
+
+    private static class FakeStorage implements IStorageService {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        volatile Runnable onDownload = () -> { };
+        volatile String downloadThread;
+
+        @Override
+        public Map<String, String> generatePresignedUrl(String fileName, FileContentType contentType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteFile(String fileUrl) {
+            objects.remove(fileUrl);
+        }
+
+        @Override
+        public List<String> deleteFiles(Collection<String> fileUrls) {
+            fileUrls.forEach(objects::remove);
+            return List.of();
+        }
+
+        @Override
+        public String getContentAddressedUrl(String sha256Hex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getContentAddressedUrlPrefix() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, String> generateContentAddressedPresignedUrl(String sha256Hex, FileContentType contentType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String copyFile(String sourceFileUrl) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String uploadFile(String key, byte[] content, String contentType) {
+            String url = "https://bucket.s3.test.amazonaws.com/" + key;
+            objects.put(url, content);
+            return url;
+        }
+
+        @Override
+        public byte[] downloadFile(String fileUrl) {
+            onDownload.run();
+            return objects.get(fileUrl);
+        }
+    }
+}
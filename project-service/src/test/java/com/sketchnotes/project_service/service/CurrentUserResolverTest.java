@@ -0,0 +1,181 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.sketchnotes.project_service.client.IUserClient;
+import com.sketchnotes.project_service.config.PrincipalProperties;
+import com.sketchnotes.project_service.dtos.ApiResponse;
+import com.sketchnotes.project_service.dtos.response.UserResponse;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CurrentUserResolverTest {
+
+    private final IUserClient userClient = mock(IUserClient.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CurrentUserResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new CurrentUserResolver(userClient, new PrincipalProperties(), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void userIdClaimAvoidsTheRemoteCall() {
+        PrincipalProperties properties = new PrincipalProperties();
+        properties.setUserIdClaim("user_id");
+        resolver = new CurrentUserResolver(userClient, properties, registry);
+        authenticate(Map.of("user_id", "42", "email", "a@b.c"));
+
+        UserResponse user = resolver.getCurrentUser();
+
+        assertEquals(42L, user.getId());
+        assertEquals("sub-1", user.getKeycloakId());
+        assertEquals("a@b.c", user.getEmail());
+        verifyNoInteractions(userClient);
+        assertEquals(1, count("claims"));
+    }
+
+    @Test
+    void userIdClaimIsIgnoredUnlessConfigured() {
+        authenticate(Map.of("user_id", "42"));
+        when(userClient.getCurrentUser()).thenReturn(ApiResponse.success(user(7L), "ok"));
+
+        // identity-service decides, e.g. about a deactivated user
+        assertEquals(7L, resolver.getCurrentUserId());
+        verify(userClient, times(1)).getCurrentUser();
+        assertEquals(0, count("claims"));
+    }
+
+    @Test
+    void subjectIsResolvedOnceAndCountedAsSavedPerRequest() {
+        authenticate(Map.of());
+        when(userClient.getCurrentUser()).thenReturn(ApiResponse.success(user(7L), "ok"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        AtomicInteger saved = new AtomicInteger();
+        request.setAttribute(CurrentUserResolver.CALLS_SAVED_ATTRIBUTE, saved);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        assertEquals(7L, resolver.getCurrentUserId());
+        assertEquals(7L, resolver.getCurrentUserId());
+        assertEquals(7L, resolver.getCurrentUserId());
+
+        verify(userClient, times(1)).getCurrentUser();
+        assertEquals(1, count("remote"));
+        assertEquals(2, count("cache"));
+        assertEquals(2, saved.get());
+    }
+
+    @Test
+    void unknownSubjectIsCachedAsAbsent() {
+        authenticate(Map.of());
+        when(userClient.getCurrentUser()).thenThrow(userNotFound());
+
+        for (int i = 0; i < 2; i++) {
+            AppException e = assertThrows(AppException.class, resolver::getCurrentUser);
+            assertEquals(ErrorCode.USER_NOT_FOUND, e.getErrorCode());
+        }
+
+        verify(userClient, times(1)).getCurrentUser();
+        assertEquals(2, registry.counter("principal.unknown").count());
+    }
+
+    @Test
+    void invalidationByUserIdForcesAReload() {
+        authenticate(Map.of());
+        when(userClient.getCurrentUser()).thenReturn(ApiResponse.success(user(7L), "ok"));
+        resolver.getCurrentUser();
+
+        resolver.onMessage(message("7"), null);
+        resolver.getCurrentUser();
+
+        verify(userClient, times(2)).getCurrentUser();
+    }
+
+    @Test
+    void sessionPrincipalIsResolvedWithItsOwnToken() {
+        JwtAuthenticationToken session = new JwtAuthenticationToken(Jwt.withTokenValue("session-token")
+                .header("alg", "none").subject("sub-2").build());
+        when(userClient.getCurrentUser()).thenAnswer(invocation -> {
+            // The Feign interceptor reads the token from the thread's context
+            assertSame(session, SecurityContextHolder.getContext().getAuthentication());
+            return ApiResponse.success(user(8L), "ok");
+        });
+
+        assertEquals(8L, resolver.resolve(session).getId());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void missingJwtIsUnauthenticated() {
+        AppException e = assertThrows(AppException.class, resolver::getCurrentUser);
+        assertEquals(ErrorCode.UNAUTHENTICATED, e.getErrorCode());
+        verifyNoInteractions(userClient);
+    }
+
+    private void authenticate(Map<String, Object> claims) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject("sub-1")
+                .claims(c -> c.putAll(claims))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    private double count(String source) {
+        return registry.counter("principal.resolutions", "source", source).count();
+    }
+
+    private static UserResponse user(Long id) {
+        return UserResponse.builder().id(id).keycloakId("sub-1").email("user@sketchnotes.com").build();
+    }
+
+    private static FeignException userNotFound() {
+        Request request = Request.create(Request.HttpMethod.GET, "/api/users/me", Map.of(), null,
+                StandardCharsets.UTF_8, null);
+        byte[] body = "{\"code\":404,\"message\":\"User not found\"}".getBytes(StandardCharsets.UTF_8);
+        return FeignException.errorStatus("IUserClient#getCurrentUser()",
+                Response.builder().status(400).reason("Bad Request").request(request)
+                        .headers(Map.of()).body(body).build());
+    }
+
+    private static Message message(String body) {
+        return new DefaultMessage(
+                "identity:user-changed".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
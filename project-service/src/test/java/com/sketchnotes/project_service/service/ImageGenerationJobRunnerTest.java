@@ -0,0 +1,157 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sketchnotes.project_service.config.ImageJobProperties;
+import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationJobResponse;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
+import com.sketchnotes.project_service.entity.ImageGenerationJob;
+import com.sketchnotes.project_service.enums.ImageJobStatus;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+import com.sketchnotes.project_service.repository.IImageGenerationJobRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ImageGenerationJobRunnerTest {
+
+    private final IImageGenerationJobRepository jobRepository = mock(IImageGenerationJobRepository.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ImageJobProperties properties = new ImageJobProperties();
+    private final Map<String, ImageGenerationJob> jobs = new ConcurrentHashMap<>();
+    private ImageGenerationJobRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        when(jobRepository.save(any(ImageGenerationJob.class))).thenAnswer(invocation -> {
+            ImageGenerationJob job = invocation.getArgument(0);
+            jobs.put(job.getJobId(), job);
+            return job;
+        });
+        when(jobRepository.findByJobIdAndOwnerId(anyString(), anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+        runner = new ImageGenerationJobRunner(jobRepository, messagingTemplate, properties, registry,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        runner.init();
+
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject("sub-1").build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void jobReportsProgressAndResultToItsOwner() {
+        ImageGenerationJobResponse queued = runner.submit(7L, request(), 2, imageDone -> {
+            imageDone.run();
+            imageDone.run();
+            return ImageGenerationResponse.builder().prompt("a fox")
+                    .imageUrls(List.of("https://bucket/1.png", "https://bucket/2.png")).generationTime(42L).build();
+        });
+        assertEquals(ImageJobStatus.QUEUED, queued.getStatus());
+
+        List<ImageGenerationJobResponse> pushed = awaitFinalPush(4);
+        assertEquals(List.of(ImageJobStatus.RUNNING, ImageJobStatus.RUNNING, ImageJobStatus.RUNNING, ImageJobStatus.SUCCEEDED),
+                pushed.stream().map(ImageGenerationJobResponse::getStatus).toList());
+        assertEquals(List.of(0, 1, 2, 2), pushed.stream().map(ImageGenerationJobResponse::getCompletedImages).toList());
+        assertEquals(List.of("https://bucket/1.png", "https://bucket/2.png"), pushed.get(3).getImageUrls());
+        verify(jobRepository).updateProgress(queued.getJobId(), 2);
+
+        ImageGenerationJobResponse polled = runner.get(queued.getJobId(), 7L);
+        assertEquals(ImageJobStatus.SUCCEEDED, polled.getStatus());
+        assertEquals(42L, polled.getGenerationTime());
+        assertEquals(1, registry.counter("image.jobs", "result", "succeeded").count());
+    }
+
+    @Test
+    void failedStepFailsTheJobWithItsErrorCode() {
+        runner.submit(7L, request(), 2, imageDone -> {
+            imageDone.run();
+            throw new AppException(ErrorCode.IMAGE_REMOVAL_FAILED);
+        });
+
+        List<ImageGenerationJobResponse> pushed = awaitFinalPush(3);
+        ImageGenerationJobResponse last = pushed.get(pushed.size() - 1);
+        assertEquals(ImageJobStatus.FAILED, last.getStatus());
+        assertEquals("IMAGE_REMOVAL_FAILED", last.getErrorCode());
+        assertEquals(ErrorCode.IMAGE_REMOVAL_FAILED.getMessage(), last.getErrorMessage());
+        assertEquals(1, last.getCompletedImages());
+        assertEquals(1, registry.counter("image.jobs", "result", "failed").count());
+    }
+
+    @Test
+    void userWithTooManyActiveJobsIsRejected() {
+        when(jobRepository.countByOwnerIdAndStatusInAndCreatedAtAfter(eq(7L), anyCollection(), any()))
+                .thenReturn((long) properties.getMaxActivePerUser());
+
+        AppException e = assertThrows(AppException.class,
+                () -> runner.submit(7L, request(), 2, imageDone -> null));
+
+        assertEquals(ErrorCode.IMAGE_JOB_LIMIT_REACHED, e.getErrorCode());
+        // Counted under the owner's lock, so concurrent submits see each other's jobs
+        InOrder order = inOrder(jobRepository);
+        order.verify(jobRepository).lockOwner(7L);
+        order.verify(jobRepository).countByOwnerIdAndStatusInAndCreatedAtAfter(eq(7L), anyCollection(), any());
+        verify(jobRepository, never()).save(any());
+        assertEquals(1, registry.counter("image.jobs", "result", "rejected").count());
+    }
+
+    @Test
+    void jobOrphanedPastTheTimeoutIsReportedFailed() {
+        jobs.put("orphan", ImageGenerationJob.builder().jobId("orphan").ownerId(7L).status(ImageJobStatus.RUNNING)
+                .totalImages(2).createdAt(LocalDateTime.now().minusHours(1)).build());
+
+        ImageGenerationJobResponse job = runner.get("orphan", 7L);
+
+        assertEquals(ImageJobStatus.FAILED, job.getStatus());
+        assertEquals("IMAGE_GENERATION_FAILED", job.getErrorCode());
+        assertThrows(AppException.class, () -> runner.get("missing", 7L));
+    }
+
+    private List<ImageGenerationJobResponse> awaitFinalPush(int pushes) {
+        ArgumentCaptor<ImageGenerationJobResponse> captor = ArgumentCaptor.forClass(ImageGenerationJobResponse.class);
+        verify(messagingTemplate, timeout(5000).times(pushes))
+                .convertAndSendToUser(eq("sub-1"), eq(ImageGenerationJobRunner.USER_DESTINATION), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static ImageGenerationRequest request() {
+        return new ImageGenerationRequest("a fox", null, null, false);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.sketchnotes.project_service.service.PresenceRegistry.Departure;
+
+class PresenceRegistryTest {
+
+    private final PresenceRegistry registry = new PresenceRegistry();
+
+    @Test
+    void userDepartsWithTheirLastSession() {
+        registry.subscribe("s1", "sub-1", "/topic/project/5/collaboration");
+        registry.subscribe("s2", "sub-1", "/topic/project/5/collaboration");
+        registry.identify("s1", 5L, "alice");
+        registry.identify("s2", 5L, "alice");
+        registry.identify("s3", 5L, "bob");
+
+        assertEquals(Set.of("alice", "bob"), registry.getActiveUsers(5L));
+
+        // Second tab still open: no departure
+        assertTrue(registry.disconnect("s1").isEmpty());
+        assertTrue(registry.isPresent(5L, "alice"));
+
+        assertEquals(List.of(new Departure(5L, "alice")), registry.disconnect("s2"));
+        assertEquals(Set.of("bob"), registry.getActiveUsers(5L));
+        assertEquals(1, registry.getSessionCount());
+    }
+
+    @Test
+    void lastProjectUnsubscribeLeavesTheProject() {
+        registry.subscribe("s1", "collab", "/topic/project/7/collaboration");
+        registry.subscribe("s1", "stroke", "/topic/project/7/stroke");
+        registry.subscribe("s1", "other", "/topic/project/8/collaboration");
+        registry.subscribe("s1", "chat", "/topic/chat/1");
+        registry.identify("s1", 7L, "alice");
+        registry.identify("s1", 8L, "alice");
+
+        assertTrue(registry.unsubscribe("s1", "collab").isEmpty());
+        assertTrue(registry.unsubscribe("s1", "chat").isEmpty());
+        assertEquals(List.of(new Departure(7L, "alice")), registry.unsubscribe("s1", "stroke"));
+        assertFalse(registry.isPresent(7L, "alice"));
+
+        assertEquals(List.of(new Departure(8L, "alice")), registry.leave("s1", 8L));
+        assertTrue(registry.disconnect("s1").isEmpty());
+        assertTrue(registry.getActiveUsers(8L).isEmpty());
+    }
+}
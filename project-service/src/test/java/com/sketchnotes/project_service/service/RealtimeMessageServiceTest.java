@@ -0,0 +1,301 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.config.CollaborationExecutionProperties;
+import com.sketchnotes.project_service.config.PreSerializedMessageConverter;
+import com.sketchnotes.project_service.service.implement.InMemoryCollaborationStateStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Load test for the event-driven dispatcher: idle projects must not keep
+ * broadcast threads busy, however many of them have been opened.
+ */
+class RealtimeMessageServiceTest {
+
+    private final AtomicInteger sent = new AtomicInteger();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private RealtimeMessageService service;
+
+    @BeforeEach
+    void setUp() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            sent.incrementAndGet();
+            return true;
+        });
+        service = new RealtimeMessageService(template, new InMemoryCollaborationStateStore(), new ObjectMapper(), registry,
+                new CollaborationExecutionProperties());
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void idleCpuStaysFlatAsIdleProjectsGrow() throws Exception {
+        long idleCpuSmall = idleBroadcastCpuNanos(100, 0);
+        long idleCpuLarge = idleBroadcastCpuNanos(5_000, 100);
+
+        assertEquals(5_100, service.getActiveProjectCount());
+        // An idle dispatcher does no work at all; allow a little scheduler noise.
+        assertTrue(idleCpuLarge <= idleCpuSmall + TimeUnit.MILLISECONDS.toNanos(20),
+                "idle CPU grew with project count: " + idleCpuSmall + "ns -> " + idleCpuLarge + "ns");
+    }
+
+    // Virtual mode falls back to platform lanes on a pre-21 runtime; order must hold either way
+    @ParameterizedTest
+    @ValueSource(strings = {CollaborationExecutionProperties.MODE_PLATFORM, CollaborationExecutionProperties.MODE_VIRTUAL})
+    void messagesOfOneProjectAreDeliveredInOrder(String mode) throws Exception {
+        List<Long> seqs = Collections.synchronizedList(new ArrayList<>());
+        CollaborationExecutionProperties execution = new CollaborationExecutionProperties();
+        execution.setMode(mode);
+        service.shutdown();
+        service = new RealtimeMessageService(new SimpMessagingTemplate((message, timeout) -> {
+            seqs.add(Long.valueOf(SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader("seq")));
+            return true;
+        }), new InMemoryCollaborationStateStore(), new ObjectMapper(), new SimpleMeterRegistry(), execution);
+        service.init();
+
+        for (int i = 0; i < 90; i++) {
+            service.enqueueMessage(7L, "user-" + (i % 3), message());
+        }
+        awaitCount(seqs::size, 90);
+
+        for (int i = 1; i < seqs.size(); i++) {
+            assertTrue(seqs.get(i - 1) < seqs.get(i), "out of order at " + i + ": " + seqs);
+        }
+    }
+
+    @Test
+    void sessionRepliesTargetOnlyTheRequestingSession() throws Exception {
+        List<Message<?>> messages = Collections.synchronizedList(new ArrayList<>());
+        service.shutdown();
+        service = new RealtimeMessageService(new SimpMessagingTemplate((message, timeout) -> {
+            messages.add(message);
+            return true;
+        }), new InMemoryCollaborationStateStore(), new ObjectMapper(), registry,
+                new CollaborationExecutionProperties());
+        service.init();
+
+        service.sendToSession(7L, "session-1", null, Map.of("type", "LOCK_GRANTED", "seq", 3));
+        awaitCount(messages::size, 1);
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(messages.get(0));
+        // Resolved by the user destination handler to /queue/project/7/collaboration-usersession-1
+        assertEquals("/user/session-1/queue/project/7/collaboration", headers.getDestination());
+        assertEquals("session-1", headers.getSessionId());
+        assertEquals("3", headers.getFirstNativeHeader("seq"));
+    }
+
+    @Test
+    void transientUpdatesAreCoalescedToTheLatestValue() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            service.enqueueMessage(8L, "user-1", message("USER_CURSOR", Map.of("x", i)));
+            service.enqueueMessage(8L, "user-1", message("ELEMENT_UPDATE", Map.of("elementId", "a", "transient", true)));
+            service.enqueueMessage(8L, "user-2", message("ELEMENT_UPDATE", Map.of("elementId", "a", "transient", true)));
+        }
+        Thread.sleep(150);
+
+        // One value per (user, element) per 30 Hz tick; a tick may land mid-burst
+        assertTrue(sent.get() == 3 || sent.get() == 6, "sent " + sent.get());
+        assertEquals(300, sent.get() + service.getCoalescedCount());
+    }
+
+    @Test
+    void durableOpsHaveTheirOwnLimitAndSupersedeTransientState() throws Exception {
+        service.enqueueMessage(9L, "user-1", message("ELEMENT_UPDATE", Map.of("elementId", "a", "transient", true)));
+        // Past the best-effort limit, within the durable one
+        for (int i = 0; i < 250; i++) {
+            Map<String, Object> op = message("ELEMENT_UPDATE", Map.of("elementId", "a"));
+            op.put("version", i);
+            assertTrue(service.enqueueMessage(9L, "user-1", op));
+        }
+        awaitCount(sent::get, 250);
+        Thread.sleep(100);
+
+        // The pending transient value was dropped, not flushed after the commits
+        assertEquals(250, sent.get());
+    }
+    
+    @Test
+    void durableFloodIsRefusedWithOneResyncNotice() throws Exception {
+        List<Map<String, Object>> messages = capturePayloads();
+        
+        int accepted = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (service.enqueueMessage(13L, "user-1", message("ELEMENT_DELETE", Map.of("elementId", "e" + i)))) {
+                accepted++;
+            }
+        }
+        awaitCount(messages::size, accepted + 1);
+        Thread.sleep(100);
+        
+        assertTrue(accepted < 1_000, "accepted " + accepted);
+        assertEquals(1_000 - accepted, registry.get("collab.messages.dropped")
+                .tag("reason", "durable_user_rate_limit").counter().count(), 0.0);
+        assertEquals(1, messages.stream().filter(m -> "RESYNC_REQUIRED".equals(m.get("type"))).count());
+        // Another user of the project still gets through
+        assertTrue(service.enqueueMessage(13L, "user-2", message("ELEMENT_DELETE", Map.of("elementId", "x"))));
+    }
+    
+    @Test
+    void durableQueueIsBoundedWhileTheLaneIsStuck() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        service.shutdown();
+        service = new RealtimeMessageService(new SimpMessagingTemplate((message, timeout) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.incrementAndGet();
+            return true;
+        }), new InMemoryCollaborationStateStore(), new ObjectMapper(), registry,
+                new CollaborationExecutionProperties());
+        service.init();
+        
+        int accepted = 0;
+        for (int user = 0; user < 30; user++) {
+            for (int i = 0; i < 200; i++) {
+                if (service.enqueueMessage(14L, "user-" + user, message("ELEMENT_DELETE", Map.of("elementId", "e" + i)))) {
+                    accepted++;
+                }
+            }
+        }
+        
+        // The lane may already hold one drained batch (20) when it gets stuck
+        assertTrue(accepted <= 5_020, "accepted " + accepted);
+        assertEquals(6_000 - accepted, registry.get("collab.messages.dropped")
+                .tag("reason", "durable_queue_full").counter().count(), 0.0);
+        release.countDown();
+        // Everything queued is still delivered, followed by the resync notice
+        awaitCount(sent::get, accepted + 1);
+    }
+
+    @Test
+    void clientFieldsDoNotMakeAMessageDurable() throws Exception {
+        int accepted = 0;
+        for (int i = 0; i < 150; i++) {
+            Map<String, Object> op = message("PAGE_SWITCH", Map.of("pageId", 1));
+            op.put("version", i);
+            if (service.enqueueMessage(12L, "user-1", op)) {
+                accepted++;
+            }
+        }
+        awaitCount(sent::get, accepted);
+
+        assertTrue(accepted < 150, "accepted " + accepted);
+        assertEquals(150 - accepted,
+                registry.get("collab.messages.dropped").tag("reason", "user_rate_limit").counter().count(), 0.0);
+    }
+
+    @Test
+    void dropsAndLatencyAreRecordedPerReason() throws Exception {
+        int accepted = 0;
+        for (int i = 0; i < 150; i++) {
+            if (service.enqueueMessage(11L, "user-1", message())) {
+                accepted++;
+            }
+        }
+        awaitCount(sent::get, accepted);
+
+        assertEquals(150 - accepted,
+                registry.get("collab.messages.dropped").tag("reason", "user_rate_limit").counter().count(), 0.0);
+        assertEquals(accepted, registry.get("collab.broadcast.latency").tag("delivery", "best_effort").timer().count());
+        assertEquals(0, registry.get("collab.queue.depth").tag("project", "11").gauge().value(), 0.0);
+        assertEquals(1, registry.get("collab.projects.active").gauge().value(), 0.0);
+        assertEquals(4, registry.get("executor.completed").tag("name", "ws.broadcast").functionCounters().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> capturePayloads() {
+        List<Map<String, Object>> payloads = Collections.synchronizedList(new ArrayList<>());
+        ObjectMapper mapper = new ObjectMapper();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            try {
+                payloads.add(mapper.readValue((byte[]) message.getPayload(), Map.class));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return true;
+        });
+        template.setMessageConverter(new PreSerializedMessageConverter());
+        service.shutdown();
+        service = new RealtimeMessageService(template, new InMemoryCollaborationStateStore(), mapper, registry,
+                new CollaborationExecutionProperties());
+        service.init();
+        return payloads;
+    }
+    
+    private long idleBroadcastCpuNanos(int projects, long firstProjectId) throws Exception {
+        int target = sent.get() + projects;
+        for (long id = firstProjectId; id < firstProjectId + projects; id++) {
+            assertTrue(service.enqueueMessage(id, "user-1", message()));
+        }
+        awaitCount(sent::get, target);
+
+        long before = broadcastThreadCpuNanos();
+        Thread.sleep(300);
+        return broadcastThreadCpuNanos() - before;
+    }
+
+    private static long broadcastThreadCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("ws-broadcast") || t.getName().startsWith("queue-processor")) {
+                total += Math.max(0, threads.getThreadCpuTime(t.getId()));
+            }
+        }
+        return total;
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (count.getAsInt() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, count.getAsInt());
+    }
+
+    private static Map<String, Object> message() {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "PAGE_SWITCH");
+        return message;
+    }
+
+    private static Map<String, Object> message(String type, Map<String, Object> payload) {
+        Map<String, Object> message = message();
+        message.put("type", type);
+        message.put("payload", payload);
+        return message;
+    }
+}
@@ -0,0 +1,262 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sketchnotes.project_service.PostgresTestSupport;
+import com.sketchnotes.project_service.config.StrokeBlobProperties;
+import com.sketchnotes.project_service.entity.Page;
+import com.sketchnotes.project_service.entity.Project;
+import com.sketchnotes.project_service.enums.FileContentType;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+import com.sketchnotes.project_service.repository.StrokeBlobRepository;
+import com.sketchnotes.project_service.service.implement.StrokeBlobService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Reference counting and collection of stroke blobs; needs PostgreSQL
+ * (upserts, SKIP LOCKED). Rolled back after each test, except the one that
+ * checks the collector outside a transaction, which cleans up after itself.
+ */
+@Import({StrokeBlobService.class, StrokeBlobRepository.class})
+class StrokeBlobCollectorTest extends PostgresTestSupport {
+
+    private static final String PREFIX = "https://bucket/strokes/";
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Autowired
+    private StrokeBlobService strokeBlobService;
+    @Autowired
+    private StrokeBlobRepository strokeBlobRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockitoBean
+    private IStorageService storageService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StrokeBlobCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        // Built by hand, without backfill and with passes far apart, so only collect() runs
+        StrokeBlobProperties properties = new StrokeBlobProperties();
+        properties.setBackfillOnStartup(false);
+        properties.setGcIntervalMs(Long.MAX_VALUE / 2);
+        collector = new StrokeBlobCollector(strokeBlobRepository, storageService, transactionTemplate,
+                properties, meterRegistry);
+        collector.init();
+        when(storageService.getContentAddressedUrlPrefix()).thenReturn(PREFIX);
+    }
+
+    @AfterEach
+    void tearDown() {
+        collector.shutdown();
+    }
+
+    @Test
+    void countsReferencesAndMarksUnreferencedBlobs() {
+        strokeBlobService.retain(List.of(blob("a"), blob("a"), blob("b")));
+        strokeBlobService.release(List.of(blob("a"), blob("b")));
+
+        assertEquals(1, refCount(blob("a")));
+        assertNull(unreferencedAt(blob("a")));
+        assertEquals(0, refCount(blob("b")));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT unreferenced_at IS NOT NULL FROM stroke_blob WHERE stroke_url = ?", Boolean.class,
+                blob("b")));
+
+        // Referenced again before collection: kept
+        strokeBlobService.retain(List.of(blob("b")));
+        assertEquals(1, refCount(blob("b")));
+        assertNull(unreferencedAt(blob("b")));
+    }
+
+    @Test
+    void collectDeletesOnlyBlobsPastTheGracePeriod() {
+        strokeBlobService.retain(List.of(blob("old"), blob("recent")));
+        strokeBlobService.release(List.of(blob("old"), blob("recent")));
+        jdbcTemplate.update("UPDATE stroke_blob SET unreferenced_at = now() - interval '2 hours' WHERE stroke_url = ?",
+                blob("old"));
+        when(storageService.deleteFiles(any())).thenReturn(List.of());
+
+        assertEquals(1, collector.collect());
+
+        verify(storageService).deleteFiles(argThat(urls -> List.copyOf(urls).equals(List.of(blob("old")))));
+        assertEquals(0, rows(blob("old")));
+        assertEquals(1, rows(blob("recent")));
+        assertEquals(1, meterRegistry.counter("storage.blobs.gc", "result", "deleted").count());
+    }
+
+    @Test
+    void collectPostponesBlobsThatFailedToDelete() {
+        strokeBlobService.retain(List.of(blob("stuck")));
+        strokeBlobService.release(List.of(blob("stuck")));
+        jdbcTemplate.update("UPDATE stroke_blob SET unreferenced_at = now() - interval '2 hours' WHERE stroke_url = ?",
+                blob("stuck"));
+        when(storageService.deleteFiles(any())).thenReturn(List.of(blob("stuck")));
+
+        assertEquals(0, collector.collect());
+        assertEquals(1, rows(blob("stuck")));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT delete_attempts FROM stroke_blob WHERE stroke_url = ?", Integer.class, blob("stuck")));
+        assertEquals(1, meterRegistry.counter("storage.blobs.gc", "result", "failed").count());
+
+        // Backing off: the next pass does not retry it yet
+        assertEquals(0, collector.collect());
+        verify(storageService, times(1)).deleteFiles(any());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void s3DeleteRunsOnClaimedRowsWithNoTransactionOpen() {
+        String reused = blob("claimed-reused");
+        String gone = blob("claimed-gone");
+        when(storageService.getContentAddressedUrl(hash("claimed-reused"))).thenReturn(reused);
+        try {
+            strokeBlobService.retain(List.of(reused, gone));
+            strokeBlobService.release(List.of(reused, gone));
+            jdbcTemplate.update("UPDATE stroke_blob SET unreferenced_at = now() - interval '2 hours' "
+                    + "WHERE stroke_url IN (?, ?)", reused, gone);
+            when(storageService.deleteFiles(any())).thenAnswer(invocation -> {
+                assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+                assertEquals(2, jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM stroke_blob WHERE claim_token IS NOT NULL AND stroke_url IN (?, ?)",
+                        Integer.class, reused, gone));
+                // A save or presign between claim and delete must not take the object over.
+                // Without the row lock the retain returns at once instead of waiting
+                AppException save = assertThrows(AppException.class, () -> strokeBlobService.retain(List.of(reused)));
+                assertEquals(ErrorCode.STROKE_BLOB_BUSY, save.getErrorCode());
+                AppException presign = assertThrows(AppException.class,
+                        () -> strokeBlobService.presign(hash("claimed-reused"), FileContentType.JSON));
+                assertEquals(ErrorCode.STROKE_BLOB_BUSY, presign.getErrorCode());
+                return List.of();
+            });
+
+            assertEquals(2, collector.collect());
+
+            // Settled: the client's retry now uploads anew instead of reusing a deleted object
+            assertEquals(0, rows(reused));
+            assertEquals(0, rows(gone));
+            verify(storageService, never()).generateContentAddressedPresignedUrl(any(), any());
+            strokeBlobService.presign(hash("claimed-reused"), FileContentType.JSON);
+            verify(storageService, times(1)).generateContentAddressedPresignedUrl(eq(hash("claimed-reused")), any());
+        } finally {
+            jdbcTemplate.update("DELETE FROM stroke_blob WHERE stroke_url IN (?, ?)", reused, gone);
+        }
+    }
+
+    @Test
+    void onlyContentAddressedUrlsAreCountedOrDeleted() {
+        String foreign = "https://other-bucket.s3.ap-southeast-1.amazonaws.com/marketplace/asset.png";
+        String legacy = "https://bucket/pages/legacy.json";
+        strokeBlobService.retain(List.of(foreign, legacy, PREFIX + "not-a-hash"));
+        strokeBlobService.release(List.of(foreign, legacy));
+        assertEquals(0, rows(foreign));
+        assertEquals(0, rows(legacy));
+
+        // Registered before the restriction: forgotten, never deleted
+        jdbcTemplate.update("INSERT INTO stroke_blob (stroke_url, ref_count, unreferenced_at) "
+                + "VALUES (?, 0, now() - interval '2 hours')", foreign);
+        collector.collect();
+        assertEquals(0, rows(foreign));
+        verify(storageService, never()).deleteFiles(any());
+    }
+
+    @Test
+    void backfillCountsLivePagesOnce() {
+        Project project = entityManager.persist(Project.builder().name("Legacy").ownerId(1L)
+                .pages(new ArrayList<>()).projectVersions(new ArrayList<>()).projectCollaborations(new ArrayList<>())
+                .build());
+        for (String strokeUrl : List.of(blob("legacy-a"), blob("legacy-a"), blob("legacy-b"),
+                "https://bucket/pages/legacy.json")) {
+            entityManager.persist(Page.builder().project(project).pageNumber(1).strokeUrl(strokeUrl).build());
+        }
+        entityManager.flush();
+        // A save on another node registered one of them first
+        strokeBlobService.retain(List.of(blob("legacy-a")));
+
+        assertEquals(2, strokeBlobRepository.backfillOnce(PREFIX));
+        assertEquals(2, refCount(blob("legacy-a")));
+        assertEquals(1, refCount(blob("legacy-b")));
+        assertEquals(0, rows("https://bucket/pages/legacy.json"));
+
+        strokeBlobService.retain(List.of(blob("legacy-b")));
+        assertEquals(0, strokeBlobRepository.backfillOnce(PREFIX));
+        assertEquals(2, refCount(blob("legacy-b")));
+    }
+
+    @Test
+    void presignSkipsTheUploadOfKnownContent() {
+        String strokeUrl = PREFIX + HASH;
+        when(storageService.getContentAddressedUrl(HASH)).thenReturn(strokeUrl);
+        strokeBlobService.retain(List.of(strokeUrl));
+
+        Map<String, String> response = strokeBlobService.presign(HASH.toUpperCase(), FileContentType.JSON);
+
+        assertEquals(strokeUrl, response.get("strokeUrl"));
+        assertEquals("true", response.get("exists"));
+        verify(storageService, never()).generateContentAddressedPresignedUrl(any(), any());
+    }
+
+    private static String blob(String content) {
+        return PREFIX + hash(content);
+    }
+
+    private static String hash(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int refCount(String strokeUrl) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM stroke_blob WHERE stroke_url = ?", Integer.class, strokeUrl);
+    }
+
+    private Object unreferencedAt(String strokeUrl) {
+        return jdbcTemplate.queryForObject("SELECT unreferenced_at FROM stroke_blob WHERE stroke_url = ?", Object.class, strokeUrl);
+    }
+
+    private int rows(String strokeUrl) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stroke_blob WHERE stroke_url = ?", Integer.class, strokeUrl);
+    }
+}
@@ -0,0 +1,113 @@
+package com.sketchnotes.project_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.sketchnotes.project_service.client.IUserClient;
+import com.sketchnotes.project_service.dtos.ApiResponse;
+import com.sketchnotes.project_service.dtos.response.UserResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UserBatchLoaderTest {
+
+    private final IUserClient userClient = mock(IUserClient.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private UserBatchLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        loader = new UserBatchLoader(userClient, registry);
+        // identity-service answers with the known ids only (999 does not exist)
+        when(userClient.getUsersByIds(anyList())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            List<UserResponse> users = new ArrayList<>();
+            ids.stream().filter(id -> id != 999L).forEach(id -> users.add(user(id)));
+            return ApiResponse.success(users, "ok");
+        });
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void queuedLoadsAreDeduplicatedIntoOneCall() {
+        UserBatchLoader.Batch batch = loader.forRequest();
+        Supplier<UserResponse> first = batch.load(1L);
+        Supplier<UserResponse> second = batch.load(2L);
+        Supplier<UserResponse> again = batch.load(1L);
+        Supplier<UserResponse> unknown = batch.load(999L);
+
+        assertEquals("user1@sketchnotes.com", first.get().getEmail());
+        assertEquals(2L, second.get().getId());
+        assertSame(first.get(), again.get());
+        assertNull(unknown.get());
+
+        verify(userClient, times(1)).getUsersByIds(List.of(1L, 2L, 999L));
+        assertEquals(1, registry.counter("users.batch.calls").count());
+        assertEquals(3, registry.counter("users.batch.ids").count());
+    }
+
+    @Test
+    void theRequestsBatchRemembersEarlierResults() {
+        Map<Long, UserResponse> users = loader.forRequest().loadMany(List.of(1L, 2L, 999L));
+        assertEquals(List.of(1L, 2L), List.copyOf(users.keySet()));
+
+        // Same request, later enrichment: only the new id goes out, 999 stays absent
+        Map<Long, UserResponse> more = loader.forRequest().loadMany(List.of(2L, 3L, 999L));
+        assertEquals(List.of(2L, 3L), List.copyOf(more.keySet()));
+
+        verify(userClient).getUsersByIds(List.of(1L, 2L, 999L));
+        verify(userClient).getUsersByIds(List.of(3L));
+        verifyNoMoreInteractions(userClient);
+    }
+
+    @Test
+    void largeBatchesAreSplitAtTheServerLimit() {
+        List<Long> ids = LongStream.rangeClosed(1, UserBatchLoader.MAX_BATCH_SIZE + 1).boxed().toList();
+
+        Map<Long, UserResponse> users = loader.forRequest().loadMany(ids);
+
+        assertEquals(ids.size(), users.size());
+        verify(userClient).getUsersByIds(ids.subList(0, UserBatchLoader.MAX_BATCH_SIZE));
+        verify(userClient).getUsersByIds(List.of((long) UserBatchLoader.MAX_BATCH_SIZE + 1));
+    }
+
+    @Test
+    void outsideARequestEachBatchIsFresh() {
+        RequestContextHolder.resetRequestAttributes();
+
+        loader.forRequest().loadMany(List.of(1L));
+        loader.forRequest().loadMany(List.of(1L));
+
+        verify(userClient, times(2)).getUsersByIds(List.of(1L));
+    }
+
+    private static UserResponse user(Long id) {
+        return UserResponse.builder().id(id).email("user" + id + "@sketchnotes.com").build();
+    }
+}
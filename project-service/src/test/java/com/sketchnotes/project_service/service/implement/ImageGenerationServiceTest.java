@@ -0,0 +1,173 @@
+package com.sketchnotes.project_service.service.implement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.google.cloud.aiplatform.v1.EndpointName;
+import com.google.cloud.aiplatform.v1.PredictResponse;
+import com.google.cloud.aiplatform.v1.PredictionServiceClient;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.sketchnotes.project_service.client.CreditClient;
+import com.sketchnotes.project_service.config.GeminiProperties;
+import com.sketchnotes.project_service.config.ImageJobProperties;
+import com.sketchnotes.project_service.config.S3Properties;
+import com.sketchnotes.project_service.dtos.ApiResponse;
+import com.sketchnotes.project_service.dtos.request.ImageGenerationRequest;
+import com.sketchnotes.project_service.dtos.request.UseCreditRequest;
+import com.sketchnotes.project_service.dtos.response.ImageGenerationResponse;
+import com.sketchnotes.project_service.dtos.response.UserResponse;
+import com.sketchnotes.project_service.exception.AppException;
+import com.sketchnotes.project_service.exception.ErrorCode;
+import com.sketchnotes.project_service.repository.IImagePromptRepository;
+import com.sketchnotes.project_service.service.CurrentUserResolver;
+import com.sketchnotes.project_service.service.IAiImageService;
+import com.sketchnotes.project_service.service.ImageGenerationJobRunner;
+
+import feign.FeignException;
+import feign.Request;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * The generation pipeline with Vertex AI, the background remover, S3 and
+ * identity-service mocked.
+ */
+class ImageGenerationServiceTest {
+
+    private final S3Client s3Client = mock(S3Client.class);
+    private final PredictionServiceClient predictionServiceClient = mock(PredictionServiceClient.class);
+    private final IAiImageService aiImageService = mock(IAiImageService.class);
+    private final IImagePromptRepository imagePromptRepository = mock(IImagePromptRepository.class);
+    private final CurrentUserResolver currentUserResolver = mock(CurrentUserResolver.class);
+    private final CreditClient creditClient = mock(CreditClient.class);
+    private ImageGenerationService service;
+
+    @BeforeEach
+    void setUp() {
+        GeminiProperties gemini = new GeminiProperties();
+        gemini.setProjectId("sketchnotes");
+        gemini.setLocation("us-central1");
+        gemini.setModel("imagen-3.0-generate-002");
+        gemini.setNumImages(2);
+        S3Properties s3 = new S3Properties();
+        s3.setBucketName("bucket");
+        s3.setRegion("ap-southeast-1");
+
+        service = new ImageGenerationService(gemini, s3, s3Client, predictionServiceClient, aiImageService,
+                imagePromptRepository, currentUserResolver, creditClient, mock(ImageGenerationJobRunner.class),
+                new ImageJobProperties());
+        service.init();
+
+        when(currentUserResolver.getCurrentUser()).thenReturn(UserResponse.builder().id(7L).build());
+        when(creditClient.checkCredits(anyInt())).thenReturn(ResponseEntity.ok(ApiResponse.success(true, "ok")));
+        when(predictionServiceClient.predict(any(EndpointName.class), anyList(), any(Value.class)))
+                .thenReturn(PredictResponse.newBuilder()
+                        .addPredictions(image("first"))
+                        .addPredictions(image("second"))
+                        .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void iconsAreCleanedUpInParallelAndChargedOnceDone() throws Exception {
+        // Each removal waits for the other: only completes if both run at once
+        CyclicBarrier bothInFlight = new CyclicBarrier(2);
+        when(aiImageService.removeBackground(any(MultipartFile.class))).thenAnswer(invocation -> {
+            bothInFlight.await(5, TimeUnit.SECONDS);
+            return invocation.<MultipartFile>getArgument(0).getBytes();
+        });
+
+        ImageGenerationResponse response = service.generateAndUploadImage(
+                new ImageGenerationRequest("a fox", null, null, true));
+
+        assertEquals(2, response.getImageUrls().size());
+        InOrder order = inOrder(s3Client, creditClient, imagePromptRepository);
+        order.verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        order.verify(creditClient).useCredits(any(UseCreditRequest.class));
+        order.verify(imagePromptRepository).saveAll(anyList());
+        verify(creditClient).checkCredits(2);
+    }
+
+    @Test
+    void failedUploadChargesNothing() {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(new IllegalStateException("S3 unavailable"));
+
+        AppException e = assertThrows(AppException.class,
+                () -> service.generateAndUploadImage(new ImageGenerationRequest("a fox", null, null, false)));
+
+        assertEquals(ErrorCode.IMAGE_GENERATION_FAILED, e.getErrorCode());
+        verify(creditClient, never()).useCredits(any());
+        verify(imagePromptRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void failedChargeDeletesTheUploadedImages() {
+        when(creditClient.useCredits(any(UseCreditRequest.class))).thenThrow(new FeignException.BadRequest("no credits",
+                Request.create(Request.HttpMethod.POST, "/api/credits/use", Map.of(), null, StandardCharsets.UTF_8, null),
+                null, null));
+
+        AppException e = assertThrows(AppException.class,
+                () -> service.generateAndUploadImage(new ImageGenerationRequest("a fox", null, null, false)));
+
+        assertEquals(ErrorCode.INSUFFICIENT_CREDITS, e.getErrorCode());
+        ArgumentCaptor<DeleteObjectsRequest> deleted = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client).deleteObjects(deleted.capture());
+        assertEquals("bucket", deleted.getValue().bucket());
+        assertEquals(2, deleted.getValue().delete().objects().size());
+        assertTrue(deleted.getValue().delete().objects().stream()
+                .allMatch(object -> object.key().startsWith("generated-images/imagen_")));
+        verify(imagePromptRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void insufficientCreditsStopBeforeGenerating() {
+        when(creditClient.checkCredits(anyInt())).thenReturn(ResponseEntity.ok(ApiResponse.success(false, "ok")));
+
+        AppException e = assertThrows(AppException.class,
+                () -> service.generateAndUploadImage(new ImageGenerationRequest("a fox", null, null, false)));
+
+        assertEquals(ErrorCode.INSUFFICIENT_CREDITS, e.getErrorCode());
+        verify(predictionServiceClient, never()).predict(any(EndpointName.class), anyList(), any(Value.class));
+    }
+
+    private static Value image(String content) {
+        return Value.newBuilder().setStructValue(Struct.newBuilder()
+                .putFields("bytesBase64Encoded", Value.newBuilder()
+                        .setStringValue(Base64.getEncoder().encodeToString(content.getBytes()))
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.sketchnotes.project_service.service.implement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+
+class InMemoryCollaborationStateStoreTest {
+
+    private final InMemoryCollaborationStateStore store = new InMemoryCollaborationStateStore();
+
+    @Test
+    void expiredLocksAreReapedOnce() {
+        long now = System.currentTimeMillis();
+        store.tryLock(1L, new ElementLock("a", "alice", now + 50, "t-a"));
+        store.tryLock(1L, new ElementLock("b", "bob", now + 60_000, "t-b"));
+
+        assertTrue(store.reapExpiredLocks(now).isEmpty());
+
+        Map<Long, List<ElementLock>> reaped = store.reapExpiredLocks(now + 300);
+        assertEquals(1, reaped.get(1L).size());
+        assertEquals("a", reaped.get(1L).get(0).getElementId());
+        assertNull(store.getLock(1L, "a"));
+
+        assertTrue(store.reapExpiredLocks(now + 600).isEmpty());
+        assertTrue(store.releaseUserLocks(1L, "alice").isEmpty());
+        assertEquals(List.of("b"), store.releaseUserLocks(1L, "bob"));
+    }
+
+    @Test
+    void refreshedLockOutlivesItsFirstExpiry() {
+        long now = System.currentTimeMillis();
+        store.tryLock(2L, new ElementLock("a", "alice", now + 50, "t-1"));
+        ElementLock refreshed = new ElementLock("a", "alice", now + 5_000, "t-2");
+        assertSame(refreshed, store.tryLock(2L, refreshed));
+
+        // The first wheel entry is stale and must not evict the refreshed lock
+        assertTrue(store.reapExpiredLocks(now + 300).isEmpty());
+        assertSame(refreshed, store.getLock(2L, "a"));
+
+        assertEquals("t-2", store.reapExpiredLocks(now + 5_200).get(2L).get(0).getLockToken());
+    }
+
+    @Test
+    void takeoverMovesLockBetweenUsers() {
+        long now = System.currentTimeMillis();
+        store.tryLock(3L, new ElementLock("a", "alice", now - 1, "t-a"));
+        store.tryLock(3L, new ElementLock("a", "bob", now + 60_000, "t-b"));
+
+        assertTrue(store.releaseUserLocks(3L, "alice").isEmpty());
+        assertEquals(List.of("a"), store.releaseUserLocks(3L, "bob"));
+        assertTrue(store.getLocks(3L).isEmpty());
+    }
+}
@@ -0,0 +1,177 @@
+package com.sketchnotes.project_service.service.implement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.sketchnotes.project_service.PostgresTestSupport;
+import com.sketchnotes.project_service.dtos.request.ListPageRequest;
+import com.sketchnotes.project_service.dtos.request.PageDto;
+import com.sketchnotes.project_service.dtos.response.PageResponse;
+import com.sketchnotes.project_service.entity.Page;
+import com.sketchnotes.project_service.entity.Project;
+import com.sketchnotes.project_service.entity.ProjectVersion;
+import com.sketchnotes.project_service.repository.IPageRepository;
+import com.sketchnotes.project_service.repository.IProjectVersionRepository;
+import com.sketchnotes.project_service.repository.PageBatchRepository;
+import com.sketchnotes.project_service.repository.StrokeBlobRepository;
+import com.sketchnotes.project_service.service.IStorageService;
+import com.sketchnotes.project_service.service.ProjectCache;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * Saving a 40-page notebook on a project that already has 10 versions (so the
+ * oldest one is rotated out) must cost a fixed handful of statements.
+ * Needs PostgreSQL (sequences, OFFSET); rolled back after each test.
+ */
+@Import({PageService.class, ProjectVersionService.class, PageBatchRepository.class, StrokeBlobService.class,
+        StrokeBlobRepository.class, ProjectCache.class, PageServiceTest.StatementCounter.class})
+class PageServiceTest extends PostgresTestSupport {
+
+    private static final int PAGES = 40;
+    private static final String STROKES = "https://bucket/strokes/";
+
+    @Autowired
+    private PageService pageService;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private IPageRepository pageRepository;
+    @Autowired
+    private IProjectVersionRepository projectVersionRepository;
+    @Autowired
+    private StatementCounter statements;
+
+    @MockitoBean
+    private IStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        when(storageService.getContentAddressedUrlPrefix()).thenReturn(STROKES);
+    }
+
+    @Test
+    void addPagesCommitsAVersionInAFixedNumberOfStatements() {
+        Project project = entityManager.persist(Project.builder().name("Notebook").ownerId(1L)
+                .pages(new ArrayList<>()).projectVersions(new ArrayList<>()).projectCollaborations(new ArrayList<>())
+                .build());
+        for (long v = 1; v <= 10; v++) {
+            ProjectVersion version = entityManager.persist(ProjectVersion.builder()
+                    .project(project).versionNumber(v).note("v" + v).pages(new ArrayList<>()).build());
+            for (int i = 1; i <= PAGES; i++) {
+                entityManager.persist(Page.builder().project(v == 10 ? project : null).projectVersion(version)
+                        .pageNumber(i).strokeUrl(strokeUrl(v * 1000 + i)).build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statements.reset();
+        List<PageResponse> saved = pageService.addPages(request(project.getProjectId()), 1L);
+        int count = statements.get();
+
+        assertEquals(PAGES, saved.size());
+        assertEquals(1, saved.get(0).getPageNumber());
+        assertTrue(saved.stream().allMatch(page -> page.getPageId() != null));
+        // project, max version, detach, version, ids, page batch, stroke refs, surplus
+        // versions, their stroke urls, soft delete versions, soft delete pages, stroke refs
+        assertEquals(12, count, "statements for a " + PAGES + "-page save");
+
+        entityManager.clear();
+        assertEquals(PAGES, pageRepository.findByProject_ProjectIdAndDeletedAtIsNullOrderByPageNumberAsc(project.getProjectId()).size());
+        List<ProjectVersion> live = projectVersionRepository.findByProjectAndDeletedAtIsNullOrderByCreatedAtDesc(project);
+        assertEquals(10, live.size());
+        assertEquals(11L, live.get(0).getVersionNumber());
+        assertTrue(live.stream().noneMatch(version -> version.getVersionNumber() == 1L));
+        // Pruned strokes are only released; StrokeBlobCollector deletes them later
+        verify(storageService, never()).deleteFile(anyString());
+    }
+
+    @Test
+    void firstSaveOfAnEmptyNotebookCreatesVersionOne() {
+        Project project = entityManager.persist(Project.builder().name("Empty").ownerId(1L)
+                .pages(new ArrayList<>()).projectVersions(new ArrayList<>()).projectCollaborations(new ArrayList<>())
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        ListPageRequest request = new ListPageRequest();
+        request.setProjectId(project.getProjectId());
+        request.setPages(List.of());
+        assertNull(pageService.addPages(request, 1L));
+
+        entityManager.clear();
+        List<ProjectVersion> live = projectVersionRepository.findByProjectAndDeletedAtIsNullOrderByCreatedAtDesc(project);
+        assertEquals(1, live.size());
+        assertEquals(1L, live.get(0).getVersionNumber());
+    }
+
+    private static String strokeUrl(long content) {
+        return STROKES + "%064x".formatted(content);
+    }
+
+    private static ListPageRequest request(Long projectId) {
+        List<PageDto> pages = new ArrayList<>();
+        for (int i = PAGES; i >= 1; i--) {
+            PageDto page = new PageDto();
+            page.setPageNumber(i);
+            page.setStrokeUrl(strokeUrl(100_000 + i));
+            pages.add(page);
+        }
+        ListPageRequest request = new ListPageRequest();
+        request.setProjectId(projectId);
+        request.setPages(pages);
+        return request;
+    }
+
+    /**
+     * Counts JDBC executions (a batch is one round trip) on the test DataSource
+     */
+    @TestConfiguration
+    static class StatementCounter {
+
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @Bean
+        static BeanPostProcessor countingDataSource(StatementCounter counter) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) return bean;
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .afterQuery((execution, queries) -> counter.executions.incrementAndGet())
+                            .build();
+                }
+            };
+        }
+
+        void reset() {
+            executions.set(0);
+        }
+
+        int get() {
+            return executions.get();
+        }
+    }
+}
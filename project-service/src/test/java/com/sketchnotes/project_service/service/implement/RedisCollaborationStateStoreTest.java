@@ -0,0 +1,179 @@
+package com.sketchnotes.project_service.service.implement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchnotes.project_service.dtos.socket.ActiveStroke;
+import com.sketchnotes.project_service.dtos.socket.ElementLock;
+
+/**
+ * Two "nodes" (independent connections and store instances) sharing one local Redis.
+ * Skipped when no Redis is listening on REDIS_HOST:REDIS_PORT (default localhost:6379).
+ */
+class RedisCollaborationStateStoreTest {
+
+    private final long projectId = System.nanoTime();
+    private LettuceConnectionFactory factoryA;
+    private LettuceConnectionFactory factoryB;
+    private RedisCollaborationStateStore nodeA;
+    private RedisCollaborationStateStore nodeB;
+
+    @BeforeEach
+    void setUp() {
+        factoryA = connect();
+        factoryB = connect();
+        assumeTrue(isReachable(factoryA), "local Redis not available");
+
+        nodeA = new RedisCollaborationStateStore(template(factoryA), new ObjectMapper());
+        nodeB = new RedisCollaborationStateStore(template(factoryB), new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (factoryA != null && isReachable(factoryA)) {
+            StringRedisTemplate redis = template(factoryA);
+            Set<String> keys = redis.keys("collab:{" + projectId + "}:*");
+            if (keys != null && !keys.isEmpty()) {
+                redis.delete(keys);
+            }
+        }
+        factoryA.destroy();
+        factoryB.destroy();
+    }
+
+    @Test
+    void sequencesAreUniqueAcrossNodes() throws Exception {
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            RedisCollaborationStateStore node = t % 2 == 0 ? nodeA : nodeB;
+            pool.execute(() -> {
+                for (int i = 0; i < 250; i++) {
+                    seen.add(node.nextSequence(projectId));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(2000, seen.size());
+        assertEquals(2000, nodeB.currentSequence(projectId));
+    }
+
+    @Test
+    void reservedBlocksNeverOverlapOtherSequences() {
+        long first = nodeA.nextSequence(projectId);
+        long blockEnd = nodeB.reserveSequences(projectId, 30);
+
+        assertEquals(first + 30, blockEnd);
+        assertEquals(blockEnd + 1, nodeA.nextSequence(projectId));
+    }
+
+    @Test
+    void onlyOneNodeWinsAnElementLock() {
+        long expiresAt = System.currentTimeMillis() + 30_000;
+        ElementLock alice = new ElementLock("el-1", "alice", expiresAt, "token-a");
+        ElementLock bob = new ElementLock("el-1", "bob", expiresAt, "token-b");
+
+        assertSame(alice, nodeA.tryLock(projectId, alice));
+        ElementLock winner = nodeB.tryLock(projectId, bob);
+        assertNotSame(bob, winner);
+        assertEquals("alice", winner.getUserId());
+
+        assertFalse(nodeB.releaseLock(projectId, "el-1", "bob", "token-b"));
+        assertEquals(List.of("el-1"), nodeB.releaseUserLocks(projectId, "alice"));
+        assertTrue(nodeA.getLocks(projectId).isEmpty());
+        assertSame(bob, nodeB.tryLock(projectId, bob));
+    }
+
+    @Test
+    void unreadableHolderIsAConflict() {
+        template(factoryA).opsForValue().set("collab:{" + projectId + "}:lock:el-1", "{not json");
+        ElementLock bob = new ElementLock("el-1", "bob", System.currentTimeMillis() + 30_000, "token-b");
+
+        ElementLock winner = nodeB.tryLock(projectId, bob);
+
+        assertNotSame(bob, winner);
+        assertFalse(winner.isHeldBy("bob"));
+        assertEquals("{not json", template(factoryA).opsForValue().get("collab:{" + projectId + "}:lock:el-1"));
+    }
+
+    @Test
+    void expiredLockIsReapedByExactlyOneNode() {
+        long now = System.currentTimeMillis();
+        nodeA.tryLock(projectId, new ElementLock("el-1", "alice", now + 50, "token-a"));
+        nodeA.tryLock(projectId, new ElementLock("el-2", "alice", now + 60_000, "token-b"));
+
+        List<ElementLock> reapedA = nodeA.reapExpiredLocks(now + 300).getOrDefault(projectId, List.of());
+        List<ElementLock> reapedB = nodeB.reapExpiredLocks(now + 300).getOrDefault(projectId, List.of());
+        assertEquals(1, reapedA.size() + reapedB.size());
+        assertEquals("alice", (reapedA.isEmpty() ? reapedB : reapedA).get(0).getUserId());
+
+        assertEquals(Set.of("el-2"), nodeB.getLocks(projectId).keySet());
+        assertEquals(List.of("el-2"), nodeB.releaseUserLocks(projectId, "alice"));
+    }
+
+    @Test
+    void activeStrokesAreVisibleFromBothNodes() {
+        nodeA.startStroke(projectId, ActiveStroke.builder()
+                .strokeId("s-1").userId("alice").pageId(3).tool("pen").build());
+        // More chunks than the compaction threshold: merged into one block on the way
+        for (int i = 0; i < 100; i++) {
+            assertTrue(nodeB.appendStrokePoints(projectId, "s-1",
+                    Map.of("compressed", true, "start", List.of(i, i), "deltas", List.of(1, 2))));
+        }
+
+        List<ActiveStroke> strokes = nodeA.getActiveStrokes(projectId);
+        assertEquals(1, strokes.size());
+        assertEquals("alice", strokes.get(0).getUserId());
+        assertEquals(200, strokes.get(0).getPoints().size());
+        assertTrue(template(factoryA).opsForList().size("collab:{" + projectId + "}:stroke:s-1") <= 65);
+
+        nodeB.removeStroke(projectId, "s-1");
+        assertTrue(nodeA.getActiveStrokes(projectId).isEmpty());
+    }
+
+    private static LettuceConnectionFactory connect() {
+        String host = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+        int port = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(host, port);
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    private static StringRedisTemplate template(LettuceConnectionFactory factory) {
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private static boolean isReachable(LettuceConnectionFactory factory) {
+        try (var connection = factory.getConnection()) {
+            return "PONG".equals(connection.ping());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
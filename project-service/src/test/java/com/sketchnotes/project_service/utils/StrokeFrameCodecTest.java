@@ -0,0 +1,39 @@
+package com.sketchnotes.project_service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class StrokeFrameCodecTest {
+
+    @Test
+    void roundTripsHeaderAndPoints() {
+        float[] xy = {100.0f, 200.0f, 101.5f, 199.2f, 90.1f, 250.3f};
+        byte[] frame = StrokeFrameCodec.encodeAppend(77, 3, "s-é1", xy, 3);
+
+        StrokeFrameCodec.stampSeq(frame, 1L << 40 | 9);
+        StrokeFrameCodec.Header header = StrokeFrameCodec.readHeader(frame);
+
+        assertEquals(StrokeFrameCodec.TYPE_STROKE_APPEND, header.type());
+        assertEquals(1L << 40 | 9, header.seq());
+        assertEquals(77, header.userId());
+        assertEquals(3, header.pageId());
+        assertEquals("s-é1", header.strokeId());
+        assertEquals(3, header.pointCount());
+        assertArrayEquals(xy, StrokeFrameCodec.decodePoints(frame, header), 0.05f);
+        assertArrayEquals(new int[] {1000, 2000, 15, -8, -114, 511}, StrokeFrameCodec.decodeDeltas(frame, header));
+    }
+
+    @Test
+    void rejectsTruncatedFrames() {
+        byte[] frame = StrokeFrameCodec.encodeAppend(1, 1, "stroke", new float[] {1, 2}, 1);
+        byte[] truncated = Arrays.copyOf(frame, 15);
+
+        assertThrows(IllegalArgumentException.class, () -> StrokeFrameCodec.readHeader(truncated));
+        assertThrows(IllegalArgumentException.class, () -> StrokeFrameCodec.readHeader(new byte[] {1, 2, 3}));
+    }
+}
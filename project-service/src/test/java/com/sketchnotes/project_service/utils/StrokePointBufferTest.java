@@ -0,0 +1,67 @@
+package com.sketchnotes.project_service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class StrokePointBufferTest {
+
+    @Test
+    void mergesChunksOfEveryFormatIntoOneDeltaBlock() {
+        StrokePointBuffer buffer = new StrokePointBuffer();
+        buffer.appendChunk(Map.of("compressed", true, "start", List.of(10.0, 20.0), "deltas", List.of(1.5, -0.5)));
+        buffer.appendChunk(Map.of("compressed", true, "scale", 10, "deltas", new int[] {150, 200, 5, 5}));
+        buffer.appendChunk(Map.of("compressed", false, "data", List.of(Map.of("x", 20, "y", 21))));
+        buffer.appendChunk(List.of(List.of(22, 23)));
+
+        assertEquals(6, buffer.size());
+        assertArrayEquals(new float[] {10, 20, 11.5f, 19.5f, 15, 20, 15.5f, 20.5f, 20, 21, 22, 23},
+                buffer.toArray(), 0.001f);
+
+        Map<String, Object> block = buffer.toDeltaBlock();
+        assertEquals(6, block.get("count"));
+        StrokePointBuffer decoded = new StrokePointBuffer();
+        decoded.appendChunk(block);
+        assertArrayEquals(buffer.toArray(), decoded.toArray(), 0.05f);
+    }
+
+    @Test
+    void longStrokesAreSimplifiedUnderTheCap() {
+        StrokePointBuffer buffer = new StrokePointBuffer();
+        for (int chunk = 0; chunk < 100; chunk++) {
+            float[] xy = new float[200];
+            for (int i = 0; i < 100; i++) {
+                int n = chunk * 100 + i;
+                xy[i * 2] = n * 0.1f;
+                xy[i * 2 + 1] = (float) Math.sin(n / 500.0) * 100;
+            }
+            buffer.appendChunk(Map.of("scale", 1, "deltas", toDeltas(xy)));
+        }
+
+        assertTrue(buffer.size() <= StrokePointBuffer.SIMPLIFY_THRESHOLD, "size " + buffer.size());
+        float[] kept = buffer.toArray();
+        // Endpoints survive simplification
+        assertEquals(999.9f, kept[kept.length - 2], 0.5f);
+        assertEquals(0, kept[0], 0.001f);
+    }
+
+    private static int[] toDeltas(float[] xy) {
+        int[] deltas = new int[xy.length];
+        int prevX = 0;
+        int prevY = 0;
+        for (int i = 0; i < xy.length; i += 2) {
+            int x = Math.round(xy[i]);
+            int y = Math.round(xy[i + 1]);
+            deltas[i] = x - prevX;
+            deltas[i + 1] = y - prevY;
+            prevX = x;
+            prevY = y;
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sketchnotes.project_service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTableTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void bucketDrainsAndRefillsAtTheConfiguredRate() {
+        TokenBucketTable table = new TokenBucketTable(100, 64, 60_000, clock::get);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(table.tryAcquire(7L));
+        }
+        assertFalse(table.tryAcquire(7L));
+        assertTrue(table.tryAcquire(8L), "other keys have their own bucket");
+
+        clock.addAndGet(55);
+        assertTrue(table.tryAcquire(7L));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(table.tryAcquire(7L));
+        }
+        assertFalse(table.tryAcquire(7L));
+    }
+
+    @Test
+    void idleBucketsAreRecycledSoTheTableStaysBounded() {
+        TokenBucketTable table = new TokenBucketTable(10, 64, 1_000, clock::get);
+
+        for (long key = 0; key < 10_000; key++) {
+            table.tryAcquire(key);
+            clock.addAndGet(1);
+        }
+        assertEquals(64, table.capacity());
+        assertTrue(table.activeEntries() <= 64);
+
+        // Table saturated with live buckets: fail open rather than lock a user out
+        assertTrue(table.tryAcquire(99_999L));
+
+        // Once they go idle, their slots are recycled and a new key gets a full bucket
+        clock.addAndGet(2_000);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(table.tryAcquire(123_456L));
+        }
+        assertFalse(table.tryAcquire(123_456L));
+    }
+
+    @Test
+    void concurrentCallersNeverOverdrawABucket() throws Exception {
+        TokenBucketTable table = new TokenBucketTable(500, 64, 60_000, clock::get);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch done = new CountDownLatch(16);
+        for (int t = 0; t < 16; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (table.tryAcquire(42L)) {
+                        granted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(500, granted.get());
+    }
+
+    @Test
+    void compositeKeysSeparateProjectsAndUserIdTypes() {
+        assertEquals(TokenBucketTable.compositeKey(1, 5), TokenBucketTable.compositeKey(1, 5L));
+        assertNotEquals(TokenBucketTable.compositeKey(1, 5), TokenBucketTable.compositeKey(2, 5));
+        assertNotEquals(TokenBucketTable.compositeKey(1, "user-a"), TokenBucketTable.compositeKey(1, "user-b"));
+    }
+}